@@ -88,6 +88,16 @@ public class AssetResourceProvider implements ResourceProvider {
         }
     }
 
+    @Override
+    public void start() {
+        // Nothing to start
+    }
+
+    @Override
+    public void shutdown() {
+        // Nothing to release
+    }
+
     @NonNull
     private String getAssetPath(String path) {
         return basePath + path;
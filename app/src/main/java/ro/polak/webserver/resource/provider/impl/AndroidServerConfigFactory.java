@@ -28,13 +28,14 @@ import admin.filter.LogoutFilter;
 import admin.filter.SecurityFilter;
 import api.SmsInbox;
 import api.SmsSend;
-import ro.polak.http.MimeTypeMapping;
 import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.cli.DefaultServerConfigFactory;
 import ro.polak.http.configuration.DeploymentDescriptorBuilder;
+import ro.polak.http.protocol.parser.impl.AcceptEncodingParser;
 import ro.polak.http.protocol.parser.impl.RangeParser;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
 import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.provider.impl.FileMetadataCache;
 import ro.polak.http.resource.provider.impl.FileResourceProvider;
 import ro.polak.http.servlet.helper.RangeHelper;
 import ro.polak.http.session.storage.SessionStorage;
@@ -84,7 +85,7 @@ public class AndroidServerConfigFactory extends DefaultServerConfigFactory {
     @Override
     protected Set<ResourceProvider> getAdditionalResourceProviders(ServerConfig serverConfig) {
         Set<ResourceProvider> resourceProviders = new HashSet<>();
-        resourceProviders.add(getAssetsResourceProvider(serverConfig.getMimeTypeMapping()));
+        resourceProviders.add(getAssetsResourceProvider(serverConfig));
         return resourceProviders;
     }
 
@@ -150,14 +151,21 @@ public class AndroidServerConfigFactory extends DefaultServerConfigFactory {
 
     }
 
-    private ResourceProvider getAssetsResourceProvider(MimeTypeMapping mimeTypeMapping) {
+    private ResourceProvider getAssetsResourceProvider(ServerConfig serverConfig) {
         String assetBasePath = "public";
         if (context != null) {
             AssetManager assetManager = ((Context) context).getResources().getAssets();
             return new AssetResourceProvider(assetManager, assetBasePath);
         } else {
+            String basePath = "./app/src/main/assets/" + assetBasePath;
+            FileMetadataCache fileMetadataCache = getFileMetadataCache(serverConfig.getMimeTypeMapping());
             return new FileResourceProvider(new RangeParser(), new RangeHelper(),
-                    new RangePartHeaderSerializer(), mimeTypeMapping, "./app/src/main/assets/" + assetBasePath);
+                    new RangePartHeaderSerializer(),
+                    new AcceptEncodingParser(),
+                    fileMetadataCache,
+                    getFileContentCache(serverConfig),
+                    getPrecompressedFileGenerator(serverConfig, fileMetadataCache),
+                    basePath);
         }
     }
 }
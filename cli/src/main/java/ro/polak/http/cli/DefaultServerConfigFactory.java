@@ -15,6 +15,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -29,20 +32,27 @@ import example.NotFound;
 import example.Session;
 import example.Streaming;
 import example.filter.FakeSecuredFilter;
+import ro.polak.http.MimeTypeMapping;
 import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.configuration.ServerConfigFactory;
 import ro.polak.http.configuration.DeploymentDescriptorBuilder;
 import ro.polak.http.configuration.impl.ServerConfigImpl;
+import ro.polak.http.protocol.parser.impl.AcceptEncodingParser;
 import ro.polak.http.protocol.parser.impl.RangeParser;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
 import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.provider.impl.FileContentCache;
+import ro.polak.http.resource.provider.impl.FileMetadataCache;
 import ro.polak.http.resource.provider.impl.FileResourceProvider;
+import ro.polak.http.resource.provider.impl.PrecompressedFileGenerator;
 import ro.polak.http.resource.provider.impl.ServletResourceProvider;
 import ro.polak.http.servlet.impl.ServletContainerImpl;
+import ro.polak.http.servlet.helper.CompressionHelper;
 import ro.polak.http.servlet.helper.RangeHelper;
 import ro.polak.http.servlet.impl.ServletContextImpl;
 import ro.polak.http.session.storage.FileSessionStorage;
 import ro.polak.http.session.storage.SessionStorage;
+import ro.polak.http.utilities.DateProvider;
 
 /**
  * Default server config factory.
@@ -52,6 +62,10 @@ import ro.polak.http.session.storage.SessionStorage;
  */
 public class DefaultServerConfigFactory implements ServerConfigFactory {
 
+    protected static final int FILE_METADATA_CACHE_SIZE = 1024;
+    protected static final long FILE_METADATA_CACHE_TTL = 2 * 1000;
+    protected static final long FILE_METADATA_CACHE_WATCHED_TTL = 60 * 1000;
+
     private static final Logger LOGGER = Logger.getLogger(DefaultServerConfigFactory.class.getName());
 
     @Override
@@ -131,10 +145,12 @@ public class DefaultServerConfigFactory implements ServerConfigFactory {
                     .addServlet()
                         .withUrlPattern(Pattern.compile("^/Index$"))
                         .withServletClass(Index.class)
+                        .withLoadOnStartup(0)
                     .end()
                     .addServlet()
                         .withUrlPattern(Pattern.compile("^/$"))
                         .withServletClass(Index.class)
+                        .withLoadOnStartup(0)
                     .end()
                     .addServlet()
                         .withUrlPattern(Pattern.compile("^/InternalServerError$"))
@@ -210,15 +226,67 @@ public class DefaultServerConfigFactory implements ServerConfigFactory {
     }
 
     private FileResourceProvider getFileResourceProvider(ServerConfig serverConfig) {
+        FileMetadataCache fileMetadataCache
+                = getFileMetadataCache(serverConfig.getMimeTypeMapping());
+
         return new FileResourceProvider(new RangeParser(), new RangeHelper(),
-                new RangePartHeaderSerializer(), serverConfig.getMimeTypeMapping(),
+                new RangePartHeaderSerializer(),
+                new AcceptEncodingParser(),
+                fileMetadataCache,
+                getFileContentCache(serverConfig),
+                getPrecompressedFileGenerator(serverConfig, fileMetadataCache),
                 serverConfig.getDocumentRootPath());
     }
 
+    /**
+     * Creates a file metadata cache, the file resource provider watches its directory once started.
+     *
+     * @param mimeTypeMapping
+     * @return
+     */
+    protected FileMetadataCache getFileMetadataCache(MimeTypeMapping mimeTypeMapping) {
+        return new FileMetadataCache(new DateProvider(), mimeTypeMapping,
+                FILE_METADATA_CACHE_SIZE, FILE_METADATA_CACHE_TTL, FILE_METADATA_CACHE_WATCHED_TTL);
+    }
+
+    /**
+     * Creates a content cache sized according to the configuration.
+     *
+     * @param serverConfig
+     * @return
+     */
+    protected FileContentCache getFileContentCache(ServerConfig serverConfig) {
+        return new FileContentCache(serverConfig.getContentCacheMaxSize(), serverConfig.getContentCacheMaxFileSize());
+    }
+
+    /**
+     * Creates a sidecar generator compressing the configured MIME types in a background thread.
+     *
+     * @param serverConfig
+     * @param fileMetadataCache
+     * @return
+     */
+    protected PrecompressedFileGenerator getPrecompressedFileGenerator(ServerConfig serverConfig,
+                                                                       FileMetadataCache fileMetadataCache) {
+        ExecutorService executorService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PrecompressedFileGenerator");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        return new PrecompressedFileGenerator(fileMetadataCache, serverConfig.getPrecompressedMimeTypes(),
+                executorService);
+    }
+
     private ServletResourceProvider getServletResourceProvider(ServerConfig serverConfig) {
         return new ServletResourceProvider(
-                new ServletContainerImpl(),
-                getServletContexts(serverConfig)
+                new ServletContainerImpl(new DateProvider(), serverConfig.getServletIdleTimeout() * 1000L),
+                getServletContexts(serverConfig),
+                new CompressionHelper(new AcceptEncodingParser(), serverConfig.getCompressionMimeTypes(),
+                        serverConfig.getCompressionMinSize(), serverConfig.getCompressionLevel())
         );
     }
 }
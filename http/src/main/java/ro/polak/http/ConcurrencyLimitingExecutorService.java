@@ -0,0 +1,116 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor service limiting the number of tasks running at the same time.
+ * <p/>
+ * Used on top of executors that do not bound the number of threads themselves, tasks exceeding
+ * the limit are passed to the rejected task handler instead of being queued.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class ConcurrencyLimitingExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService executorService;
+    private final Semaphore semaphore;
+    private final RejectedTaskHandler rejectedTaskHandler;
+
+    /**
+     * Default constructor.
+     *
+     * @param executorService
+     * @param maxConcurrentTasks
+     * @param rejectedTaskHandler
+     */
+    public ConcurrencyLimitingExecutorService(final ExecutorService executorService,
+                                              final int maxConcurrentTasks,
+                                              final RejectedTaskHandler rejectedTaskHandler) {
+        this.executorService = executorService;
+        this.semaphore = new Semaphore(maxConcurrentTasks);
+        this.rejectedTaskHandler = rejectedTaskHandler;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (!semaphore.tryAcquire()) {
+            rejectedTaskHandler.onRejected(command);
+            return;
+        }
+
+        try {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        command.run();
+                    } finally {
+                        semaphore.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of tasks that can still be started without exceeding the limit.
+     *
+     * @return
+     */
+    public int getAvailablePermits() {
+        return semaphore.availablePermits();
+    }
+
+    @Override
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return executorService.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executorService.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executorService.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executorService.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Handler of the tasks exceeding the limit.
+     */
+    public interface RejectedTaskHandler {
+
+        /**
+         * Called on the thread submitting the task once the task got rejected.
+         *
+         * @param task
+         */
+        void onRejected(Runnable task);
+    }
+}
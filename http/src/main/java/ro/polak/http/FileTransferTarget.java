@@ -0,0 +1,40 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Output able to receive file regions directly from a file channel and the contents of direct
+ * buffers, without copying the bytes through the heap.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public interface FileTransferTarget {
+
+    /**
+     * Writes the given region of the file, blocks until all the bytes are transferred.
+     *
+     * @param fileChannel
+     * @param position
+     * @param length
+     * @throws IOException
+     */
+    void transferFrom(FileChannel fileChannel, long position, long length) throws IOException;
+
+    /**
+     * Writes the remaining bytes of the buffer, blocks until all the bytes are transferred.
+     *
+     * @param buffer
+     * @throws IOException
+     */
+    void transferFrom(ByteBuffer buffer) throws IOException;
+}
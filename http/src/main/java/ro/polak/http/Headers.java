@@ -7,9 +7,12 @@
 
 package ro.polak.http;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * HTTP headers representation
@@ -37,37 +40,176 @@ public class Headers {
     public static final String HEADER_RANGE = "Range";
     public static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
     public static final String HEADER_CONTENT_RANGE = "Content-Range";
+    public static final String HEADER_ETAG = "ETag";
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    public static final String HEADER_IF_RANGE = "If-Range";
+    public static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    public static final String HEADER_VARY = "Vary";
 
-    // TreeMap is used to obtain case insensitive map
-    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private static final String VALUE_SEPARATOR = ",";
+    private static final int INITIAL_CAPACITY = 16;
+    private static final String[] KNOWN_NAMES = {
+            HEADER_ALLOW,
+            HEADER_SERVER,
+            HEADER_CONTENT_DISPOSITION,
+            HEADER_LOCATION,
+            HEADER_CONTENT_LENGTH,
+            HEADER_CONTENT_TYPE,
+            HEADER_CONNECTION,
+            HEADER_SET_COOKIE,
+            HEADER_CACHE_CONTROL,
+            HEADER_ACCEPT_LANGUAGE,
+            HEADER_PRAGMA,
+            HEADER_COOKIE,
+            HEADER_TRANSFER_ENCODING,
+            HEADER_HOST,
+            HEADER_RANGE,
+            HEADER_ACCEPT_RANGES,
+            HEADER_CONTENT_RANGE,
+            HEADER_ETAG,
+            HEADER_LAST_MODIFIED,
+            HEADER_IF_NONE_MATCH,
+            HEADER_IF_MODIFIED_SINCE,
+            HEADER_IF_RANGE,
+            HEADER_ACCEPT_ENCODING,
+            HEADER_CONTENT_ENCODING,
+            HEADER_VARY
+    };
+
+    // Headers are kept in the order of their appearance, repeated headers are stored as separate entries
+    private String[] names = new String[INITIAL_CAPACITY];
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int size;
+
+    // Position of the first entry and the number of entries of every known header
+    private final int[] knownFirstIndexes = new int[KNOWN_NAMES.length];
+    private final int[] knownCounts = new int[KNOWN_NAMES.length];
 
     /**
-     * Sets a header.
+     * Default constructor.
+     */
+    public Headers() {
+        Arrays.fill(knownFirstIndexes, -1);
+    }
+
+    /**
+     * Sets a header, replaces all the previous values of the header.
      *
      * @param name  header name
      * @param value header value
      */
     public void setHeader(String name, String value) {
-        headers.put(name, value);
+        int index = indexOf(name);
+        if (index == -1) {
+            addHeader(name, value);
+            return;
+        }
+
+        // The first entry keeps its position and the original name case
+        values[index] = value;
+        removeEntries(name, index + 1);
     }
 
     /**
-     * Returns header's value
+     * Adds a header value, the previous values of the header are preserved.
+     *
+     * @param name  header name
+     * @param value header value
+     */
+    public void addHeader(String name, String value) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        names[size] = name;
+        values[size] = value;
+
+        int knownId = getKnownId(name);
+        if (knownId != -1) {
+            if (knownCounts[knownId]++ == 0) {
+                knownFirstIndexes[knownId] = size;
+            }
+        }
+        ++size;
+    }
+
+    /**
+     * Returns header's value. Values of a repeated header are joined with a comma.
      *
      * @param name name of the header
      * @return header's value
      */
     public String getHeader(String name) {
-        return headers.get(name);
+        int knownId = getKnownId(name);
+        int index;
+        int count;
+        if (knownId != -1) {
+            index = knownFirstIndexes[knownId];
+            count = knownCounts[knownId];
+        } else {
+            index = indexOf(name);
+            count = index == -1 ? 0 : 2;
+        }
+
+        if (index == -1) {
+            return null;
+        }
+        if (count == 1) {
+            return values[index];
+        }
+
+        String value = values[index];
+        for (int i = index + 1; i < size; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                value = value + VALUE_SEPARATOR + values[i];
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns all the values of a header in the order of their appearance.
+     *
+     * @param name name of the header
+     * @return list of values, empty when the header does not exist
+     */
+    public List<String> getHeaderValues(String name) {
+        List<String> headerValues = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                headerValues.add(values[i]);
+            }
+        }
+        return headerValues;
+    }
+
+    /**
+     * Removes all the values of a header.
+     *
+     * @param name
+     */
+    public void removeHeader(String name) {
+        removeEntries(name, 0);
     }
 
     /**
-     * Returns header names' set.
+     * Returns header names' set, in the order of their appearance.
      *
      * @return
      */
     public Set<String> keySet() {
-        return headers.keySet();
+        Set<String> keys = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        Set<String> orderedKeys = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            if (keys.add(names[i])) {
+                orderedKeys.add(names[i]);
+            }
+        }
+        return orderedKeys;
     }
 
     /**
@@ -77,6 +219,112 @@ public class Headers {
      * @return
      */
     public boolean containsHeader(String name) {
-        return headers.containsKey(name);
+        int knownId = getKnownId(name);
+        if (knownId != -1) {
+            return knownCounts[knownId] > 0;
+        }
+        return indexOf(name) != -1;
+    }
+
+    /**
+     * Returns the number of header entries, a repeated header is counted once per every value.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the name of the entry at the given position.
+     *
+     * @param index
+     * @return
+     */
+    public String getNameAt(int index) {
+        checkIndex(index);
+        return names[index];
+    }
+
+    /**
+     * Returns the value of the entry at the given position.
+     *
+     * @param index
+     * @return
+     */
+    public String getValueAt(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    private int indexOf(String name) {
+        int knownId = getKnownId(name);
+        if (knownId != -1) {
+            return knownFirstIndexes[knownId];
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeEntries(String name, int fromIndex) {
+        int newSize = fromIndex;
+        for (int i = fromIndex; i < size; i++) {
+            if (!names[i].equalsIgnoreCase(name)) {
+                names[newSize] = names[i];
+                values[newSize] = values[i];
+                ++newSize;
+            }
+        }
+
+        if (newSize == size) {
+            return;
+        }
+
+        Arrays.fill(names, newSize, size, null);
+        Arrays.fill(values, newSize, size, null);
+        size = newSize;
+        reindexKnownHeaders();
+    }
+
+    private void reindexKnownHeaders() {
+        Arrays.fill(knownFirstIndexes, -1);
+        Arrays.fill(knownCounts, 0);
+        for (int i = 0; i < size; i++) {
+            int knownId = getKnownId(names[i]);
+            if (knownId != -1 && knownCounts[knownId]++ == 0) {
+                knownFirstIndexes[knownId] = i;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of a well known header or -1. Constants are matched by reference first.
+     *
+     * @param name
+     * @return
+     */
+    private static int getKnownId(String name) {
+        for (int i = 0; i < KNOWN_NAMES.length; i++) {
+            if (KNOWN_NAMES[i] == name) {
+                return i;
+            }
+        }
+        for (int i = 0; i < KNOWN_NAMES.length; i++) {
+            if (KNOWN_NAMES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
     }
 }
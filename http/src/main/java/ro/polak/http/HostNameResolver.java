@@ -0,0 +1,28 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http;
+
+import java.net.InetAddress;
+
+/**
+ * Resolves host names of addresses.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public interface HostNameResolver {
+
+    /**
+     * Returns the host name of the address or its textual representation when the name
+     * can not be resolved.
+     *
+     * @param address
+     * @return
+     */
+    String getHostName(InetAddress address);
+}
@@ -7,11 +7,13 @@
 
 package ro.polak.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -26,6 +28,11 @@ import ro.polak.http.utilities.StringUtilities;
 
 /**
  * Multipart request handler
+ * <p/>
+ * The body is read in large chunks into a single buffer, delimiters are located using the
+ * Boyer-Moore-Horspool search. Everything in between the delimiters is copied in bulk to the
+ * destination of the current part. Uploaded files not exceeding the memory threshold are kept in
+ * memory, the larger ones are spilled to the temporary directory.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @link http://www.w3.org/Protocols/rfc1341/7_2_Multipart.html
@@ -36,52 +43,90 @@ public class MultipartRequestHandler {
     private static final String NEW_LINE = "\r\n";
     private static final String BOUNDARY_BEGIN_MARK = "--";
     private static final String HEADERS_DELIMINATOR = NEW_LINE + NEW_LINE;
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+    private static final Charset BOUNDARY_CHARSET = Charset.forName("ISO-8859-1");
 
     private final InputStream in;
     private final Parser<MultipartHeadersPart> multipartHeadersPartParser;
     private final int expectedPostLength;
-    private final int bufferLength;
     private final String temporaryUploadsDirectory;
+    private final Charset charset;
+    private final int memoryThreshold;
     private final Map<String, String> post;
-
-    private File currentFile;
-    private FileOutputStream fileOutputStream;
-    private int allBytesRead = 0;
-    private StringBuilder headersStringBuffered;
-    private StringBuilder valueStringBuffered;
-    private String endBoundary;
-    private String beginBoundary;
+    private final Collection<UploadedFile> uploadedFiles;
+
+    private final BoundaryMatcher beginBoundaryMatcher;
+    private final BoundaryMatcher endBoundaryMatcher;
+    private final BoundaryMatcher headersDelimiterMatcher;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private int allBytesRead;
+    private boolean isEndOfInput;
+
+    private final ByteArrayOutputStream headersBuffered = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream valueBuffered = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream fileBuffered = new ByteArrayOutputStream();
     private MultipartHeadersPart multipartHeadersPart;
-    private Collection<UploadedFile> uploadedFiles;
+    private boolean isFilePart;
+    private File currentFile;
+    private OutputStream fileOutputStream;
 
     private boolean wasHandledBefore;
 
     /**
-     * Constructor.
-     *  @param in
+     * Constructor, text fields are decoded as UTF-8 and all the uploaded files are written to disk.
+     *
+     * @param multipartHeadersPartParser
+     * @param in
      * @param expectedPostLength
      * @param boundary
      * @param temporaryUploadsDirectory
+     * @param bufferLength
      */
     public MultipartRequestHandler(final Parser<MultipartHeadersPart> multipartHeadersPartParser,
                                    final InputStream in, final int expectedPostLength,
                                    final String boundary, final String temporaryUploadsDirectory,
                                    final int bufferLength) {
+        this(multipartHeadersPartParser, in, expectedPostLength, boundary, temporaryUploadsDirectory,
+                bufferLength, DEFAULT_CHARSET, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param multipartHeadersPartParser
+     * @param in
+     * @param expectedPostLength
+     * @param boundary
+     * @param temporaryUploadsDirectory
+     * @param bufferLength
+     * @param charset                    charset of the text fields and of the part headers
+     * @param memoryThreshold            max size in bytes of an uploaded file kept in memory,
+     *                                   0 to write all the files to disk
+     */
+    public MultipartRequestHandler(final Parser<MultipartHeadersPart> multipartHeadersPartParser,
+                                   final InputStream in, final int expectedPostLength,
+                                   final String boundary, final String temporaryUploadsDirectory,
+                                   final int bufferLength, final Charset charset,
+                                   final int memoryThreshold) {
         this.in = in;
         this.expectedPostLength = expectedPostLength;
         this.temporaryUploadsDirectory = temporaryUploadsDirectory;
         this.multipartHeadersPartParser = multipartHeadersPartParser;
+        this.charset = charset;
+        this.memoryThreshold = memoryThreshold;
 
-        endBoundary = NEW_LINE + BOUNDARY_BEGIN_MARK + boundary;
-        beginBoundary = BOUNDARY_BEGIN_MARK + boundary;
+        beginBoundaryMatcher = new BoundaryMatcher((BOUNDARY_BEGIN_MARK + boundary).getBytes(BOUNDARY_CHARSET));
+        endBoundaryMatcher = new BoundaryMatcher((NEW_LINE + BOUNDARY_BEGIN_MARK + boundary).getBytes(BOUNDARY_CHARSET));
+        headersDelimiterMatcher = new BoundaryMatcher(HEADERS_DELIMINATOR.getBytes(BOUNDARY_CHARSET));
+
+        // The buffer must be able to hold a delimiter together with the bytes preceding it
+        buffer = new byte[Math.max(bufferLength, endBoundaryMatcher.length() * 2)];
 
-        allBytesRead = 0;
         wasHandledBefore = false;
-        headersStringBuffered = new StringBuilder();
-        valueStringBuffered = new StringBuilder();
         uploadedFiles = new ArrayList<>();
         post = new HashMap<>();
-        this.bufferLength = bufferLength;
     }
 
     /**
@@ -95,8 +140,13 @@ public class MultipartRequestHandler {
         }
         wasHandledBefore = true;
 
-        skipToTheFirstPart();
-        handleBody();
+        try {
+            skipToTheFirstPart();
+            handleBody();
+        } finally {
+            Statistics.addBytesReceived(allBytesRead);
+            discardIncompleteFile();
+        }
     }
 
     /**
@@ -118,162 +168,218 @@ public class MultipartRequestHandler {
     }
 
     private void skipToTheFirstPart() throws IOException {
-        byte[] smallBuffer = new byte[1]; // Used for reading the input stream character by character
-        int charPosition = 0;
         while (true) {
-            int numberOfBytesRead = in.read(smallBuffer);
-            if (numberOfBytesRead == -1) {
-                Statistics.addBytesReceived(allBytesRead);
+            int index = beginBoundaryMatcher.indexOf(buffer, position, limit);
+            if (index != -1) {
+                position = index + beginBoundaryMatcher.length();
+                return;
+            }
+
+            // The beginning of the boundary might be at the very end of the buffer
+            position = Math.max(position, limit - beginBoundaryMatcher.length() + 1);
+            if (!fill()) {
                 throw new IOException("Premature end of stream before reaching the end of the first boundary");
             }
+        }
+    }
 
-            allBytesRead += numberOfBytesRead;
+    private void handleBody() throws IOException, MalformedInputException {
+        boolean isHeadersReadingState = true;
 
-            if (allBytesRead > expectedPostLength) {
-                throw new PayloadTooLargeProtocolException("Payload of too large");
+        while (true) {
+            BoundaryMatcher matcher = isHeadersReadingState ? headersDelimiterMatcher : endBoundaryMatcher;
+            int index = matcher.indexOf(buffer, position, limit);
+
+            if (index != -1) {
+                pushBufferToDestination(index, isHeadersReadingState);
+                position = index + matcher.length();
+                if (isHeadersReadingState) {
+                    onHeadersEnd();
+                } else {
+                    onBodyEnd();
+                }
+                isHeadersReadingState = !isHeadersReadingState;
+                continue;
             }
 
-            if (beginBoundary.charAt(charPosition) == smallBuffer[0]) {
-                if (++charPosition == beginBoundary.length()) {
-                    break;
-                }
-            } else {
-                charPosition = 0;
+            // Everything except a possible beginning of the delimiter can be safely pushed
+            int safeEnd = Math.max(position, limit - matcher.length() + 1);
+            pushBufferToDestination(safeEnd, isHeadersReadingState);
+            position = safeEnd;
+
+            if (!fill()) {
+                return;
             }
         }
     }
 
-    private void handleBody() throws IOException, MalformedInputException {
-        int start;
-        int numberOfBytesRead;
-        boolean wasBoundaryBeginningEncounteredInPreviousIteration = false;
-        int boundaryMatchedCharacterIndex = 0;
-        int tempBufferCharPosition = 0;
-        boolean isHeadersReadingState = true;
-
-        byte[] buffer = new byte[bufferLength];
-        byte[] tempBuffer = new byte[endBoundary.length()];
+    /**
+     * Compacts the buffer and reads more bytes.
+     *
+     * @return false when there is nothing more to read
+     * @throws IOException
+     */
+    private boolean fill() throws IOException {
+        if (isEndOfInput || allBytesRead == expectedPostLength) {
+            return false;
+        }
 
-        String currentDeliminator = HEADERS_DELIMINATOR;
+        int remaining = limit - position;
+        if (remaining > 0 && position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+
+        // Never reading more than a single byte past the expected length
+        int length = (int) Math.min(buffer.length - limit, (long) expectedPostLength - allBytesRead + 1);
+        int numberOfBytesRead = in.read(buffer, limit, length);
+        if (numberOfBytesRead == -1) {
+            isEndOfInput = true;
+            return false;
+        }
 
-        while ((numberOfBytesRead = in.read(buffer, 0, buffer.length)) != -1) {
+        allBytesRead += numberOfBytesRead;
+        if (allBytesRead > expectedPostLength) {
+            throw new PayloadTooLargeProtocolException("Payload too large");
+        }
 
-            allBytesRead += numberOfBytesRead;
+        limit += numberOfBytesRead;
+        return true;
+    }
 
-            if (allBytesRead > expectedPostLength) {
-                Statistics.addBytesReceived(allBytesRead);
-                throw new PayloadTooLargeProtocolException("Payload of too large");
-            }
+    private void pushBufferToDestination(int end, boolean isHeadersReadingState) throws IOException {
+        int length = end - position;
+        if (length < 1) {
+            return;
+        }
 
-            start = 0;
-
-            for (int i = 0; i < numberOfBytesRead; i++) {
-                if (currentDeliminator.charAt(boundaryMatchedCharacterIndex) == buffer[i]) {
-                    if (++boundaryMatchedCharacterIndex == currentDeliminator.length()) {
-                        int nextStart = i + 1;
-                        int end = nextStart - currentDeliminator.length();
-                        currentDeliminator = pushBufferOnEndOfState(buffer, start, end, isHeadersReadingState);
-                        isHeadersReadingState = !isHeadersReadingState;
-
-                        start = nextStart;
-                        tempBufferCharPosition = 0;
-                        wasBoundaryBeginningEncounteredInPreviousIteration = false;
-                        boundaryMatchedCharacterIndex = 0;
-                    } else {
-                        tempBuffer[tempBufferCharPosition++] = buffer[i];
-                    }
-                } else {
-                    if (wasBoundaryBeginningEncounteredInPreviousIteration) {
-                        if (tempBufferCharPosition > 0) {
-                            pushBufferToDestination(tempBuffer, 0, tempBufferCharPosition, isHeadersReadingState);
-                        }
-                        wasBoundaryBeginningEncounteredInPreviousIteration = false;
-                    }
+        if (isHeadersReadingState) {
+            headersBuffered.write(buffer, position, length);
+        } else if (isFilePart) {
+            pushFileContents(length);
+        } else {
+            valueBuffered.write(buffer, position, length);
+        }
+    }
 
-                    boundaryMatchedCharacterIndex = 0;
-                    tempBufferCharPosition = 0;
-                }
-            }
+    private void onHeadersEnd() throws IOException, MalformedInputException {
+        multipartHeadersPart = multipartHeadersPartParser.parse(headersBuffered.toString(charset.name()));
+        headersBuffered.reset();
 
-            if (boundaryMatchedCharacterIndex > 0) {
-                // An incomplete part of the delimiter was found at the end of the buffer
-                wasBoundaryBeginningEncounteredInPreviousIteration = true;
+        isFilePart = multipartHeadersPart.getContentType() != null;
+        if (isFilePart) {
+            fileBuffered.reset();
+            if (memoryThreshold < 1) {
+                openFile();
             }
+        } else {
+            valueBuffered.reset();
+        }
+    }
 
-            int end = numberOfBytesRead - boundaryMatchedCharacterIndex;
-            if (end > start) {
-                pushBufferToDestination(buffer, start, end, isHeadersReadingState);
+    private void pushFileContents(int length) throws IOException {
+        if (currentFile == null) {
+            if (fileBuffered.size() + length <= memoryThreshold) {
+                fileBuffered.write(buffer, position, length);
+                return;
             }
 
-            if (allBytesRead == expectedPostLength) {
-                break;
-            }
+            // Spilling the part to disk once it exceeds the threshold
+            openFile();
+            fileBuffered.writeTo(fileOutputStream);
+            fileBuffered.reset();
         }
+        fileOutputStream.write(buffer, position, length);
+    }
 
-        Statistics.addBytesReceived(allBytesRead);
+    private void openFile() throws IOException {
+        currentFile = new File(temporaryUploadsDirectory + StringUtilities.generateRandom());
+        fileOutputStream = new FileOutputStream(currentFile);
     }
 
-    private void pushBufferToDestination(byte[] bytes, int start, int end, boolean isHeadersReadingState) throws IOException {
-        if (isHeadersReadingState) {
-            for (int i = start; i < end; i++) {
-                headersStringBuffered.append((char) bytes[i]);
-            }
-        } else {
+    private void onBodyEnd() throws IOException {
+        if (isFilePart) {
+            UploadedFile uploadedFile;
             if (currentFile != null) {
-                fileOutputStream.write(bytes, start, end);
+                IOUtilities.closeSilently(fileOutputStream);
+                uploadedFile = new UploadedFile(multipartHeadersPart.getName(),
+                        multipartHeadersPart.getFileName(), currentFile);
             } else {
-                for (int i = start; i < end; i++) {
-                    valueStringBuffered.append((char) bytes[i]);
-                }
+                uploadedFile = new UploadedFile(multipartHeadersPart.getName(),
+                        multipartHeadersPart.getFileName(), fileBuffered.toByteArray(), temporaryUploadsDirectory);
             }
-        }
-    }
-
-    private String pushBufferOnEndOfState(byte[] bytes, int start, int end, boolean isHeadersReadingState) throws IOException, MalformedInputException {
-        if (isHeadersReadingState) {
-            pushBufferOnEndOfStateHeaders(bytes, start, end);
-            return endBoundary;
+            uploadedFiles.add(uploadedFile);
+            currentFile = null;
+            fileOutputStream = null;
+            isFilePart = false;
         } else {
-            pushBufferOnEndOfStateBody(bytes, start, end);
-            return HEADERS_DELIMINATOR;
+            post.put(multipartHeadersPart.getName(), valueBuffered.toString(charset.name()));
         }
     }
 
-    private void pushBufferOnEndOfStateBody(byte[] bytes, int start, int end) throws IOException {
-        int len = end - start;
+    /**
+     * Removes the file of a part that was not terminated by a boundary.
+     */
+    private void discardIncompleteFile() {
         if (currentFile != null) {
-            if (len > 0) {
-                fileOutputStream.write(bytes, start, len);
-            }
             IOUtilities.closeSilently(fileOutputStream);
-
-            uploadedFiles.add(new UploadedFile(multipartHeadersPart.getName(), multipartHeadersPart.getFileName(), currentFile));
-            currentFile = null;
-        } else {
-            if (len > 0) {
-                for (int i = start; i < end; i++) {
-                    valueStringBuffered.append((char) bytes[i]);
-                }
+            if (!currentFile.delete()) {
+                currentFile.deleteOnExit();
             }
-            post.put(multipartHeadersPart.getName(), valueStringBuffered.toString());
+            currentFile = null;
         }
     }
 
-    private void pushBufferOnEndOfStateHeaders(byte[] bytes, int start, int end)
-            throws FileNotFoundException, MalformedInputException {
-        for (int i = start; i < end; i++) {
-            headersStringBuffered.append((char) bytes[i]);
-        }
+    /**
+     * Boyer-Moore-Horspool search of a fixed byte pattern.
+     */
+    private static class BoundaryMatcher {
 
-        multipartHeadersPart = multipartHeadersPartParser.parse(headersStringBuffered.toString());
+        private final byte[] pattern;
+        private final int[] skipTable = new int[256];
 
-        if (multipartHeadersPart.getContentType() != null) {
-            currentFile = new File(temporaryUploadsDirectory + StringUtilities.generateRandom());
-            fileOutputStream = new FileOutputStream(currentFile);
-        } else {
-            valueStringBuffered.setLength(0);
+        BoundaryMatcher(byte[] pattern) {
+            this.pattern = pattern;
+
+            int last = pattern.length - 1;
+            for (int i = 0; i < skipTable.length; i++) {
+                skipTable[i] = pattern.length;
+            }
+            for (int i = 0; i < last; i++) {
+                skipTable[pattern[i] & 0xFF] = last - i;
+            }
+        }
+
+        int length() {
+            return pattern.length;
         }
 
-        headersStringBuffered.setLength(0);
+        /**
+         * Returns the position of the first occurrence of the pattern within the range or -1.
+         *
+         * @param data
+         * @param from
+         * @param to
+         * @return
+         */
+        int indexOf(byte[] data, int from, int to) {
+            int last = pattern.length - 1;
+            int i = from;
+            while (i + last < to) {
+                byte lastByte = data[i + last];
+                if (lastByte == pattern[last]) {
+                    int j = last - 1;
+                    while (j >= 0 && data[i + j] == pattern[j]) {
+                        --j;
+                    }
+                    if (j < 0) {
+                        return i;
+                    }
+                }
+                i += skipTable[lastByte & 0xFF];
+            }
+            return -1;
+        }
     }
 }
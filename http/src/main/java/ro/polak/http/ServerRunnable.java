@@ -8,7 +8,10 @@
 package ro.polak.http;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,7 +20,9 @@ import ro.polak.http.errorhandler.HttpErrorHandlerResolver;
 import ro.polak.http.exception.AccessDeniedException;
 import ro.polak.http.exception.MethodNotAllowedException;
 import ro.polak.http.exception.NotFoundException;
-import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.impl.ConnectionInputStream;
+import ro.polak.http.impl.ServletInputStreamImpl;
+import ro.polak.http.resource.provider.ResourceResolver;
 import ro.polak.http.servlet.impl.HttpRequestImpl;
 import ro.polak.http.servlet.impl.HttpResponseImpl;
 import ro.polak.http.servlet.HttpServletRequest;
@@ -28,6 +33,9 @@ import ro.polak.http.utilities.IOUtilities;
 
 /**
  * Server thread.
+ * <p/>
+ * Serves the requests of a single connection, the connection is kept open between the requests
+ * as long as both the client and the server configuration allow it.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 200802
@@ -35,6 +43,10 @@ import ro.polak.http.utilities.IOUtilities;
 public class ServerRunnable implements Runnable {
 
     private static final Logger LOGGER = Logger.getLogger(ServerRunnable.class.getName());
+    private static final String PROTOCOL_HTTP_1_1 = "HTTP/1.1";
+    private static final String CONNECTION_KEEP_ALIVE = "keep-alive";
+    private static final String CONNECTION_CLOSE = "close";
+    private static final long MAX_DRAINED_BODY_LENGTH = 64 * 1024;
 
     private final ServerConfig serverConfig;
     private final Socket socket;
@@ -42,6 +54,7 @@ public class ServerRunnable implements Runnable {
     private final HttpServletResponseImplFactory responseFactory;
     private final HttpErrorHandlerResolver httpErrorHandlerResolver;
     private final PathHelper pathHelper;
+    private final ResourceResolver resourceResolver;
 
     /**
      * Default constructor.
@@ -50,56 +63,39 @@ public class ServerRunnable implements Runnable {
      * @param serverConfig
      * @param requestFactory
      * @param httpErrorHandlerResolver
+     * @param pathHelper
+     * @param resourceResolver
      */
     public ServerRunnable(final Socket socket,
                           final ServerConfig serverConfig,
                           final HttpServletRequestImplFactory requestFactory,
                           final HttpServletResponseImplFactory responseFactory,
                           final HttpErrorHandlerResolver httpErrorHandlerResolver,
-                          final PathHelper pathHelper) {
+                          final PathHelper pathHelper,
+                          final ResourceResolver resourceResolver) {
         this.socket = socket;
         this.serverConfig = serverConfig;
         this.requestFactory = requestFactory;
         this.responseFactory = responseFactory;
         this.httpErrorHandlerResolver = httpErrorHandlerResolver;
         this.pathHelper = pathHelper;
+        this.resourceResolver = resourceResolver;
     }
 
     @Override
     public void run() {
-        HttpResponseImpl response = null;
-
         try {
             try {
-                response = responseFactory.createFromSocket(socket);
-                HttpRequestImpl request = requestFactory.createFromSocket(socket);
-
-                LOGGER.log(Level.INFO, "Handling request {0} {1}", new Object[]{
-                        request.getMethod(), request.getRequestURI()
-                });
-
-                String requestedPath = request.getRequestURI();
-
-                if (pathHelper.isPathContainingIllegalCharacters(requestedPath)) {
-                    throw new AccessDeniedException();
-                }
-
-                validateRequest(request);
-
-                setDefaultResponseHeaders(request, response);
-
-                ResourceProvider resourceProvider = getResourceProvider(requestedPath);
-                if (resourceProvider != null) {
-                    resourceProvider.load(requestedPath, request, response);
-                } else {
-                    handleDirectoryIndex(response, request, requestedPath);
-                }
-            } catch (RuntimeException e) {
-                if (response != null) {
-                    httpErrorHandlerResolver.getHandler(e).serve(response);
-                }
-
-                throw e; // Make it logged by the main thread
+                ConnectionInputStream in = new ConnectionInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                int numberOfRequestsHandled = 0;
+                boolean isKeepAlive;
+                do {
+                    if (numberOfRequestsHandled > 0 && !awaitNextRequest(in)) {
+                        break;
+                    }
+                    isKeepAlive = handleRequest(in, out, ++numberOfRequestsHandled);
+                } while (isKeepAlive);
             } finally {
                 IOUtilities.closeSilently(socket);
             }
@@ -110,19 +106,103 @@ public class ServerRunnable implements Runnable {
         }
     }
 
-    private void handleDirectoryIndex(HttpResponseImpl response, HttpRequestImpl request,
-                                      String requestedPath) throws IOException {
-        DirectoryIndexDescriptor indexDescriptor = loadDirectoryIndexResource(requestedPath);
-        if (indexDescriptor == null) {
-            throw new NotFoundException();
-        } else {
-            if (!pathHelper.isDirectoryPath(requestedPath)) {
+    /**
+     * Handles a single request read from the connection stream.
+     *
+     * @param in
+     * @param out
+     * @param requestNumber
+     * @return true if the connection can be reused for the next request
+     * @throws IOException
+     */
+    protected boolean handleRequest(ConnectionInputStream in, OutputStream out, int requestNumber) throws IOException {
+        HttpResponseImpl response = null;
+
+        try {
+            response = responseFactory.createFromOutputStream(out);
+            HttpRequestImpl request = requestFactory.createFromSocket(socket, in);
+
+            LOGGER.log(Level.INFO, "Handling request {0} {1}", new Object[]{
+                    request.getMethod(), request.getRequestURI()
+            });
+
+            String requestedPath = request.getRequestURI();
+
+            if (pathHelper.isPathContainingIllegalCharacters(requestedPath)) {
+                throw new AccessDeniedException();
+            }
+
+            validateRequest(request);
+
+            setDefaultResponseHeaders(request, response, requestNumber);
+
+            ResourceResolver.Resolution resolution = resourceResolver.resolve(requestedPath);
+            if (resolution == null) {
+                throw new NotFoundException();
+            }
+
+            if (resolution.isDirectoryIndex() && !pathHelper.isDirectoryPath(requestedPath)) {
                 sendRedirectToDirectorySlashedPath(response, requestedPath);
             } else {
-                indexDescriptor.getResourceProvider().load(
-                        indexDescriptor.getDirectoryPath(), request, response);
+                resolution.getResourceProvider().load(resolution.getPath(), request, response);
+            }
+
+            // A response that was never committed can only be terminated by closing the connection
+            return response.isCommitted() && response.isKeepAlive() && drainRequestBody(request);
+        } catch (RuntimeException e) {
+            if (response != null) {
+                if (!response.isCommitted()) {
+                    response.setKeepAlive(false);
+                }
+                httpErrorHandlerResolver.getHandler(e).serve(response);
+            }
+
+            throw e; // Make it logged by the main thread
+        }
+    }
+
+    /**
+     * Waits for the next request of a persistent connection. Returns false when the client closed
+     * the connection or the connection remained idle for longer than the keep-alive timeout.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    private boolean awaitNextRequest(ConnectionInputStream in) throws IOException {
+        int originalTimeout = socket.getSoTimeout();
+        socket.setSoTimeout(serverConfig.getKeepAliveTimeout() * 1000);
+        try {
+            int b;
+            // Empty lines preceding the request line must be ignored
+            while ((b = in.peek()) == '\r' || b == '\n') {
+                in.read();
             }
+
+            if (b == -1) {
+                return false;
+            }
+        } catch (SocketTimeoutException e) {
+            return false;
+        } finally {
+            socket.setSoTimeout(originalTimeout);
+        }
+        return true;
+    }
+
+    /**
+     * Consumes the part of the request body that was not read by the resource provider.
+     *
+     * @param request
+     * @return false if the body could not be drained and the connection must be closed
+     * @throws IOException
+     */
+    private boolean drainRequestBody(HttpRequestImpl request) throws IOException {
+        InputStream body = request.getInputStream();
+        if (body instanceof ServletInputStreamImpl) {
+            return ((ServletInputStreamImpl) body).drain(MAX_DRAINED_BODY_LENGTH);
         }
+        return false;
     }
 
     private void sendRedirectToDirectorySlashedPath(HttpResponseImpl response, String originalPath) throws IOException {
@@ -137,35 +217,55 @@ public class ServerRunnable implements Runnable {
      * @param request
      * @param response
      */
-    private void setDefaultResponseHeaders(HttpRequestImpl request, HttpResponseImpl response) {
-        boolean isKeepAlive = false;
-        if (request.getHeaders().containsHeader(Headers.HEADER_CONNECTION)) {
-            isKeepAlive = request.getHeaders().getHeader(Headers.HEADER_CONNECTION).equalsIgnoreCase("keep-alive");
-        }
-
-        response.setKeepAlive(isKeepAlive && serverConfig.isKeepAlive());
+    private void setDefaultResponseHeaders(HttpRequestImpl request, HttpResponseImpl response, int requestNumber) {
+        response.setKeepAlive(isKeepAliveAllowed(requestNumber) && isKeepAliveRequested(request));
+        response.setChunkedTransferAllowed(request.getProtocol().equalsIgnoreCase(PROTOCOL_HTTP_1_1));
+        response.setBodyOmitted(request.getMethod().equals(HttpRequestImpl.METHOD_HEAD));
         response.getHeaders().setHeader(Headers.HEADER_SERVER, WebServer.SIGNATURE);
     }
 
-    private DirectoryIndexDescriptor loadDirectoryIndexResource(String path) {
-        String normalizedDirectoryPath = pathHelper.getNormalizedDirectoryPath(path);
-        for (String index : serverConfig.getDirectoryIndex()) {
-            String directoryIndexPath = normalizedDirectoryPath + index;
-            ResourceProvider resourceProvider = getResourceProvider(directoryIndexPath);
-            if (resourceProvider != null) {
-                return new DirectoryIndexDescriptor(resourceProvider, directoryIndexPath);
-            }
+    /**
+     * Tells whether the server configuration allows to serve one more request over the connection.
+     *
+     * @param requestNumber
+     * @return
+     */
+    private boolean isKeepAliveAllowed(int requestNumber) {
+        if (!serverConfig.isKeepAlive() || serverConfig.getKeepAliveTimeout() < 1) {
+            return false;
         }
-        return null;
+
+        int maxRequests = serverConfig.getKeepAliveMaxRequests();
+        return maxRequests < 1 || requestNumber < maxRequests;
     }
 
-    private ResourceProvider getResourceProvider(String path) {
-        for (ResourceProvider resourceProvider : serverConfig.getResourceProviders()) {
-            if (resourceProvider.canLoad(path)) {
-                return resourceProvider;
+    /**
+     * Tells whether the client expects the connection to persist.
+     * <p/>
+     * HTTP/1.1 connections are persistent unless closed explicitly, HTTP/1.0 connections
+     * are persistent only when requested. Requests whose bodies can not be delimited
+     * are never kept alive.
+     *
+     * @param request
+     * @return
+     */
+    private boolean isKeepAliveRequested(HttpRequestImpl request) {
+        if (request.getHeaders().containsHeader(Headers.HEADER_TRANSFER_ENCODING)) {
+            return false;
+        }
+
+        String connection = request.getHeaders().getHeader(Headers.HEADER_CONNECTION);
+        if (connection != null) {
+            connection = connection.toLowerCase();
+            if (connection.contains(CONNECTION_CLOSE)) {
+                return false;
+            }
+            if (connection.contains(CONNECTION_KEEP_ALIVE)) {
+                return true;
             }
         }
-        return null;
+
+        return request.getProtocol().equalsIgnoreCase(PROTOCOL_HTTP_1_1);
     }
 
     /**
@@ -202,25 +302,4 @@ public class ServerRunnable implements Runnable {
     protected Socket getSocket() {
         return socket;
     }
-
-    /**
-     * Helper class describing directory index
-     */
-    private static class DirectoryIndexDescriptor {
-        private ResourceProvider resourceProvider;
-        private String directoryPath;
-
-        public DirectoryIndexDescriptor(ResourceProvider resourceProvider, String indexFilePath) {
-            this.resourceProvider = resourceProvider;
-            this.directoryPath = indexFilePath;
-        }
-
-        public ResourceProvider getResourceProvider() {
-            return resourceProvider;
-        }
-
-        public String getDirectoryPath() {
-            return directoryPath;
-        }
-    }
 }
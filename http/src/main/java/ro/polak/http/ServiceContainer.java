@@ -7,22 +7,31 @@
 
 package ro.polak.http;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.errorhandler.HttpErrorHandlerResolver;
 import ro.polak.http.errorhandler.impl.HttpErrorHandlerResolverImpl;
+import ro.polak.http.impl.CachingHostNameResolver;
+import ro.polak.http.impl.NumericHostNameResolver;
+import ro.polak.http.protocol.parser.impl.ByteHeadersParser;
+import ro.polak.http.protocol.parser.impl.ByteRequestStatusParser;
 import ro.polak.http.protocol.parser.impl.CookieParser;
 import ro.polak.http.protocol.parser.impl.HeadersParser;
 import ro.polak.http.protocol.parser.impl.MultipartHeadersPartParser;
 import ro.polak.http.protocol.parser.impl.QueryStringParser;
-import ro.polak.http.protocol.parser.impl.RequestStatusParser;
+import ro.polak.http.protocol.serializer.impl.ByteHeadersSerializer;
 import ro.polak.http.protocol.serializer.impl.CookieHeaderSerializer;
-import ro.polak.http.protocol.serializer.impl.HeadersSerializer;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
+import ro.polak.http.resource.provider.ResourceResolver;
 import ro.polak.http.servlet.factory.HttpServletRequestImplFactory;
 import ro.polak.http.servlet.factory.HttpServletResponseImplFactory;
 import ro.polak.http.servlet.helper.RangeHelper;
@@ -37,26 +46,34 @@ import ro.polak.http.utilities.DateProvider;
  */
 public class ServiceContainer {
 
+    private static final Logger LOGGER = Logger.getLogger(ServiceContainer.class.getName());
+    private static final String VIRTUAL_THREAD_EXECUTOR_METHOD = "newVirtualThreadPerTaskExecutor";
+    private static final int HOST_NAME_CACHE_SIZE = 256;
+    private static final long HOST_NAME_CACHE_TTL = 5 * 60 * 1000;
+    private static final int RESOURCE_RESOLVER_CACHE_SIZE = 1024;
+    private static final long RESOURCE_RESOLVER_CACHE_TTL = 2 * 1000;
+
     private HttpServletRequestImplFactory requestWrapperFactory;
     private HttpServletResponseImplFactory responseFactory;
-    private ThreadPoolExecutor threadPoolExecutor;
+    private ExecutorService executorService;
     private HttpErrorHandlerResolver httpErrorHandlerResolver;
     private PathHelper pathHelper;
+    private ResourceResolver resourceResolver;
 
     public ServiceContainer(final ServerConfig serverConfig) {
 
-        HeadersParser headersParser = new HeadersParser();
-
-        requestWrapperFactory = new HttpServletRequestImplFactory(headersParser,
+        requestWrapperFactory = new HttpServletRequestImplFactory(new ByteHeadersParser(),
                 new QueryStringParser(),
-                new RequestStatusParser(),
+                new ByteRequestStatusParser(),
                 new CookieParser(),
-                new MultipartHeadersPartParser(headersParser),
-                serverConfig.getTempPath()
+                new MultipartHeadersPartParser(new HeadersParser()),
+                serverConfig.getTempPath(),
+                serverConfig.getUploadMemoryThreshold(),
+                createHostNameResolver(serverConfig)
         );
 
         responseFactory = new HttpServletResponseImplFactory(
-                new HeadersSerializer(),
+                new ByteHeadersSerializer(),
                 new CookieHeaderSerializer(new DateProvider()),
                 new StreamHelper(
                         new RangeHelper(),
@@ -64,17 +81,75 @@ public class ServiceContainer {
                 )
         );
 
-        threadPoolExecutor = new ThreadPoolExecutor(1, serverConfig.getMaxServerThreads(),
-                20, TimeUnit.SECONDS,
-                new ArrayBlockingQueue<Runnable>(serverConfig.getMaxServerThreads() * 3),
-                Executors.defaultThreadFactory(),
-                new ServiceUnavailableHandler(responseFactory)
-        );
+        executorService = createExecutorService(serverConfig, new ServiceUnavailableHandler(responseFactory));
 
         httpErrorHandlerResolver = new HttpErrorHandlerResolverImpl(serverConfig);
 
         pathHelper = new PathHelper();
 
+        resourceResolver = new ResourceResolver(serverConfig.getResourceProviders(),
+                serverConfig.getDirectoryIndex(),
+                pathHelper,
+                new DateProvider(),
+                RESOURCE_RESOLVER_CACHE_SIZE,
+                RESOURCE_RESOLVER_CACHE_TTL);
+    }
+
+    private HostNameResolver createHostNameResolver(ServerConfig serverConfig) {
+        if (serverConfig.isHostNameLookupsEnabled()) {
+            return new CachingHostNameResolver(new DateProvider(), HOST_NAME_CACHE_SIZE, HOST_NAME_CACHE_TTL);
+        }
+        return new NumericHostNameResolver();
+    }
+
+    /**
+     * Creates the executor serving the requests. Virtual threads are used only when requested
+     * and supported by the runtime, the bounded thread pool is used otherwise.
+     *
+     * @param serverConfig
+     * @param serviceUnavailableHandler
+     * @return
+     */
+    private ExecutorService createExecutorService(ServerConfig serverConfig,
+                                                  ServiceUnavailableHandler serviceUnavailableHandler) {
+        if (ServerConfig.EXECUTOR_VIRTUAL_THREADS.equals(serverConfig.getExecutor())) {
+            ExecutorService virtualThreadExecutor = createVirtualThreadExecutor();
+            if (virtualThreadExecutor != null) {
+                return new ConcurrencyLimitingExecutorService(virtualThreadExecutor,
+                        serverConfig.getMaxConcurrentRequests(), serviceUnavailableHandler);
+            }
+            LOGGER.log(Level.WARNING, "Virtual threads are not supported by the runtime, falling back to the thread pool");
+        }
+
+        // Persistent connections hold a worker while waiting for the next request. Starting with a
+        // single core thread would queue new connections behind them instead of starting new workers.
+        int maxThreads = serverConfig.getMaxServerThreads();
+        int coreThreads = serverConfig.isKeepAlive() ? maxThreads : 1;
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(coreThreads, maxThreads,
+                20, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(maxThreads * 3),
+                Executors.defaultThreadFactory(),
+                serviceUnavailableHandler
+        );
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    /**
+     * Returns a virtual thread per task executor or null when running on a runtime older than Java 21.
+     *
+     * @return
+     */
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR_METHOD);
+            return (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            LOGGER.log(Level.WARNING, "Unable to create virtual thread executor", e);
+            return null;
+        }
     }
 
     public HttpServletRequestImplFactory getRequestWrapperFactory() {
@@ -85,8 +160,8 @@ public class ServiceContainer {
         return responseFactory;
     }
 
-    public ThreadPoolExecutor getThreadPoolExecutor() {
-        return threadPoolExecutor;
+    public ExecutorService getExecutorService() {
+        return executorService;
     }
 
     public HttpErrorHandlerResolver getHttpErrorHandlerResolver() {
@@ -96,4 +171,8 @@ public class ServiceContainer {
     public PathHelper getPathHelper() {
         return pathHelper;
     }
+
+    public ResourceResolver getResourceResolver() {
+        return resourceResolver;
+    }
 }
\ No newline at end of file
@@ -7,12 +7,16 @@
 
 package ro.polak.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import ro.polak.http.errorhandler.impl.HttpError503Handler;
+import ro.polak.http.nio.NioConnection;
+import ro.polak.http.nio.NioServerRunnable;
 import ro.polak.http.servlet.factory.HttpServletResponseImplFactory;
 import ro.polak.http.utilities.IOUtilities;
 
@@ -20,13 +24,19 @@ import ro.polak.http.utilities.IOUtilities;
  * ServiceUnavailableHandler is responsible for sending 503 error pages when there is more space
  * in the runnable queue. To test this class you have to limit the number of available threads
  * and queue size to 1 and then to try open multiple connections at the same time.
+ * <p/>
+ * Connections rejected by the NIO connector are handled on the selector thread that must never
+ * block. The 503 response is serialized once and written with a single non-blocking write, the
+ * connection is closed regardless of whether the whole response was written.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 201610
  */
-public class ServiceUnavailableHandler implements RejectedExecutionHandler {
+public class ServiceUnavailableHandler implements RejectedExecutionHandler,
+        ConcurrencyLimitingExecutorService.RejectedTaskHandler {
 
     private final HttpServletResponseImplFactory responseFactory;
+    private volatile byte[] serializedResponse;
 
     /**
      * Default constructor.
@@ -39,7 +49,20 @@ public class ServiceUnavailableHandler implements RejectedExecutionHandler {
 
     @Override
     public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-        if (r instanceof ServerRunnable) {
+        onRejected(r);
+    }
+
+    @Override
+    public void onRejected(Runnable r) {
+        if (r instanceof NioServerRunnable) {
+            NioConnection connection = ((NioServerRunnable) r).getConnection();
+            try {
+                connection.getChannel().write(ByteBuffer.wrap(getSerializedResponse()));
+            } catch (IOException e) {
+            } finally {
+                connection.close();
+            }
+        } else if (r instanceof ServerRunnable) {
             Socket socket = ((ServerRunnable) r).getSocket();
             try {
                 (new HttpError503Handler()).serve(responseFactory.createFromSocket(socket));
@@ -49,4 +72,19 @@ public class ServiceUnavailableHandler implements RejectedExecutionHandler {
             }
         }
     }
+
+    /**
+     * Returns the serialized 503 response, it is rendered to memory on first use.
+     *
+     * @return
+     * @throws IOException
+     */
+    private byte[] getSerializedResponse() throws IOException {
+        if (serializedResponse == null) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            (new HttpError503Handler()).serve(responseFactory.createFromOutputStream(outputStream));
+            serializedResponse = outputStream.toByteArray();
+        }
+        return serializedResponse;
+    }
 }
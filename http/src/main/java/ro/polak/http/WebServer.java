@@ -9,12 +9,21 @@ package ro.polak.http;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.nio.NioConnector;
+import ro.polak.http.resource.provider.PreloadableResourceProvider;
+import ro.polak.http.resource.provider.ResourceProvider;
 import ro.polak.http.utilities.FileUtilities;
 import ro.polak.http.utilities.IOUtilities;
 
@@ -32,10 +41,14 @@ public class WebServer extends Thread {
     public static final String VERSION = "0.1.5-dev";
     public static final String SIGNATURE = NAME + "/" + VERSION;
 
+    private static final int WARM_UP_TIMEOUT = 10 * 1000;
+    private static final String WARM_UP_CHARSET = "US-ASCII";
+
     private final ServerSocket serverSocket;
     private final ServerConfig serverConfig;
 
-    private boolean listen;
+    private volatile boolean listen;
+    private volatile NioConnector nioConnector;
 
     /**
      * @param serverSocket
@@ -51,15 +64,25 @@ public class WebServer extends Thread {
         ServiceContainer serviceContainer = new ServiceContainer(serverConfig);
 
         try {
+            if (isNioConnectorEnabled()) {
+                nioConnector = new NioConnector(serverSocket.getChannel(), serverConfig, serviceContainer,
+                        serviceContainer.getExecutorService());
+                if (listen) {
+                    nioConnector.run();
+                }
+                return;
+            }
+
             while (listen) {
                 try {
-                    serviceContainer.getThreadPoolExecutor().execute(
+                    serviceContainer.getExecutorService().execute(
                             new ServerRunnable(serverSocket.accept(),
                                     serverConfig,
                                     serviceContainer.getRequestWrapperFactory(),
                                     serviceContainer.getResponseFactory(),
                                     serviceContainer.getHttpErrorHandlerResolver(),
-                                    serviceContainer.getPathHelper()));
+                                    serviceContainer.getPathHelper(),
+                                    serviceContainer.getResourceResolver()));
                 } catch (IOException e) {
                     if (listen) {
                         LOGGER.log(Level.SEVERE, "Communication error", e);
@@ -68,12 +91,33 @@ public class WebServer extends Thread {
             }
         } finally {
             IOUtilities.closeSilently(serverSocket);
-            serviceContainer.getThreadPoolExecutor().shutdown();
+            serviceContainer.getExecutorService().shutdown();
+            shutdownResources();
         }
     }
 
     /**
-     * Starts the web server
+     * Tells whether the selector based connector is to be used. It requires the server socket
+     * to be created out of a channel.
+     *
+     * @return
+     */
+    private boolean isNioConnectorEnabled() {
+        if (!ServerConfig.CONNECTOR_NIO.equals(serverConfig.getConnector())) {
+            return false;
+        }
+
+        if (serverSocket.getChannel() == null) {
+            LOGGER.log(Level.WARNING, "Server socket has no channel, falling back to the blocking connector");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts the web server. The resource providers are started, the resources marked to be loaded
+     * on startup are initialized and the optional warm-up requests are served before the method
+     * returns.
      */
     public boolean startServer() {
         listen = true;
@@ -97,10 +141,97 @@ public class WebServer extends Thread {
 
         FileUtilities.clearDirectory(serverConfig.getTempPath());
 
+        startResources();
+        preloadResources();
         start();
+        warmUp();
         return true;
     }
 
+    private void startResources() {
+        for (ResourceProvider resourceProvider : serverConfig.getResourceProviders()) {
+            resourceProvider.start();
+        }
+    }
+
+    /**
+     * Stops the resource providers, called both by the stopping thread and by the server thread
+     * once it stops listening.
+     */
+    private void shutdownResources() {
+        for (ResourceProvider resourceProvider : serverConfig.getResourceProviders()) {
+            resourceProvider.shutdown();
+        }
+    }
+
+    private void preloadResources() {
+        for (ResourceProvider resourceProvider : serverConfig.getResourceProviders()) {
+            if (resourceProvider instanceof PreloadableResourceProvider) {
+                ((PreloadableResourceProvider) resourceProvider).preload();
+            }
+        }
+    }
+
+    /**
+     * Requests the warm-up paths of the preloaded resources over the loopback interface so that
+     * the whole request handling path is exercised before the first client request.
+     */
+    private void warmUp() {
+        int passes = serverConfig.getWarmUpPasses();
+        if (passes < 1) {
+            return;
+        }
+
+        List<String> warmUpPaths = new ArrayList<>();
+        for (ResourceProvider resourceProvider : serverConfig.getResourceProviders()) {
+            if (resourceProvider instanceof PreloadableResourceProvider) {
+                warmUpPaths.addAll(((PreloadableResourceProvider) resourceProvider).getWarmUpPaths());
+            }
+        }
+
+        try {
+            for (int i = 0; i < passes; i++) {
+                for (String warmUpPath : warmUpPaths) {
+                    if (isRequestablePath(warmUpPath)) {
+                        sendWarmUpRequest(warmUpPath);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to warm the server up", e);
+        }
+    }
+
+    private boolean isRequestablePath(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c <= ' ' || c > '~') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sendWarmUpRequest(String path) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        try {
+            socket.setSoTimeout(WARM_UP_TIMEOUT);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + path + " HTTP/1.1\r\n"
+                    + Headers.HEADER_HOST + ": localhost\r\n"
+                    + Headers.HEADER_CONNECTION + ": close\r\n\r\n").getBytes(WARM_UP_CHARSET));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+                // The response is discarded
+            }
+        } finally {
+            IOUtilities.closeSilently(socket);
+        }
+    }
+
     private boolean isNumberOfThreadsSufficient() {
         if (serverConfig.getMaxServerThreads() < 1) {
             LOGGER.log(Level.SEVERE, "MaxThreads should be greater or equal to 1! {0} is given.",
@@ -149,7 +280,11 @@ public class WebServer extends Thread {
      */
     public void stopServer() {
         listen = false;
+        if (nioConnector != null) {
+            nioConnector.stop();
+        }
         IOUtilities.closeSilently(serverSocket);
+        shutdownResources();
         LOGGER.info("Server has been stopped.");
     }
 
@@ -25,6 +25,7 @@ public class DeploymentDescriptorBuilder {
 
     private SessionStorage sessionStorage;
     private ServerConfig serverConfig;
+    private int defaultLoadOnStartup = -1;
 
     /**
      * This constructor is intentionally private.
@@ -46,8 +47,20 @@ public class DeploymentDescriptorBuilder {
         return this;
     }
 
+    /**
+     * Sets the load on startup order of the servlets and filters added afterwards that do not
+     * specify their own order.
+     *
+     * @param defaultLoadOnStartup non negative order, a negative value defers the initialization to the first request
+     * @return
+     */
+    public DeploymentDescriptorBuilder withDefaultLoadOnStartup(int defaultLoadOnStartup) {
+        this.defaultLoadOnStartup = defaultLoadOnStartup;
+        return this;
+    }
+
     public ServletContextBuilder addServletContext() {
-        return new ServletContextBuilder(this, sessionStorage, serverConfig);
+        return new ServletContextBuilder(this, sessionStorage, serverConfig, defaultLoadOnStartup);
     }
 
     public List<ServletContextImpl> build() {
@@ -39,4 +39,12 @@ public interface FilterMapping {
      * @return
      */
     Class<? extends Filter> getFilterClass();
+
+    /**
+     * Returns the load on startup order, the mappings of lower orders are initialized first.
+     * A negative value stands for the initialization on the first request.
+     *
+     * @return
+     */
+    int getLoadOnStartup();
 }
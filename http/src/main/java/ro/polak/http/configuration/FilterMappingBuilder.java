@@ -24,14 +24,17 @@ public class FilterMappingBuilder {
     private Pattern urlPattern;
     private Pattern urlExcludedPattern;
     private Class<? extends Filter> clazz;
+    private int loadOnStartup;
 
     /**
      * Created a mapping builder. This constructor should be package scoped.
      *
      * @param servletContextBuilder
+     * @param loadOnStartup
      */
-    FilterMappingBuilder(ServletContextBuilder servletContextBuilder) {
+    FilterMappingBuilder(ServletContextBuilder servletContextBuilder, int loadOnStartup) {
         this.servletContextBuilder = servletContextBuilder;
+        this.loadOnStartup = loadOnStartup;
     }
 
     public FilterMappingBuilder withUrlPattern(Pattern urlPattern) {
@@ -49,8 +52,20 @@ public class FilterMappingBuilder {
         return this;
     }
 
+    /**
+     * Initializes the filter when the server starts, the filters of lower orders first.
+     *
+     * @param loadOnStartup non negative order, a negative value defers the initialization to the first request
+     * @return
+     */
+    public FilterMappingBuilder withLoadOnStartup(int loadOnStartup) {
+        this.loadOnStartup = loadOnStartup;
+        return this;
+    }
+
     public ServletContextBuilder end() {
-        servletContextBuilder.withFilterMapping(new FilterMappingImpl(urlPattern, urlExcludedPattern, clazz));
+        servletContextBuilder.withFilterMapping(new FilterMappingImpl(urlPattern, urlExcludedPattern, clazz,
+                loadOnStartup));
         return servletContextBuilder;
     }
 }
\ No newline at end of file
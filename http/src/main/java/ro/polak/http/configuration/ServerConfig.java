@@ -20,6 +20,11 @@ import ro.polak.http.resource.provider.ResourceProvider;
  */
 public interface ServerConfig {
 
+    String CONNECTOR_BLOCKING = "blocking";
+    String CONNECTOR_NIO = "nio";
+    String EXECUTOR_THREAD_POOL = "threadPool";
+    String EXECUTOR_VIRTUAL_THREADS = "virtualThreads";
+
     /**
      * Returns base path.
      *
@@ -69,6 +74,110 @@ public interface ServerConfig {
      */
     boolean isKeepAlive();
 
+    /**
+     * Returns the executor mode, either {@link #EXECUTOR_THREAD_POOL} or {@link #EXECUTOR_VIRTUAL_THREADS}.
+     *
+     * @return
+     */
+    String getExecutor();
+
+    /**
+     * Returns the maximum number of requests served concurrently in the virtual threads mode.
+     *
+     * @return
+     */
+    int getMaxConcurrentRequests();
+
+    /**
+     * Returns the connector type, either {@link #CONNECTOR_BLOCKING} or {@link #CONNECTOR_NIO}.
+     *
+     * @return
+     */
+    String getConnector();
+
+    /**
+     * Returns the max size in bytes of an uploaded file held in memory, larger files are
+     * written to the temporary directory.
+     *
+     * @return
+     */
+    int getUploadMemoryThreshold();
+
+    /**
+     * Returns the total size in bytes of the static file contents held in memory, 0 disables
+     * the content cache.
+     *
+     * @return
+     */
+    long getContentCacheMaxSize();
+
+    /**
+     * Returns the max size in bytes of a static file held in the content cache.
+     *
+     * @return
+     */
+    int getContentCacheMaxFileSize();
+
+    /**
+     * Returns the MIME types of the servlet responses to be compressed, empty disables
+     * the compression.
+     *
+     * @return
+     */
+    List<String> getCompressionMimeTypes();
+
+    /**
+     * Returns the min size in bytes of a compressed servlet response body.
+     *
+     * @return
+     */
+    int getCompressionMinSize();
+
+    /**
+     * Returns the compression level, from 0 to 9.
+     *
+     * @return
+     */
+    int getCompressionLevel();
+
+    /**
+     * Returns whether host names of the client and local addresses should be resolved.
+     * When disabled the textual addresses are returned in place of host names.
+     *
+     * @return
+     */
+    boolean isHostNameLookupsEnabled();
+
+    /**
+     * Returns the number of seconds an idle persistent connection is kept open.
+     *
+     * @return
+     */
+    int getKeepAliveTimeout();
+
+    /**
+     * Returns the maximum number of requests served over a single persistent connection.
+     *
+     * @return
+     */
+    int getKeepAliveMaxRequests();
+
+    /**
+     * Returns the number of synthetic request passes over the preloaded servlets once the server
+     * is started, 0 disables the warm-up.
+     *
+     * @return
+     */
+    int getWarmUpPasses();
+
+    /**
+     * Returns the number of seconds after which an idle servlet is destroyed, 0 keeps the servlets
+     * initialized until the server stops.
+     *
+     * @return
+     */
+    int getServletIdleTimeout();
+
     /**
      * Returns error 404 file path.
      *
@@ -90,6 +199,13 @@ public interface ServerConfig {
      */
     List<String> getDirectoryIndex();
 
+    /**
+     * Returns the MIME types of the static files to be served from generated gzip sidecars.
+     *
+     * @return
+     */
+    List<String> getPrecompressedMimeTypes();
+
     /**
      * Returns an array of supported HTTP methods.
      *
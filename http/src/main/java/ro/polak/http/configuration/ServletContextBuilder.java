@@ -30,6 +30,7 @@ public class ServletContextBuilder {
     private DeploymentDescriptorBuilder parent;
     private SessionStorage sessionStorage;
     private ServerConfig serverConfig;
+    private int defaultLoadOnStartup;
 
     /**
      * Creates a mapping builder. This constructor should be package scoped.
@@ -37,21 +38,24 @@ public class ServletContextBuilder {
      * @param parent
      * @param sessionStorage
      * @param serverConfig
+     * @param defaultLoadOnStartup
      */
     ServletContextBuilder(DeploymentDescriptorBuilder parent,
                           SessionStorage sessionStorage,
-                          ServerConfig serverConfig) {
+                          ServerConfig serverConfig,
+                          int defaultLoadOnStartup) {
         this.parent = parent;
         this.sessionStorage = sessionStorage;
         this.serverConfig = serverConfig;
+        this.defaultLoadOnStartup = defaultLoadOnStartup;
     }
 
     public ServletMappingBuilder addServlet() {
-        return new ServletMappingBuilder(this);
+        return new ServletMappingBuilder(this, defaultLoadOnStartup);
     }
 
     public FilterMappingBuilder addFilter() {
-        return new FilterMappingBuilder(this);
+        return new FilterMappingBuilder(this, defaultLoadOnStartup);
     }
 
     public ServletContextBuilder withContextPath(String contextPath) {
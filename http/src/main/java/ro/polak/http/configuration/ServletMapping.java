@@ -32,4 +32,12 @@ public interface ServletMapping {
      * @return
      */
     Class<? extends HttpServlet> getServletClass();
+
+    /**
+     * Returns the load on startup order, the mappings of lower orders are initialized first.
+     * A negative value stands for the initialization on the first request.
+     *
+     * @return
+     */
+    int getLoadOnStartup();
 }
@@ -23,14 +23,17 @@ public class ServletMappingBuilder {
     private final ServletContextBuilder servletContextBuilder;
     private Pattern urlPattern;
     private Class<? extends HttpServlet> servletClass;
+    private int loadOnStartup;
 
     /**
      * Created a mapping builder. This constructor should be package scoped.
      *
      * @param servletContextBuilder
+     * @param loadOnStartup
      */
-    ServletMappingBuilder(ServletContextBuilder servletContextBuilder) {
+    ServletMappingBuilder(ServletContextBuilder servletContextBuilder, int loadOnStartup) {
         this.servletContextBuilder = servletContextBuilder;
+        this.loadOnStartup = loadOnStartup;
     }
 
     public ServletMappingBuilder withUrlPattern(Pattern urlPattern) {
@@ -43,8 +46,19 @@ public class ServletMappingBuilder {
         return this;
     }
 
+    /**
+     * Initializes the servlet when the server starts, the servlets of lower orders first.
+     *
+     * @param loadOnStartup non negative order, a negative value defers the initialization to the first request
+     * @return
+     */
+    public ServletMappingBuilder withLoadOnStartup(int loadOnStartup) {
+        this.loadOnStartup = loadOnStartup;
+        return this;
+    }
+
     public ServletContextBuilder end() {
-        servletContextBuilder.withServletMapping(new ServletMappingImpl(urlPattern, servletClass));
+        servletContextBuilder.withServletMapping(new ServletMappingImpl(urlPattern, servletClass, loadOnStartup));
         return servletContextBuilder;
     }
 }
\ No newline at end of file
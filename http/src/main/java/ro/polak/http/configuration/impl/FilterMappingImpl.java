@@ -23,11 +23,18 @@ public class FilterMappingImpl implements FilterMapping {
     private final Pattern urlPattern;
     private final Pattern urlExcludePattern;
     private final Class<? extends Filter> filterClass;
+    private final int loadOnStartup;
 
     public FilterMappingImpl(Pattern urlPattern, Pattern urlExcludePattern, Class<? extends Filter> filterClass) {
+        this(urlPattern, urlExcludePattern, filterClass, -1);
+    }
+
+    public FilterMappingImpl(Pattern urlPattern, Pattern urlExcludePattern, Class<? extends Filter> filterClass,
+                             int loadOnStartup) {
         this.urlPattern = urlPattern;
         this.urlExcludePattern = urlExcludePattern;
         this.filterClass = filterClass;
+        this.loadOnStartup = loadOnStartup;
     }
 
     @Override
@@ -44,4 +51,9 @@ public class FilterMappingImpl implements FilterMapping {
     public Class<? extends Filter> getFilterClass() {
         return filterClass;
     }
+
+    @Override
+    public int getLoadOnStartup() {
+        return loadOnStartup;
+    }
 }
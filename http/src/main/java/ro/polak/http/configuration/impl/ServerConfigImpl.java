@@ -46,13 +46,29 @@ public class ServerConfigImpl implements ServerConfig {
     private static final String ATTRIBUTE_STATIC_PATH = "server.static.path";
     private static final String ATTRIBUTE_MAX_THREADS = "server.maxThreads";
     private static final String ATTRIBUTE_KEEP_ALIVE = "server.keepAlive.enabled";
+    private static final String ATTRIBUTE_CONNECTOR = "server.connector";
+    private static final String ATTRIBUTE_EXECUTOR = "server.executor";
+    private static final String ATTRIBUTE_MAX_CONCURRENT_REQUESTS = "server.maxConcurrentRequests";
+    private static final String ATTRIBUTE_UPLOAD_MEMORY_THRESHOLD = "server.upload.memoryThreshold";
+    private static final String ATTRIBUTE_CONTENT_CACHE_MAX_SIZE = "server.contentCache.maxSize";
+    private static final String ATTRIBUTE_CONTENT_CACHE_MAX_FILE_SIZE = "server.contentCache.maxFileSize";
+    private static final String ATTRIBUTE_COMPRESSION_MIME_TYPES = "server.compression.mimeTypes";
+    private static final String ATTRIBUTE_COMPRESSION_MIN_SIZE = "server.compression.minSize";
+    private static final String ATTRIBUTE_COMPRESSION_LEVEL = "server.compression.level";
+    private static final String ATTRIBUTE_HOST_NAME_LOOKUPS = "server.hostNameLookups.enabled";
+    private static final String ATTRIBUTE_KEEP_ALIVE_TIMEOUT = "server.keepAlive.timeout";
+    private static final String ATTRIBUTE_KEEP_ALIVE_MAX_REQUESTS = "server.keepAlive.maxRequests";
+    private static final String ATTRIBUTE_WARM_UP_PASSES = "server.warmUp.passes";
+    private static final String ATTRIBUTE_SERVLET_IDLE_TIMEOUT = "server.servlet.idleTimeout";
     private static final String ATTRIBUTE_ERROR_DOCUMENT_404 = "server.errorDocument.404";
     private static final String ATTRIBUTE_ERROR_DOCUMENT_403 = "server.errorDocument.403";
     private static final String ATTRIBUTE_DEFAULT_MIME_TYPE = "server.mimeType.defaultMimeType";
     private static final String ATTRIBUTE_MIME_TYPE = "server.mimeType.filePath";
     private static final String ATTRIBUTE_DIRECTORY_INDEX = "server.static.directoryIndex";
+    private static final String ATTRIBUTE_PRECOMPRESSED_MIME_TYPES = "server.static.precompressedMimeTypes";
 
     private List<String> directoryIndex;
+    private List<String> precompressedMimeTypes;
     private String basePath;
     private String documentRootPath;
     private String tempPath;
@@ -60,6 +76,20 @@ public class ServerConfigImpl implements ServerConfig {
     private MimeTypeMapping mimeTypeMapping;
     private int maxServerThreads;
     private boolean keepAlive;
+    private String connector;
+    private String executor;
+    private int maxConcurrentRequests;
+    private int uploadMemoryThreshold;
+    private long contentCacheMaxSize;
+    private int contentCacheMaxFileSize;
+    private List<String> compressionMimeTypes;
+    private int compressionMinSize;
+    private int compressionLevel;
+    private boolean hostNameLookupsEnabled;
+    private int keepAliveTimeout;
+    private int keepAliveMaxRequests;
+    private int warmUpPasses;
+    private int servletIdleTimeout;
     private String errorDocument404Path;
     private String errorDocument403Path;
     private List<ResourceProvider> resourceProviders = Collections.emptyList();
@@ -75,7 +105,22 @@ public class ServerConfigImpl implements ServerConfig {
         documentRootPath = basePath + "www" + File.separator;
         listenPort = 8080;
         maxServerThreads = 10;
+        connector = CONNECTOR_BLOCKING;
+        executor = EXECUTOR_THREAD_POOL;
+        maxConcurrentRequests = 1000;
+        uploadMemoryThreshold = 16 * 1024;
+        contentCacheMaxSize = 4 * 1024 * 1024;
+        contentCacheMaxFileSize = 128 * 1024;
+        compressionMimeTypes = new ArrayList<>();
+        compressionMinSize = 1024;
+        compressionLevel = 6;
+        hostNameLookupsEnabled = true;
+        keepAliveTimeout = 5;
+        keepAliveMaxRequests = 100;
+        warmUpPasses = 0;
+        servletIdleTimeout = 0;
         directoryIndex = new ArrayList<>(Arrays.asList("index.html", "index.htm", "Index"));
+        precompressedMimeTypes = new ArrayList<>();
 
     }
 
@@ -98,10 +143,25 @@ public class ServerConfigImpl implements ServerConfig {
         assignDocumentRoot(basePath, properties, serverConfig);
         assignMaxThreads(properties, serverConfig);
         assignKeepAlive(properties, serverConfig);
+        assignConnector(properties, serverConfig);
+        assignExecutor(properties, serverConfig);
+        assignMaxConcurrentRequests(properties, serverConfig);
+        assignUploadMemoryThreshold(properties, serverConfig);
+        assignContentCacheMaxSize(properties, serverConfig);
+        assignContentCacheMaxFileSize(properties, serverConfig);
+        assignCompressionMimeTypes(properties, serverConfig);
+        assignCompressionMinSize(properties, serverConfig);
+        assignCompressionLevel(properties, serverConfig);
+        assignHostNameLookups(properties, serverConfig);
+        assignKeepAliveTimeout(properties, serverConfig);
+        assignKeepAliveMaxRequests(properties, serverConfig);
+        assignWarmUpPasses(properties, serverConfig);
+        assignServletIdleTimeout(properties, serverConfig);
         assign404Document(basePath, properties, serverConfig);
         assign403Document(basePath, properties, serverConfig);
         assignMimeMapping(basePath, properties, serverConfig);
         assignDirectoryIndex(properties, serverConfig);
+        assignPrecompressedMimeTypes(properties, serverConfig);
 
         return serverConfig;
     }
@@ -132,6 +192,17 @@ public class ServerConfigImpl implements ServerConfig {
         }
     }
 
+    private static void assignPrecompressedMimeTypes(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_PRECOMPRESSED_MIME_TYPES)) {
+            serverConfig.precompressedMimeTypes.clear();
+            for (String mimeType : properties.getProperty(ATTRIBUTE_PRECOMPRESSED_MIME_TYPES).split(",")) {
+                if (!"".equals(mimeType.trim())) {
+                    serverConfig.precompressedMimeTypes.add(mimeType.trim());
+                }
+            }
+        }
+    }
+
     private static void assignMimeMapping(String basePath, Properties properties, ServerConfigImpl serverConfig) throws IOException {
         if (properties.containsKey(ATTRIBUTE_MIME_TYPE)) {
             String defaultMimeType = "text/plain";
@@ -173,6 +244,106 @@ public class ServerConfigImpl implements ServerConfig {
         }
     }
 
+    private static void assignConnector(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_CONNECTOR)) {
+            serverConfig.connector = properties.getProperty(ATTRIBUTE_CONNECTOR).trim().toLowerCase();
+        }
+    }
+
+    private static void assignExecutor(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_EXECUTOR)) {
+            serverConfig.executor = properties.getProperty(ATTRIBUTE_EXECUTOR).trim();
+        }
+    }
+
+    private static void assignMaxConcurrentRequests(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_MAX_CONCURRENT_REQUESTS)) {
+            serverConfig.maxConcurrentRequests =
+                    Integer.parseInt(properties.getProperty(ATTRIBUTE_MAX_CONCURRENT_REQUESTS));
+        }
+    }
+
+    private static void assignUploadMemoryThreshold(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_UPLOAD_MEMORY_THRESHOLD)) {
+            serverConfig.uploadMemoryThreshold =
+                    Integer.parseInt(properties.getProperty(ATTRIBUTE_UPLOAD_MEMORY_THRESHOLD));
+        }
+    }
+
+    private static void assignContentCacheMaxSize(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_CONTENT_CACHE_MAX_SIZE)) {
+            serverConfig.contentCacheMaxSize =
+                    Long.parseLong(properties.getProperty(ATTRIBUTE_CONTENT_CACHE_MAX_SIZE));
+        }
+    }
+
+    private static void assignContentCacheMaxFileSize(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_CONTENT_CACHE_MAX_FILE_SIZE)) {
+            serverConfig.contentCacheMaxFileSize =
+                    Integer.parseInt(properties.getProperty(ATTRIBUTE_CONTENT_CACHE_MAX_FILE_SIZE));
+        }
+    }
+
+    private static void assignCompressionMimeTypes(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_COMPRESSION_MIME_TYPES)) {
+            serverConfig.compressionMimeTypes.clear();
+            for (String mimeType : properties.getProperty(ATTRIBUTE_COMPRESSION_MIME_TYPES).split(",")) {
+                if (!"".equals(mimeType.trim())) {
+                    serverConfig.compressionMimeTypes.add(mimeType.trim());
+                }
+            }
+        }
+    }
+
+    private static void assignCompressionMinSize(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_COMPRESSION_MIN_SIZE)) {
+            serverConfig.compressionMinSize =
+                    Integer.parseInt(properties.getProperty(ATTRIBUTE_COMPRESSION_MIN_SIZE));
+        }
+    }
+
+    private static void assignCompressionLevel(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_COMPRESSION_LEVEL)) {
+            serverConfig.compressionLevel =
+                    Integer.parseInt(properties.getProperty(ATTRIBUTE_COMPRESSION_LEVEL));
+        }
+    }
+
+    private static void assignHostNameLookups(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_HOST_NAME_LOOKUPS)) {
+            serverConfig.hostNameLookupsEnabled =
+                    properties.getProperty(ATTRIBUTE_HOST_NAME_LOOKUPS).equalsIgnoreCase(TRUE);
+        }
+    }
+
+    private static void assignKeepAliveTimeout(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_KEEP_ALIVE_TIMEOUT)) {
+            serverConfig.keepAliveTimeout =
+                    Integer.parseInt(properties.getProperty(ATTRIBUTE_KEEP_ALIVE_TIMEOUT));
+        }
+    }
+
+    private static void assignKeepAliveMaxRequests(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_KEEP_ALIVE_MAX_REQUESTS)) {
+            serverConfig.keepAliveMaxRequests =
+                    Integer.parseInt(properties.getProperty(ATTRIBUTE_KEEP_ALIVE_MAX_REQUESTS));
+        }
+    }
+
+    private static void assignWarmUpPasses(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_WARM_UP_PASSES)) {
+            serverConfig.warmUpPasses =
+                    Integer.parseInt(properties.getProperty(ATTRIBUTE_WARM_UP_PASSES));
+        }
+    }
+
+    private static void assignServletIdleTimeout(Properties properties, ServerConfigImpl serverConfig) {
+        if (properties.containsKey(ATTRIBUTE_SERVLET_IDLE_TIMEOUT)) {
+            serverConfig.servletIdleTimeout =
+                    Integer.parseInt(properties.getProperty(ATTRIBUTE_SERVLET_IDLE_TIMEOUT));
+        }
+    }
+
     private static void assignMaxThreads(Properties properties, ServerConfigImpl serverConfig) {
         if (properties.containsKey(ATTRIBUTE_MAX_THREADS)) {
             serverConfig.maxServerThreads =
@@ -227,6 +398,76 @@ public class ServerConfigImpl implements ServerConfig {
         return keepAlive;
     }
 
+    @Override
+    public String getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    @Override
+    public String getConnector() {
+        return connector;
+    }
+
+    @Override
+    public int getUploadMemoryThreshold() {
+        return uploadMemoryThreshold;
+    }
+
+    @Override
+    public long getContentCacheMaxSize() {
+        return contentCacheMaxSize;
+    }
+
+    @Override
+    public int getContentCacheMaxFileSize() {
+        return contentCacheMaxFileSize;
+    }
+
+    @Override
+    public List<String> getCompressionMimeTypes() {
+        return compressionMimeTypes;
+    }
+
+    @Override
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    @Override
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    @Override
+    public boolean isHostNameLookupsEnabled() {
+        return hostNameLookupsEnabled;
+    }
+
+    @Override
+    public int getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    @Override
+    public int getKeepAliveMaxRequests() {
+        return keepAliveMaxRequests;
+    }
+
+    @Override
+    public int getWarmUpPasses() {
+        return warmUpPasses;
+    }
+
+    @Override
+    public int getServletIdleTimeout() {
+        return servletIdleTimeout;
+    }
+
     @Override
     public String getErrorDocument404Path() {
         return errorDocument404Path;
@@ -242,6 +483,11 @@ public class ServerConfigImpl implements ServerConfig {
         return directoryIndex;
     }
 
+    @Override
+    public List<String> getPrecompressedMimeTypes() {
+        return precompressedMimeTypes;
+    }
+
     @Override
     public List<String> getSupportedMethods() {
         return SUPPORTED_METHODS;
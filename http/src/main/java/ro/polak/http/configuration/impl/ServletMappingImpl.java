@@ -24,9 +24,16 @@ public class ServletMappingImpl implements ServletMapping {
 
     private final Class<? extends HttpServlet> servletClass;
 
+    private final int loadOnStartup;
+
     public ServletMappingImpl(Pattern urlPattern, Class<? extends HttpServlet> servletClass) {
+        this(urlPattern, servletClass, -1);
+    }
+
+    public ServletMappingImpl(Pattern urlPattern, Class<? extends HttpServlet> servletClass, int loadOnStartup) {
         this.urlPattern = urlPattern;
         this.servletClass = servletClass;
+        this.loadOnStartup = loadOnStartup;
     }
 
     @Override
@@ -38,4 +45,9 @@ public class ServletMappingImpl implements ServletMapping {
     public Class<? extends HttpServlet> getServletClass() {
         return servletClass;
     }
+
+    @Override
+    public int getLoadOnStartup() {
+        return loadOnStartup;
+    }
 }
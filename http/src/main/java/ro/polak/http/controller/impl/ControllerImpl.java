@@ -9,11 +9,13 @@ package ro.polak.http.controller.impl;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.net.ServerSocketFactory;
 
+import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.configuration.ServerConfigFactory;
 import ro.polak.http.WebServer;
 import ro.polak.http.controller.Controller;
@@ -59,15 +61,16 @@ public class ControllerImpl implements Controller {
         if (webServer != null) {
             throw new IllegalStateException("Webserver already started!");
         }
+        ServerConfig serverConfig = serverConfigFactory.getServerConfig();
         ServerSocket serverSocket;
         try {
-            serverSocket = serverSocketFactory.createServerSocket();
+            serverSocket = createServerSocket(serverConfig);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Unable to create server socket ", e);
             return;
         }
 
-        webServer = new WebServer(serverSocket, serverConfigFactory.getServerConfig());
+        webServer = new WebServer(serverSocket, serverConfig);
         if (webServer.startServer()) {
             gui.start();
         } else {
@@ -75,6 +78,20 @@ public class ControllerImpl implements Controller {
         }
     }
 
+    /**
+     * Creates a server socket, the selector based connector requires a socket backed by a channel.
+     *
+     * @param serverConfig
+     * @return
+     * @throws IOException
+     */
+    private ServerSocket createServerSocket(ServerConfig serverConfig) throws IOException {
+        if (ServerConfig.CONNECTOR_NIO.equals(serverConfig.getConnector())) {
+            return ServerSocketChannel.open().socket();
+        }
+        return serverSocketFactory.createServerSocket();
+    }
+
     @Override
     public void stop() throws IllegalStateException {
         if (webServer == null) {
@@ -0,0 +1,106 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ro.polak.http.HostNameResolver;
+import ro.polak.http.utilities.DateProvider;
+
+/**
+ * Host name resolver backed by a bounded cache of reverse lookup results.
+ * <p/>
+ * Entries expire after the given time to live, the least recently used entry is evicted once
+ * the cache is full. Lookups are performed outside of the lock so that a slow lookup does not
+ * block the other threads.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class CachingHostNameResolver implements HostNameResolver {
+
+    private final DateProvider dateProvider;
+    private final long timeToLive;
+    private final Map<InetAddress, CacheEntry> cache;
+
+    /**
+     * Default constructor.
+     *
+     * @param dateProvider
+     * @param maxSize      maximum number of cached entries
+     * @param timeToLive   time to live of an entry in milliseconds
+     */
+    public CachingHostNameResolver(final DateProvider dateProvider, final int maxSize, final long timeToLive) {
+        this.dateProvider = dateProvider;
+        this.timeToLive = timeToLive;
+        cache = new LinkedHashMap<InetAddress, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InetAddress, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public String getHostName(InetAddress address) {
+        long now = dateProvider.currentTimeMillis();
+
+        synchronized (cache) {
+            CacheEntry entry = cache.get(address);
+            if (entry != null && entry.expires > now) {
+                return entry.hostName;
+            }
+        }
+
+        String hostName = lookup(address);
+
+        synchronized (cache) {
+            cache.put(address, new CacheEntry(hostName, now + timeToLive));
+        }
+        return hostName;
+    }
+
+    /**
+     * Performs the reverse lookup.
+     *
+     * @param address
+     * @return
+     */
+    protected String lookup(InetAddress address) {
+        // A copy of the address is used so that no name cached within the instance is reused
+        try {
+            return InetAddress.getByAddress(address.getAddress()).getHostName();
+        } catch (UnknownHostException e) {
+            return address.getHostAddress();
+        }
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private static class CacheEntry {
+        private final String hostName;
+        private final long expires;
+
+        CacheEntry(String hostName, long expires) {
+            this.hostName = hostName;
+            this.expires = expires;
+        }
+    }
+}
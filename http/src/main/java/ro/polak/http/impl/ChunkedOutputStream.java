@@ -0,0 +1,190 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Frames the written bytes as chunks of the chunked transfer coding.
+ * <p/>
+ * The written bytes are aggregated into chunks of the given size, a chunk is written as soon as
+ * it is full or the stream is flushed. Writes larger than the chunk size are framed as a single
+ * chunk without being copied. The chunk size is expressed in bytes.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @url https://en.wikipedia.org/wiki/Chunked_transfer_encoding
+ * @since 201710
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+    private static final Charset CHARSET = Charset.forName("US-ASCII");
+    private static final byte[] NEW_LINE = "\r\n".getBytes(CHARSET);
+    private static final byte[] END = "0\r\n\r\n".getBytes(CHARSET);
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(CHARSET);
+    private static final int MAX_HEADER_LENGTH = 8 + 2;
+
+    private final OutputStream outputStream;
+    private final int chunkSize;
+    private final byte[] header = new byte[MAX_HEADER_LENGTH];
+    private byte[] buffer;
+    private int count;
+    private boolean isFinished;
+
+    /**
+     * Writes every non empty write as a separate chunk.
+     *
+     * @param outputStream
+     */
+    public ChunkedOutputStream(final OutputStream outputStream) {
+        this(outputStream, 0);
+    }
+
+    /**
+     * Default constructor.
+     *
+     * @param outputStream
+     * @param chunkSize    size in bytes of the aggregated chunks, 0 disables the aggregation
+     */
+    public ChunkedOutputStream(final OutputStream outputStream, final int chunkSize) {
+        this.outputStream = outputStream;
+        this.chunkSize = Math.max(chunkSize, 0);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (chunkSize == 0) {
+            write(new byte[]{(byte) b}, 0, 1);
+            return;
+        }
+
+        checkNotFinished();
+        allocateBuffer();
+        buffer[MAX_HEADER_LENGTH + count++] = (byte) b;
+        if (count == chunkSize) {
+            writePendingChunk(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkNotFinished();
+
+        // A zero length chunk would end the body
+        if (len == 0) {
+            return;
+        }
+
+        if (len > chunkSize - count) {
+            writePendingChunk(false);
+            if (len >= chunkSize) {
+                writeChunk(b, off, len);
+                return;
+            }
+        }
+
+        allocateBuffer();
+        System.arraycopy(b, off, buffer, MAX_HEADER_LENGTH + count, len);
+        count += len;
+        if (count == chunkSize) {
+            writePendingChunk(false);
+        }
+    }
+
+    /**
+     * Writes the aggregated bytes as a chunk and flushes the underlying stream.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        writePendingChunk(false);
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the aggregated bytes and the last chunk, does not close the underlying stream.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if (!isFinished) {
+            isFinished = true;
+            if (count > 0) {
+                writePendingChunk(true);
+            } else {
+                outputStream.write(END);
+            }
+        }
+    }
+
+    private void checkNotFinished() throws IOException {
+        if (isFinished) {
+            throw new IOException("The last chunk has already been written");
+        }
+    }
+
+    private void allocateBuffer() {
+        if (buffer == null) {
+            // Leaves room for the chunk header, the chunk trailer and the last chunk
+            buffer = new byte[MAX_HEADER_LENGTH + chunkSize + NEW_LINE.length + END.length];
+        }
+    }
+
+    /**
+     * Writes the aggregated bytes preceded by the chunk header in a single write.
+     *
+     * @param isLast whether the last chunk is to follow
+     * @throws IOException
+     */
+    private void writePendingChunk(boolean isLast) throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        int headerLength = writeHeader(count, buffer, MAX_HEADER_LENGTH);
+        int end = MAX_HEADER_LENGTH + count;
+        System.arraycopy(NEW_LINE, 0, buffer, end, NEW_LINE.length);
+        end += NEW_LINE.length;
+        if (isLast) {
+            System.arraycopy(END, 0, buffer, end, END.length);
+            end += END.length;
+        }
+
+        int start = MAX_HEADER_LENGTH - headerLength;
+        outputStream.write(buffer, start, end - start);
+        count = 0;
+    }
+
+    private void writeChunk(byte[] b, int off, int len) throws IOException {
+        int headerLength = writeHeader(len, header, header.length);
+        outputStream.write(header, header.length - headerLength, headerLength);
+        outputStream.write(b, off, len);
+        outputStream.write(NEW_LINE);
+    }
+
+    /**
+     * Writes the hexadecimal chunk length followed by a new line so that it ends at the given
+     * position.
+     *
+     * @param length
+     * @param target
+     * @param end
+     * @return the header length
+     */
+    private int writeHeader(int length, byte[] target, int end) {
+        int position = end - NEW_LINE.length;
+        System.arraycopy(NEW_LINE, 0, target, position, NEW_LINE.length);
+        do {
+            target[--position] = HEX_DIGITS[length & 0xF];
+            length >>>= 4;
+        } while (length != 0);
+        return end - position;
+    }
+}
@@ -0,0 +1,210 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import ro.polak.http.Headers;
+import ro.polak.http.servlet.HttpServletResponse;
+import ro.polak.http.servlet.ServletOutputStream;
+import ro.polak.http.servlet.helper.CompressionHelper;
+import ro.polak.http.servlet.impl.HttpResponseImpl;
+
+/**
+ * Compresses the response body using the negotiated content coding.
+ * <p/>
+ * The beginning of the body is held back until either the min compressed size is reached, the
+ * output is flushed or the body is finished. Only then the stream decides whether to compress,
+ * the headers are committed afterwards. Bodies of a chunked response are framed by the underlying
+ * stream, after the bytes have been compressed.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class CompressingServletOutputStream extends ServletOutputStream {
+
+    private static final String VARY_SEPARATOR = ", ";
+
+    private final ServletOutputStream outputStream;
+    private final HttpResponseImpl response;
+    private final CompressionHelper compressionHelper;
+    private final String coding;
+    private final byte[] buffer;
+    private int count;
+    private boolean isCollecting;
+    private boolean isFinished;
+    private OutputStream out;
+    private DeflaterOutputStream compressingStream;
+
+    /**
+     * Default constructor.
+     *
+     * @param outputStream      stream committing the headers on the first write
+     * @param response
+     * @param compressionHelper
+     * @param coding            content coding accepted by the client
+     */
+    public CompressingServletOutputStream(final ServletOutputStream outputStream,
+                                          final HttpResponseImpl response,
+                                          final CompressionHelper compressionHelper,
+                                          final String coding) {
+        this.outputStream = outputStream;
+        this.response = response;
+        this.compressionHelper = compressionHelper;
+        this.coding = coding;
+        buffer = new byte[compressionHelper.getMinSize()];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (out == null) {
+            if (count + len < buffer.length) {
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+                return;
+            }
+            decide(false);
+        }
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (isFinished) {
+            outputStream.flush();
+            return;
+        }
+        if (out == null) {
+            if (isCollecting) {
+                return;
+            }
+            decide(false);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the remaining part of the body, the pending output is flushed first so that
+     * the complete length of a short body is known before the compression is decided.
+     * Does not close the underlying stream.
+     *
+     * @param pendingOutput output buffered above this stream, can be null
+     * @throws IOException
+     */
+    public void finish(Flushable pendingOutput) throws IOException {
+        if (isFinished) {
+            return;
+        }
+
+        isCollecting = true;
+        if (pendingOutput != null) {
+            pendingOutput.flush();
+        }
+
+        if (out == null) {
+            decide(true);
+        }
+        isFinished = true;
+
+        if (compressingStream != null) {
+            compressingStream.finish();
+        }
+    }
+
+    /**
+     * Discards the held back and the uncommitted output, the compression is decided anew.
+     *
+     * @param pendingOutput output buffered above this stream, can be null
+     * @throws IOException
+     */
+    public void resetBuffer(Flushable pendingOutput) throws IOException {
+        isCollecting = true;
+        try {
+            if (pendingOutput != null) {
+                pendingOutput.flush();
+            }
+        } finally {
+            isCollecting = false;
+        }
+
+        count = 0;
+        if (compressingStream != null) {
+            // The native compressor state is freed right away rather than on finalization
+            compressionHelper.release(compressingStream);
+            response.getHeaders().removeHeader(Headers.HEADER_CONTENT_ENCODING);
+            compressingStream = null;
+        }
+        out = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish(null);
+        outputStream.close();
+    }
+
+    /**
+     * Decides on the compression once the beginning of the body is known, then writes the
+     * held back bytes.
+     *
+     * @param isComplete whether the held back bytes are the complete body
+     * @throws IOException
+     */
+    private void decide(boolean isComplete) throws IOException {
+        out = outputStream;
+
+        if (!response.isCommitted()) {
+            Headers headers = response.getHeaders();
+            if (isCompressible(headers)) {
+                addVary(headers);
+                if (!isComplete || count >= compressionHelper.getMinSize()) {
+                    headers.setHeader(Headers.HEADER_CONTENT_ENCODING, coding);
+                    headers.removeHeader(Headers.HEADER_CONTENT_LENGTH);
+                    compressingStream = compressionHelper.getCompressingStream(coding, outputStream);
+                    out = compressingStream;
+                }
+            }
+        }
+
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+
+    private boolean isCompressible(Headers headers) {
+        if (headers.containsHeader(Headers.HEADER_CONTENT_ENCODING)
+                || !compressionHelper.isCompressible(response.getContentType())
+                || HttpServletResponse.STATUS_NOT_MODIFIED.equals(response.getStatus())) {
+            return false;
+        }
+
+        // A short body of a declared length is not worth compressing
+        String contentLength = headers.getHeader(Headers.HEADER_CONTENT_LENGTH);
+        try {
+            return contentLength == null || Long.parseLong(contentLength) >= compressionHelper.getMinSize();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void addVary(Headers headers) {
+        String vary = headers.getHeader(Headers.HEADER_VARY);
+        if (vary == null) {
+            headers.setHeader(Headers.HEADER_VARY, Headers.HEADER_ACCEPT_ENCODING);
+        } else if (!vary.contains(Headers.HEADER_ACCEPT_ENCODING)) {
+            headers.setHeader(Headers.HEADER_VARY, vary + VARY_SEPARATOR + Headers.HEADER_ACCEPT_ENCODING);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Connection scoped buffered input stream.
+ * <p/>
+ * Reads the incoming data in bulk and lets the request head be scanned line by line directly
+ * in the buffer. Bytes read ahead of the current request, the request body and the subsequent
+ * pipelined requests, stay in the buffer and are returned by the following reads.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class ConnectionInputStream extends InputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private final InputStream inputStream;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    /**
+     * Default constructor.
+     *
+     * @param inputStream
+     */
+    public ConnectionInputStream(final InputStream inputStream) {
+        this(inputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a stream having buffer of the given size.
+     *
+     * @param inputStream
+     * @param bufferSize
+     */
+    public ConnectionInputStream(final InputStream inputStream, final int bufferSize) {
+        this.inputStream = inputStream;
+        buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !fillBuffer()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (position == limit) {
+            // Large reads bypass the buffer
+            if (len >= buffer.length) {
+                return readFromSource(b, off, len);
+            }
+            if (!fillBuffer()) {
+                return -1;
+            }
+        }
+
+        int length = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, length);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        if (position == limit && !fillBuffer()) {
+            return 0;
+        }
+
+        int length = (int) Math.min(n, limit - position);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return limit - position;
+    }
+
+    /**
+     * Returns the next byte without consuming it, blocks until the byte is available.
+     *
+     * @return the next byte or -1 when the stream has ended
+     * @throws IOException
+     */
+    public int peek() throws IOException {
+        if (position == limit && !fillBuffer()) {
+            return -1;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    /**
+     * Copies the next line, including its LF terminator, to the given output. Reads at most
+     * maxLength bytes when no terminator is found.
+     *
+     * @param line
+     * @param maxLength
+     * @return the number of bytes consumed, 0 when the stream has ended
+     * @throws IOException
+     */
+    public int readLine(ByteArrayOutputStream line, int maxLength) throws IOException {
+        int consumed = 0;
+        while (consumed < maxLength) {
+            if (position == limit && !fillBuffer()) {
+                break;
+            }
+
+            int end = limit - position > maxLength - consumed ? position + maxLength - consumed : limit;
+            int start = position;
+            while (position < end) {
+                if (buffer[position++] == LF) {
+                    line.write(buffer, start, position - start);
+                    return consumed + position - start;
+                }
+            }
+            line.write(buffer, start, position - start);
+            consumed += position - start;
+        }
+        return consumed;
+    }
+
+    /**
+     * Discards the empty lines preceding the request line and tells whether a complete request
+     * head is buffered. Never blocks, a full buffer is reported as a complete head so that
+     * oversized heads reach the request parser.
+     *
+     * @return
+     */
+    public boolean isRequestHeadBuffered() {
+        while (position < limit && (buffer[position] == CR || buffer[position] == LF)) {
+            ++position;
+        }
+
+        if (position == 0 && limit == buffer.length) {
+            return true;
+        }
+
+        for (int i = position + 1; i < limit; i++) {
+            if (buffer[i] == LF && (buffer[i - 1] == LF || (buffer[i - 1] == CR && i - 2 >= position && buffer[i - 2] == LF))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads more data into the buffer, moving the unread bytes to its beginning when needed.
+     *
+     * @return false when the stream has ended
+     * @throws IOException
+     */
+    protected boolean fillBuffer() throws IOException {
+        if (position == limit) {
+            position = 0;
+            limit = 0;
+        } else if (limit == buffer.length) {
+            if (position == 0) {
+                return true;
+            }
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+
+        int numberOfBytesRead = readFromSource(buffer, limit, buffer.length - limit);
+        if (numberOfBytesRead == -1) {
+            return false;
+        }
+        limit += numberOfBytesRead;
+        return true;
+    }
+
+    /**
+     * Reads data from the underlying source.
+     *
+     * @param b
+     * @param off
+     * @param len
+     * @return the number of bytes read or -1 when the source has ended
+     * @throws IOException
+     */
+    protected int readFromSource(byte[] b, int off, int len) throws IOException {
+        return inputStream.read(b, off, len);
+    }
+}
@@ -0,0 +1,26 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.net.InetAddress;
+
+import ro.polak.http.HostNameResolver;
+
+/**
+ * Host name resolver that never performs reverse lookups, returns the textual address instead.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class NumericHostNameResolver implements HostNameResolver {
+
+    @Override
+    public String getHostName(InetAddress address) {
+        return address.getHostAddress();
+    }
+}
@@ -0,0 +1,122 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import ro.polak.http.servlet.ServletInputStream;
+
+/**
+ * Request body stream limited to the declared content length.
+ * <p/>
+ * Never reads past the request body so that the next request of a persistent connection stays
+ * untouched. Closing the stream does not close the underlying socket stream.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class ServletInputStreamImpl extends ServletInputStream {
+
+    private final InputStream inputStream;
+    private long remaining;
+
+    /**
+     * Default constructor.
+     *
+     * @param inputStream
+     * @param length
+     */
+    public ServletInputStreamImpl(final InputStream inputStream, final long length) {
+        this.inputStream = inputStream;
+        this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining < 1) {
+            return -1;
+        }
+
+        int b = inputStream.read();
+        if (b == -1) {
+            remaining = 0;
+        } else {
+            --remaining;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining < 1) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        int numberOfBytesRead = inputStream.read(b, off, (int) Math.min(len, remaining));
+        if (numberOfBytesRead == -1) {
+            remaining = 0;
+        } else {
+            remaining -= numberOfBytesRead;
+        }
+        return numberOfBytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = inputStream.skip(Math.min(n, remaining));
+        if (skipped > 0) {
+            remaining -= skipped;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(inputStream.available(), remaining);
+    }
+
+    /**
+     * Returns the number of body bytes not consumed yet.
+     *
+     * @return
+     */
+    public long getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * Reads and discards the rest of the body. Returns false when the body is longer than the
+     * given limit or the stream ended prematurely.
+     *
+     * @param limit
+     * @return
+     * @throws IOException
+     */
+    public boolean drain(long limit) throws IOException {
+        if (remaining > limit) {
+            return false;
+        }
+
+        byte[] buffer = new byte[512];
+        while (remaining > 0) {
+            if (read(buffer, 0, buffer.length) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The underlying stream belongs to the connection
+    }
+}
@@ -15,13 +15,32 @@ import ro.polak.http.servlet.ServletOutputStream;
 
 /**
  * Adds possibility flush headers capability to the ordinary output stream.
+ * <p/>
+ * The written bytes are coalesced in a buffer of the response buffer size. The headers are
+ * committed once the buffer overflows or the stream is flushed, so that the length of a body
+ * fitting the buffer is known before the headers are written. A body of a chunked response is
+ * framed once the headers are committed, in chunks of the response buffer size.
  *
  * @since 201611
  */
 public class ServletOutputStreamImpl extends ServletOutputStream {
 
+    private static final OutputStream DISCARDING_OUTPUT_STREAM = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
     private final OutputStream outputStream;
     private final HttpResponseImpl response;
+    private byte[] buffer;
+    private int count;
+    private boolean isCollecting;
+    private ChunkedOutputStream chunkedOutputStream;
 
     /**
      * Default constructor.
@@ -36,35 +55,161 @@ public class ServletOutputStreamImpl extends ServletOutputStream {
 
     @Override
     public void write(int b) throws IOException {
-        flushHeadersIfPossible();
-        outputStream.write(b);
+        if (chunkedOutputStream != null) {
+            chunkedOutputStream.write(b);
+            return;
+        }
+
+        allocateBuffer();
+        if (count == buffer.length) {
+            drain();
+            if (chunkedOutputStream != null) {
+                chunkedOutputStream.write(b);
+                return;
+            }
+            if (buffer.length == 0) {
+                getCommittedOutputStream().write(b);
+                return;
+            }
+        }
+        buffer[count++] = (byte) b;
     }
 
     @Override
     public void write(byte b[]) throws IOException {
-        flushHeadersIfPossible();
-        outputStream.write(b);
+        if (!writeToBuffer(b, 0, b.length)) {
+            getCommittedOutputStream().write(b);
+        }
     }
 
     @Override
     public void write(byte b[], int off, int len) throws IOException {
-        flushHeadersIfPossible();
-        outputStream.write(b, off, len);
+        if (!writeToBuffer(b, off, len)) {
+            getCommittedOutputStream().write(b, off, len);
+        }
     }
 
+    /**
+     * Commits the headers, writes the buffered bytes and flushes the underlying stream.
+     * Does nothing while collecting.
+     *
+     * @throws IOException
+     */
     @Override
     public void flush() throws IOException {
-        outputStream.flush();
+        if (isCollecting) {
+            return;
+        }
+
+        drain();
+        getCommittedOutputStream().flush();
     }
 
-    private void flushHeadersIfPossible() throws IOException {
-        if (!response.isCommitted()) {
-            response.flushHeaders();
+    /**
+     * Commits the headers, writes the buffered bytes followed by the last chunk of a chunked
+     * response and flushes the underlying stream. Does not close the underlying stream.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        drain();
+        if (chunkedOutputStream != null && !response.isBodyOmitted()) {
+            chunkedOutputStream.finish();
         }
+        outputStream.flush();
+    }
+
+    /**
+     * While collecting, flushing does not commit the response and the output is kept in the buffer
+     * as long as it fits.
+     *
+     * @param collecting
+     */
+    public void setCollecting(boolean collecting) {
+        isCollecting = collecting;
+    }
+
+    /**
+     * Returns the number of buffered bytes.
+     *
+     * @return
+     */
+    public int getBufferedLength() {
+        return count;
+    }
+
+    /**
+     * Discards the buffered bytes.
+     */
+    public void resetBuffer() {
+        count = 0;
     }
 
     @Override
     public void close() throws IOException {
+        finish();
         outputStream.close();
     }
+
+    /**
+     * Buffers the bytes, returns false when the bytes are too large to be buffered. In such case
+     * the buffered bytes are written first.
+     *
+     * @param b
+     * @param off
+     * @param len
+     * @return
+     * @throws IOException
+     */
+    private boolean writeToBuffer(byte b[], int off, int len) throws IOException {
+        if (chunkedOutputStream != null) {
+            return false;
+        }
+
+        allocateBuffer();
+        if (len > buffer.length - count) {
+            drain();
+            if (chunkedOutputStream != null || len >= buffer.length) {
+                return false;
+            }
+        }
+
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+        return true;
+    }
+
+    private void allocateBuffer() {
+        if (buffer == null) {
+            buffer = new byte[Math.max(response.getBufferSize(), 0)];
+        }
+    }
+
+    private OutputStream getCommittedOutputStream() {
+        if (response.isBodyOmitted()) {
+            return DISCARDING_OUTPUT_STREAM;
+        }
+        return chunkedOutputStream != null ? chunkedOutputStream : outputStream;
+    }
+
+    private void drain() throws IOException {
+        if (!response.isCommitted()) {
+            if (response.prepareChunkedTransfer()) {
+                response.flushHeaders();
+                chunkedOutputStream = new ChunkedOutputStream(outputStream, Math.max(response.getBufferSize(), 0));
+            } else if (count > 0) {
+                // The headers and the buffered bytes are sent in a single write
+                response.flushHeaders(buffer, 0, count);
+                count = 0;
+                return;
+            } else {
+                response.flushHeaders();
+            }
+        }
+
+        if (count > 0) {
+            getCommittedOutputStream().write(buffer, 0, count);
+            count = 0;
+        }
+    }
 }
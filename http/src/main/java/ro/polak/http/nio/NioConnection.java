@@ -0,0 +1,293 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.nio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import ro.polak.http.FileTransferTarget;
+import ro.polak.http.impl.ConnectionInputStream;
+import ro.polak.http.utilities.IOUtilities;
+
+/**
+ * Non-blocking connection state shared between the selector thread and the worker serving it.
+ * <p/>
+ * The selector thread fills the buffer until a complete request head is available, then the
+ * connection is handed over to a worker that reads the rest of the request and writes the response
+ * through blocking streams. The two never access the connection at the same time.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class NioConnection {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int IO_TIMEOUT = 60 * 1000;
+
+    private final SocketChannel channel;
+    private final ChannelInputStream inputStream;
+    private final OutputStream outputStream;
+    private SelectionKey selectionKey;
+    private Selector blockingSelector;
+    private long lastActivityTime;
+    private int numberOfRequestsHandled;
+    private boolean isBusy;
+
+    /**
+     * Default constructor.
+     *
+     * @param channel
+     */
+    public NioConnection(final SocketChannel channel) {
+        this.channel = channel;
+        inputStream = new ChannelInputStream();
+        outputStream = new ConnectionOutputStream();
+        lastActivityTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Reads available bytes from the channel without blocking.
+     *
+     * @return false when the client closed the connection
+     * @throws IOException
+     */
+    public boolean fill() throws IOException {
+        lastActivityTime = System.currentTimeMillis();
+        return inputStream.fillAvailable();
+    }
+
+    /**
+     * Tells whether a complete request head is buffered.
+     *
+     * @return
+     */
+    public boolean isRequestHeadAvailable() {
+        return inputStream.isRequestHeadBuffered();
+    }
+
+    /**
+     * Returns the stream of the incoming data, blocks the worker thread when no data is available.
+     *
+     * @return
+     */
+    public ConnectionInputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Returns the stream of the outgoing data, blocks the worker thread until the data is written.
+     *
+     * @return
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Returns the socket of the underlying channel.
+     *
+     * @return
+     */
+    public Socket getSocket() {
+        return channel.socket();
+    }
+
+    /**
+     * Returns the underlying channel.
+     *
+     * @return
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns the selection key of the connection.
+     *
+     * @return
+     */
+    public SelectionKey getSelectionKey() {
+        return selectionKey;
+    }
+
+    /**
+     * Sets the selection key of the connection.
+     *
+     * @param selectionKey
+     */
+    public void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    /**
+     * Returns the time of the last activity in milliseconds.
+     *
+     * @return
+     */
+    public long getLastActivityTime() {
+        return lastActivityTime;
+    }
+
+    /**
+     * Tells whether the connection is being served by a worker.
+     *
+     * @return
+     */
+    public boolean isBusy() {
+        return isBusy;
+    }
+
+    /**
+     * Marks the connection as being served by a worker.
+     *
+     * @param busy
+     */
+    public void setBusy(boolean busy) {
+        isBusy = busy;
+        lastActivityTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Increments and returns the number of requests served over the connection.
+     *
+     * @return
+     */
+    public int nextRequestNumber() {
+        return ++numberOfRequestsHandled;
+    }
+
+    /**
+     * Releases the resources used to block the worker thread.
+     */
+    public void releaseBlockingSelector() {
+        if (blockingSelector != null) {
+            IOUtilities.closeSilently(blockingSelector);
+            blockingSelector = null;
+        }
+    }
+
+    /**
+     * Closes the connection.
+     */
+    public void close() {
+        releaseBlockingSelector();
+        IOUtilities.closeSilently(channel);
+    }
+
+    /**
+     * Blocks the current thread until the channel is ready for the given operation.
+     *
+     * @param operation
+     * @throws IOException
+     */
+    private void await(int operation) throws IOException {
+        if (blockingSelector == null) {
+            blockingSelector = Selector.open();
+        }
+
+        SelectionKey key = channel.register(blockingSelector, operation);
+        try {
+            if (blockingSelector.select(IO_TIMEOUT) == 0) {
+                throw new SocketTimeoutException("Timeout waiting for the channel");
+            }
+        } finally {
+            key.cancel();
+            blockingSelector.selectNow(); // Deregisters the canceled key
+        }
+    }
+
+    /**
+     * Reads from the channel, blocks the worker thread when no data is available.
+     */
+    private class ChannelInputStream extends ConnectionInputStream {
+
+        private boolean isBlocking = true;
+
+        ChannelInputStream() {
+            super(null, BUFFER_SIZE);
+        }
+
+        /**
+         * Reads the data that is available without blocking.
+         *
+         * @return false when the client closed the connection
+         * @throws IOException
+         */
+        boolean fillAvailable() throws IOException {
+            isBlocking = false;
+            try {
+                return fillBuffer();
+            } finally {
+                isBlocking = true;
+            }
+        }
+
+        @Override
+        protected int readFromSource(byte[] b, int off, int len) throws IOException {
+            ByteBuffer target = ByteBuffer.wrap(b, off, len);
+            while (true) {
+                int numberOfBytesRead = channel.read(target);
+                if (numberOfBytesRead != 0 || !isBlocking) {
+                    return numberOfBytesRead;
+                }
+                await(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    /**
+     * Writes directly to the channel, waits whenever the socket send buffer is full.
+     * <p/>
+     * File regions are handed over to the kernel using {@link FileChannel#transferTo}, buffers are
+     * written to the channel as they are.
+     */
+    private class ConnectionOutputStream extends OutputStream implements FileTransferTarget {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            transferFrom(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public void transferFrom(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) == 0) {
+                    await(SelectionKey.OP_WRITE);
+                }
+            }
+        }
+
+        @Override
+        public void transferFrom(FileChannel fileChannel, long position, long length) throws IOException {
+            long current = position;
+            long end = position + length;
+            while (current < end) {
+                long numberOfBytesTransferred = fileChannel.transferTo(current, end - current, channel);
+                if (numberOfBytesTransferred == 0) {
+                    if (current >= fileChannel.size()) {
+                        throw new IOException("Premature end of file");
+                    }
+                    await(SelectionKey.OP_WRITE);
+                }
+                current += numberOfBytesTransferred;
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.nio;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ro.polak.http.ServiceContainer;
+import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.utilities.IOUtilities;
+
+/**
+ * Selector based connector.
+ * <p/>
+ * A single thread accepts the connections and reads the request heads. Only the connections having
+ * a complete request head are dispatched to the worker pool, idle connections do not occupy
+ * any worker thread.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class NioConnector implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(NioConnector.class.getName());
+
+    private static final int SELECT_TIMEOUT = 1000;
+    private static final int DEFAULT_IDLE_TIMEOUT = 5;
+
+    private final ServerSocketChannel serverSocketChannel;
+    private final ServerConfig serverConfig;
+    private final ServiceContainer serviceContainer;
+    private final Executor executor;
+    private final Queue<NioConnection> resumedConnections = new ConcurrentLinkedQueue<>();
+    private final long idleTimeout;
+    private volatile boolean isRunning = true;
+    private Selector selector;
+
+    /**
+     * Default constructor.
+     *
+     * @param serverSocketChannel
+     * @param serverConfig
+     * @param serviceContainer
+     * @param executor
+     */
+    public NioConnector(final ServerSocketChannel serverSocketChannel,
+                        final ServerConfig serverConfig,
+                        final ServiceContainer serviceContainer,
+                        final Executor executor) {
+        this.serverSocketChannel = serverSocketChannel;
+        this.serverConfig = serverConfig;
+        this.serviceContainer = serviceContainer;
+        this.executor = executor;
+
+        int timeout = serverConfig.getKeepAliveTimeout() > 0
+                ? serverConfig.getKeepAliveTimeout() : DEFAULT_IDLE_TIMEOUT;
+        idleTimeout = timeout * 1000L;
+    }
+
+    @Override
+    public void run() {
+        try {
+            selector = Selector.open();
+            serverSocketChannel.configureBlocking(false);
+            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            while (isRunning) {
+                selector.select(SELECT_TIMEOUT);
+                resumeConnections();
+                handleSelectedKeys();
+                closeIdleConnections();
+            }
+        } catch (IOException e) {
+            if (isRunning) {
+                LOGGER.log(Level.SEVERE, "Communication error", e);
+            }
+        } finally {
+            closeAllConnections();
+            IOUtilities.closeSilently(selector);
+            IOUtilities.closeSilently(serverSocketChannel);
+        }
+    }
+
+    /**
+     * Stops the connector.
+     */
+    public void stop() {
+        isRunning = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Hands a connection back to the selector once the worker has finished serving it.
+     *
+     * @param connection
+     */
+    public void resume(NioConnection connection) {
+        resumedConnections.add(connection);
+        selector.wakeup();
+    }
+
+    private void handleSelectedKeys() throws IOException {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+
+            if (!key.isValid()) {
+                continue;
+            }
+
+            if (key.isAcceptable()) {
+                accept();
+            } else if (key.isReadable()) {
+                read((NioConnection) key.attachment());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverSocketChannel.accept()) != null) {
+            try {
+                channel.configureBlocking(false);
+                NioConnection connection = new NioConnection(channel);
+                connection.setSelectionKey(channel.register(selector, SelectionKey.OP_READ, connection));
+            } catch (IOException e) {
+                IOUtilities.closeSilently(channel);
+                LOGGER.log(Level.INFO, "Unable to register connection {0}", new Object[]{
+                        e.getMessage()
+                });
+            }
+        }
+    }
+
+    private void read(NioConnection connection) {
+        try {
+            if (!connection.fill()) {
+                connection.close();
+                return;
+            }
+        } catch (IOException e) {
+            connection.close();
+            return;
+        }
+
+        if (connection.isRequestHeadAvailable()) {
+            dispatch(connection);
+        }
+    }
+
+    private void dispatch(NioConnection connection) {
+        connection.getSelectionKey().interestOps(0);
+        connection.setBusy(true);
+        executor.execute(new NioServerRunnable(connection,
+                this,
+                serverConfig,
+                serviceContainer.getRequestWrapperFactory(),
+                serviceContainer.getResponseFactory(),
+                serviceContainer.getHttpErrorHandlerResolver(),
+                serviceContainer.getPathHelper(),
+                serviceContainer.getResourceResolver()));
+    }
+
+    private void resumeConnections() {
+        NioConnection connection;
+        while ((connection = resumedConnections.poll()) != null) {
+            if (!connection.getSelectionKey().isValid()) {
+                connection.close();
+                continue;
+            }
+
+            connection.setBusy(false);
+            if (connection.isRequestHeadAvailable()) {
+                dispatch(connection);
+            } else {
+                connection.getSelectionKey().interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof NioConnection) {
+                NioConnection connection = (NioConnection) attachment;
+                if (!connection.isBusy() && now - connection.getLastActivityTime() > idleTimeout) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private void closeAllConnections() {
+        if (selector == null) {
+            return;
+        }
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof NioConnection && !((NioConnection) attachment).isBusy()) {
+                ((NioConnection) attachment).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.nio;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ro.polak.http.PathHelper;
+import ro.polak.http.ServerRunnable;
+import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.errorhandler.HttpErrorHandlerResolver;
+import ro.polak.http.resource.provider.ResourceResolver;
+import ro.polak.http.servlet.factory.HttpServletRequestImplFactory;
+import ro.polak.http.servlet.factory.HttpServletResponseImplFactory;
+
+/**
+ * Serves the buffered requests of a non-blocking connection and hands the connection back to the
+ * selector once there is no complete request left to serve.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class NioServerRunnable extends ServerRunnable {
+
+    private static final Logger LOGGER = Logger.getLogger(NioServerRunnable.class.getName());
+
+    private final NioConnection connection;
+    private final NioConnector connector;
+
+    /**
+     * Default constructor.
+     *
+     * @param connection
+     * @param connector
+     * @param serverConfig
+     * @param requestFactory
+     * @param responseFactory
+     * @param httpErrorHandlerResolver
+     * @param pathHelper
+     * @param resourceResolver
+     */
+    public NioServerRunnable(final NioConnection connection,
+                             final NioConnector connector,
+                             final ServerConfig serverConfig,
+                             final HttpServletRequestImplFactory requestFactory,
+                             final HttpServletResponseImplFactory responseFactory,
+                             final HttpErrorHandlerResolver httpErrorHandlerResolver,
+                             final PathHelper pathHelper,
+                             final ResourceResolver resourceResolver) {
+        super(connection.getSocket(), serverConfig, requestFactory, responseFactory,
+                httpErrorHandlerResolver, pathHelper, resourceResolver);
+        this.connection = connection;
+        this.connector = connector;
+    }
+
+    @Override
+    public void run() {
+        boolean isKeepAlive = false;
+        try {
+            do {
+                isKeepAlive = handleRequest(connection.getInputStream(), connection.getOutputStream(),
+                        connection.nextRequestNumber());
+            } while (isKeepAlive && connection.isRequestHeadAvailable());
+        } catch (IOException e) {
+            isKeepAlive = false;
+            LOGGER.log(Level.INFO, "Encountered IOException when handling request {0}", new Object[]{
+                    e.getMessage()
+            });
+        } finally {
+            connection.releaseBlockingSelector();
+            if (isKeepAlive) {
+                connector.resume(connection);
+            } else {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the served connection.
+     *
+     * @return
+     */
+    public NioConnection getConnection() {
+        return connection;
+    }
+}
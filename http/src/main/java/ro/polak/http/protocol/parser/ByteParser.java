@@ -0,0 +1,28 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.protocol.parser;
+
+/**
+ * Parser able to work directly on the raw bytes, without decoding the input into a string first.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public interface ByteParser<T> extends Parser<T> {
+
+    /**
+     * Parses the given part of the input bytes into the destination format.
+     *
+     * @param input
+     * @param offset
+     * @param length
+     * @return
+     * @throws MalformedInputException
+     */
+    T parse(byte[] input, int offset, int length) throws MalformedInputException;
+}
@@ -0,0 +1,94 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.protocol.parser.impl;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import ro.polak.http.protocol.parser.MalformedInputException;
+import ro.polak.http.protocol.parser.Parser;
+
+/**
+ * Accept-Encoding header parser.
+ * <p/>
+ * Returns the quality value of every listed content coding, the coding names are lower cased.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class AcceptEncodingParser implements Parser<Map<String, Float>> {
+
+    public static final String ANY_CODING = "*";
+
+    private static final String CODING_SEPARATOR = ",";
+    private static final String PARAMETER_SEPARATOR = ";";
+    private static final String QUALITY_PARAMETER = "q=";
+    private static final float DEFAULT_QUALITY = 1f;
+
+    /**
+     * Parses the header value into a coding to quality value map.
+     *
+     * @param input
+     * @return
+     * @throws MalformedInputException
+     */
+    @Override
+    public Map<String, Float> parse(String input) throws MalformedInputException {
+        Map<String, Float> codings = new HashMap<>();
+
+        for (String codingStr : input.split(CODING_SEPARATOR)) {
+            String[] parts = codingStr.split(PARAMETER_SEPARATOR);
+            String coding = parts[0].trim().toLowerCase(Locale.ENGLISH);
+            if (coding.length() == 0) {
+                continue;
+            }
+
+            float quality = DEFAULT_QUALITY;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith(QUALITY_PARAMETER)) {
+                    quality = parseQuality(parameter.substring(QUALITY_PARAMETER.length()));
+                }
+            }
+            codings.put(coding, quality);
+        }
+
+        return codings;
+    }
+
+    /**
+     * Tells whether the coding is acceptable according to the parsed header. A coding that is
+     * neither listed nor covered by the wildcard is not acceptable.
+     *
+     * @param codings
+     * @param coding
+     * @return
+     */
+    public static boolean isAccepted(Map<String, Float> codings, String coding) {
+        Float quality = codings.get(coding);
+        if (quality == null) {
+            quality = codings.get(ANY_CODING);
+        }
+        return quality != null && quality > 0;
+    }
+
+    private float parseQuality(String value) throws MalformedInputException {
+        float quality;
+        try {
+            quality = Float.parseFloat(value.trim());
+        } catch (NumberFormatException e) {
+            throw new MalformedInputException("Invalid quality value " + value);
+        }
+
+        if (quality < 0 || quality > 1) {
+            throw new MalformedInputException("Quality value out of range " + value);
+        }
+        return quality;
+    }
+}
@@ -0,0 +1,86 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.protocol.parser.impl;
+
+/**
+ * Helpers operating on ASCII encoded byte arrays.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+final class AsciiBytes {
+
+    private AsciiBytes() {
+    }
+
+    /**
+     * Returns the position of the given byte or -1 if not found.
+     *
+     * @param input
+     * @param start
+     * @param end
+     * @param b
+     * @return
+     */
+    static int indexOf(byte[] input, int start, int end, byte b) {
+        for (int i = start; i < end; i++) {
+            if (input[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Tells whether the given bytes are equal to the given ASCII text.
+     *
+     * @param input
+     * @param start
+     * @param end
+     * @param text
+     * @return
+     */
+    static boolean equals(byte[] input, int start, int end, String text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (input[i] != text.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether the given bytes are equal to the given ASCII text, ignoring the case.
+     *
+     * @param input
+     * @param start
+     * @param end
+     * @param text
+     * @return
+     */
+    static boolean equalsIgnoreCase(byte[] input, int start, int end, String text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            int b = input[i];
+            int c = text.charAt(i - start);
+            if (b != c && toUpperCase(b) != toUpperCase(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toUpperCase(int c) {
+        return c >= 'a' && c <= 'z' ? c - ('a' - 'A') : c;
+    }
+}
@@ -0,0 +1,165 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.protocol.parser.impl;
+
+import java.nio.charset.Charset;
+
+import ro.polak.http.Headers;
+import ro.polak.http.protocol.parser.ByteParser;
+import ro.polak.http.protocol.parser.MalformedInputException;
+
+/**
+ * Parses headers directly out of the raw bytes.
+ * <p/>
+ * Lines are scanned in place, well known header names are resolved to constants so that only
+ * the header values and the unknown names are allocated. Produces the same result as
+ * {@link HeadersParser}.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class ByteHeadersParser implements ByteParser<Headers> {
+
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+    private static final String[] KNOWN_HEADER_NAMES = {
+            Headers.HEADER_HOST,
+            Headers.HEADER_CONNECTION,
+            Headers.HEADER_CONTENT_LENGTH,
+            Headers.HEADER_CONTENT_TYPE,
+            Headers.HEADER_COOKIE,
+            Headers.HEADER_RANGE,
+            Headers.HEADER_ACCEPT_LANGUAGE,
+            Headers.HEADER_CACHE_CONTROL,
+            Headers.HEADER_PRAGMA,
+            Headers.HEADER_TRANSFER_ENCODING,
+            "Accept",
+            "Accept-Encoding",
+            "User-Agent",
+            "Referer",
+            "Origin",
+            "Authorization",
+            "If-Modified-Since",
+            "If-None-Match",
+            "Upgrade-Insecure-Requests"
+    };
+
+    private final boolean keepRepeatingHeaders;
+
+    /**
+     * Default constructor, repeating headers are added as separate values.
+     */
+    public ByteHeadersParser() {
+        this(true);
+    }
+
+    /**
+     * Creates a parser.
+     *
+     * @param keepRepeatingHeaders whether a repeated header is added as another value instead of
+     *                             replacing the previous one
+     */
+    public ByteHeadersParser(final boolean keepRepeatingHeaders) {
+        this.keepRepeatingHeaders = keepRepeatingHeaders;
+    }
+
+    @Override
+    public Headers parse(String input) throws MalformedInputException {
+        byte[] bytes = input.getBytes(CHARSET);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public Headers parse(byte[] input, int offset, int length) throws MalformedInputException {
+        Headers headers = new Headers();
+        int end = offset + length;
+        int position = offset;
+        String lastHeaderName = null;
+        String lastHeaderValue = null;
+
+        while (position < end) {
+            // Mandatory \r https://www.w3.org/Protocols/rfc2616/rfc2616-sec2.html#sec2.2
+            if (isNewLine(input[position])) {
+                ++position;
+                continue;
+            }
+
+            int lineStart = position;
+            while (position < end && !isNewLine(input[position])) {
+                ++position;
+            }
+            int lineEnd = position;
+
+            // Multiline headers start with a space or a tab
+            byte firstByte = input[lineStart];
+            if (firstByte == ' ' || firstByte == '\t') {
+                // Protection against header string starting with the space or tab character
+                if (lastHeaderName != null) {
+                    int valueStart = skipWhitespace(input, lineStart, lineEnd);
+                    lastHeaderValue = lastHeaderValue + " " + new String(input, valueStart, lineEnd - valueStart, CHARSET);
+                }
+                continue;
+            }
+
+            int colonPosition = AsciiBytes.indexOf(input, lineStart, lineEnd, (byte) ':');
+            if (colonPosition == -1) {
+                continue;
+            }
+
+            // The value of the previous header is complete once the next header starts
+            putHeader(headers, lastHeaderName, lastHeaderValue);
+
+            lastHeaderName = getHeaderName(input, lineStart, colonPosition);
+            int valueStart = skipWhitespace(input, colonPosition + 1, lineEnd);
+            lastHeaderValue = new String(input, valueStart, lineEnd - valueStart, CHARSET);
+        }
+        putHeader(headers, lastHeaderName, lastHeaderValue);
+
+        return headers;
+    }
+
+    private void putHeader(Headers headers, String name, String value) {
+        if (name == null) {
+            return;
+        }
+
+        if (keepRepeatingHeaders) {
+            headers.addHeader(name, value);
+        } else {
+            headers.setHeader(name, value);
+        }
+    }
+
+    private String getHeaderName(byte[] input, int start, int end) {
+        for (String name : KNOWN_HEADER_NAMES) {
+            if (AsciiBytes.equalsIgnoreCase(input, start, end, name)) {
+                return name;
+            }
+        }
+        return new String(input, start, end - start, CHARSET);
+    }
+
+    private boolean isNewLine(byte b) {
+        return b == '\r' || b == '\n';
+    }
+
+    /**
+     * Returns the position of the first non whitespace byte, equivalent of the \s regex class.
+     *
+     * @param input
+     * @param start
+     * @param end
+     * @return
+     */
+    private int skipWhitespace(byte[] input, int start, int end) {
+        while (start < end && (input[start] == ' ' || input[start] == '\t'
+                || input[start] == 0x0B || input[start] == '\f')) {
+            ++start;
+        }
+        return start;
+    }
+}
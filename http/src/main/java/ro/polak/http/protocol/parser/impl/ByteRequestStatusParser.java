@@ -0,0 +1,102 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.protocol.parser.impl;
+
+import java.nio.charset.Charset;
+
+import ro.polak.http.RequestStatus;
+import ro.polak.http.protocol.parser.ByteParser;
+import ro.polak.http.protocol.parser.MalformedInputException;
+
+/**
+ * Parses HTTP status line directly out of the raw bytes.
+ * <p/>
+ * Known methods and protocols are resolved to constants, only the URI and the query string
+ * are allocated.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class ByteRequestStatusParser implements ByteParser<RequestStatus> {
+
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+    private static final String[] METHODS = {
+            "GET",
+            "POST",
+            "HEAD",
+            "OPTIONS",
+            "PUT",
+            "DELETE",
+            "TRACE",
+            "CONNECT"
+    };
+    private static final String[] PROTOCOLS = {
+            "HTTP/1.1",
+            "HTTP/1.0"
+    };
+
+    @Override
+    public RequestStatus parse(String input) throws MalformedInputException {
+        byte[] bytes = input.getBytes(CHARSET);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public RequestStatus parse(byte[] input, int offset, int length) throws MalformedInputException {
+        int end = offset + length;
+        int methodEnd = AsciiBytes.indexOf(input, offset, end, (byte) ' ');
+        int uriEnd = methodEnd == -1 ? -1 : AsciiBytes.indexOf(input, methodEnd + 1, end, (byte) ' ');
+
+        if (uriEnd == -1) {
+            throw new MalformedInputException("Input status string should be composed out of 3 chunks. Received "
+                    + new String(input, offset, length, CHARSET));
+        }
+
+        RequestStatus status = new RequestStatus();
+        status.setMethod(getMethod(input, offset, methodEnd));
+        status.setProtocol(getProtocol(input, uriEnd + 1, end));
+
+        int uriStart = methodEnd + 1;
+        int questionMarkPosition = AsciiBytes.indexOf(input, uriStart, uriEnd, (byte) '?');
+        if (questionMarkPosition == -1) {
+            status.setUri(new String(input, uriStart, uriEnd - uriStart, CHARSET));
+            status.setQueryString("");
+        } else {
+            status.setUri(new String(input, uriStart, questionMarkPosition - uriStart, CHARSET));
+            status.setQueryString(new String(input, questionMarkPosition + 1, uriEnd - questionMarkPosition - 1, CHARSET));
+        }
+
+        return status;
+    }
+
+    private String getMethod(byte[] input, int start, int end) {
+        for (String method : METHODS) {
+            if (AsciiBytes.equalsIgnoreCase(input, start, end, method)) {
+                return method;
+            }
+        }
+        return new String(input, start, end - start, CHARSET).toUpperCase();
+    }
+
+    private String getProtocol(byte[] input, int start, int end) {
+        // Equivalent of String.trim()
+        while (start < end && (input[start] & 0xFF) <= ' ') {
+            ++start;
+        }
+        while (end > start && (input[end - 1] & 0xFF) <= ' ') {
+            --end;
+        }
+
+        for (String protocol : PROTOCOLS) {
+            if (AsciiBytes.equals(input, start, end, protocol)) {
+                return protocol;
+            }
+        }
+        return new String(input, start, end - start, CHARSET);
+    }
+}
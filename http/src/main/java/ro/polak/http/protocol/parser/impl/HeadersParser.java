@@ -39,14 +39,12 @@ public class HeadersParser implements Parser<Headers> {
      * Parses message headers.
      *
      * @param headersString
-     * @param joinRepeatingHeaders
+     * @param keepRepeatingHeaders whether a repeated header is added as another value instead of
+     *                             replacing the previous one
      * @return
      * @throws MalformedInputException
      */
-    public Headers parse(String headersString, boolean joinRepeatingHeaders) throws MalformedInputException {
-
-        // TODO joinRepeatingHeaders should be replaced by MultiValuedMap
-
+    public Headers parse(String headersString, boolean keepRepeatingHeaders) throws MalformedInputException {
         Headers headers = new Headers();
 
         // Mandatory \r https://www.w3.org/Protocols/rfc2616/rfc2616-sec2.html#sec2.2
@@ -64,32 +62,39 @@ public class HeadersParser implements Parser<Headers> {
                 if (null != lastHeaderName) {
                     lastHeaderValue.append(" ");
                     lastHeaderValue.append(ltrim(line));
-                    headers.setHeader(lastHeaderName, lastHeaderValue.toString()); // Overwrite the previous value
                 }
             } else {
-                // Cleans up the previous value
-                lastHeaderValue.setLength(0);
-
                 String headerLineValues[] = line.split(":", 2);
 
                 if (headerLineValues.length < 2) {
                     continue;
                 }
 
-                lastHeaderName = headerLineValues[0];
-
-                if (joinRepeatingHeaders && headers.containsHeader(lastHeaderName)) {
-                    lastHeaderValue.append(headers.getHeader(lastHeaderName)).append(',');
-                }
+                // The value of the previous header is complete once the next header starts
+                putHeader(headers, lastHeaderName, lastHeaderValue, keepRepeatingHeaders);
 
-                lastHeaderValue.append(ltrim(headerLineValues[1].substring(0, headerLineValues[1].length())));
-                headers.setHeader(lastHeaderName, lastHeaderValue.toString());
+                lastHeaderName = headerLineValues[0];
+                lastHeaderValue.setLength(0);
+                lastHeaderValue.append(ltrim(headerLineValues[1]));
             }
         }
+        putHeader(headers, lastHeaderName, lastHeaderValue, keepRepeatingHeaders);
 
         return headers;
     }
 
+    private void putHeader(Headers headers, String name, StringBuilder value, boolean keepRepeatingHeaders) {
+        if (name == null) {
+            return;
+        }
+
+        if (keepRepeatingHeaders) {
+            headers.addHeader(name, value.toString());
+        } else {
+            headers.setHeader(name, value.toString());
+        }
+    }
+
     /**
      * Left trims the given string.
      *
@@ -15,6 +15,9 @@ import ro.polak.http.servlet.Range;
 
 /**
  * Parses range headers.
+ * <p/>
+ * Suffix (bytes=-500) and open-ended (bytes=500-) ranges have the missing position set to
+ * {@link Range#UNSPECIFIED}, these are to be resolved against the resource length.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 201702
@@ -34,27 +37,28 @@ public class RangeParser implements Parser<List<Range>> {
 
         String[] rangesString = inputNormalized.substring(START_WORD.length()).split(",");
         for (String rangeString : rangesString) {
-            if (rangeString.indexOf("-") == -1) {
+            int dashPosition = rangeString.indexOf("-");
+            if (dashPosition == -1) {
                 throw new MalformedInputException("Invalid range value " + rangeString);
             }
 
-            String[] values = rangeString.split("-");
-
-            if (values.length != 2) {
+            String fromString = rangeString.substring(0, dashPosition).trim();
+            String toString = rangeString.substring(dashPosition + 1).trim();
+            if (fromString.isEmpty() && toString.isEmpty()) {
                 throw new MalformedInputException("Invalid range value " + rangeString);
             }
 
-            rangeList.add(getRange(values));
+            rangeList.add(getRange(fromString, toString));
         }
 
         return rangeList;
     }
 
-    private Range getRange(String[] values) throws MalformedInputException {
+    private Range getRange(String fromString, String toString) throws MalformedInputException {
         try {
             Range range = new Range();
-            range.setFrom(Long.parseLong(values[0].trim()));
-            range.setTo(Long.parseLong(values[1].trim()));
+            range.setFrom(fromString.isEmpty() ? Range.UNSPECIFIED : parsePosition(fromString));
+            range.setTo(toString.isEmpty() ? Range.UNSPECIFIED : parsePosition(toString));
 
             return range;
 
@@ -62,4 +66,12 @@ public class RangeParser implements Parser<List<Range>> {
             throw new MalformedInputException("Invalid range value, unable to parse numeric values " + e.getMessage());
         }
     }
+
+    private long parsePosition(String value) throws MalformedInputException {
+        long position = Long.parseLong(value);
+        if (position < 0) {
+            throw new MalformedInputException("Invalid range value, negative position " + value);
+        }
+        return position;
+    }
 }
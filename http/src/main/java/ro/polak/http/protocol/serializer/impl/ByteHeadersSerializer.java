@@ -0,0 +1,219 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.protocol.serializer.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import ro.polak.http.Headers;
+import ro.polak.http.servlet.HttpServletResponse;
+
+/**
+ * Serializes the status line and the headers of a response directly into bytes.
+ * <p/>
+ * The bytes are written into a buffer reused by the calling thread, the byte forms of the
+ * common status lines and header names are computed once.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class ByteHeadersSerializer {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final byte[] NEW_LINE = "\r\n".getBytes(CHARSET);
+    private static final byte[] KEY_VALUE_SEPARATOR = ": ".getBytes(CHARSET);
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final char MAX_ASCII_CHAR = 0x7F;
+
+    private static final String[] STATUS_LINES = {
+            HttpServletResponse.STATUS_OK,
+            HttpServletResponse.STATUS_PARTIAL_CONTENT,
+            HttpServletResponse.STATUS_MOVED_PERMANENTLY,
+            HttpServletResponse.STATUS_NOT_MODIFIED,
+            HttpServletResponse.STATUS_BAD_REQUEST,
+            HttpServletResponse.STATUS_ACCESS_DENIED,
+            HttpServletResponse.STATUS_NOT_FOUND,
+            HttpServletResponse.STATUS_METHOD_NOT_ALLOWED,
+            HttpServletResponse.STATUS_LENGTH_REQUIRED,
+            HttpServletResponse.REQUEST_ENTITY_TOO_LARGE,
+            HttpServletResponse.STATUS_URI_TOO_LONG,
+            HttpServletResponse.STATUS_RANGE_NOT_SATISFIABLE,
+            HttpServletResponse.STATUS_INTERNAL_SERVER_ERROR,
+            HttpServletResponse.STATUS_NOT_IMPLEMENTED,
+            HttpServletResponse.STATUS_SERVICE_UNAVAILABLE,
+            HttpServletResponse.HTTP_VERSION_NOT_SUPPORTED
+    };
+
+    private static final String[] HEADER_NAMES = {
+            Headers.HEADER_ALLOW,
+            Headers.HEADER_SERVER,
+            Headers.HEADER_CONTENT_DISPOSITION,
+            Headers.HEADER_LOCATION,
+            Headers.HEADER_CONTENT_LENGTH,
+            Headers.HEADER_CONTENT_TYPE,
+            Headers.HEADER_CONNECTION,
+            Headers.HEADER_SET_COOKIE,
+            Headers.HEADER_CACHE_CONTROL,
+            Headers.HEADER_PRAGMA,
+            Headers.HEADER_TRANSFER_ENCODING,
+            Headers.HEADER_ACCEPT_RANGES,
+            Headers.HEADER_CONTENT_RANGE,
+            Headers.HEADER_ETAG,
+            Headers.HEADER_LAST_MODIFIED,
+            Headers.HEADER_CONTENT_ENCODING,
+            Headers.HEADER_VARY
+    };
+
+    private static final Map<String, byte[]> CACHED_STATUS_LINES = new HashMap<>();
+    private static final Map<String, byte[]> CACHED_HEADER_NAMES = new HashMap<>();
+
+    static {
+        for (String statusLine : STATUS_LINES) {
+            CACHED_STATUS_LINES.put(statusLine, (statusLine + "\r\n").getBytes(CHARSET));
+        }
+        for (String name : HEADER_NAMES) {
+            CACHED_HEADER_NAMES.put(name, (name + ": ").getBytes(CHARSET));
+        }
+    }
+
+    private final ThreadLocal<Buffer> buffers = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer();
+        }
+    };
+
+    /**
+     * Serializes the status line followed by the headers and the empty line ending the head.
+     * <p/>
+     * The returned buffer belongs to the calling thread, it is valid until the next call made
+     * by the same thread.
+     *
+     * @param status
+     * @param headers
+     * @return
+     */
+    public Buffer serialize(String status, Headers headers) {
+        Buffer buffer = buffers.get();
+        buffer.reset();
+
+        byte[] statusLine = CACHED_STATUS_LINES.get(status);
+        if (statusLine != null) {
+            buffer.write(statusLine, 0, statusLine.length);
+        } else {
+            buffer.writeText(String.valueOf(status));
+            buffer.write(NEW_LINE, 0, NEW_LINE.length);
+        }
+
+        // Repeated headers are serialized as separate lines
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.getNameAt(i);
+            byte[] cachedName = CACHED_HEADER_NAMES.get(name);
+            if (cachedName != null) {
+                buffer.write(cachedName, 0, cachedName.length);
+            } else {
+                buffer.writeText(name);
+                buffer.write(KEY_VALUE_SEPARATOR, 0, KEY_VALUE_SEPARATOR.length);
+            }
+            buffer.writeText(String.valueOf(headers.getValueAt(i)));
+            buffer.write(NEW_LINE, 0, NEW_LINE.length);
+        }
+        buffer.write(NEW_LINE, 0, NEW_LINE.length);
+
+        return buffer;
+    }
+
+    /**
+     * Growable byte buffer holding a serialized head.
+     */
+    public static final class Buffer {
+
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int size;
+
+        private Buffer() {
+        }
+
+        /**
+         * Returns the underlying array, only the first size() bytes are valid.
+         *
+         * @return
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns the number of valid bytes.
+         *
+         * @return
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Appends the given bytes.
+         *
+         * @param b
+         * @param off
+         * @param len
+         */
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(size + len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+
+        /**
+         * Appends the remaining bytes of the given buffer.
+         *
+         * @param b
+         */
+        public void write(ByteBuffer b) {
+            int length = b.remaining();
+            ensureCapacity(size + length);
+            b.get(bytes, size, length);
+            size += length;
+        }
+
+        private void writeText(String text) {
+            int length = text.length();
+            ensureCapacity(size + length);
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c > MAX_ASCII_CHAR) {
+                    // Slow path for the rare non ASCII values
+                    byte[] encoded = text.substring(i).getBytes(CHARSET);
+                    write(encoded, 0, encoded.length);
+                    return;
+                }
+                bytes[size++] = (byte) c;
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                byte[] grown = new byte[Math.max(capacity, bytes.length * 2)];
+                System.arraycopy(bytes, 0, grown, 0, size);
+                bytes = grown;
+            }
+        }
+
+        private void reset() {
+            size = 0;
+            // Does not retain the memory of an exceptionally large head
+            if (bytes.length > MAX_RETAINED_CAPACITY) {
+                bytes = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+}
@@ -7,8 +7,6 @@
 
 package ro.polak.http.protocol.serializer.impl;
 
-import java.util.Set;
-
 import ro.polak.http.Headers;
 import ro.polak.http.protocol.serializer.Serializer;
 
@@ -30,12 +28,12 @@ public class HeadersSerializer implements Serializer<Headers> {
      */
     @Override
     public String serialize(Headers headers) {
-        Set<String> names = headers.keySet();
         StringBuilder sb = new StringBuilder();
-        for (String name : names) {
-            sb.append(name)
+        // Repeated headers are serialized as separate lines
+        for (int i = 0; i < headers.size(); i++) {
+            sb.append(headers.getNameAt(i))
                     .append(KEY_VALUE_SEPARATOR)
-                    .append(headers.getHeader(name))
+                    .append(headers.getValueAt(i))
                     .append(NEW_LINE);
         }
         sb.append(NEW_LINE);
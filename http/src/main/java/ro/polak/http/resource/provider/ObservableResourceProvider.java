@@ -0,0 +1,24 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.resource.provider;
+
+/**
+ * Resource provider signaling the changes of the resources it can load.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public interface ObservableResourceProvider extends ResourceProvider {
+
+    /**
+     * Registers a listener notified whenever the result of canLoad might have changed.
+     *
+     * @param resourceChangeListener
+     */
+    void addResourceChangeListener(ResourceChangeListener resourceChangeListener);
+}
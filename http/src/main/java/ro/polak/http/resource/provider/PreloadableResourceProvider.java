@@ -0,0 +1,32 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.resource.provider;
+
+import java.util.List;
+
+/**
+ * Resource provider able to prepare its resources before the server accepts the first request.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public interface PreloadableResourceProvider extends ResourceProvider {
+
+    /**
+     * Initializes the resources marked to be loaded on startup, blocks until done.
+     */
+    void preload();
+
+    /**
+     * Returns the request paths of the preloaded resources that can be requested in order to
+     * warm the server up.
+     *
+     * @return
+     */
+    List<String> getWarmUpPaths();
+}
@@ -0,0 +1,26 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.resource.provider;
+
+/**
+ * Listener notified when the set of resources a provider can load might have changed.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public interface ResourceChangeListener {
+
+    /**
+     * Called once the resources of the given provider might have changed.
+     *
+     * @param resourceProvider
+     * @param path             path of the changed resource or directory, null when any resource
+     *                         of the provider might have changed
+     */
+    void onResourcesChanged(ResourceProvider resourceProvider, String path);
+}
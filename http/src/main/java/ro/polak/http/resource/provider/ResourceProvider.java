@@ -38,4 +38,15 @@ public interface ResourceProvider {
      * @throws IOException
      */
     void load(String path, HttpRequestImpl request, HttpResponseImpl response) throws IOException;
+
+    /**
+     * Starts the background work of the provider, called once the server starts.
+     */
+    void start();
+
+    /**
+     * Stops the background work and releases the resources held by the provider, called once
+     * the server stops.
+     */
+    void shutdown();
 }
@@ -0,0 +1,203 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.resource.provider;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ro.polak.http.PathHelper;
+import ro.polak.http.utilities.DateProvider;
+import ro.polak.http.utilities.ExpiringCache;
+
+/**
+ * Resolves the resource provider and the directory index serving a request path.
+ * <p/>
+ * The providers are asked in order, the directory index names are tried only when no provider
+ * can load the path itself. Resolutions, including the paths that can not be resolved, are kept
+ * in a bounded cache for the given time to live, the lookups take no lock. Once an observable
+ * provider signals a change, only the resolutions that the changed path might affect are removed.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class ResourceResolver implements ResourceChangeListener {
+
+    private static final Resolution UNRESOLVED = new Resolution(null, null, false);
+
+    private final List<ResourceProvider> resourceProviders;
+    private final List<String> directoryIndex;
+    private final PathHelper pathHelper;
+    private final DateProvider dateProvider;
+    private final long timeToLive;
+    private final ExpiringCache<String, Resolution> cache;
+
+    /**
+     * Default constructor.
+     *
+     * @param resourceProviders
+     * @param directoryIndex
+     * @param pathHelper
+     * @param dateProvider
+     * @param maxSize           maximum number of cached paths
+     * @param timeToLive        time to live of a resolution in milliseconds
+     */
+    public ResourceResolver(final List<ResourceProvider> resourceProviders,
+                            final List<String> directoryIndex,
+                            final PathHelper pathHelper,
+                            final DateProvider dateProvider,
+                            final int maxSize,
+                            final long timeToLive) {
+        this.resourceProviders = new ArrayList<>(resourceProviders);
+        this.directoryIndex = new ArrayList<>(directoryIndex);
+        this.pathHelper = pathHelper;
+        this.dateProvider = dateProvider;
+        this.timeToLive = timeToLive;
+        cache = new ExpiringCache<>(maxSize);
+
+        for (ResourceProvider resourceProvider : this.resourceProviders) {
+            if (resourceProvider instanceof ObservableResourceProvider) {
+                ((ObservableResourceProvider) resourceProvider).addResourceChangeListener(this);
+            }
+        }
+    }
+
+    /**
+     * Returns the resolution of the path, null when no provider can serve it.
+     *
+     * @param path
+     * @return
+     */
+    public Resolution resolve(String path) {
+        long now = dateProvider.currentTimeMillis();
+        Resolution resolution = cache.get(path, now);
+        if (resolution == null) {
+            long readGeneration = cache.getGeneration();
+            resolution = doResolve(path);
+            cache.put(path, resolution, now, timeToLive, readGeneration);
+        }
+        return resolution == UNRESOLVED ? null : resolution;
+    }
+
+    /**
+     * Removes all the cached resolutions.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Removes the cached resolutions the change of the given path might affect: the resolutions
+     * of the path and of the paths below it, the resolutions loading such a path and
+     * the resolutions of the parent directory, as the path might be its directory index.
+     *
+     * @param path
+     */
+    public void invalidate(final String path) {
+        final String childrenPrefix = pathHelper.getNormalizedDirectoryPath(path);
+        final String parentDirectoryPath = path.substring(0, path.lastIndexOf('/') + 1);
+
+        cache.invalidate(new ExpiringCache.EntryFilter<String, Resolution>() {
+            @Override
+            public boolean accept(String cachedPath, Resolution resolution) {
+                return isAffected(cachedPath, path, childrenPrefix)
+                        || (resolution != UNRESOLVED && isAffected(resolution.getPath(), path, childrenPrefix))
+                        || pathHelper.getNormalizedDirectoryPath(cachedPath).equals(parentDirectoryPath);
+            }
+        });
+    }
+
+    @Override
+    public void onResourcesChanged(ResourceProvider resourceProvider, String path) {
+        if (path == null) {
+            invalidateAll();
+        } else {
+            invalidate(path);
+        }
+    }
+
+    /**
+     * Returns the number of cached paths.
+     *
+     * @return
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    private boolean isAffected(String cachedPath, String path, String childrenPrefix) {
+        return cachedPath.equals(path) || cachedPath.startsWith(childrenPrefix);
+    }
+
+    private Resolution doResolve(String path) {
+        ResourceProvider resourceProvider = getResourceProvider(path);
+        if (resourceProvider != null) {
+            return new Resolution(resourceProvider, path, false);
+        }
+
+        String normalizedDirectoryPath = pathHelper.getNormalizedDirectoryPath(path);
+        for (String index : directoryIndex) {
+            String directoryIndexPath = normalizedDirectoryPath + index;
+            resourceProvider = getResourceProvider(directoryIndexPath);
+            if (resourceProvider != null) {
+                return new Resolution(resourceProvider, directoryIndexPath, true);
+            }
+        }
+        return UNRESOLVED;
+    }
+
+    private ResourceProvider getResourceProvider(String path) {
+        for (ResourceProvider resourceProvider : resourceProviders) {
+            if (resourceProvider.canLoad(path)) {
+                return resourceProvider;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resource provider along with the path it is to load.
+     */
+    public static final class Resolution {
+        private final ResourceProvider resourceProvider;
+        private final String path;
+        private final boolean directoryIndex;
+
+        Resolution(ResourceProvider resourceProvider, String path, boolean directoryIndex) {
+            this.resourceProvider = resourceProvider;
+            this.path = path;
+            this.directoryIndex = directoryIndex;
+        }
+
+        /**
+         * Returns the provider able to load the path.
+         *
+         * @return
+         */
+        public ResourceProvider getResourceProvider() {
+            return resourceProvider;
+        }
+
+        /**
+         * Returns the path to be loaded, either the requested path or the directory index path.
+         *
+         * @return
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Tells whether the path is the directory index of the requested path.
+         *
+         * @return
+         */
+        public boolean isDirectoryIndex() {
+            return directoryIndex;
+        }
+    }
+}
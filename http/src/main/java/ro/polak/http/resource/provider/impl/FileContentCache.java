@@ -0,0 +1,195 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.resource.provider.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ro.polak.http.utilities.IOUtilities;
+
+/**
+ * Off-heap cache of small static file bodies.
+ * <p/>
+ * The contents are held in direct buffers within a global byte budget, the least recently used
+ * entries are evicted first. An entry is reloaded once the file modification time or length
+ * reported by the file metadata differs from the cached one.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class FileContentCache {
+
+    private final long maxSize;
+    private final int maxFileSize;
+    private final Map<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Default constructor.
+     *
+     * @param maxSize     total size in bytes of the cached contents, 0 disables the cache
+     * @param maxFileSize max size in bytes of a cached file
+     */
+    public FileContentCache(final long maxSize, final int maxFileSize) {
+        this.maxSize = maxSize;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Returns the contents of the file, null when the file is not to be cached.
+     * <p/>
+     * Every call returns an independent read-only view of the cached buffer.
+     *
+     * @param file
+     * @param fileMetadata current metadata of the file
+     * @return
+     * @throws IOException
+     */
+    public ByteBuffer get(File file, FileMetadata fileMetadata) throws IOException {
+        if (!isCacheable(fileMetadata)) {
+            return null;
+        }
+
+        String key = file.getAbsolutePath();
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry != null && entry.isValid(fileMetadata)) {
+                ++hitCount;
+                return entry.contents.duplicate();
+            }
+            ++missCount;
+        }
+
+        ByteBuffer contents = read(file, fileMetadata.getLength());
+        if (contents == null) {
+            return null;
+        }
+
+        synchronized (cache) {
+            Entry previous = cache.put(key, new Entry(contents, fileMetadata.getLastModified()));
+            if (previous != null) {
+                size -= previous.contents.capacity();
+            }
+            size += contents.capacity();
+            evict();
+        }
+        return contents.duplicate();
+    }
+
+    /**
+     * Returns the number of requests served from the cache.
+     *
+     * @return
+     */
+    public long getHitCount() {
+        synchronized (cache) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * Returns the number of requests for cacheable files that were not found in the cache.
+     *
+     * @return
+     */
+    public long getMissCount() {
+        synchronized (cache) {
+            return missCount;
+        }
+    }
+
+    /**
+     * Returns the number of entries evicted in order to fit within the budget.
+     *
+     * @return
+     */
+    public long getEvictionCount() {
+        synchronized (cache) {
+            return evictionCount;
+        }
+    }
+
+    /**
+     * Returns the total size in bytes of the cached contents.
+     *
+     * @return
+     */
+    public long getSize() {
+        synchronized (cache) {
+            return size;
+        }
+    }
+
+    private boolean isCacheable(FileMetadata fileMetadata) {
+        return fileMetadata.isFile()
+                && fileMetadata.getLength() <= maxFileSize
+                && fileMetadata.getLength() <= maxSize;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = cache.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().contents.capacity();
+            iterator.remove();
+            ++evictionCount;
+        }
+    }
+
+    /**
+     * Reads the file into a direct buffer.
+     *
+     * @param file
+     * @param length expected length
+     * @return null when the file length differs from the expected one
+     * @throws IOException
+     */
+    private ByteBuffer read(File file, long length) throws IOException {
+        ByteBuffer contents = ByteBuffer.allocateDirect((int) length);
+        FileInputStream fileInputStream = new FileInputStream(file);
+        try {
+            FileChannel fileChannel = fileInputStream.getChannel();
+            if (fileChannel.size() != length) {
+                return null;
+            }
+            while (contents.hasRemaining()) {
+                if (fileChannel.read(contents) == -1) {
+                    return null;
+                }
+            }
+        } finally {
+            IOUtilities.closeSilently(fileInputStream);
+        }
+
+        contents.flip();
+        return contents.asReadOnlyBuffer();
+    }
+
+    private static class Entry {
+        private final ByteBuffer contents;
+        private final long lastModified;
+
+        Entry(ByteBuffer contents, long lastModified) {
+            this.contents = contents;
+            this.lastModified = lastModified;
+        }
+
+        boolean isValid(FileMetadata fileMetadata) {
+            return lastModified == fileMetadata.getLastModified()
+                    && contents.capacity() == fileMetadata.getLength();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.resource.provider.impl;
+
+import java.util.Date;
+
+import ro.polak.http.utilities.DateUtilities;
+
+/**
+ * Metadata of a static file together with the header values derived from it.
+ * <p/>
+ * Metadata of a missing file is kept as well so that repeated requests for the file do not hit
+ * the file system.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class FileMetadata {
+
+    private final boolean isFile;
+    private final long length;
+    private final long lastModified;
+    private final String contentType;
+    private final String contentLengthValue;
+    private final String eTag;
+    private final String lastModifiedValue;
+
+    /**
+     * Default constructor.
+     *
+     * @param isFile       whether the path denotes an existing regular file
+     * @param length
+     * @param lastModified last modification time in milliseconds
+     * @param contentType
+     */
+    public FileMetadata(final boolean isFile, final long length, final long lastModified,
+                        final String contentType) {
+        this.isFile = isFile;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+
+        if (isFile) {
+            contentLengthValue = Long.toString(length);
+            eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+            lastModifiedValue = DateUtilities.dateFormat(new Date(lastModified));
+        } else {
+            contentLengthValue = null;
+            eTag = null;
+            lastModifiedValue = null;
+        }
+    }
+
+    /**
+     * Tells whether the path denotes an existing regular file.
+     *
+     * @return
+     */
+    public boolean isFile() {
+        return isFile;
+    }
+
+    /**
+     * Returns the file length in bytes.
+     *
+     * @return
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the last modification time in milliseconds.
+     *
+     * @return
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the MIME type of the file.
+     *
+     * @return
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Returns the file length formatted as the Content-Length header value.
+     *
+     * @return
+     */
+    public String getContentLengthValue() {
+        return contentLengthValue;
+    }
+
+    /**
+     * Returns the strong entity tag of the file.
+     *
+     * @return
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Returns the last modification time formatted as a HTTP date.
+     *
+     * @return
+     */
+    public String getLastModifiedValue() {
+        return lastModifiedValue;
+    }
+}
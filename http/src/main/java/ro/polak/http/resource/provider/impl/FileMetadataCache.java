@@ -0,0 +1,227 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.resource.provider.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ro.polak.http.MimeTypeMapping;
+import ro.polak.http.utilities.DateProvider;
+import ro.polak.http.utilities.ExpiringCache;
+import ro.polak.http.utilities.FileUtilities;
+
+/**
+ * Bounded cache of static file metadata keyed by the normalized absolute file path.
+ * <p/>
+ * Entries expire after the given time to live and the lookups take no lock, the expired entries
+ * and then arbitrary entries are evicted once the cache is full. Missing files are cached as well.
+ * When the runtime provides a watch service, the entries of a watched directory tree are
+ * invalidated as soon as the files change and the time to live only acts as a fallback. Registered listeners are notified of every invalidation.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class FileMetadataCache {
+
+    private static final Logger LOGGER = Logger.getLogger(FileMetadataCache.class.getName());
+    private static final String WATCH_SERVICE_CLASS_NAME = "java.nio.file.WatchService";
+
+    private final DateProvider dateProvider;
+    private final MimeTypeMapping mimeTypeMapping;
+    private final ExpiringCache<String, FileMetadata> cache;
+    private final List<InvalidationListener> invalidationListeners = new CopyOnWriteArrayList<>();
+    private final long unwatchedTimeToLive;
+    private final long watchedTimeToLive;
+    private volatile long timeToLive;
+    private FileMetadataWatcher watcher;
+
+    /**
+     * Creates a cache whose entries live for the same time whether watched or not.
+     *
+     * @param dateProvider
+     * @param mimeTypeMapping
+     * @param maxSize         maximum number of cached entries
+     * @param timeToLive      time to live of an entry in milliseconds
+     */
+    public FileMetadataCache(final DateProvider dateProvider, final MimeTypeMapping mimeTypeMapping,
+                             final int maxSize, final long timeToLive) {
+        this(dateProvider, mimeTypeMapping, maxSize, timeToLive, timeToLive);
+    }
+
+    /**
+     * Default constructor.
+     *
+     * @param dateProvider
+     * @param mimeTypeMapping
+     * @param maxSize           maximum number of cached entries
+     * @param timeToLive        time to live of an entry in milliseconds
+     * @param watchedTimeToLive time to live of an entry in milliseconds while the files are watched
+     */
+    public FileMetadataCache(final DateProvider dateProvider, final MimeTypeMapping mimeTypeMapping,
+                             final int maxSize, final long timeToLive, final long watchedTimeToLive) {
+        this.dateProvider = dateProvider;
+        this.mimeTypeMapping = mimeTypeMapping;
+        this.unwatchedTimeToLive = timeToLive;
+        this.watchedTimeToLive = watchedTimeToLive;
+        this.timeToLive = timeToLive;
+        cache = new ExpiringCache<>(maxSize);
+    }
+
+    /**
+     * Returns the metadata of the file.
+     *
+     * @param file
+     * @return
+     */
+    public FileMetadata get(File file) {
+        String key = getKey(file);
+        long now = dateProvider.currentTimeMillis();
+        FileMetadata fileMetadata = cache.get(key, now);
+        if (fileMetadata == null) {
+            long readGeneration = cache.getGeneration();
+            fileMetadata = read(file);
+            cache.put(key, fileMetadata, now, timeToLive, readGeneration);
+        }
+        return fileMetadata;
+    }
+
+    /**
+     * Removes the entry of the file and the entries of all the files below it.
+     *
+     * @param file
+     */
+    public void invalidate(File file) {
+        final String key = getKey(file);
+        final String childrenPrefix = key + File.separator;
+
+        cache.invalidate(new ExpiringCache.EntryFilter<String, FileMetadata>() {
+            @Override
+            public boolean accept(String cachedKey, FileMetadata fileMetadata) {
+                return cachedKey.equals(key) || cachedKey.startsWith(childrenPrefix);
+            }
+        });
+        notifyInvalidated(new File(key));
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        notifyInvalidated(null);
+    }
+
+    /**
+     * Registers a listener notified after every invalidation.
+     *
+     * @param invalidationListener
+     */
+    public void addInvalidationListener(InvalidationListener invalidationListener) {
+        invalidationListeners.add(invalidationListener);
+    }
+
+    /**
+     * Starts watching the directory tree for changes, the entries live for the watched time
+     * to live from then on. Does nothing when the runtime provides no watch service.
+     *
+     * @param directory
+     * @return true when the directory is watched
+     */
+    public synchronized boolean watch(File directory) {
+        if (watcher != null || !isWatchServiceSupported() || !directory.isDirectory()) {
+            return false;
+        }
+
+        try {
+            watcher = new FileMetadataWatcher(this, directory);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to watch " + directory.getPath(), e);
+            return false;
+        }
+
+        watcher.start();
+        invalidateAll();
+        timeToLive = watchedTimeToLive;
+        return true;
+    }
+
+    /**
+     * Stops watching the directory tree, the entries no longer refreshed by the watcher
+     * are removed.
+     */
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+            timeToLive = unwatchedTimeToLive;
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Reads the metadata from the file system.
+     *
+     * @param file
+     * @return
+     */
+    protected FileMetadata read(File file) {
+        if (!file.isFile()) {
+            return new FileMetadata(false, 0, 0, null);
+        }
+
+        return new FileMetadata(true, file.length(), file.lastModified(),
+                mimeTypeMapping.getMimeTypeByExtension(FileUtilities.getExtension(file.getName())));
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    private void notifyInvalidated(File file) {
+        for (InvalidationListener invalidationListener : invalidationListeners) {
+            invalidationListener.onInvalidated(file);
+        }
+    }
+
+    private String getKey(File file) {
+        // Lexical normalization does not touch the file system, unlike the canonical path
+        return FileUtilities.getNormalizedPath(file.getAbsolutePath(), File.separatorChar);
+    }
+
+    private boolean isWatchServiceSupported() {
+        try {
+            Class.forName(WATCH_SERVICE_CLASS_NAME);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Listener notified once cached metadata got invalidated.
+     */
+    public interface InvalidationListener {
+
+        /**
+         * Called after the entries were removed.
+         *
+         * @param file the normalized file whose entry and the entries below it were removed,
+         *             null when all the entries were removed
+         */
+        void onInvalidated(File file);
+    }
+}
@@ -0,0 +1,131 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.resource.provider.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ro.polak.http.utilities.IOUtilities;
+
+/**
+ * Invalidates the metadata cache entries of a directory tree whenever its files change.
+ * <p/>
+ * Requires java.nio.file, the class must not be loaded on runtimes that do not provide it.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class FileMetadataWatcher implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(FileMetadataWatcher.class.getName());
+
+    private final FileMetadataCache fileMetadataCache;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * Default constructor, registers all the directories of the tree.
+     *
+     * @param fileMetadataCache
+     * @param directory
+     * @throws IOException
+     */
+    public FileMetadataWatcher(final FileMetadataCache fileMetadataCache, final File directory)
+            throws IOException {
+        this.fileMetadataCache = fileMetadataCache;
+        Path path = directory.toPath();
+        watchService = path.getFileSystem().newWatchService();
+        try {
+            registerTree(path);
+        } catch (IOException e) {
+            IOUtilities.closeSilently(watchService);
+            throw e;
+        }
+
+        thread = new Thread(this, "FileMetadataWatcher");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts processing the change events in a background thread.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops watching the tree.
+     */
+    public void close() {
+        IOUtilities.closeSilently(watchService);
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    handleEvent(directory, event);
+                }
+
+                if (!key.reset()) {
+                    fileMetadataCache.invalidate(directory.toFile());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    private void handleEvent(Path directory, WatchEvent<?> event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            // Some events were lost
+            fileMetadataCache.invalidateAll();
+            return;
+        }
+
+        Path path = directory.resolve((Path) event.context());
+        fileMetadataCache.invalidate(path.toFile());
+
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                registerTree(path);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to watch " + path, e);
+            }
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
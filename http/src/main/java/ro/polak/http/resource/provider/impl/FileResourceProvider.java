@@ -7,45 +7,63 @@
 
 package ro.polak.http.resource.provider.impl;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import ro.polak.http.Headers;
-import ro.polak.http.MimeTypeMapping;
 import ro.polak.http.exception.protocol.ProtocolException;
 import ro.polak.http.exception.protocol.RangeNotSatisfiableProtocolException;
 import ro.polak.http.protocol.parser.MalformedInputException;
+import ro.polak.http.protocol.parser.impl.AcceptEncodingParser;
 import ro.polak.http.protocol.parser.impl.RangeParser;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
-import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.provider.ObservableResourceProvider;
+import ro.polak.http.resource.provider.ResourceChangeListener;
 import ro.polak.http.servlet.impl.HttpRequestImpl;
 import ro.polak.http.servlet.impl.HttpResponseImpl;
 import ro.polak.http.servlet.HttpServletResponse;
 import ro.polak.http.servlet.Range;
 import ro.polak.http.servlet.helper.RangeHelper;
+import ro.polak.http.utilities.FileUtilities;
 import ro.polak.http.utilities.IOUtilities;
+import ro.polak.http.utilities.DateUtilities;
 import ro.polak.http.utilities.StringUtilities;
-import ro.polak.http.utilities.FileUtilities;
 
 /**
  * File system asset resource provider
  * <p/>
- * This provider loads the resources from the storage
+ * This provider loads the resources from the storage. The file metadata, including the missing
+ * files, is served from the metadata cache, its invalidations are signaled to the registered
+ * resource change listeners. Every response carries the ETag and Last-Modified validators,
+ * conditional requests are evaluated before the file is opened. Small files are served from the
+ * content cache.
+ * <p/>
+ * Clients accepting gzip are served the up to date file.ext.gz sidecar when it exists, the missing
+ * sidecars of the configured MIME types are generated in the background.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 201509
  */
-public class FileResourceProvider implements ResourceProvider {
+public class FileResourceProvider implements ObservableResourceProvider {
+
+    private static final int MAX_RANGES = 16;
+    private static final String ANY_ETAG = "*";
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final String ETAG_SEPARATOR = ",";
+    private static final String GZIP_CODING = "gzip";
 
     private final RangeParser rangeParser;
     private final RangeHelper rangeHelper;
     private final RangePartHeaderSerializer rangePartHeaderSerializer;
-
-    private final MimeTypeMapping mimeTypeMapping;
+    private final AcceptEncodingParser acceptEncodingParser;
+    private final FileMetadataCache fileMetadataCache;
+    private final FileContentCache fileContentCache;
+    private final PrecompressedFileGenerator precompressedFileGenerator;
     private final String basePath;
 
     /**
@@ -53,81 +71,262 @@ public class FileResourceProvider implements ResourceProvider {
      * @param rangeParser
      * @param rangeHelper
      * @param rangePartHeaderSerializer
-     * @param mimeTypeMapping
+     * @param acceptEncodingParser
+     * @param fileMetadataCache
+     * @param fileContentCache
+     * @param precompressedFileGenerator
      * @param basePath
      */
     public FileResourceProvider(final RangeParser rangeParser,
                                 final RangeHelper rangeHelper,
                                 final RangePartHeaderSerializer rangePartHeaderSerializer,
-                                final MimeTypeMapping mimeTypeMapping,
+                                final AcceptEncodingParser acceptEncodingParser,
+                                final FileMetadataCache fileMetadataCache,
+                                final FileContentCache fileContentCache,
+                                final PrecompressedFileGenerator precompressedFileGenerator,
                                 final String basePath) {
         this.rangeParser = rangeParser;
         this.rangeHelper = rangeHelper;
         this.rangePartHeaderSerializer = rangePartHeaderSerializer;
-        this.mimeTypeMapping = mimeTypeMapping;
+        this.acceptEncodingParser = acceptEncodingParser;
+        this.fileMetadataCache = fileMetadataCache;
+        this.fileContentCache = fileContentCache;
+        this.precompressedFileGenerator = precompressedFileGenerator;
         this.basePath = basePath;
     }
 
+    @Override
+    public void addResourceChangeListener(final ResourceChangeListener resourceChangeListener) {
+        final String normalizedBasePath = FileUtilities.getNormalizedPath(new File(basePath).getAbsolutePath(),
+                File.separatorChar);
+        fileMetadataCache.addInvalidationListener(new FileMetadataCache.InvalidationListener() {
+            @Override
+            public void onInvalidated(File file) {
+                if (file == null || file.getPath().equals(normalizedBasePath)) {
+                    resourceChangeListener.onResourcesChanged(FileResourceProvider.this, null);
+                    return;
+                }
+
+                // Files outside of the base path are not served by this provider
+                String path = getPath(normalizedBasePath, file);
+                if (path != null) {
+                    resourceChangeListener.onResourcesChanged(FileResourceProvider.this, path);
+                }
+            }
+        });
+    }
+
     @Override
     public boolean canLoad(String path) {
-        File file = getFile(path);
-        return file.exists() && file.isFile();
+        return fileMetadataCache.get(getFile(path)).isFile();
+    }
+
+    @Override
+    public void start() {
+        fileMetadataCache.watch(new File(basePath));
+    }
+
+    @Override
+    public void shutdown() {
+        fileMetadataCache.stopWatching();
+        precompressedFileGenerator.shutdown();
     }
 
     @Override
     public void load(String path, HttpRequestImpl request, HttpResponseImpl response) throws IOException {
         File file = getFile(path);
+        FileMetadata fileMetadata = fileMetadataCache.get(file);
+        String contentType = fileMetadata.getContentType();
+
+        File sidecar = PrecompressedFileGenerator.getSidecar(file);
+        FileMetadata sidecarMetadata = fileMetadataCache.get(sidecar);
+        if (sidecarMetadata.isFile() && sidecarMetadata.getLastModified() >= fileMetadata.getLastModified()) {
+            response.getHeaders().setHeader(Headers.HEADER_VARY, Headers.HEADER_ACCEPT_ENCODING);
+            if (isGzipAccepted(request)) {
+                response.getHeaders().setHeader(Headers.HEADER_CONTENT_ENCODING, GZIP_CODING);
+                file = sidecar;
+                fileMetadata = sidecarMetadata;
+            }
+        } else {
+            precompressedFileGenerator.generate(file, fileMetadata);
+        }
+
+        response.getHeaders().setHeader(Headers.HEADER_ETAG, fileMetadata.getETag());
+        response.getHeaders().setHeader(Headers.HEADER_LAST_MODIFIED, fileMetadata.getLastModifiedValue());
 
-        // A server MUST ignore a Range header field received with a request method other than GET.
         boolean isGetRequest = request.getMethod().equals(HttpRequestImpl.METHOD_GET);
-        boolean isPartialRequest = isGetRequest && request.getHeaders().containsHeader(Headers.HEADER_RANGE);
+        boolean isHeadRequest = request.getMethod().equals(HttpRequestImpl.METHOD_HEAD);
+
+        if ((isGetRequest || isHeadRequest) && isNotModified(request, fileMetadata)) {
+            loadNotModified(response);
+            return;
+        }
+
+        // A server MUST ignore a Range header field received with a request method other than GET.
+        boolean isPartialRequest = isGetRequest && request.getHeaders().containsHeader(Headers.HEADER_RANGE)
+                && isRangeApplicable(request, fileMetadata);
 
         if (isPartialRequest) {
-            loadPartialContent(request, response, file);
+            loadPartialContent(request, response, file, fileMetadata, contentType);
         } else {
-            loadCompleteContent(request, response, file);
+            loadCompleteContent(request, response, file, fileMetadata, contentType);
+        }
+    }
+
+    private boolean isGzipAccepted(HttpRequestImpl request) {
+        String acceptEncoding = request.getHeader(Headers.HEADER_ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        try {
+            return AcceptEncodingParser.isAccepted(acceptEncodingParser.parse(acceptEncoding), GZIP_CODING);
+        } catch (MalformedInputException e) {
+            // The identity coding is always acceptable
+            return false;
+        }
+    }
+
+    /**
+     * Evaluates If-None-Match or, in its absence, If-Modified-Since.
+     *
+     * @param request
+     * @param fileMetadata
+     * @return
+     */
+    private boolean isNotModified(HttpRequestImpl request, FileMetadata fileMetadata) {
+        String ifNoneMatch = request.getHeader(Headers.HEADER_IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return isETagMatching(ifNoneMatch, fileMetadata.getETag());
+        }
+
+        Date ifModifiedSince = DateUtilities.parse(request.getHeader(Headers.HEADER_IF_MODIFIED_SINCE));
+        return ifModifiedSince != null
+                && toSeconds(fileMetadata.getLastModified()) <= toSeconds(ifModifiedSince.getTime());
+    }
+
+    /**
+     * Weak comparison of the entity tags listed in the header against the file entity tag.
+     *
+     * @param headerValue
+     * @param eTag
+     * @return
+     */
+    private boolean isETagMatching(String headerValue, String eTag) {
+        for (String value : headerValue.split(ETAG_SEPARATOR)) {
+            String requestedETag = value.trim();
+            if (requestedETag.equals(ANY_ETAG)) {
+                return true;
+            }
+            if (requestedETag.startsWith(WEAK_ETAG_PREFIX)) {
+                requestedETag = requestedETag.substring(WEAK_ETAG_PREFIX.length());
+            }
+            if (requestedETag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether the range can be served, the complete content is served when the If-Range
+     * validator does not match the current representation.
+     *
+     * @param request
+     * @param fileMetadata
+     * @return
+     */
+    private boolean isRangeApplicable(HttpRequestImpl request, FileMetadata fileMetadata) {
+        String ifRange = request.getHeader(Headers.HEADER_IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+
+        String validator = ifRange.trim();
+        if (validator.startsWith("\"") || validator.startsWith(WEAK_ETAG_PREFIX)) {
+            // Strong comparison, a weak entity tag never matches
+            return validator.equals(fileMetadata.getETag());
         }
+
+        Date date = DateUtilities.parse(validator);
+        return date != null && toSeconds(date.getTime()) == toSeconds(fileMetadata.getLastModified());
+    }
+
+    private long toSeconds(long milliseconds) {
+        return milliseconds / 1000;
+    }
+
+    private void loadNotModified(HttpResponseImpl response) throws IOException {
+        response.setStatus(HttpServletResponse.STATUS_NOT_MODIFIED);
+        response.flushHeaders();
+        response.flush();
+    }
+
+    /**
+     * Returns the request path of the file, null when the file is outside of the base path.
+     *
+     * @param normalizedBasePath
+     * @param file
+     * @return
+     */
+    private String getPath(String normalizedBasePath, File file) {
+        String filePath = file.getPath();
+        if (!filePath.startsWith(normalizedBasePath + File.separator)) {
+            return null;
+        }
+        return filePath.substring(normalizedBasePath.length()).replace(File.separatorChar, '/');
     }
 
     private File getFile(String uri) {
         return new File(basePath + uri);
     }
 
-    private void loadCompleteContent(HttpRequestImpl request, HttpResponseImpl response, File file) throws IOException {
-        response.setContentType(mimeTypeMapping.getMimeTypeByExtension(FileUtilities.getExtension(file.getName())));
+    private void loadCompleteContent(HttpRequestImpl request, HttpResponseImpl response, File file,
+                                     FileMetadata fileMetadata, String contentType) throws IOException {
+        long length = fileMetadata.getLength();
+        response.setContentType(contentType);
         response.setStatus(HttpServletResponse.STATUS_OK);
-        response.setContentLength(file.length());
+        response.getHeaders().setHeader(Headers.HEADER_CONTENT_LENGTH, fileMetadata.getContentLengthValue());
         response.getHeaders().setHeader(Headers.HEADER_ACCEPT_RANGES, "bytes");
-        response.flushHeaders();
 
-        if (!request.getMethod().equals(HttpRequestImpl.METHOD_HEAD)) {
-            InputStream fileInputStream = new FileInputStream(file);
-            try {
-                response.serveStream(fileInputStream);
-            } finally {
-                IOUtilities.closeSilently(fileInputStream);
+        if (request.getMethod().equals(HttpRequestImpl.METHOD_HEAD)) {
+            response.flushHeaders();
+        } else {
+            ByteBuffer contents = fileContentCache.get(file, fileMetadata);
+            if (contents != null) {
+                response.flushHeaders(contents);
+            } else {
+                response.flushHeaders();
+                serveFileRegion(response, file, 0, length);
             }
         }
 
         response.flush();
     }
 
-    private void loadPartialContent(HttpRequestImpl request, HttpResponseImpl response, File file) throws IOException {
-        List<Range> ranges;
+    private void loadPartialContent(HttpRequestImpl request, HttpResponseImpl response, File file,
+                                    FileMetadata fileMetadata, String contentType) throws IOException {
+        List<Range> requestedRanges;
         try {
-            ranges = rangeParser.parse(request.getHeader(Headers.HEADER_RANGE));
+            requestedRanges = rangeParser.parse(request.getHeader(Headers.HEADER_RANGE));
         } catch (MalformedInputException e) {
             throw new ProtocolException("Malformed range header", e);
         }
 
-        if (!rangeHelper.isSatisfiable(ranges, file.length())) {
+        // A server MAY ignore the Range header, protects against requests of a large number of ranges
+        if (requestedRanges.size() > MAX_RANGES) {
+            loadCompleteContent(request, response, file, fileMetadata, contentType);
+            return;
+        }
+
+        long fileLength = fileMetadata.getLength();
+        List<Range> ranges = rangeHelper.resolve(requestedRanges, fileLength);
+        if (ranges.isEmpty()) {
             throw new RangeNotSatisfiableProtocolException();
         }
 
         response.setStatus(HttpServletResponse.STATUS_PARTIAL_CONTENT);
-        response.getHeaders().setHeader(Headers.HEADER_CONTENT_RANGE, "bytes " + getRanges(ranges) + "/" + file.length());
-
-        String contentType = mimeTypeMapping.getMimeTypeByExtension(FileUtilities.getExtension(file.getName()));
+        response.getHeaders().setHeader(Headers.HEADER_CONTENT_RANGE, "bytes " + getRanges(ranges) + "/" + fileLength);
 
         long rangeLength = rangeHelper.getTotalLength(ranges);
 
@@ -137,25 +336,44 @@ public class FileResourceProvider implements ResourceProvider {
             response.setContentType(contentType);
         } else {
             boundary = StringUtilities.generateRandom();
-            response.setContentLength(rangePartHeaderSerializer.getPartHeadersLength(ranges, boundary, contentType, file.length()) + rangeLength);
+            response.setContentLength(rangePartHeaderSerializer.getPartHeadersLength(ranges, boundary, contentType, fileLength) + rangeLength);
 
             response.setContentType("multipart/byteranges; boundary=" + boundary);
         }
-        response.flushHeaders();
 
-        // TODO Test with large values, greater than those of BufferedInputStream internal buffer
-        InputStream fileInputStream = new BufferedInputStream(new FileInputStream(file));
         if (ranges.size() == 1) {
-            response.serveStream(fileInputStream, ranges.get(0));
+            Range range = ranges.get(0);
+            ByteBuffer contents = fileContentCache.get(file, fileMetadata);
+            if (contents != null) {
+                contents.position((int) range.getFrom());
+                contents.limit((int) (range.getTo() + 1));
+                response.flushHeaders(contents);
+            } else {
+                response.flushHeaders();
+                serveFileRegion(response, file, range.getFrom(), rangeHelper.getRangeLength(range));
+            }
         } else {
-            response.serveStream(fileInputStream, ranges, boundary, contentType, file.length());
+            response.flushHeaders();
+            FileInputStream fileInputStream = new FileInputStream(file);
+            try {
+                response.serveFile(fileInputStream.getChannel(), ranges, boundary, contentType, fileLength);
+            } finally {
+                IOUtilities.closeSilently(fileInputStream);
+            }
         }
 
-        IOUtilities.closeSilently(fileInputStream);
-
         response.flush();
     }
 
+    private void serveFileRegion(HttpResponseImpl response, File file, long position, long length) throws IOException {
+        FileInputStream fileInputStream = new FileInputStream(file);
+        try {
+            response.serveFile(fileInputStream.getChannel(), position, length);
+        } finally {
+            IOUtilities.closeSilently(fileInputStream);
+        }
+    }
+
     private String getRanges(List<Range> ranges) {
         StringBuilder rangesString = new StringBuilder();
         int counter = 0;
@@ -0,0 +1,205 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.resource.provider.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import ro.polak.http.utilities.IOUtilities;
+
+/**
+ * Produces the missing gzip sidecars of static files in the background.
+ * <p/>
+ * Only the files of the configured MIME types are compressed. The sidecar is written to a
+ * temporary file and renamed once complete, so that a partially written sidecar is never served.
+ * Every attempt is recorded along with the version of the file, so that the files being compressed
+ * and the files that could not be compressed are skipped without locking until they change.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class PrecompressedFileGenerator {
+
+    public static final String SIDECAR_EXTENSION = ".gz";
+
+    private static final Logger LOGGER = Logger.getLogger(PrecompressedFileGenerator.class.getName());
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final int MIN_LENGTH = 256;
+    private static final int MAX_ATTEMPTS = 256;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final FileMetadataCache fileMetadataCache;
+    private final Set<String> mimeTypes;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, Attempt> attempts = new ConcurrentHashMap<>();
+
+    /**
+     * Default constructor.
+     *
+     * @param fileMetadataCache cache to be notified of the generated sidecars
+     * @param mimeTypes         MIME types of the files to be compressed
+     * @param executor          executor running the compression, owned by the generator
+     */
+    public PrecompressedFileGenerator(final FileMetadataCache fileMetadataCache,
+                                      final Collection<String> mimeTypes,
+                                      final ExecutorService executor) {
+        this.fileMetadataCache = fileMetadataCache;
+        this.mimeTypes = new HashSet<>(mimeTypes);
+        this.executor = executor;
+    }
+
+    /**
+     * Tells whether the file should be served from a sidecar.
+     *
+     * @param fileMetadata
+     * @return
+     */
+    public boolean isCompressible(FileMetadata fileMetadata) {
+        return fileMetadata.isFile()
+                && fileMetadata.getLength() >= MIN_LENGTH
+                && mimeTypes.contains(fileMetadata.getContentType());
+    }
+
+    /**
+     * Schedules the generation of the sidecar unless it is already in progress or has failed
+     * for the current version of the file.
+     *
+     * @param file
+     * @param fileMetadata current metadata of the file
+     */
+    public void generate(final File file, final FileMetadata fileMetadata) {
+        if (!isCompressible(fileMetadata)) {
+            return;
+        }
+
+        final String key = file.getPath();
+        Attempt previousAttempt = attempts.get(key);
+        if (previousAttempt != null
+                && (previousAttempt.isInProgress || previousAttempt.lastModified == fileMetadata.getLastModified())) {
+            return;
+        }
+
+        final Attempt attempt = new Attempt(fileMetadata.getLastModified());
+        if (previousAttempt == null) {
+            if (attempts.size() >= MAX_ATTEMPTS) {
+                removeFailedAttempts();
+            }
+            if (attempts.putIfAbsent(key, attempt) != null) {
+                return;
+            }
+        } else if (!attempts.replace(key, previousAttempt, attempt)) {
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compress(file, getSidecar(file));
+                        // The sidecar is found by the following requests, a deleted one is generated again
+                        attempts.remove(key, attempt);
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Unable to compress " + key, e);
+                    } finally {
+                        attempt.isInProgress = false;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            attempts.remove(key, attempt);
+        }
+    }
+
+    /**
+     * Stops the executor, the files waiting to be compressed are skipped.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the sidecar of the file.
+     *
+     * @param file
+     * @return
+     */
+    public static File getSidecar(File file) {
+        return new File(file.getPath() + SIDECAR_EXTENSION);
+    }
+
+    private void compress(File file, File sidecar) throws IOException {
+        File temporaryFile = new File(sidecar.getPath() + TEMPORARY_EXTENSION);
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            in = new FileInputStream(file);
+            out = new GZIPOutputStream(new FileOutputStream(temporaryFile), BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int numberOfBytesRead;
+            while ((numberOfBytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, numberOfBytesRead);
+            }
+            out.close();
+            out = null;
+
+            // The sidecar must not look older than the compressed file
+            if (!temporaryFile.setLastModified(Math.max(file.lastModified(), temporaryFile.lastModified()))) {
+                throw new IOException("Unable to touch " + temporaryFile.getPath());
+            }
+            // Some platforms do not replace the existing stale sidecar on rename
+            if (!temporaryFile.renameTo(sidecar) && !(sidecar.delete() && temporaryFile.renameTo(sidecar))) {
+                throw new IOException("Unable to create " + sidecar.getPath());
+            }
+        } finally {
+            IOUtilities.closeSilently(in);
+            IOUtilities.closeSilently(out);
+            if (temporaryFile.exists() && !temporaryFile.delete()) {
+                LOGGER.fine("Unable to delete " + temporaryFile.getPath());
+            }
+        }
+
+        fileMetadataCache.invalidate(sidecar);
+    }
+
+    private void removeFailedAttempts() {
+        Iterator<Attempt> iterator = attempts.values().iterator();
+        while (iterator.hasNext()) {
+            if (!iterator.next().isInProgress) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Generation of the sidecar of a single version of a file.
+     */
+    private static final class Attempt {
+        private final long lastModified;
+        private volatile boolean isInProgress = true;
+
+        Attempt(long lastModified) {
+            this.lastModified = lastModified;
+        }
+    }
+}
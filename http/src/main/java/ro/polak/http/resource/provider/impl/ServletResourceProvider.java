@@ -8,11 +8,19 @@
 package ro.polak.http.resource.provider.impl;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,21 +31,20 @@ import ro.polak.http.exception.FilterInitializationException;
 import ro.polak.http.exception.ServletException;
 import ro.polak.http.exception.ServletInitializationException;
 import ro.polak.http.exception.UnexpectedSituationException;
-import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.provider.PreloadableResourceProvider;
 import ro.polak.http.servlet.Filter;
-import ro.polak.http.servlet.FilterChain;
 import ro.polak.http.servlet.FilterConfig;
 import ro.polak.http.servlet.impl.FilterConfigImpl;
 import ro.polak.http.servlet.impl.HttpRequestImpl;
 import ro.polak.http.servlet.impl.HttpResponseImpl;
-import ro.polak.http.servlet.HttpServletRequest;
 import ro.polak.http.servlet.HttpServletResponse;
 import ro.polak.http.servlet.impl.HttpSessionImpl;
 import ro.polak.http.servlet.Servlet;
 import ro.polak.http.servlet.impl.ServletConfigImpl;
 import ro.polak.http.servlet.ServletContainer;
-import ro.polak.http.servlet.ServletContext;
-import ro.polak.http.servlet.helper.ServletContextHelper;
+import ro.polak.http.servlet.helper.CompiledUrlPattern;
+import ro.polak.http.servlet.helper.CompressionHelper;
+import ro.polak.http.servlet.helper.ServletRoutingIndex;
 import ro.polak.http.servlet.impl.ServletContextImpl;
 import ro.polak.http.servlet.UploadedFile;
 import ro.polak.http.servlet.impl.FilterChainImpl;
@@ -45,98 +52,321 @@ import ro.polak.http.servlet.impl.FilterChainImpl;
 /**
  * Servlet resource provider
  * <p/>
- * This provider enables the URLs to be interpreted by servlets
+ * This provider enables the URLs to be interpreted by servlets. The servlet output is compressed
+ * whenever the client accepts a supported content coding.
+ * <p/>
+ * A dispatch plan is built for every servlet mapping and every filter mapping is given a slot
+ * holding its filter instance upon construction. Both are never modified afterwards, so that
+ * the requests are dispatched through the routing index without any locking. The filters of
+ * a plan are resolved once whenever they do not depend on the requested path, that is when the
+ * context has no filters or the servlet mapping matches a single path.
+ * <p/>
+ * The servlets and filters marked to be loaded on startup are initialized in parallel by
+ * the preload, the mappings of the same order at once.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 201509
  */
-public class ServletResourceProvider implements ResourceProvider {
+public class ServletResourceProvider implements PreloadableResourceProvider {
 
     private static final Logger LOGGER = Logger.getLogger(ServletResourceProvider.class.getName());
+    private static final Filter[] NO_FILTERS = new Filter[0];
 
     private final ServletContainer servletContainer;
     private final List<ServletContextImpl> servletContexts;
-    private final ServletContextHelper servletContextHelper = new ServletContextHelper();
+    private final CompressionHelper compressionHelper;
+    private final ServletRoutingIndex servletRoutingIndex;
+    private final Map<ServletMapping, DispatchPlan> dispatchPlans = new IdentityHashMap<>();
+    private final Map<FilterMapping, FilterSlot> filterSlots = new IdentityHashMap<>();
 
     /**
      * Default constructor.
      *
      * @param servletContainer
      * @param servletContexts
+     * @param compressionHelper
      */
     public ServletResourceProvider(final ServletContainer servletContainer,
-                                   final List<ServletContextImpl> servletContexts) {
+                                   final List<ServletContextImpl> servletContexts,
+                                   final CompressionHelper compressionHelper) {
         this.servletContainer = servletContainer;
         this.servletContexts = servletContexts;
+        this.compressionHelper = compressionHelper;
+        servletRoutingIndex = new ServletRoutingIndex(servletContexts);
+
+        for (ServletContextImpl servletContext : servletContexts) {
+            FilterConfig filterConfig = new FilterConfigImpl(servletContext);
+            for (FilterMapping filterMapping : servletContext.getFilterMappings()) {
+                filterSlots.put(filterMapping, new FilterSlot(filterMapping, filterConfig));
+            }
+
+            ServletConfigImpl servletConfig = new ServletConfigImpl(servletContext);
+            for (ServletMapping servletMapping : servletContext.getServletMappings()) {
+                dispatchPlans.put(servletMapping, new DispatchPlan(servletContext, servletMapping, servletConfig,
+                        getFixedFilterSlots(servletContext, servletMapping)));
+            }
+        }
+    }
+
+    @Override
+    public void preload() {
+        SortedMap<Integer, List<Callable<Void>>> tasksByOrder = getPreloadTasks();
+        if (tasksByOrder.isEmpty()) {
+            return;
+        }
+
+        int maxTasks = 0;
+        for (List<Callable<Void>> tasks : tasksByOrder.values()) {
+            maxTasks = Math.max(maxTasks, tasks.size());
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(
+                Math.min(maxTasks, Runtime.getRuntime().availableProcessors()));
+        try {
+            for (List<Callable<Void>> tasks : tasksByOrder.values()) {
+                for (Future<Void> future : executorService.invokeAll(tasks)) {
+                    awaitPreloadTask(future);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Override
+    public List<String> getWarmUpPaths() {
+        List<String> warmUpPaths = new ArrayList<>();
+        for (ServletContextImpl servletContext : servletContexts) {
+            for (ServletMapping servletMapping : servletContext.getServletMappings()) {
+                if (servletMapping.getLoadOnStartup() < 0) {
+                    continue;
+                }
+
+                // Only the patterns matching a single path can be requested
+                CompiledUrlPattern compiledUrlPattern = CompiledUrlPattern.compile(servletMapping.getUrlPattern());
+                if (compiledUrlPattern.getType() == CompiledUrlPattern.Type.EXACT) {
+                    warmUpPaths.add(servletContext.getContextPath() + compiledUrlPattern.getLiteral());
+                }
+            }
+        }
+        return warmUpPaths;
     }
 
     @Override
     public boolean canLoad(String path) {
-        ServletContext servletContext = servletContextHelper.getResolvedContext(servletContexts, path);
-        return servletContext != null && servletContextHelper.getResolvedServletMapping(servletContext, path) != null;
+        return getDispatchPlan(path) != null;
     }
 
     @Override
-    public void load(String path, HttpRequestImpl request, HttpResponseImpl response) throws IOException {
-        ServletContextImpl servletContext = servletContextHelper.getResolvedContext(servletContexts, path);
-        Objects.requireNonNull(servletContext);
-        ServletMapping servletMapping = servletContextHelper.getResolvedServletMapping(servletContext, path);
+    public void start() {
+        servletContainer.start();
+    }
 
-        request.setServletContext(servletContext);
+    @Override
+    public void shutdown() {
+        servletContainer.shutdown();
+    }
+
+    @Override
+    public void load(String path, HttpRequestImpl request, HttpResponseImpl response) throws IOException {
+        DispatchPlan dispatchPlan = getDispatchPlan(path);
+        Objects.requireNonNull(dispatchPlan);
 
-        Servlet servlet = getServlet(servletMapping, new ServletConfigImpl(servletContext));
+        request.setServletContext(dispatchPlan.servletContext);
 
-        response.setStatus(HttpServletResponse.STATUS_OK);
+        Servlet servlet = getServlet(dispatchPlan);
         try {
-            FilterChainImpl filterChain = getFilterChain(path, servletContext, servlet);
+            response.setStatus(HttpServletResponse.STATUS_OK);
+
+            String coding = compressionHelper.getCoding(request.getHeader(Headers.HEADER_ACCEPT_ENCODING));
+            if (coding != null) {
+                response.enableCompression(compressionHelper, coding);
+            }
+
+            FilterChainImpl filterChain = new FilterChainImpl(getFilters(dispatchPlan, path), servlet);
             filterChain.doFilter(request, response);
             terminate(request, response);
         } catch (ServletException | FilterInitializationException e) {
             throw new UnexpectedSituationException(e);
+        } finally {
+            servletContainer.releaseServletForClass(dispatchPlan.servletMapping.getServletClass());
         }
     }
 
-    private Servlet getServlet(ServletMapping servletMapping, ServletConfigImpl servletConfig) {
+    /**
+     * Returns the initialization tasks of the servlets and filters to be loaded on startup,
+     * grouped by the load on startup order.
+     *
+     * @return
+     */
+    private SortedMap<Integer, List<Callable<Void>>> getPreloadTasks() {
+        SortedMap<Integer, List<Callable<Void>>> tasksByOrder = new TreeMap<>();
+        for (ServletContextImpl servletContext : servletContexts) {
+            final ServletConfigImpl servletConfig = new ServletConfigImpl(servletContext);
+            for (final ServletMapping servletMapping : servletContext.getServletMappings()) {
+                addPreloadTask(tasksByOrder, servletMapping.getLoadOnStartup(), new Callable<Void>() {
+                    @Override
+                    public Void call() throws ServletInitializationException, ServletException {
+                        servletContainer.getServletForClass(servletMapping.getServletClass(), servletConfig);
+                        servletContainer.releaseServletForClass(servletMapping.getServletClass());
+                        return null;
+                    }
+                });
+            }
+
+            final FilterConfig filterConfig = new FilterConfigImpl(servletContext);
+            for (final FilterMapping filterMapping : servletContext.getFilterMappings()) {
+                addPreloadTask(tasksByOrder, filterMapping.getLoadOnStartup(), new Callable<Void>() {
+                    @Override
+                    public Void call() throws FilterInitializationException, ServletException {
+                        servletContainer.getFilterForClass(filterMapping.getFilterClass(), filterConfig);
+                        return null;
+                    }
+                });
+            }
+        }
+        return tasksByOrder;
+    }
+
+    private void addPreloadTask(SortedMap<Integer, List<Callable<Void>>> tasksByOrder, int loadOnStartup,
+                                Callable<Void> task) {
+        if (loadOnStartup < 0) {
+            return;
+        }
+
+        List<Callable<Void>> tasks = tasksByOrder.get(loadOnStartup);
+        if (tasks == null) {
+            tasks = new ArrayList<>();
+            tasksByOrder.put(loadOnStartup, tasks);
+        }
+        tasks.add(task);
+    }
+
+    private void awaitPreloadTask(Future<Void> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            // The initialization is retried on the first request
+            LOGGER.log(Level.SEVERE, "Unable to preload", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the dispatch plan of the servlet mapping matching the path, null when no servlet
+     * is mapped to the path.
+     *
+     * @param path
+     * @return
+     */
+    private DispatchPlan getDispatchPlan(String path) {
+        ServletContextImpl servletContext = servletRoutingIndex.getResolvedContext(path);
+        if (servletContext == null) {
+            return null;
+        }
+        ServletMapping servletMapping = servletRoutingIndex.getResolvedServletMapping(servletContext, path);
+        if (servletMapping == null) {
+            return null;
+        }
+        return dispatchPlans.get(servletMapping);
+    }
+
+    private Servlet getServlet(DispatchPlan dispatchPlan) {
         Servlet servlet;
         try {
-            servlet = servletContainer.getServletForClass(servletMapping.getServletClass(), servletConfig);
+            // The container manages the servlet life cycle, the instance is not kept in the plan
+            servlet = servletContainer.getServletForClass(dispatchPlan.servletMapping.getServletClass(),
+                    dispatchPlan.servletConfig);
         } catch (ServletInitializationException | ServletException e) {
             throw new UnexpectedSituationException(e);
         }
         return servlet;
     }
 
-    private FilterChainImpl getFilterChain(String path, ServletContextImpl servletContext, final Servlet servlet)
-            throws FilterInitializationException, ServletException {
+    /**
+     * Returns the filter slots of the servlet mapping when they are the same for every path
+     * the mapping is resolved for, null otherwise.
+     *
+     * @param servletContext
+     * @param servletMapping
+     * @return
+     */
+    private FilterSlot[] getFixedFilterSlots(ServletContextImpl servletContext, ServletMapping servletMapping) {
+        if (servletContext.getFilterMappings().isEmpty()) {
+            return new FilterSlot[0];
+        }
 
-        ArrayDeque<Filter> arrayDeque = new ArrayDeque<>(getFilterMappingsForPath(path, servletContext));
-        arrayDeque.add(new Filter() {
-            @Override
-            public void init(FilterConfig filterConfig) throws ServletException {
-                // Do nothing
-            }
+        CompiledUrlPattern compiledUrlPattern = CompiledUrlPattern.compile(servletMapping.getUrlPattern());
+        if (compiledUrlPattern.getType() != CompiledUrlPattern.Type.EXACT) {
+            return null;
+        }
 
-            @Override
-            public void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws IOException, ServletException {
-                servlet.service(request, response);
-            }
-        });
-        return new FilterChainImpl(arrayDeque);
+        return getFilterSlots(servletRoutingIndex.getFilterMappingsForPath(servletContext,
+                servletContext.getContextPath() + compiledUrlPattern.getLiteral()));
     }
 
-    private List<Filter> getFilterMappingsForPath(String path, ServletContextImpl servletContext)
+    private FilterSlot[] getFilterSlots(List<FilterMapping> filterMappings) {
+        FilterSlot[] slots = new FilterSlot[filterMappings.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = filterSlots.get(filterMappings.get(i));
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the filters matching the path, the filters are initialized on their first use.
+     *
+     * @param dispatchPlan
+     * @param path
+     * @return
+     * @throws FilterInitializationException
+     * @throws ServletException
+     */
+    private Filter[] getFilters(DispatchPlan dispatchPlan, String path)
             throws FilterInitializationException, ServletException {
+        Filter[] filters = dispatchPlan.filters;
+        if (filters != null) {
+            return filters;
+        }
+
+        if (dispatchPlan.filterSlots != null) {
+            filters = resolveFilters(dispatchPlan.filterSlots);
+            // The container returns the same filter instances, a concurrent resolution is harmless
+            dispatchPlan.filters = filters;
+            return filters;
+        }
 
-        FilterConfig filterConfig = new FilterConfigImpl(servletContext);
+        List<FilterMapping> filterMappings = servletRoutingIndex.getFilterMappingsForPath(
+                dispatchPlan.servletContext, path);
+        if (filterMappings.isEmpty()) {
+            return NO_FILTERS;
+        }
+        return resolveFilters(getFilterSlots(filterMappings));
+    }
 
-        List<Filter> filters = new ArrayList<>();
-        for (FilterMapping filterMapping : servletContextHelper.getFilterMappingsForPath(servletContext, path)) {
-            filters.add(servletContainer.getFilterForClass(filterMapping.getFilterClass(), filterConfig));
+    private Filter[] resolveFilters(FilterSlot[] slots) throws FilterInitializationException, ServletException {
+        if (slots.length == 0) {
+            return NO_FILTERS;
         }
 
+        Filter[] filters = new Filter[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            filters[i] = getFilter(slots[i]);
+        }
         return filters;
     }
 
+    private Filter getFilter(FilterSlot filterSlot) throws FilterInitializationException, ServletException {
+        Filter filter = filterSlot.filter;
+        if (filter == null) {
+            filter = servletContainer.getFilterForClass(filterSlot.filterMapping.getFilterClass(),
+                    filterSlot.filterConfig);
+            // The container returns the same filter instance, a concurrent resolution is harmless
+            filterSlot.filter = filter;
+        }
+        return filter;
+    }
+
     /**
      * Terminates servlet. Sets all necessary headers, flushes content.
      *
@@ -145,7 +375,10 @@ public class ServletResourceProvider implements ResourceProvider {
      * @throws IOException
      */
     private void terminate(HttpRequestImpl request, HttpResponseImpl response) throws IOException {
-        freeUploadedUnprocessedFiles(request.getUploadedFiles());
+        // Asking for the files of an unparsed body would parse it
+        if (request.isBodyParsed()) {
+            freeUploadedUnprocessedFiles(request.getUploadedFiles());
+        }
 
         HttpSessionImpl session = (HttpSessionImpl) request.getSession(false);
         if (session != null) {
@@ -173,4 +406,37 @@ public class ServletResourceProvider implements ResourceProvider {
             uploadedFile.destroy();
         }
     }
+
+    /**
+     * Context, configuration and, when independent of the path, filters resolved for a servlet mapping.
+     */
+    private static final class DispatchPlan {
+        private final ServletContextImpl servletContext;
+        private final ServletMapping servletMapping;
+        private final ServletConfigImpl servletConfig;
+        private final FilterSlot[] filterSlots;
+        private volatile Filter[] filters;
+
+        DispatchPlan(ServletContextImpl servletContext, ServletMapping servletMapping,
+                     ServletConfigImpl servletConfig, FilterSlot[] filterSlots) {
+            this.servletContext = servletContext;
+            this.servletMapping = servletMapping;
+            this.servletConfig = servletConfig;
+            this.filterSlots = filterSlots;
+        }
+    }
+
+    /**
+     * Filter instance of a filter mapping, resolved on the first use.
+     */
+    private static final class FilterSlot {
+        private final FilterMapping filterMapping;
+        private final FilterConfig filterConfig;
+        private volatile Filter filter;
+
+        FilterSlot(FilterMapping filterMapping, FilterConfig filterConfig) {
+            this.filterMapping = filterMapping;
+            this.filterConfig = filterConfig;
+        }
+    }
 }
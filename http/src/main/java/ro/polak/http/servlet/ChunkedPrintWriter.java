@@ -7,10 +7,17 @@
 
 package ro.polak.http.servlet;
 
+import java.io.IOException;
 import java.io.OutputStream;
 
+import ro.polak.http.impl.ChunkedOutputStream;
+
 /**
  * ChunkedPrintWriter
+ * <p/>
+ * The printed text is framed at the byte level, a chunk is written every time the writer is
+ * flushed. Responses of the chunked transfer coding are framed by the servlet output stream,
+ * this writer serves the streams not framed otherwise.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @url https://en.wikipedia.org/wiki/Chunked_transfer_encoding
@@ -18,10 +25,9 @@ import java.io.OutputStream;
  */
 public class ChunkedPrintWriter extends ServletPrintWriter {
 
-    // TODO Move this capability to the ServletOutputStreamImpl
-
     private static final String NEW_LINE = "\r\n";
-    private static final String END_LINE = "0\r\n\r\n";
+
+    private final ChunkedOutputStream chunkedOutputStream;
 
     /**
      * Default constructor.
@@ -29,7 +35,12 @@ public class ChunkedPrintWriter extends ServletPrintWriter {
      * @param out
      */
     public ChunkedPrintWriter(OutputStream out) {
-        super(out);
+        this(new ChunkedOutputStream(out));
+    }
+
+    private ChunkedPrintWriter(ChunkedOutputStream chunkedOutputStream) {
+        super(chunkedOutputStream);
+        this.chunkedOutputStream = chunkedOutputStream;
     }
 
     @Override
@@ -40,20 +51,17 @@ public class ChunkedPrintWriter extends ServletPrintWriter {
         }
     }
 
-    @Override
-    public void write(String str) {
-        String head = Long.toHexString(str.length()).toUpperCase() + NEW_LINE;
-        super.write(head);
-        super.write(str);
-        super.write(NEW_LINE);
-    }
-
     /**
      * Writes the end of chunked message.
      */
     @Override
     public void writeEnd() {
         super.writeEnd();
-        super.write(END_LINE);
+        flush();
+        try {
+            chunkedOutputStream.finish();
+        } catch (IOException e) {
+            setError();
+        }
     }
 }
@@ -134,6 +134,14 @@ public interface HttpServletRequest extends ServletRequest {
      */
     String getHeader(String name);
 
+    /**
+     * Returns all the values of the header of the specified name.
+     *
+     * @param name
+     * @return
+     */
+    Enumeration getHeaders(String name);
+
     /**
      * Returns a header int value of the specified name.
      *
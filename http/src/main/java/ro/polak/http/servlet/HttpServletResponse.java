@@ -114,6 +114,14 @@ public interface HttpServletResponse extends ServletResponse {
      */
     void setHeader(String name, String value);
 
+    /**
+     * Adds header value, the previous values of the header are preserved
+     *
+     * @param name
+     * @param value
+     */
+    void addHeader(String name, String value);
+
     /**
      * Sets int header value
      *
@@ -8,12 +8,17 @@ package ro.polak.http.servlet;
 
 /**
  * Represents HTTP range.
+ * <p/>
+ * Both positions are inclusive. A suffix range (bytes=-500) has an unspecified start and holds
+ * the number of the last bytes as its end, an open-ended range (bytes=500-) has an unspecified end.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 201702
  */
 public class Range {
 
+    public static final long UNSPECIFIED = -1;
+
     private long from;
     private long to;
 
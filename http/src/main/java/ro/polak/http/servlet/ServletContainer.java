@@ -31,6 +31,14 @@ public interface ServletContainer {
     Servlet getServletForClass(Class<? extends HttpServlet> servletClass, ServletConfig servletConfig)
             throws ServletInitializationException, ServletException;
 
+    /**
+     * Tells the container the servlet obtained for the given class has served the request.
+     * A servlet is never destroyed while serving a request.
+     *
+     * @param servletClass
+     */
+    void releaseServletForClass(Class<? extends HttpServlet> servletClass);
+
     /**
      * Returns initialized servlet for given class name.
      *
@@ -40,4 +48,14 @@ public interface ServletContainer {
      */
     Filter getFilterForClass(Class<? extends Filter> filterClass, FilterConfig filterConfig)
             throws FilterInitializationException, ServletException;
+
+    /**
+     * Starts the background maintenance of the servlets.
+     */
+    void start();
+
+    /**
+     * Stops the background maintenance and destroys all initialized servlets.
+     */
+    void shutdown();
 }
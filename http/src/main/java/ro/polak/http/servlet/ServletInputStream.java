@@ -0,0 +1,19 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.servlet;
+
+import java.io.InputStream;
+
+/**
+ * Servlet input stream.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public abstract class ServletInputStream extends InputStream {
+}
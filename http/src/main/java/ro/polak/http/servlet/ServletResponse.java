@@ -7,6 +7,7 @@
 
 package ro.polak.http.servlet;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Locale;
 
@@ -20,8 +21,10 @@ public interface ServletResponse {
 
     /**
      * Forces any content in the buffer to be written to the client.
+     *
+     * @throws IOException
      */
-    void flushBuffer();
+    void flushBuffer() throws IOException;
 
     /**
      * Returns the actual buffer size used for the response.
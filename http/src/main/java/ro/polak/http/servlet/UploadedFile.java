@@ -7,10 +7,22 @@
 
 package ro.polak.http.servlet;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ro.polak.http.exception.UnexpectedSituationException;
+import ro.polak.http.utilities.IOUtilities;
+import ro.polak.http.utilities.StringUtilities;
 
 /**
  * Uploaded file representation
+ * <p/>
+ * Small files are held in memory and written to a temporary file only when {@link #getFile()}
+ * is called.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 200802
@@ -19,7 +31,9 @@ public class UploadedFile {
 
     private final String postFieldName;
     private final String fileName;
-    private final File file;
+    private final byte[] contents;
+    private final String temporaryUploadsDirectory;
+    private File file;
 
     /**
      * Constructor
@@ -32,6 +46,23 @@ public class UploadedFile {
         this.postFieldName = postFieldName;
         this.fileName = fileName;
         this.file = file;
+        contents = null;
+        temporaryUploadsDirectory = null;
+    }
+
+    /**
+     * Constructor of a file held in memory.
+     *
+     * @param postFieldName
+     * @param fileName
+     * @param contents
+     * @param temporaryUploadsDirectory directory the file is written to when requested
+     */
+    public UploadedFile(String postFieldName, String fileName, byte[] contents, String temporaryUploadsDirectory) {
+        this.postFieldName = postFieldName;
+        this.fileName = fileName;
+        this.contents = contents;
+        this.temporaryUploadsDirectory = temporaryUploadsDirectory;
     }
 
     /**
@@ -40,7 +71,7 @@ public class UploadedFile {
      * @return true if deleted
      */
     public boolean destroy() {
-        if (file.exists()) {
+        if (file != null && file.exists()) {
             return file.delete();
         }
 
@@ -66,11 +97,62 @@ public class UploadedFile {
     }
 
     /**
-     * Returns uploaded file
+     * Tells whether the contents are held in memory.
+     *
+     * @return
+     */
+    public boolean isInMemory() {
+        return file == null;
+    }
+
+    /**
+     * Returns the size of the uploaded file in bytes.
+     *
+     * @return
+     */
+    public long getSize() {
+        if (contents != null && file == null) {
+            return contents.length;
+        }
+        return file.length();
+    }
+
+    /**
+     * Returns a stream reading the uploaded contents, the caller is responsible for closing it.
+     *
+     * @return
+     * @throws IOException
+     */
+    public InputStream getInputStream() throws IOException {
+        if (file == null) {
+            return new ByteArrayInputStream(contents);
+        }
+        return new FileInputStream(file);
+    }
+
+    /**
+     * Returns uploaded file, a file held in memory is written to the temporary directory first.
      *
      * @return
      */
     public File getFile() {
+        if (file == null) {
+            file = spill();
+        }
         return file;
     }
+
+    private File spill() {
+        File spilledFile = new File(temporaryUploadsDirectory + StringUtilities.generateRandom());
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(spilledFile);
+            out.write(contents);
+        } catch (IOException e) {
+            throw new UnexpectedSituationException("Unable to write uploaded file", e);
+        } finally {
+            IOUtilities.closeSilently(out);
+        }
+        return spilledFile;
+    }
 }
@@ -7,10 +7,12 @@
 
 package ro.polak.http.servlet.factory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -18,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 
 import ro.polak.http.Headers;
+import ro.polak.http.HostNameResolver;
 import ro.polak.http.MultipartHeadersPart;
 import ro.polak.http.MultipartRequestHandler;
 import ro.polak.http.RequestStatus;
@@ -32,10 +35,14 @@ import ro.polak.http.exception.protocol.ProtocolException;
 import ro.polak.http.exception.protocol.StatusLineTooLongProtocolException;
 import ro.polak.http.exception.protocol.UnsupportedProtocolException;
 import ro.polak.http.exception.protocol.UriTooLongProtocolException;
+import ro.polak.http.impl.ConnectionInputStream;
+import ro.polak.http.impl.ServletInputStreamImpl;
+import ro.polak.http.protocol.parser.ByteParser;
 import ro.polak.http.protocol.parser.MalformedInputException;
 import ro.polak.http.protocol.parser.Parser;
 import ro.polak.http.servlet.Cookie;
 import ro.polak.http.servlet.impl.HttpRequestImpl;
+import ro.polak.http.servlet.impl.RequestBodyParser;
 import ro.polak.http.servlet.impl.ServletContextImpl;
 
 /**
@@ -46,8 +53,9 @@ import ro.polak.http.servlet.impl.ServletContextImpl;
  */
 public class HttpServletRequestImplFactory {
 
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
     private static final String DEFAULT_SCHEME = "http";
-    private static final int MULTIPART_BUFFER_LENGTH = 2048;
+    private static final int MULTIPART_BUFFER_LENGTH = 64 * 1024;
 
     private static final String BOUNDARY_START = "boundary=";
     private static final int URI_MAX_LENGTH = 2048;
@@ -65,7 +73,6 @@ public class HttpServletRequestImplFactory {
     };
     private static final int METHOD_MAX_LENGTH;
     private static final List<String> RECOGNIZED_METHODS_LIST = Arrays.asList(RECOGNIZED_METHODS);
-    private static final String HEADERS_END_DELIMINATOR = "\n\r\n";
 
     private final Parser<Headers> headersParser;
     private final Parser<Map<String, String>> queryStringParser;
@@ -84,6 +91,8 @@ public class HttpServletRequestImplFactory {
 
     private Parser<MultipartHeadersPart> multipartHeadersPartParser;
     private final String tempPath;
+    private final int uploadMemoryThreshold;
+    private final HostNameResolver hostNameResolver;
 
 
     /**
@@ -94,19 +103,25 @@ public class HttpServletRequestImplFactory {
      * @param statusParser
      * @param cookieParser
      * @param tempPath
+     * @param uploadMemoryThreshold max size of an uploaded file kept in memory
+     * @param hostNameResolver
      */
     public HttpServletRequestImplFactory(final Parser<Headers> headersParser,
                                          final Parser<Map<String, String>> queryStringParser,
                                          final Parser<RequestStatus> statusParser,
                                          final Parser<Map<String, Cookie>> cookieParser,
                                          final Parser<MultipartHeadersPart> multipartHeadersPartParser,
-                                         final String tempPath) {
+                                         final String tempPath,
+                                         final int uploadMemoryThreshold,
+                                         final HostNameResolver hostNameResolver) {
         this.headersParser = headersParser;
         this.queryStringParser = queryStringParser;
         this.statusParser = statusParser;
         this.cookieParser = cookieParser;
         this.multipartHeadersPartParser = multipartHeadersPartParser;
         this.tempPath = tempPath;
+        this.uploadMemoryThreshold = uploadMemoryThreshold;
+        this.hostNameResolver = hostNameResolver;
     }
 
     /**
@@ -117,15 +132,33 @@ public class HttpServletRequestImplFactory {
      */
     public HttpRequestImpl createFromSocket(Socket socket)
             throws IOException, ProtocolException {
+        return createFromSocket(socket, new ConnectionInputStream(socket.getInputStream()));
+    }
+
+    /**
+     * Creates and returns a request read from the given connection stream.
+     * <p/>
+     * The stream is consumed up to the end of the request head, the request body is exposed
+     * as a stream limited to the declared content length. The bytes following the request
+     * remain buffered in the connection stream.
+     *
+     * @param socket
+     * @param in
+     * @return
+     */
+    public HttpRequestImpl createFromSocket(Socket socket, ConnectionInputStream in)
+            throws IOException, ProtocolException {
 
         HttpRequestImpl request = new HttpRequestImpl();
 
-        InputStream in = socket.getInputStream();
         // The order matters
 
+        RequestHead head = new RequestHead();
+
         RequestStatus status;
         try {
-            status = statusParser.parse(getStatusLine(in));
+            int statusLineLength = readStatusLine(in, head);
+            status = parse(statusParser, head.getBuffer(), 0, statusLineLength);
         } catch (MalformedInputException e) {
             throw new MalformedStatusLineException("Malformed status line " + e.getMessage());
         }
@@ -139,7 +172,6 @@ public class HttpServletRequestImplFactory {
             throw new UnsupportedProtocolException("Protocol " + status.getProtocol() + " is not supported");
         }
 
-        request.setInputStream(in);
         assignSocketMetadata(socket, request);
         request.setStatus(status);
         request.setPathTranslated(request.getRequestURI()); // TODO There is no way to make it work under Android
@@ -162,10 +194,11 @@ public class HttpServletRequestImplFactory {
             // This should never happen
         }
 
-        String headersString = getHeaders(in);
-        if (headersString.length() > 3) {
+        int headersStart = head.size();
+        int headersLength = readHeaders(in, head);
+        if (headersLength > 3) {
             try {
-                request.setHeaders(headersParser.parse(headersString));
+                request.setHeaders(parse(headersParser, head.getBuffer(), headersStart, headersLength));
             } catch (MalformedInputException e) {
                 throw new ProtocolException("Malformed request headers");
             }
@@ -178,12 +211,12 @@ public class HttpServletRequestImplFactory {
             request.setCookies(Collections.<String, Cookie>emptyMap());
         }
 
+        long contentLength = getContentLength(request.getHeaders());
+        ServletInputStreamImpl body = new ServletInputStreamImpl(in, contentLength > 0 ? contentLength : 0);
+        request.setInputStream(body);
+
         if (request.getMethod().equalsIgnoreCase(HttpRequestImpl.METHOD_POST)) {
-            try {
-                handlePostRequest(request, in);
-            } catch (MalformedInputException e) {
-                throw new ProtocolException("Malformed post input");
-            }
+            assignPostBodyParser(request, contentLength);
         }
 
         return request;
@@ -198,113 +231,190 @@ public class HttpServletRequestImplFactory {
         request.setScheme(DEFAULT_SCHEME);
         request.setRemoteAddr(socket.getInetAddress().getHostAddress());
         request.setRemotePort(((InetSocketAddress) socket.getRemoteSocketAddress()).getPort());
-        request.setRemoteHost(((InetSocketAddress) socket.getRemoteSocketAddress()).getHostName());
         request.setLocalAddr(socket.getLocalAddress().getHostAddress());
         request.setLocalPort(socket.getLocalPort());
         request.setServerPort(socket.getLocalPort());
-        request.setLocalName(socket.getLocalAddress().getHostName());
-        request.setServerName(socket.getInetAddress().getHostName());
+        // Host names are resolved only when requested, reverse lookups can take seconds
+        request.setRemoteInetAddress(socket.getInetAddress());
+        request.setLocalInetAddress(socket.getLocalAddress());
+        request.setHostNameResolver(hostNameResolver);
     }
 
     private Map<String, Cookie> getCookies(Headers headers) {
+        Map<String, Cookie> cookies = new HashMap<>();
         if (headers.containsHeader(Headers.HEADER_COOKIE)) {
-            try {
-                return cookieParser.parse(headers.getHeader(Headers.HEADER_COOKIE));
-            } catch (MalformedInputException e) {
-                // Returns an empty map
+            // Cookie pairs might be split into several header lines, they can not be comma joined
+            for (String value : headers.getHeaderValues(Headers.HEADER_COOKIE)) {
+                try {
+                    cookies.putAll(cookieParser.parse(value));
+                } catch (MalformedInputException e) {
+                    // Malformed cookie header is ignored
+                }
             }
         }
-        return new HashMap<>();
+        return cookies;
     }
 
-    private String getStatusLine(InputStream in)
+    /**
+     * Reads and validates the status line.
+     *
+     * @param in
+     * @param head
+     * @return the length of the status line without the LF terminator
+     * @throws IOException
+     * @throws StatusLineTooLongProtocolException
+     * @throws MalformedOrUnsupportedMethodProtocolException
+     */
+    private int readStatusLine(ConnectionInputStream in, RequestHead head)
             throws IOException, StatusLineTooLongProtocolException, MalformedOrUnsupportedMethodProtocolException {
-        StringBuilder statusLine = new StringBuilder();
-        byte[] buffer = new byte[1];
-        int length = 0;
-        boolean wasMethodRead = false;
-        while (in.read(buffer, 0, buffer.length) != -1) {
+        int length = in.readLine(head, STATUS_MAX_LENGTH + 1);
+        Statistics.addBytesReceived(length);
 
-            ++length;
+        byte[] buffer = head.getBuffer();
+        int lineLength = length > 0 && buffer[length - 1] == '\n' ? length - 1 : length;
 
-            if (buffer[0] == '\n') {
-                break;
+        int methodEnd = indexOf(buffer, lineLength, (byte) ' ');
+        if (methodEnd == -1) {
+            if (lineLength > METHOD_MAX_LENGTH) {
+                throw new MalformedOrUnsupportedMethodProtocolException("Method name is longer than expected");
             }
-            statusLine.append((char) buffer[0]);
-
-            if (!wasMethodRead) {
-                if (buffer[0] == ' ') {
-                    wasMethodRead = true;
-                    String method = statusLine.substring(0, statusLine.length() - 1).toUpperCase();
-                    if (!RECOGNIZED_METHODS_LIST.contains(method)) {
-                        Statistics.addBytesReceived(length);
-                        throw new MalformedOrUnsupportedMethodProtocolException("Method " + method + " is not supported");
-                    }
-                } else {
-                    if (length > METHOD_MAX_LENGTH) {
-                        Statistics.addBytesReceived(length);
-                        throw new MalformedOrUnsupportedMethodProtocolException("Method name is longer than expected");
-                    }
-                }
+        } else if (!isRecognizedMethod(buffer, methodEnd)) {
+            throw new MalformedOrUnsupportedMethodProtocolException("Method "
+                    + new String(buffer, 0, methodEnd, CHARSET).toUpperCase() + " is not supported");
+        }
+
+        if (length > STATUS_MAX_LENGTH) {
+            throw new StatusLineTooLongProtocolException("Exceeded max size of " + STATUS_MAX_LENGTH);
+        }
+
+        return lineLength;
+    }
+
+    private int indexOf(byte[] buffer, int length, byte b) {
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == b) {
+                return i;
             }
+        }
+        return -1;
+    }
 
-            if (length > STATUS_MAX_LENGTH) {
-                Statistics.addBytesReceived(length);
-                throw new StatusLineTooLongProtocolException("Exceeded max size of " + STATUS_MAX_LENGTH);
+    private boolean isRecognizedMethod(byte[] buffer, int length) {
+        for (String method : RECOGNIZED_METHODS) {
+            if (method.length() == length && isMethodMatching(method, buffer)) {
+                return true;
             }
         }
-        Statistics.addBytesReceived(length);
+        return false;
+    }
 
-        return statusLine.toString();
+    private boolean isMethodMatching(String method, byte[] buffer) {
+        for (int i = 0; i < method.length(); i++) {
+            if (Character.toUpperCase((char) (buffer[i] & 0xFF)) != method.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private String getHeaders(InputStream in) throws IOException {
-        StringBuilder headersString = new StringBuilder();
-        byte[] buffer;
-        buffer = new byte[1];
-        int headersEndSymbolLength = HEADERS_END_DELIMINATOR.length();
-
-        while (in.read(buffer, 0, buffer.length) != -1) {
-            headersString.append((char) buffer[0]);
-            if (headersString.length() > headersEndSymbolLength) {
-                String endChars = headersString.substring(headersString.length() - headersEndSymbolLength, headersString.length());
-                if (endChars.equals(HEADERS_END_DELIMINATOR)) {
-                    headersString.setLength(headersString.length() - headersEndSymbolLength);
-                    break;
-                }
+    /**
+     * Reads the header lines up to the empty line terminating the request head.
+     *
+     * @param in
+     * @param head
+     * @return the length of the headers without the trailing line terminators
+     * @throws IOException
+     */
+    private int readHeaders(ConnectionInputStream in, RequestHead head) throws IOException {
+        int headersStart = head.size();
+        int totalLength = 0;
+
+        while (true) {
+            int lineStart = head.size();
+            int length = in.readLine(head, Integer.MAX_VALUE);
+            if (length == 0) {
+                break; // Premature end of stream
+            }
+            totalLength += length;
+
+            if (isEmptyLine(head.getBuffer(), lineStart, length)) {
+                // Removing the empty line together with the terminator of the preceding line
+                head.truncate(lineStart > headersStart ? lineStart - 1 : headersStart);
+                break;
             }
         }
 
-        Statistics.addBytesReceived(headersString.length() + headersEndSymbolLength);
-        return headersString.toString();
+        Statistics.addBytesReceived(totalLength);
+        return head.size() - headersStart;
     }
 
-    private void handlePostRequest(HttpRequestImpl request, InputStream in) throws IOException, MalformedInputException {
-        int postLength;
-        if (request.getHeaders().containsHeader(Headers.HEADER_CONTENT_LENGTH)) {
-            try {
-                postLength = Integer.parseInt(request.getHeaders().getHeader(Headers.HEADER_CONTENT_LENGTH));
-            } catch (NumberFormatException e) {
-                throw new MalformedInputException(e.getMessage());
+    private boolean isEmptyLine(byte[] buffer, int lineStart, int lineLength) {
+        return (lineLength == 1 && buffer[lineStart] == '\n')
+                || (lineLength == 2 && buffer[lineStart] == '\r');
+    }
+
+    /**
+     * Parses the given part of the head, byte parsers receive the raw bytes.
+     *
+     * @param parser
+     * @param buffer
+     * @param offset
+     * @param length
+     * @param <T>
+     * @return
+     * @throws MalformedInputException
+     */
+    private <T> T parse(Parser<T> parser, byte[] buffer, int offset, int length) throws MalformedInputException {
+        if (parser instanceof ByteParser) {
+            return ((ByteParser<T>) parser).parse(buffer, offset, length);
+        }
+        return parser.parse(new String(buffer, offset, length, CHARSET));
+    }
+
+    /**
+     * Returns the declared content length or -1 when not specified.
+     *
+     * @param headers
+     * @return
+     */
+    private long getContentLength(Headers headers) {
+        if (!headers.containsHeader(Headers.HEADER_CONTENT_LENGTH)) {
+            return -1;
+        }
+
+        try {
+            long contentLength = Long.parseLong(headers.getHeader(Headers.HEADER_CONTENT_LENGTH).trim());
+            if (contentLength < 0) {
+                throw new ProtocolException("Negative content length");
             }
-        } else {
-            throw new LengthRequiredException();
+            return contentLength;
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Malformed content length", e);
         }
+    }
 
-        // Only if post length is greater than 0
-        // Keep 0 value - makes no sense to parse the data
-        if (postLength < 1) {
-            return;
+    /**
+     * Validates the declared body length, the body itself is parsed only when the servlet asks
+     * for the post parameters or the uploaded files.
+     *
+     * @param request
+     * @param contentLength
+     */
+    private void assignPostBodyParser(HttpRequestImpl request, long contentLength) {
+        if (contentLength == -1) {
+            throw new LengthRequiredException();
         }
 
-        if (postLength > POST_MAX_LENGTH) {
-            throw new PayloadTooLargeProtocolException("Payload of " + postLength + "b exceeds the limit of " + POST_MAX_LENGTH + "b");
+        if (contentLength > POST_MAX_LENGTH) {
+            throw new PayloadTooLargeProtocolException("Payload of " + contentLength + "b exceeds the limit of " + POST_MAX_LENGTH + "b");
         }
 
-        if (isMultipartRequest(request)) {
-            handlePostMultipartRequest(request, in, postLength);
-        } else {
-            handlePostPlainRequest(request, in, postLength);
+        request.setMultipart(isMultipartRequest(request));
+
+        // Only if post length is greater than 0
+        // Keep 0 value - makes no sense to parse the data
+        if (contentLength > 0) {
+            request.setBodyParser(new PostBodyParser((int) contentLength));
         }
     }
 
@@ -315,17 +425,14 @@ public class HttpServletRequestImplFactory {
 
     private void handlePostPlainRequest(HttpRequestImpl request, InputStream in, int postLength)
             throws IOException, MalformedInputException {
-        byte[] buffer;
-        buffer = new byte[1];
-        StringBuilder postLine = new StringBuilder();
-        while (in.read(buffer, 0, buffer.length) != -1) {
-            postLine.append((char) buffer[0]);
-            if (postLine.length() == postLength) {
-                break;
-            }
+        byte[] buffer = new byte[postLength];
+        int length = 0;
+        int numberOfBytesRead;
+        while (length < postLength && (numberOfBytesRead = in.read(buffer, length, postLength - length)) != -1) {
+            length += numberOfBytesRead;
         }
-        Statistics.addBytesReceived(postLine.length());
-        request.setPostParameters(queryStringParser.parse(postLine.toString()));
+        Statistics.addBytesReceived(length);
+        request.setPostParameters(queryStringParser.parse(new String(buffer, 0, length, CHARSET)));
     }
 
     private void handlePostMultipartRequest(HttpRequestImpl request, InputStream in, int postLength)
@@ -333,14 +440,14 @@ public class HttpServletRequestImplFactory {
 
         String boundary = request.getHeaders().getHeader(Headers.HEADER_CONTENT_TYPE);
         int boundaryPosition = boundary.toLowerCase().indexOf(BOUNDARY_START);
-        request.setMultipart(true);
         if (boundaryPosition > -1) {
             int boundaryStartPos = boundaryPosition + BOUNDARY_START.length();
             if (boundaryStartPos < boundary.length()) {
                 boundary = boundary.substring(boundaryStartPos, boundary.length());
                 MultipartRequestHandler mrh =
                         new MultipartRequestHandler(multipartHeadersPartParser, in, postLength, boundary,
-                                tempPath, MULTIPART_BUFFER_LENGTH);
+                                tempPath, MULTIPART_BUFFER_LENGTH, Charset.forName(request.getCharacterEncoding()),
+                                uploadMemoryThreshold);
                 mrh.handle();
 
                 request.setPostParameters(mrh.getPost());
@@ -348,4 +455,49 @@ public class HttpServletRequestImplFactory {
             }
         }
     }
+
+    /**
+     * Parses the post body of a single request on demand.
+     */
+    private class PostBodyParser implements RequestBodyParser {
+
+        private final int postLength;
+
+        PostBodyParser(int postLength) {
+            this.postLength = postLength;
+        }
+
+        @Override
+        public void parse(HttpRequestImpl request, InputStream in) throws IOException {
+            try {
+                if (request.isMultipart()) {
+                    handlePostMultipartRequest(request, in, postLength);
+                } else {
+                    handlePostPlainRequest(request, in, postLength);
+                }
+            } catch (MalformedInputException e) {
+                throw new ProtocolException("Malformed post input");
+            }
+        }
+    }
+
+    /**
+     * Growable buffer holding the raw request head.
+     */
+    private static class RequestHead extends ByteArrayOutputStream {
+
+        private static final int INITIAL_SIZE = 512;
+
+        RequestHead() {
+            super(INITIAL_SIZE);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        void truncate(int size) {
+            count = size;
+        }
+    }
 }
@@ -8,10 +8,11 @@
 package ro.polak.http.servlet.factory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
 
-import ro.polak.http.Headers;
 import ro.polak.http.protocol.serializer.Serializer;
+import ro.polak.http.protocol.serializer.impl.ByteHeadersSerializer;
 import ro.polak.http.servlet.Cookie;
 import ro.polak.http.servlet.helper.StreamHelper;
 import ro.polak.http.servlet.impl.HttpResponseImpl;
@@ -24,7 +25,7 @@ import ro.polak.http.servlet.impl.HttpResponseImpl;
  */
 public class HttpServletResponseImplFactory {
 
-    private final Serializer<Headers> headersSerializer;
+    private final ByteHeadersSerializer headersSerializer;
     private final Serializer<Cookie> cookieHeaderSerializer;
     private final StreamHelper streamHelper;
 
@@ -35,7 +36,7 @@ public class HttpServletResponseImplFactory {
      * @param cookieHeaderSerializer
      * @param streamHelper
      */
-    public HttpServletResponseImplFactory(Serializer<Headers> headersSerializer,
+    public HttpServletResponseImplFactory(ByteHeadersSerializer headersSerializer,
                                           Serializer<Cookie> cookieHeaderSerializer,
                                           StreamHelper streamHelper) {
         this.headersSerializer = headersSerializer;
@@ -50,6 +51,16 @@ public class HttpServletResponseImplFactory {
      * @return
      */
     public HttpResponseImpl createFromSocket(Socket socket) throws IOException {
-        return new HttpResponseImpl(headersSerializer, cookieHeaderSerializer, streamHelper, socket.getOutputStream());
+        return createFromOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * Creates and returns a response written to the given connection stream.
+     *
+     * @param outputStream
+     * @return
+     */
+    public HttpResponseImpl createFromOutputStream(OutputStream outputStream) {
+        return new HttpResponseImpl(headersSerializer, cookieHeaderSerializer, streamHelper, outputStream);
     }
 }
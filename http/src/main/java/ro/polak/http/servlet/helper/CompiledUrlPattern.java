@@ -0,0 +1,190 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.servlet.helper;
+
+import java.util.regex.Pattern;
+
+/**
+ * URL pattern matched against paths without evaluating the regular expression whenever possible.
+ * <p/>
+ * Patterns made of a literal, optionally preceded or followed by ".*", are matched as an exact
+ * path, a path prefix or a path suffix. The remaining patterns are evaluated as regular
+ * expressions. In both cases the whole path must match, the same way Matcher.matches() does.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public final class CompiledUrlPattern {
+
+    /**
+     * Kind of the match.
+     */
+    public enum Type {
+        EXACT,
+        PREFIX,
+        SUFFIX,
+        REGEX
+    }
+
+    private static final String ANY = ".*";
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final Pattern pattern;
+    private final Type type;
+    private final String literal;
+
+    private CompiledUrlPattern(final Pattern pattern, final Type type, final String literal) {
+        this.pattern = pattern;
+        this.type = type;
+        this.literal = literal;
+    }
+
+    /**
+     * Compiles the given pattern.
+     *
+     * @param pattern
+     * @return
+     */
+    public static CompiledUrlPattern compile(Pattern pattern) {
+        String expression = pattern.pattern();
+        if (pattern.flags() == 0) {
+            if (expression.startsWith("^")) {
+                expression = expression.substring(1);
+            }
+            if (expression.endsWith("$") && !isEscaped(expression, expression.length() - 1)) {
+                expression = expression.substring(0, expression.length() - 1);
+            }
+
+            String literal = parseLiteral(expression);
+            if (literal != null) {
+                return new CompiledUrlPattern(pattern, Type.EXACT, literal);
+            }
+            if (expression.endsWith(ANY) && !isEscaped(expression, expression.length() - ANY.length())) {
+                literal = parseLiteral(expression.substring(0, expression.length() - ANY.length()));
+                if (literal != null) {
+                    return new CompiledUrlPattern(pattern, Type.PREFIX, literal);
+                }
+            }
+            if (expression.startsWith(ANY)) {
+                literal = parseLiteral(expression.substring(ANY.length()));
+                if (literal != null) {
+                    return new CompiledUrlPattern(pattern, Type.SUFFIX, literal);
+                }
+            }
+        }
+
+        return new CompiledUrlPattern(pattern, Type.REGEX, null);
+    }
+
+    /**
+     * Tells whether the part of the path starting at the given offset matches the pattern.
+     *
+     * @param path
+     * @param offset
+     * @return
+     */
+    public boolean matches(String path, int offset) {
+        switch (type) {
+            case EXACT:
+                return path.length() - offset == literal.length() && path.startsWith(literal, offset);
+            case PREFIX:
+                return path.startsWith(literal, offset)
+                        && !containsLineTerminator(path, offset + literal.length(), path.length());
+            case SUFFIX:
+                return path.length() - offset >= literal.length() && path.endsWith(literal)
+                        && !containsLineTerminator(path, offset, path.length() - literal.length());
+            default:
+                return pattern.matcher(path).region(offset, path.length()).matches();
+        }
+    }
+
+    /**
+     * Returns the kind of the match.
+     *
+     * @return
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the literal matched, null for regular expressions.
+     *
+     * @return
+     */
+    public String getLiteral() {
+        return literal;
+    }
+
+    /**
+     * Tells whether the given part of the path contains a character not matched by ".".
+     *
+     * @param path
+     * @param from
+     * @param to
+     * @return
+     */
+    static boolean containsLineTerminator(String path, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = path.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the text matched by the expression, null when the expression is not a literal.
+     *
+     * @param expression
+     * @return
+     */
+    private static String parseLiteral(String expression) {
+        StringBuilder sb = new StringBuilder(expression.length());
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (c == '\\') {
+                if (i + 1 == expression.length()) {
+                    return null;
+                }
+                char escaped = expression.charAt(i + 1);
+                if (escaped == 'Q') {
+                    int end = expression.indexOf("\\E", i + 2);
+                    if (end == -1) {
+                        end = expression.length();
+                    }
+                    sb.append(expression, i + 2, end);
+                    i = end + 2;
+                    continue;
+                }
+                // Escaped letters and digits denote classes, references and quoted characters
+                if (Character.isLetterOrDigit(escaped)) {
+                    return null;
+                }
+                sb.append(escaped);
+                i += 2;
+            } else if (METACHARACTERS.indexOf(c) != -1) {
+                return null;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isEscaped(String expression, int position) {
+        int backslashes = 0;
+        for (int i = position - 1; i >= 0 && expression.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+}
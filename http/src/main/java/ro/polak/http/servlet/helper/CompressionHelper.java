@@ -0,0 +1,192 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+package ro.polak.http.servlet.helper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import ro.polak.http.protocol.parser.MalformedInputException;
+import ro.polak.http.protocol.parser.impl.AcceptEncodingParser;
+
+/**
+ * Response compression utilities.
+ * <p/>
+ * Negotiates the content coding and creates the compressing streams according to the configured
+ * MIME types, minimum body size and compression level.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class CompressionHelper {
+
+    public static final String CODING_GZIP = "gzip";
+    public static final String CODING_DEFLATE = "deflate";
+
+    private static final String CONTENT_TYPE_PARAMETER_SEPARATOR = ";";
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final AcceptEncodingParser acceptEncodingParser;
+    private final Set<String> mimeTypes;
+    private final int minSize;
+    private final int level;
+
+    /**
+     * Default constructor.
+     *
+     * @param acceptEncodingParser
+     * @param mimeTypes            MIME types of the responses to be compressed, empty disables compression
+     * @param minSize              min size in bytes of a compressed body
+     * @param level                compression level, from 0 to 9
+     */
+    public CompressionHelper(final AcceptEncodingParser acceptEncodingParser,
+                             final Collection<String> mimeTypes,
+                             final int minSize,
+                             final int level) {
+        this.acceptEncodingParser = acceptEncodingParser;
+        this.mimeTypes = new HashSet<>();
+        for (String mimeType : mimeTypes) {
+            this.mimeTypes.add(mimeType.toLowerCase(Locale.ENGLISH));
+        }
+        this.minSize = minSize;
+        this.level = level;
+    }
+
+    /**
+     * Returns the preferred content coding accepted by the client, null when the response is not
+     * to be compressed.
+     *
+     * @param acceptEncoding value of the Accept-Encoding header, can be null
+     * @return
+     */
+    public String getCoding(String acceptEncoding) {
+        if (acceptEncoding == null || mimeTypes.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Float> codings;
+        try {
+            codings = acceptEncodingParser.parse(acceptEncoding);
+        } catch (MalformedInputException e) {
+            // The identity coding is always acceptable
+            return null;
+        }
+
+        if (AcceptEncodingParser.isAccepted(codings, CODING_GZIP)) {
+            return CODING_GZIP;
+        }
+        if (AcceptEncodingParser.isAccepted(codings, CODING_DEFLATE)) {
+            return CODING_DEFLATE;
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether the responses of the given content type are to be compressed.
+     *
+     * @param contentType content type, the parameters are ignored
+     * @return
+     */
+    public boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+
+        int parametersStart = contentType.indexOf(CONTENT_TYPE_PARAMETER_SEPARATOR);
+        String mimeType = parametersStart == -1 ? contentType : contentType.substring(0, parametersStart);
+        return mimeTypes.contains(mimeType.trim().toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Returns the min size in bytes of a compressed body.
+     *
+     * @return
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Creates a stream compressing the written bytes using the given coding. Flushing the stream
+     * flushes the compressor, finishing the stream releases the compressor.
+     *
+     * @param coding
+     * @param out
+     * @return
+     * @throws IOException
+     */
+    public DeflaterOutputStream getCompressingStream(String coding, OutputStream out) throws IOException {
+        if (CODING_GZIP.equals(coding)) {
+            return new GzipStream(out, level);
+        }
+        if (CODING_DEFLATE.equals(coding)) {
+            return new DeflateStream(out, level);
+        }
+        throw new IllegalArgumentException("Unsupported coding " + coding);
+    }
+
+    /**
+     * Releases the compressor of an abandoned stream without writing anything.
+     *
+     * @param compressingStream stream created by this helper
+     */
+    public void release(DeflaterOutputStream compressingStream) {
+        if (compressingStream instanceof GzipStream) {
+            ((GzipStream) compressingStream).release();
+        } else if (compressingStream instanceof DeflateStream) {
+            ((DeflateStream) compressingStream).release();
+        }
+    }
+
+    private static class GzipStream extends GZIPOutputStream {
+
+        GzipStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE, true);
+            def.setLevel(level);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            try {
+                super.finish();
+            } finally {
+                def.end();
+            }
+        }
+
+        void release() {
+            def.end();
+        }
+    }
+
+    private static class DeflateStream extends DeflaterOutputStream {
+
+        DeflateStream(OutputStream out, int level) {
+            super(out, new Deflater(level), BUFFER_SIZE, true);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            try {
+                super.finish();
+            } finally {
+                def.end();
+            }
+        }
+
+        void release() {
+            def.end();
+        }
+    }
+}
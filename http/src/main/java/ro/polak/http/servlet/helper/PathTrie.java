@@ -0,0 +1,133 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.servlet.helper;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Character trie of exact paths and path prefixes.
+ * <p/>
+ * A single walk along the path visits all the matching prefixes and the matching exact path.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+class PathTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Registers the value of the exact path, the first registered value is kept.
+     *
+     * @param path
+     * @param value
+     */
+    void putExact(String path, T value) {
+        Node<T> node = getOrCreateNode(path);
+        if (node.exactValue == null) {
+            node.exactValue = value;
+        }
+    }
+
+    /**
+     * Registers the value of the path prefix, the first registered value is kept.
+     *
+     * @param prefix
+     * @param value
+     */
+    void putPrefix(String prefix, T value) {
+        Node<T> node = getOrCreateNode(prefix);
+        if (node.prefixValue == null) {
+            node.prefixValue = value;
+        }
+    }
+
+    /**
+     * Returns the preferred value among the values of the matching prefixes and of the matching
+     * exact path, null when nothing matches. Out of equally preferred values the one of the
+     * longest key is returned.
+     *
+     * @param path
+     * @param offset     the path is matched starting at the offset
+     * @param preference orders the values, the smallest value is preferred
+     * @return
+     */
+    T find(String path, int offset, Comparator<? super T> preference) {
+        T best = null;
+        Node<T> node = root;
+        int position = offset;
+        while (true) {
+            if (node.prefixValue != null && isPreferred(node.prefixValue, best, preference)) {
+                best = node.prefixValue;
+            }
+            if (position == path.length()) {
+                if (node.exactValue != null && isPreferred(node.exactValue, best, preference)) {
+                    best = node.exactValue;
+                }
+                return best;
+            }
+
+            node = node.getChild(path.charAt(position++));
+            if (node == null) {
+                return best;
+            }
+        }
+    }
+
+    private boolean isPreferred(T value, T best, Comparator<? super T> preference) {
+        return best == null || preference.compare(value, best) <= 0;
+    }
+
+    private Node<T> getOrCreateNode(String path) {
+        Node<T> node = root;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            Node<T> child = node.getChild(c);
+            if (child == null) {
+                child = node.addChild(c);
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private static final class Node<T> {
+        private char[] keys = new char[0];
+        private Node<T>[] children = newArray(0);
+        private T exactValue;
+        private T prefixValue;
+
+        Node<T> getChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+
+        Node<T> addChild(char c) {
+            int index = -(Arrays.binarySearch(keys, c) + 1);
+            char[] newKeys = new char[keys.length + 1];
+            Node<T>[] newChildren = newArray(children.length + 1);
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+
+            Node<T> child = new Node<>();
+            newKeys[index] = c;
+            newChildren[index] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newArray(int length) {
+            return (Node<T>[]) new Node<?>[length];
+        }
+    }
+}
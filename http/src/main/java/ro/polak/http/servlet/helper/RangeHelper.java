@@ -6,6 +6,9 @@
  **************************************************/
 package ro.polak.http.servlet.helper;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import ro.polak.http.servlet.Range;
@@ -42,7 +45,7 @@ public class RangeHelper {
      * @return
      */
     public long getTotalLength(List<Range> ranges) {
-        int totalLength = 0;
+        long totalLength = 0;
         for (Range range : ranges) {
             totalLength += getRangeLength(range);
         }
@@ -65,4 +68,72 @@ public class RangeHelper {
 
         return true;
     }
+
+    /**
+     * Converts the requested ranges into absolute positions within the stream of the given length.
+     * <p/>
+     * Suffix and open-ended ranges are resolved, ends exceeding the stream are truncated and the
+     * ranges that can not be satisfied are dropped. The remaining ranges are sorted and the
+     * overlapping or adjacent ones are coalesced.
+     *
+     * @param ranges
+     * @param streamLength
+     * @return an empty list when none of the ranges is satisfiable
+     */
+    public List<Range> resolve(List<Range> ranges, long streamLength) {
+        List<Range> resolvedRanges = new ArrayList<>(ranges.size());
+        for (Range range : ranges) {
+            Range resolvedRange = resolve(range, streamLength);
+            if (resolvedRange != null) {
+                resolvedRanges.add(resolvedRange);
+            }
+        }
+
+        if (resolvedRanges.size() < 2) {
+            return resolvedRanges;
+        }
+
+        Collections.sort(resolvedRanges, new Comparator<Range>() {
+            @Override
+            public int compare(Range o1, Range o2) {
+                return o1.getFrom() < o2.getFrom() ? -1 : (o1.getFrom() == o2.getFrom() ? 0 : 1);
+            }
+        });
+
+        List<Range> coalescedRanges = new ArrayList<>(resolvedRanges.size());
+        Range current = resolvedRanges.get(0);
+        for (int i = 1; i < resolvedRanges.size(); i++) {
+            Range next = resolvedRanges.get(i);
+            if (next.getFrom() <= current.getTo() + 1) {
+                current.setTo(Math.max(current.getTo(), next.getTo()));
+            } else {
+                coalescedRanges.add(current);
+                current = next;
+            }
+        }
+        coalescedRanges.add(current);
+
+        return coalescedRanges;
+    }
+
+    private Range resolve(Range range, long streamLength) {
+        long from = range.getFrom();
+        long to = range.getTo();
+
+        if (from == Range.UNSPECIFIED) {
+            if (to == Range.UNSPECIFIED || to == 0 || streamLength == 0) {
+                return null;
+            }
+            from = Math.max(0, streamLength - to);
+            to = streamLength - 1;
+        } else if (to == Range.UNSPECIFIED || to >= streamLength) {
+            to = streamLength - 1;
+        }
+
+        Range resolvedRange = new Range(from, to);
+        if (from >= streamLength || !isRangeValid(resolvedRange)) {
+            return null;
+        }
+        return resolvedRange;
+    }
 }
@@ -37,14 +37,23 @@ public class ServletContextHelper {
         return null;
     }
 
+    /**
+     * Returns the context of the longest context path the path starts with.
+     *
+     * @param servletContexts
+     * @param path
+     * @return
+     */
     //@Nullable
     public ServletContextImpl getResolvedContext(List<ServletContextImpl> servletContexts, String path) {
+        ServletContextImpl resolvedContext = null;
         for (ServletContextImpl servletContext : servletContexts) {
-            if (path.startsWith(servletContext.getContextPath())) {
-                return servletContext;
+            if (path.startsWith(servletContext.getContextPath()) && (resolvedContext == null
+                    || servletContext.getContextPath().length() > resolvedContext.getContextPath().length())) {
+                resolvedContext = servletContext;
             }
         }
-        return null;
+        return resolvedContext;
     }
 
     /**
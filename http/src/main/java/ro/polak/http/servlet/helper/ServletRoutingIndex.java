@@ -0,0 +1,251 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.servlet.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ro.polak.http.configuration.FilterMapping;
+import ro.polak.http.configuration.ServletMapping;
+import ro.polak.http.servlet.impl.ServletContextImpl;
+
+/**
+ * Routing index of the servlet contexts of a deployment.
+ * <p/>
+ * The contexts are resolved by the longest matching context path using a trie. Servlet mappings
+ * of exact paths and path prefixes are looked up in a trie, mappings of file extensions in a hash
+ * table, only the remaining mappings are evaluated as regular expressions. Out of the matching
+ * servlet mappings the first declared one wins.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class ServletRoutingIndex {
+
+    private static final Comparator<Object> LONGEST_KEY = new Comparator<Object>() {
+        @Override
+        public int compare(Object first, Object second) {
+            return 0;
+        }
+    };
+
+    private static final Comparator<Route> DECLARATION_ORDER = new Comparator<Route>() {
+        @Override
+        public int compare(Route first, Route second) {
+            return first.index < second.index ? -1 : (first.index == second.index ? 0 : 1);
+        }
+    };
+
+    private final PathTrie<ServletContextImpl> contexts = new PathTrie<>();
+    private final Map<ServletContextImpl, ContextRoutes> contextRoutes = new IdentityHashMap<>();
+
+    /**
+     * Default constructor, the mappings of the contexts must not change afterwards.
+     *
+     * @param servletContexts
+     */
+    public ServletRoutingIndex(final List<ServletContextImpl> servletContexts) {
+        for (ServletContextImpl servletContext : servletContexts) {
+            contexts.putPrefix(servletContext.getContextPath(), servletContext);
+            contextRoutes.put(servletContext, new ContextRoutes(servletContext));
+        }
+    }
+
+    /**
+     * Returns the context of the longest context path the path starts with.
+     *
+     * @param path
+     * @return
+     */
+    //@Nullable
+    public ServletContextImpl getResolvedContext(String path) {
+        return contexts.find(path, 0, LONGEST_KEY);
+    }
+
+    /**
+     * Returns the first declared servlet mapping matching the path within the context.
+     *
+     * @param servletContext
+     * @param path
+     * @return
+     */
+    //@Nullable
+    public ServletMapping getResolvedServletMapping(ServletContextImpl servletContext, String path) {
+        return getContextRoutes(servletContext).getServletMapping(path);
+    }
+
+    /**
+     * Returns the filter mappings including and not excluding the path, in the declaration order.
+     *
+     * @param servletContext
+     * @param path
+     * @return
+     */
+    public List<FilterMapping> getFilterMappingsForPath(ServletContextImpl servletContext, String path) {
+        return getContextRoutes(servletContext).getFilterMappings(path);
+    }
+
+    private ContextRoutes getContextRoutes(ServletContextImpl servletContext) {
+        ContextRoutes routes = contextRoutes.get(servletContext);
+        if (routes == null) {
+            throw new IllegalArgumentException("The context is not indexed " + servletContext.getContextPath());
+        }
+        return routes;
+    }
+
+    /**
+     * Servlet and filter mappings of a single context.
+     */
+    private static final class ContextRoutes {
+        private final int contextPathLength;
+        private final Route[] routes;
+        private final PathTrie<Route> literalRoutes = new PathTrie<>();
+        private final Map<String, Route> extensionRoutes = new HashMap<>();
+        private final Route[] evaluatedRoutes;
+        private final FilterRoute[] filterRoutes;
+
+        ContextRoutes(ServletContextImpl servletContext) {
+            contextPathLength = servletContext.getContextPath().length();
+
+            List<ServletMapping> servletMappings = servletContext.getServletMappings();
+            routes = new Route[servletMappings.size()];
+            List<Route> evaluated = new ArrayList<>();
+            for (int i = 0; i < routes.length; i++) {
+                Route route = new Route(i, servletMappings.get(i));
+                routes[i] = route;
+                if (!index(route)) {
+                    evaluated.add(route);
+                }
+            }
+            evaluatedRoutes = evaluated.toArray(new Route[evaluated.size()]);
+
+            List<FilterMapping> filterMappings = servletContext.getFilterMappings();
+            filterRoutes = new FilterRoute[filterMappings.size()];
+            for (int i = 0; i < filterRoutes.length; i++) {
+                filterRoutes[i] = new FilterRoute(filterMappings.get(i));
+            }
+        }
+
+        /**
+         * Adds the route to the lookup structures, returns false when it must be evaluated.
+         */
+        private boolean index(Route route) {
+            String literal = route.pattern.getLiteral();
+            switch (route.pattern.getType()) {
+                case EXACT:
+                    literalRoutes.putExact(literal, route);
+                    return true;
+                case PREFIX:
+                    literalRoutes.putPrefix(literal, route);
+                    return true;
+                case SUFFIX:
+                    if (isExtension(literal)) {
+                        String extension = literal.substring(1);
+                        if (!extensionRoutes.containsKey(extension)) {
+                            extensionRoutes.put(extension, route);
+                        }
+                        return true;
+                    }
+                    return false;
+                default:
+                    return false;
+            }
+        }
+
+        private boolean isExtension(String literal) {
+            return literal.length() > 1 && literal.charAt(0) == '.'
+                    && literal.indexOf('.', 1) == -1 && literal.indexOf('/') == -1;
+        }
+
+        ServletMapping getServletMapping(String path) {
+            int offset = contextPathLength;
+
+            // "." does not match line terminators, such paths are evaluated one mapping at a time
+            if (CompiledUrlPattern.containsLineTerminator(path, offset, path.length())) {
+                for (Route route : routes) {
+                    if (route.pattern.matches(path, offset)) {
+                        return route.servletMapping;
+                    }
+                }
+                return null;
+            }
+
+            Route best = literalRoutes.find(path, offset, DECLARATION_ORDER);
+
+            if (!extensionRoutes.isEmpty()) {
+                int dotPosition = path.lastIndexOf('.');
+                if (dotPosition >= offset) {
+                    Route route = extensionRoutes.get(path.substring(dotPosition + 1));
+                    if (route != null && (best == null || route.index < best.index)) {
+                        best = route;
+                    }
+                }
+            }
+
+            for (Route route : evaluatedRoutes) {
+                if (best != null && route.index > best.index) {
+                    break;
+                }
+                if (route.pattern.matches(path, offset)) {
+                    best = route;
+                    break;
+                }
+            }
+
+            return best != null ? best.servletMapping : null;
+        }
+
+        List<FilterMapping> getFilterMappings(String path) {
+            List<FilterMapping> filterMappings = null;
+            for (FilterRoute filterRoute : filterRoutes) {
+                if (filterRoute.matches(path, contextPathLength)) {
+                    if (filterMappings == null) {
+                        filterMappings = new ArrayList<>();
+                    }
+                    filterMappings.add(filterRoute.filterMapping);
+                }
+            }
+            return filterMappings != null ? filterMappings : Collections.<FilterMapping>emptyList();
+        }
+    }
+
+    private static final class Route {
+        private final int index;
+        private final ServletMapping servletMapping;
+        private final CompiledUrlPattern pattern;
+
+        Route(int index, ServletMapping servletMapping) {
+            this.index = index;
+            this.servletMapping = servletMapping;
+            pattern = CompiledUrlPattern.compile(servletMapping.getUrlPattern());
+        }
+    }
+
+    private static final class FilterRoute {
+        private final FilterMapping filterMapping;
+        private final CompiledUrlPattern includePattern;
+        private final CompiledUrlPattern excludePattern;
+
+        FilterRoute(FilterMapping filterMapping) {
+            this.filterMapping = filterMapping;
+            includePattern = CompiledUrlPattern.compile(filterMapping.getUrlPattern());
+            excludePattern = filterMapping.getUrlExcludePattern() != null
+                    ? CompiledUrlPattern.compile(filterMapping.getUrlExcludePattern()) : null;
+        }
+
+        boolean matches(String path, int offset) {
+            return includePattern.matches(path, offset)
+                    && (excludePattern == null || !excludePattern.matches(path, offset));
+        }
+    }
+}
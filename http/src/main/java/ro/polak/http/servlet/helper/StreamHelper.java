@@ -6,29 +6,34 @@
  **************************************************/
 package ro.polak.http.servlet.helper;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.List;
 
+import ro.polak.http.FileTransferTarget;
 import ro.polak.http.RangePartHeader;
 import ro.polak.http.Statistics;
 import ro.polak.http.exception.UnexpectedSituationException;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
 import ro.polak.http.servlet.Range;
-import ro.polak.http.servlet.helper.RangeHelper;
 
 /**
  * Helps serving streams.
+ * <p/>
+ * File regions are transferred directly to the outputs able to receive them from a file channel,
+ * other outputs are written in large chunks without flushing in between. Ranges are always read
+ * at their position, the file is never re-read from its beginning.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 201702
  */
 public class StreamHelper {
 
-    private static final int BUFFER_SIZE = 512;
+    private static final int BUFFER_SIZE = 64 * 1024;
     private static final String NEW_LINE = "\r\n";
     private static final Charset CHARSET = Charset.forName("UTF-8");
 
@@ -52,58 +57,87 @@ public class StreamHelper {
             throws IOException {
         int numberOfBufferReadBytes;
         byte[] buffer = new byte[BUFFER_SIZE];
+        long numberOfBytesServed = 0;
 
-        while ((numberOfBufferReadBytes = inputStream.read(buffer)) != -1) {
-            outputStream.write(buffer, 0, numberOfBufferReadBytes);
-            outputStream.flush();
-
-            Statistics.addBytesSent(numberOfBufferReadBytes);
+        try {
+            while ((numberOfBufferReadBytes = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, numberOfBufferReadBytes);
+                numberOfBytesServed += numberOfBufferReadBytes;
+            }
+        } finally {
+            Statistics.addBytesSent(numberOfBytesServed);
         }
     }
 
     /**
-     * Serves a range of the input stream to the output stream.
+     * Serves a region of the file to the output stream.
      *
-     * @param inputStream
+     * @param fileChannel
      * @param outputStream
-     * @param range
+     * @param position
+     * @param length
      * @throws IOException
      */
-    private void doServeRangeStream(InputStream inputStream, OutputStream outputStream, Range range)
+    public void serveFile(FileChannel fileChannel, OutputStream outputStream, long position, long length)
             throws IOException {
-        int numberOfBufferReadBytes;
-        byte[] buffer = new byte[BUFFER_SIZE];
-        long numberOfBytesServedForRange = 0;
-
-        inputStream.reset();
-        if (inputStream.skip(range.getFrom()) != range.getFrom()) {
-            throw new UnexpectedSituationException("Failed to skip bytes from input stream.");
+        if (outputStream instanceof FileTransferTarget) {
+            ((FileTransferTarget) outputStream).transferFrom(fileChannel, position, length);
+            Statistics.addBytesSent(length);
+            return;
         }
 
-        while ((numberOfBufferReadBytes = inputStream.read(buffer)) != -1) {
-            int numberOfBytesToServe = numberOfBufferReadBytes;
-            long numberOfBytesRemaining = rangeHelper.getRangeLength(range) - numberOfBytesServedForRange;
-            if (numberOfBytesRemaining < numberOfBytesToServe) {
-                // There is no way this value is greater than Integer.MAX_VALUE
-                numberOfBytesToServe = (int) numberOfBytesRemaining;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(length, 1)));
+        long numberOfBytesServed = 0;
+        try {
+            while (numberOfBytesServed < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - numberOfBytesServed));
+                int numberOfBytesRead = fileChannel.read(buffer, position + numberOfBytesServed);
+                if (numberOfBytesRead == -1) {
+                    throw new UnexpectedSituationException("Premature end of file.");
+                }
+
+                outputStream.write(buffer.array(), 0, numberOfBytesRead);
+                numberOfBytesServed += numberOfBytesRead;
             }
+        } finally {
+            Statistics.addBytesSent(numberOfBytesServed);
+        }
+    }
 
-            outputStream.write(buffer, 0, numberOfBytesToServe);
-            outputStream.flush();
-            Statistics.addBytesSent(numberOfBytesToServe);
-
-            numberOfBytesServedForRange += numberOfBytesToServe;
+    /**
+     * Serves the remaining bytes of the buffer to the output stream.
+     *
+     * @param buffer
+     * @param outputStream
+     * @throws IOException
+     */
+    public void serveBuffer(ByteBuffer buffer, OutputStream outputStream) throws IOException {
+        int length = buffer.remaining();
+        if (outputStream instanceof FileTransferTarget) {
+            ((FileTransferTarget) outputStream).transferFrom(buffer);
+            Statistics.addBytesSent(length);
+            return;
+        }
 
-            if (numberOfBytesServedForRange >= range.getTo()) {
-                break;
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.limit());
+        } else {
+            byte[] chunk = new byte[Math.min(BUFFER_SIZE, length)];
+            while (buffer.hasRemaining()) {
+                int chunkLength = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, chunkLength);
+                outputStream.write(chunk, 0, chunkLength);
             }
         }
+        Statistics.addBytesSent(length);
     }
 
     /**
-     * Serves multiple ranges of the input stream to the output stream
+     * Serves multiple ranges of the file to the output stream, every range is read at its position.
      *
-     * @param inputStream
+     * @param fileChannel
      * @param outputStream
      * @param rangeList
      * @param boundary
@@ -111,40 +145,22 @@ public class StreamHelper {
      * @param totalLength
      * @throws IOException
      */
-    public void serveMultiRangeStream(InputStream inputStream, OutputStream outputStream,
-                                      List<Range> rangeList, String boundary, String contentType,
-                                      long totalLength) throws IOException {
-        inputStream.mark(0);
+    public void serveFile(FileChannel fileChannel, OutputStream outputStream, List<Range> rangeList,
+                          String boundary, String contentType, long totalLength) throws IOException {
+        byte[] newLine = NEW_LINE.getBytes(CHARSET);
 
-        serveMultiRangeStream(new ByteArrayInputStream(NEW_LINE.getBytes(CHARSET)), outputStream);
+        serveBytes(newLine, outputStream);
         for (Range range : rangeList) {
-            doServeRangePartHeader(outputStream, boundary, contentType, totalLength, range);
-            doServeRangeStream(inputStream, outputStream, range);
-            serveMultiRangeStream(new ByteArrayInputStream(NEW_LINE.getBytes(CHARSET)), outputStream);
+            RangePartHeader rangePartHeader = new RangePartHeader(range, boundary, contentType, totalLength);
+            serveBytes(rangePartHeaderSerializer.serialize(rangePartHeader).getBytes(CHARSET), outputStream);
+            serveFile(fileChannel, outputStream, range.getFrom(), rangeHelper.getRangeLength(range));
+            serveBytes(newLine, outputStream);
         }
-        serveMultiRangeStream(new ByteArrayInputStream(rangePartHeaderSerializer.serializeLastBoundaryDeliminator(boundary).getBytes(CHARSET)), outputStream);
-    }
-
-    private void doServeRangePartHeader(OutputStream outputStream, String boundary,
-                                        String contentType, long totalLength, Range range)
-            throws IOException {
-        RangePartHeader rangePartHeader = new RangePartHeader(range, boundary, contentType, totalLength);
-        byte[] rangePartHeaderBytes= rangePartHeaderSerializer.serialize(rangePartHeader).getBytes(CHARSET);
-
-        serveMultiRangeStream(new ByteArrayInputStream(rangePartHeaderBytes), outputStream);
+        serveBytes(rangePartHeaderSerializer.serializeLastBoundaryDeliminator(boundary).getBytes(CHARSET), outputStream);
     }
 
-    /**
-     * Serves single range to the output stream.
-     *
-     * @param inputStream
-     * @param outputStream
-     * @param range
-     * @throws IOException
-     */
-    public void serveMultiRangeStream(InputStream inputStream, OutputStream outputStream,
-                                      Range range) throws IOException {
-        inputStream.mark(0);
-        doServeRangeStream(inputStream, outputStream, range);
+    private void serveBytes(byte[] bytes, OutputStream outputStream) throws IOException {
+        outputStream.write(bytes);
+        Statistics.addBytesSent(bytes.length);
     }
 }
@@ -8,30 +8,45 @@
 package ro.polak.http.servlet.impl;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
 
 import ro.polak.http.exception.ServletException;
 import ro.polak.http.servlet.Filter;
 import ro.polak.http.servlet.FilterChain;
 import ro.polak.http.servlet.HttpServletRequest;
 import ro.polak.http.servlet.HttpServletResponse;
+import ro.polak.http.servlet.Servlet;
 
 /**
  * Default FilterChain implementation.
+ * <p/>
+ * Passes the request through the filters in order, the servlet terminates the chain.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 201803
  */
 public class FilterChainImpl implements FilterChain {
 
-    private ArrayDeque<Filter> filters;
+    private final Filter[] filters;
+    private final Servlet servlet;
+    private int position;
 
-    public FilterChainImpl(ArrayDeque<Filter> filters) {
+    /**
+     * Default constructor.
+     *
+     * @param filters filters to be applied, the array is not modified
+     * @param servlet
+     */
+    public FilterChainImpl(final Filter[] filters, final Servlet servlet) {
         this.filters = filters;
+        this.servlet = servlet;
     }
 
     @Override
     public void doFilter(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
-        filters.pop().doFilter(request, response, this);
+        if (position < filters.length) {
+            filters[position++].doFilter(request, response, this);
+        } else {
+            servlet.service(request, response);
+        }
     }
 }
@@ -8,7 +8,11 @@
 package ro.polak.http.servlet.impl;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.nio.charset.Charset;
 import java.security.Principal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -22,8 +26,10 @@ import java.util.Locale;
 import java.util.Map;
 
 import ro.polak.http.Headers;
+import ro.polak.http.HostNameResolver;
 import ro.polak.http.RequestStatus;
 import ro.polak.http.Statistics;
+import ro.polak.http.exception.UnexpectedSituationException;
 import ro.polak.http.servlet.Cookie;
 import ro.polak.http.servlet.HttpServletRequest;
 import ro.polak.http.servlet.HttpSession;
@@ -69,8 +75,15 @@ public class HttpRequestImpl implements HttpServletRequest {
     private String characterEncoding = "UTF-8";
 
     private InputStream in;
+    private BufferedReader reader;
+    private RequestBodyParser bodyParser;
+    private boolean isBodyAccessed;
+    private boolean isBodyParsed;
     private String localAddr;
     private int localPort;
+    private InetAddress remoteInetAddress;
+    private InetAddress localInetAddress;
+    private HostNameResolver hostNameResolver;
     private String remoteHost;
     private int remotePort;
     private int serverPort;
@@ -118,6 +131,11 @@ public class HttpRequestImpl implements HttpServletRequest {
         return headers.getHeader(name);
     }
 
+    @Override
+    public Enumeration getHeaders(String name) {
+        return Collections.enumeration(headers.getHeaderValues(name));
+    }
+
     @Override
     public int getIntHeader(String name) {
         if (!headers.containsHeader(name)) {
@@ -220,6 +238,7 @@ public class HttpRequestImpl implements HttpServletRequest {
 
     @Override
     public InputStream getInputStream() {
+        isBodyAccessed = true;
         return in;
     }
 
@@ -240,6 +259,9 @@ public class HttpRequestImpl implements HttpServletRequest {
 
     @Override
     public String getLocalName() {
+        if (localName == null && localInetAddress != null) {
+            localName = resolveHostName(localInetAddress);
+        }
         return localName;
     }
 
@@ -252,6 +274,7 @@ public class HttpRequestImpl implements HttpServletRequest {
     public Map getParameterMap() {
         String method = getMethod().toUpperCase();
         if (method.equals(METHOD_POST) || method.equals(METHOD_PUT)) {
+            parseBody();
             return postParameters;
         }
 
@@ -281,11 +304,17 @@ public class HttpRequestImpl implements HttpServletRequest {
 
     @Override
     public BufferedReader getReader() {
-        throw new IllegalStateException("Not implemented");
+        if (reader == null) {
+            reader = new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(characterEncoding)));
+        }
+        return reader;
     }
 
     @Override
     public String getRemoteHost() {
+        if (remoteHost == null && remoteInetAddress != null) {
+            remoteHost = resolveHostName(remoteInetAddress);
+        }
         return remoteHost;
     }
 
@@ -303,6 +332,9 @@ public class HttpRequestImpl implements HttpServletRequest {
 
     @Override
     public String getServerName() {
+        if (serverName == null) {
+            return getLocalName();
+        }
         return serverName;
     }
 
@@ -338,6 +370,7 @@ public class HttpRequestImpl implements HttpServletRequest {
 
     @Override
     public Collection<UploadedFile> getUploadedFiles() {
+        parseBody();
         return uploadedFiles;
     }
 
@@ -356,6 +389,7 @@ public class HttpRequestImpl implements HttpServletRequest {
 
     @Override
     public String getPostParameter(String paramName) {
+        parseBody();
         return postParameters.get(paramName);
     }
 
@@ -487,6 +521,25 @@ public class HttpRequestImpl implements HttpServletRequest {
         this.in = in;
     }
 
+    /**
+     * Sets the parser reading the post parameters and the uploaded files out of the body.
+     * The body is parsed on the first access to either of them.
+     *
+     * @param bodyParser
+     */
+    public void setBodyParser(RequestBodyParser bodyParser) {
+        this.bodyParser = bodyParser;
+    }
+
+    /**
+     * Tells whether the body has been parsed, the uploaded files exist only after that.
+     *
+     * @return
+     */
+    public boolean isBodyParsed() {
+        return isBodyParsed;
+    }
+
     public void setLocalPort(int localPort) {
         this.localPort = localPort;
     }
@@ -495,6 +548,33 @@ public class HttpRequestImpl implements HttpServletRequest {
         this.remoteHost = remoteHost;
     }
 
+    /**
+     * Sets the remote address, its host name is resolved on demand.
+     *
+     * @param remoteInetAddress
+     */
+    public void setRemoteInetAddress(InetAddress remoteInetAddress) {
+        this.remoteInetAddress = remoteInetAddress;
+    }
+
+    /**
+     * Sets the local address, its host name is resolved on demand.
+     *
+     * @param localInetAddress
+     */
+    public void setLocalInetAddress(InetAddress localInetAddress) {
+        this.localInetAddress = localInetAddress;
+    }
+
+    /**
+     * Sets the resolver used to obtain host names.
+     *
+     * @param hostNameResolver
+     */
+    public void setHostNameResolver(HostNameResolver hostNameResolver) {
+        this.hostNameResolver = hostNameResolver;
+    }
+
     public void setRemotePort(int remotePort) {
         this.remotePort = remotePort;
     }
@@ -543,6 +623,33 @@ public class HttpRequestImpl implements HttpServletRequest {
         this.principal = principal;
     }
 
+    /**
+     * Parses the body unless it was parsed before or already consumed as a raw stream.
+     */
+    private void parseBody() {
+        if (isBodyParsed || bodyParser == null) {
+            return;
+        }
+        isBodyParsed = true;
+
+        if (isBodyAccessed) {
+            return;
+        }
+
+        try {
+            bodyParser.parse(this, in);
+        } catch (IOException e) {
+            throw new UnexpectedSituationException("Unable to read request body", e);
+        }
+    }
+
+    private String resolveHostName(InetAddress address) {
+        if (hostNameResolver == null) {
+            return address.getHostAddress();
+        }
+        return hostNameResolver.getHostName(address);
+    }
+
     /**
      * Returns requested host name.
      *
@@ -6,27 +6,29 @@
  **************************************************/
 package ro.polak.http.servlet.impl;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 import ro.polak.http.Headers;
+import ro.polak.http.Statistics;
+import ro.polak.http.impl.CompressingServletOutputStream;
 import ro.polak.http.impl.ServletOutputStreamImpl;
 import ro.polak.http.protocol.serializer.Serializer;
-import ro.polak.http.servlet.ChunkedPrintWriter;
+import ro.polak.http.protocol.serializer.impl.ByteHeadersSerializer;
 import ro.polak.http.servlet.Cookie;
 import ro.polak.http.servlet.HttpServletResponse;
 import ro.polak.http.servlet.Range;
 import ro.polak.http.servlet.ServletOutputStream;
 import ro.polak.http.servlet.ServletPrintWriter;
+import ro.polak.http.servlet.helper.CompressionHelper;
 import ro.polak.http.servlet.helper.StreamHelper;
-import ro.polak.http.utilities.IOUtilities;
 
 /**
  * Represents HTTP response
@@ -36,24 +38,26 @@ import ro.polak.http.utilities.IOUtilities;
  */
 public class HttpResponseImpl implements HttpServletResponse {
 
-    private static final String NEW_LINE = "\r\n";
     private static final String TRANSFER_ENCODING_CHUNKED = "chunked";
     private static final String CONNECTION_KEEP_ALIVE = "keep-alive";
     private static final String CONNECTION_CLOSE = "close";
-    private static final Charset CHARSET = Charset.forName("UTF-8");
 
-    private final Serializer<Headers> headersSerializer;
+    private final ByteHeadersSerializer headersSerializer;
     private final StreamHelper streamHelper;
     private final Serializer<Cookie> cookieHeaderSerializer;
 
     private Headers headers;
     private OutputStream outputStream;
+    private ServletOutputStreamImpl servletOutputStream;
     private ServletOutputStream wrappedOutputStream;
+    private CompressingServletOutputStream compressingOutputStream;
     private ServletPrintWriter printWriter;
     private boolean isCommitted;
+    private boolean isChunkedTransferAllowed;
+    private boolean isBodyOmitted;
     private List<Cookie> cookies;
     private String status;
-    private int bufferSize = 1024;
+    private int bufferSize = 8 * 1024;
 
     /**
      * Default constructor.
@@ -62,7 +66,7 @@ public class HttpResponseImpl implements HttpServletResponse {
      * @param streamHelper
      * @param outputStream
      */
-    public HttpResponseImpl(Serializer<Headers> headersSerializer,
+    public HttpResponseImpl(ByteHeadersSerializer headersSerializer,
                             Serializer<Cookie> cookieHeaderSerializer,
                             StreamHelper streamHelper,
                             OutputStream outputStream) {
@@ -71,7 +75,8 @@ public class HttpResponseImpl implements HttpServletResponse {
         this.cookieHeaderSerializer = cookieHeaderSerializer;
         this.outputStream = outputStream;
 
-        wrappedOutputStream = new ServletOutputStreamImpl(outputStream, this);
+        servletOutputStream = new ServletOutputStreamImpl(outputStream, this);
+        wrappedOutputStream = servletOutputStream;
 
         reset();
     }
@@ -101,12 +106,36 @@ public class HttpResponseImpl implements HttpServletResponse {
     }
 
     @Override
-    public void resetBuffer() {
-        throw new IllegalStateException("Not implemented");
+    public void resetBuffer() throws IllegalStateException {
+        if (isCommitted) {
+            throw new IllegalStateException("The buffer can not be reset once the response is committed.");
+        }
+
+        // The output pending in the writer is discarded as well
+        servletOutputStream.setCollecting(true);
+        try {
+            if (compressingOutputStream != null) {
+                compressingOutputStream.resetBuffer(printWriter);
+            } else if (printWriter != null) {
+                printWriter.flush();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to reset the buffer", e);
+        } finally {
+            servletOutputStream.setCollecting(false);
+        }
+
+        if (isCommitted) {
+            throw new IllegalStateException("The buffer overflowed while being reset.");
+        }
+        servletOutputStream.resetBuffer();
     }
 
     @Override
-    public void setBufferSize(int bufferSize) {
+    public void setBufferSize(int bufferSize) throws IllegalStateException {
+        if (isCommitted || servletOutputStream.getBufferedLength() > 0) {
+            throw new IllegalStateException("The buffer size must be set before any output is written.");
+        }
         this.bufferSize = bufferSize;
     }
 
@@ -132,8 +161,12 @@ public class HttpResponseImpl implements HttpServletResponse {
     }
 
     @Override
-    public void flushBuffer() {
-        throw new IllegalStateException("Not implemented");
+    public void flushBuffer() throws IOException {
+        if (printWriter != null) {
+            printWriter.flush();
+        } else {
+            wrappedOutputStream.flush();
+        }
     }
 
     @Override
@@ -161,6 +194,15 @@ public class HttpResponseImpl implements HttpServletResponse {
         headers.setHeader(Headers.HEADER_CONNECTION, keepAlive ? CONNECTION_KEEP_ALIVE : CONNECTION_CLOSE);
     }
 
+    /**
+     * Tells whether the connection is to be kept open after the response is served.
+     *
+     * @return
+     */
+    public boolean isKeepAlive() {
+        return CONNECTION_KEEP_ALIVE.equalsIgnoreCase(headers.getHeader(Headers.HEADER_CONNECTION));
+    }
+
     @Override
     public void setContentLength(int length) {
         headers.setHeader(Headers.HEADER_CONTENT_LENGTH, Integer.toString(length));
@@ -186,6 +228,11 @@ public class HttpResponseImpl implements HttpServletResponse {
         headers.setHeader(name, value);
     }
 
+    @Override
+    public void addHeader(String name, String value) {
+        headers.addHeader(name, value);
+    }
+
     @Override
     public void setIntHeader(String name, int value) {
         headers.setHeader(name, Integer.toString(value));
@@ -194,11 +241,8 @@ public class HttpResponseImpl implements HttpServletResponse {
     @Override
     public PrintWriter getWriter() {
         if (printWriter == null) {
-            if (isTransferChunked()) {
-                printWriter = new ChunkedPrintWriter(wrappedOutputStream);
-            } else {
-                printWriter = new ServletPrintWriter(wrappedOutputStream);
-            }
+            // Chunks are framed by the servlet output stream
+            printWriter = new ServletPrintWriter(wrappedOutputStream);
         }
 
         return printWriter;
@@ -209,6 +253,24 @@ public class HttpResponseImpl implements HttpServletResponse {
         return wrappedOutputStream;
     }
 
+    /**
+     * Compresses the body written by the servlet using the given content coding, provided the
+     * response content type and size qualify. Must be called before any output is written.
+     *
+     * @param compressionHelper
+     * @param coding            content coding accepted by the client
+     * @throws IllegalStateException when the output has already been obtained
+     */
+    public void enableCompression(CompressionHelper compressionHelper, String coding) throws IllegalStateException {
+        if (isCommitted || printWriter != null || compressingOutputStream != null) {
+            throw new IllegalStateException("Compression must be enabled before any output is written.");
+        }
+
+        compressingOutputStream = new CompressingServletOutputStream(wrappedOutputStream, this,
+                compressionHelper, coding);
+        wrappedOutputStream = compressingOutputStream;
+    }
+
     /**
      * Flushes headers, returns false when headers already flushed.
      * <p/>
@@ -219,21 +281,72 @@ public class HttpResponseImpl implements HttpServletResponse {
      * @throws IOException
      */
     public void flushHeaders() throws IllegalStateException, IOException {
+        ByteHeadersSerializer.Buffer head = serializeHead();
+        outputStream.write(head.getBytes(), 0, head.size());
+        Statistics.addBytesSent(head.size());
+    }
+
+    /**
+     * Flushes headers followed by the given bytes of the body, both are sent in a single write.
+     *
+     * @param body
+     * @param off
+     * @param len
+     * @throws IllegalStateException when headers have been previously flushed.
+     * @throws IOException
+     */
+    public void flushHeaders(byte[] body, int off, int len) throws IllegalStateException, IOException {
+        if (isBodyOmitted) {
+            flushHeaders();
+            return;
+        }
+
+        ByteHeadersSerializer.Buffer head = serializeHead();
+        int headLength = head.size();
+        head.write(body, off, len);
+        outputStream.write(head.getBytes(), 0, head.size());
+        Statistics.addBytesSent(headLength);
+    }
+
+    /**
+     * Flushes headers followed by the remaining bytes of the body. A body that fits the response
+     * buffer is sent together with the headers in a single write.
+     *
+     * @param body
+     * @throws IllegalStateException when headers have been previously flushed.
+     * @throws IOException
+     */
+    public void flushHeaders(ByteBuffer body) throws IllegalStateException, IOException {
+        int length = body.remaining();
+        if (length > bufferSize || isBodyOmitted) {
+            flushHeaders();
+            serveBuffer(body);
+            return;
+        }
+
+        ByteHeadersSerializer.Buffer head = serializeHead();
+        head.write(body);
+        outputStream.write(head.getBytes(), 0, head.size());
+        Statistics.addBytesSent(head.size());
+    }
+
+    private ByteHeadersSerializer.Buffer serializeHead() {
         if (isCommitted) {
             throw new IllegalStateException("Headers should not be committed more than once.");
         }
 
         isCommitted = true;
 
-        for (Cookie cookie : cookies) {
-            headers.setHeader(Headers.HEADER_SET_COOKIE, cookieHeaderSerializer.serialize(cookie));
+        // Without a declared length the client can only detect the end of the body on close
+        if (isKeepAlive() && !isBodyDelimited()) {
+            setKeepAlive(false);
         }
 
-        byte[] head = (getStatus() + NEW_LINE + headersSerializer.serialize(headers)).getBytes(CHARSET);
-        InputStream inputStream = new ByteArrayInputStream(head);
-        serveStream(inputStream);
+        for (Cookie cookie : cookies) {
+            headers.addHeader(Headers.HEADER_SET_COOKIE, cookieHeaderSerializer.serialize(cookie));
+        }
 
-        IOUtilities.closeSilently(inputStream);
+        return headersSerializer.serialize(getStatus(), headers);
     }
 
     /**
@@ -243,32 +356,55 @@ public class HttpResponseImpl implements HttpServletResponse {
      * @throws IOException
      */
     public void serveStream(InputStream inputStream) throws IOException {
+        if (isBodyOmitted) {
+            return;
+        }
         streamHelper.serveMultiRangeStream(inputStream, outputStream);
     }
 
     /**
-     * Serves a single range of a stream.
+     * Serves a region of a file, directly from the file channel whenever the connection allows it.
      *
-     * @param inputStream
-     * @param range
+     * @param fileChannel
+     * @param position
+     * @param length
      * @throws IOException
      */
-    public void serveStream(InputStream inputStream, Range range) throws IOException {
-        streamHelper.serveMultiRangeStream(inputStream, outputStream, range);
+    public void serveFile(FileChannel fileChannel, long position, long length) throws IOException {
+        if (isBodyOmitted) {
+            return;
+        }
+        streamHelper.serveFile(fileChannel, outputStream, position, length);
     }
 
     /**
-     * Serve multiple ranges of a stream.
+     * Serves the remaining bytes of the buffer.
      *
-     * @param inputStream
+     * @param buffer
+     * @throws IOException
+     */
+    public void serveBuffer(ByteBuffer buffer) throws IOException {
+        if (isBodyOmitted) {
+            return;
+        }
+        streamHelper.serveBuffer(buffer, outputStream);
+    }
+
+    /**
+     * Serve multiple ranges of a file.
+     *
+     * @param fileChannel
      * @param rangeList
      * @param boundary
      * @param contentType
      * @param totalLength
      * @throws IOException
      */
-    public void serveStream(InputStream inputStream, List<Range> rangeList, String boundary, String contentType, long totalLength) throws IOException {
-        streamHelper.serveMultiRangeStream(inputStream, outputStream, rangeList, boundary, contentType, totalLength);
+    public void serveFile(FileChannel fileChannel, List<Range> rangeList, String boundary, String contentType, long totalLength) throws IOException {
+        if (isBodyOmitted) {
+            return;
+        }
+        streamHelper.serveFile(fileChannel, outputStream, rangeList, boundary, contentType, totalLength);
     }
 
     /**
@@ -285,7 +421,7 @@ public class HttpResponseImpl implements HttpServletResponse {
      *
      * @return
      */
-    private boolean isTransferChunked() {
+    public boolean isTransferChunked() {
         if (!getHeaders().containsHeader(Headers.HEADER_TRANSFER_ENCODING)
                 || getHeaders().containsHeader(Headers.HEADER_CONTENT_LENGTH)) {
             return false;
@@ -294,26 +430,99 @@ public class HttpResponseImpl implements HttpServletResponse {
         return getHeaders().getHeader(Headers.HEADER_TRANSFER_ENCODING).equalsIgnoreCase(TRANSFER_ENCODING_CHUNKED);
     }
 
+    /**
+     * Sets whether the client is able to receive a body of the chunked transfer coding.
+     *
+     * @param chunkedTransferAllowed
+     */
+    public void setChunkedTransferAllowed(boolean chunkedTransferAllowed) {
+        isChunkedTransferAllowed = chunkedTransferAllowed;
+    }
+
+    /**
+     * Sets whether the response is to be sent without a body. Responses to HEAD requests are sent
+     * without one, the body written by the servlet is then discarded.
+     *
+     * @param bodyOmitted
+     */
+    public void setBodyOmitted(boolean bodyOmitted) {
+        isBodyOmitted = bodyOmitted;
+    }
+
+    /**
+     * Tells whether the response is to be sent without a body.
+     *
+     * @return
+     */
+    public boolean isBodyOmitted() {
+        return isBodyOmitted;
+    }
+
+    /**
+     * Declares the chunked transfer coding for a body of unknown length, so that the connection
+     * can be kept alive. Must be called right before the headers are committed.
+     *
+     * @return whether the body is to be framed in chunks
+     */
+    public boolean prepareChunkedTransfer() {
+        if (isChunkedTransferAllowed && isKeepAlive() && !isBodyDelimited()) {
+            getHeaders().setHeader(Headers.HEADER_TRANSFER_ENCODING, TRANSFER_ENCODING_CHUNKED);
+        }
+
+        return isTransferChunked();
+    }
+
+    /**
+     * Tells whether the client is able to detect the end of the body without closing the connection.
+     *
+     * @return
+     */
+    private boolean isBodyDelimited() {
+        return isBodyOmitted
+                || getHeaders().containsHeader(Headers.HEADER_CONTENT_LENGTH)
+                || isTransferChunked()
+                || STATUS_NOT_MODIFIED.equals(status);
+    }
+
     /**
      * Flushes the output
      *
      * @throws IOException
      */
     public void flush() throws IOException {
-        // It makes no sense to set chunked encoding if there is no print writer
-        if (printWriter != null && printWriter instanceof ChunkedPrintWriter) {
-            getHeaders().setHeader(Headers.HEADER_TRANSFER_ENCODING, TRANSFER_ENCODING_CHUNKED);
+        // The remaining output is collected first, a body that fits the buffer gets its length declared
+        servletOutputStream.setCollecting(true);
+        try {
+            if (printWriter != null) {
+                printWriter.writeEnd();
+            }
+            if (compressingOutputStream != null) {
+                compressingOutputStream.finish(printWriter);
+            } else if (printWriter != null) {
+                printWriter.flush();
+            }
+        } finally {
+            servletOutputStream.setCollecting(false);
         }
 
         if (!isCommitted()) {
-            flushHeaders();
+            if (isBodyLengthComputable()) {
+                setContentLength(servletOutputStream.getBufferedLength());
+            }
         }
 
-        if (printWriter != null) {
-            printWriter.writeEnd();
-            printWriter.flush();
-        }
+        // Commits the headers together with the buffered body, ends a chunked body
+        servletOutputStream.finish();
+    }
 
-        outputStream.flush();
+    /**
+     * Tells whether the whole body is buffered and its length can be declared.
+     *
+     * @return
+     */
+    private boolean isBodyLengthComputable() {
+        return !getHeaders().containsHeader(Headers.HEADER_CONTENT_LENGTH)
+                && !isTransferChunked()
+                && !STATUS_NOT_MODIFIED.equals(status);
     }
 }
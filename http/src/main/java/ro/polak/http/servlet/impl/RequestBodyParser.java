@@ -0,0 +1,29 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.servlet.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the post parameters and the uploaded files out of the request body.
+ *
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public interface RequestBodyParser {
+
+    /**
+     * Parses the body and assigns the results to the request.
+     *
+     * @param request
+     * @param in      body stream
+     * @throws IOException
+     */
+    void parse(HttpRequestImpl request, InputStream in) throws IOException;
+}
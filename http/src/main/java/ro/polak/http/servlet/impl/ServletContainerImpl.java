@@ -8,9 +8,14 @@
 package ro.polak.http.servlet.impl;
 
 import java.util.Collections;
-import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ro.polak.http.exception.FilterInitializationException;
 import ro.polak.http.exception.ServletException;
@@ -21,53 +26,167 @@ import ro.polak.http.servlet.HttpServlet;
 import ro.polak.http.servlet.Servlet;
 import ro.polak.http.servlet.ServletConfig;
 import ro.polak.http.servlet.ServletContainer;
+import ro.polak.http.utilities.DateProvider;
 
 /**
  * Manages life cycle of servlets.
+ * <p/>
+ * Every servlet and filter class is instantiated and initialized at most once, concurrent
+ * requests for a class being initialized wait for its initialization to complete.
+ * <p/>
+ * When an idle timeout is set, the servlets that were not requested for longer than the timeout
+ * and that are not serving any request are destroyed by the sweeper, they are initialized again
+ * on the next request.
  *
  * @author Piotr Polak piotr [at] polak [dot] ro
  * @since 201709
  */
 public class ServletContainerImpl implements ServletContainer {
 
-    private final Map<Class<? extends HttpServlet>, Servlet> servlets = new ConcurrentHashMap<>();
+    private static final long MIN_SWEEP_INTERVAL = 1000;
+
+    private final ConcurrentMap<Class<? extends HttpServlet>, ServletStats> servletStats = new ConcurrentHashMap<>();
     private final Map<Class<? extends Filter>, Filter> filters = new ConcurrentHashMap<>();
-    private final Map<Class<? extends HttpServlet>, ServletStats> servletStats = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Object> initializationLocks = new ConcurrentHashMap<>();
+    private final DateProvider dateProvider;
+    private final long idleTimeout;
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Creates a container that never destroys idle servlets.
+     */
+    public ServletContainerImpl() {
+        this(new DateProvider(), 0);
+    }
 
-    // TODO Implement timeout
+    /**
+     * Default constructor.
+     *
+     * @param dateProvider
+     * @param idleTimeout  time in milliseconds after which an idle servlet is destroyed, 0 disables the eviction
+     */
+    public ServletContainerImpl(final DateProvider dateProvider, final long idleTimeout) {
+        this.dateProvider = dateProvider;
+        this.idleTimeout = idleTimeout;
+    }
 
     @Override
     public Servlet getServletForClass(Class<? extends HttpServlet> servletClass, ServletConfig servletConfig)
             throws ServletInitializationException, ServletException {
 
-        if (servlets.containsKey(servletClass)) {
-            servletStats.get(servletClass).setLastRequestedAt(new Date());
-            return servlets.get(servletClass);
+        while (true) {
+            ServletStats stats = servletStats.get(servletClass);
+            if (stats == null) {
+                synchronized (getInitializationLock(servletClass)) {
+                    stats = servletStats.get(servletClass);
+                    if (stats == null) {
+                        stats = initializeServlet(servletClass, servletConfig);
+                    }
+                }
+            }
+
+            if (stats.acquire(dateProvider.currentTimeMillis())) {
+                return stats.servlet;
+            }
+            // The servlet is being destroyed, a new instance is to be initialized
         }
+    }
 
-        return initializeServlet(servletClass, servletConfig);
+    @Override
+    public void releaseServletForClass(Class<? extends HttpServlet> servletClass) {
+        ServletStats stats = servletStats.get(servletClass);
+        if (stats != null) {
+            stats.release();
+        }
     }
 
     @Override
     public Filter getFilterForClass(Class<? extends Filter> filterClass, FilterConfig filterConfig)
             throws FilterInitializationException, ServletException {
-        if (filters.containsKey(filterClass)) {
-            return filters.get(filterClass);
+        Filter filter = filters.get(filterClass);
+        if (filter == null) {
+            synchronized (getInitializationLock(filterClass)) {
+                filter = filters.get(filterClass);
+                if (filter == null) {
+                    filter = instantiateFilter(filterClass);
+                    filter.init(filterConfig);
+                    filters.put(filterClass, filter);
+                }
+            }
         }
-
-        Filter filter = instantiateFilter(filterClass);
-        filter.init(filterConfig);
-        filters.put(filterClass, filter);
         return filter;
     }
 
-    private Servlet initializeServlet(Class<? extends HttpServlet> serverClass, ServletConfig servletConfig)
+    /**
+     * Starts the background sweeper destroying the idle servlets. Does nothing when the idle
+     * timeout is not set.
+     */
+    @Override
+    public synchronized void start() {
+        if (idleTimeout <= 0 || sweeper != null) {
+            return;
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "IdleServletSweeper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        long sweepInterval = Math.max(MIN_SWEEP_INTERVAL, idleTimeout / 2);
+        sweeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                destroyIdleServlets();
+            }
+        }, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Destroys the servlets idle for longer than the idle timeout.
+     *
+     * @return the number of destroyed servlets
+     */
+    public int destroyIdleServlets() {
+        if (idleTimeout <= 0) {
+            return 0;
+        }
+
+        long idleSince = dateProvider.currentTimeMillis() - idleTimeout;
+        int destroyed = 0;
+        for (Map.Entry<Class<? extends HttpServlet>, ServletStats> entry : servletStats.entrySet()) {
+            ServletStats stats = entry.getValue();
+            if (stats.markDestroyed(idleSince)) {
+                servletStats.remove(entry.getKey(), stats);
+                stats.servlet.destroy();
+                ++destroyed;
+            }
+        }
+        return destroyed;
+    }
+
+    private Object getInitializationLock(Class<?> clazz) {
+        Object lock = initializationLocks.get(clazz);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = initializationLocks.putIfAbsent(clazz, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    private ServletStats initializeServlet(Class<? extends HttpServlet> serverClass, ServletConfig servletConfig)
             throws ServletInitializationException, ServletException {
         Servlet servlet = instantiateServlet(serverClass);
         servlet.init(servletConfig);
-        servlets.put(serverClass, servlet);
-        servletStats.put(serverClass, new ServletStats());
-        return servlet;
+        ServletStats stats = new ServletStats(servlet, dateProvider.currentTimeMillis());
+        servletStats.put(serverClass, stats);
+        return stats;
     }
 
     private Servlet instantiateServlet(Class<? extends HttpServlet> serverClass) throws ServletInitializationException {
@@ -87,13 +206,21 @@ public class ServletContainerImpl implements ServletContainer {
     }
 
     /**
-     * Destroys all initialized servlets.
+     * Stops the sweeper and destroys all initialized servlets.
      */
+    @Override
     public void shutdown() {
-        for (Map.Entry<Class<? extends HttpServlet>, Servlet> entry : servlets.entrySet()) {
-            entry.getValue().destroy();
-            servlets.remove(entry.getKey());
-            servletStats.remove(entry.getKey());
+        synchronized (this) {
+            if (sweeper != null) {
+                sweeper.shutdownNow();
+                sweeper = null;
+            }
+        }
+
+        for (Map.Entry<Class<? extends HttpServlet>, ServletStats> entry : servletStats.entrySet()) {
+            if (servletStats.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().servlet.destroy();
+            }
         }
     }
 
@@ -106,26 +233,74 @@ public class ServletContainerImpl implements ServletContainer {
         return Collections.unmodifiableMap(servletStats);
     }
 
-    public class ServletStats {
+    /**
+     * Statistics of an initialized servlet. The times are expressed in milliseconds since epoch.
+     */
+    public static final class ServletStats {
 
-        private Date initializedAt;
-        private Date lastRequestedAt;
+        private final Servlet servlet;
+        private final long initializedAt;
+        private final AtomicInteger activeRequests = new AtomicInteger();
+        private volatile long lastRequestedAt;
+        private volatile boolean destroyed;
 
-        public ServletStats() {
-            initializedAt = new Date();
-            lastRequestedAt = new Date();
+        ServletStats(Servlet servlet, long initializedAt) {
+            this.servlet = servlet;
+            this.initializedAt = initializedAt;
+            lastRequestedAt = initializedAt;
         }
 
-        public Date getInitializedAt() {
+        public long getInitializedAt() {
             return initializedAt;
         }
 
-        public Date getLastRequestedAt() {
+        public long getLastRequestedAt() {
             return lastRequestedAt;
         }
 
-        public void setLastRequestedAt(Date lastRequestedAt) {
-            this.lastRequestedAt = lastRequestedAt;
+        public int getActiveRequests() {
+            return activeRequests.get();
+        }
+
+        /**
+         * Registers a request served by the servlet, returns false when the servlet is being destroyed.
+         *
+         * @param now
+         * @return
+         */
+        private boolean acquire(long now) {
+            activeRequests.incrementAndGet();
+            if (destroyed) {
+                activeRequests.decrementAndGet();
+                return false;
+            }
+            lastRequestedAt = now;
+            return true;
+        }
+
+        private void release() {
+            activeRequests.decrementAndGet();
+        }
+
+        /**
+         * Marks the servlet as destroyed unless it is serving a request or it was requested
+         * after the given time.
+         *
+         * @param idleSince
+         * @return
+         */
+        private boolean markDestroyed(long idleSince) {
+            if (activeRequests.get() > 0 || lastRequestedAt > idleSince) {
+                return false;
+            }
+
+            destroyed = true;
+            // A request might have been acquired in between
+            if (activeRequests.get() > 0 || lastRequestedAt > idleSince) {
+                destroyed = false;
+                return false;
+            }
+            return true;
         }
     }
 }
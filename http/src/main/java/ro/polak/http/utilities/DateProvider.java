@@ -24,4 +24,13 @@ public class DateProvider {
     public Date now() {
         return new Date();
     }
+
+    /**
+     * Returns the current time in milliseconds without allocating a date.
+     *
+     * @return
+     */
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
 }
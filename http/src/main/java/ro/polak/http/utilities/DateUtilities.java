@@ -7,6 +7,7 @@
 
 package ro.polak.http.utilities;
 
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -21,7 +22,11 @@ import static java.util.TimeZone.getTimeZone;
  */
 public final class DateUtilities {
 
-    private static final String DATE_FORMAT = "EEE, d MMM yyyy HH:mm:ss z";
+    private static final String DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss z";
+    private static final String[] OBSOLETE_DATE_FORMATS = {
+            "EEEE, dd-MMM-yy HH:mm:ss z",
+            "EEE MMM d HH:mm:ss yyyy"
+    };
 
     private DateUtilities() {
     }
@@ -36,8 +41,38 @@ public final class DateUtilities {
         return getNewDateFormat().format(date);
     }
 
+    /**
+     * Parses a HTTP date, the obsolete RFC 850 and asctime formats are also accepted.
+     *
+     * @param value
+     * @return the date or null when the value can not be parsed
+     */
+    public static Date parse(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        String trimmedValue = value.trim();
+        try {
+            return getNewDateFormat(DATE_FORMAT).parse(trimmedValue);
+        } catch (ParseException e) {
+            for (String format : OBSOLETE_DATE_FORMATS) {
+                try {
+                    return getNewDateFormat(format).parse(trimmedValue);
+                } catch (ParseException ignored) {
+                    // Trying the next format
+                }
+            }
+        }
+        return null;
+    }
+
     private static SimpleDateFormat getNewDateFormat() {
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(DATE_FORMAT, Locale.US);
+        return getNewDateFormat(DATE_FORMAT);
+    }
+
+    private static SimpleDateFormat getNewDateFormat(String format) {
+        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(format, Locale.US);
         simpleDateFormat.setTimeZone(getTimeZone("GMT"));
 
         return simpleDateFormat;
@@ -0,0 +1,181 @@
+/**************************************************
+ * Android Web Server
+ * Based on JavaLittleWebServer (2008)
+ * <p/>
+ * Copyright (c) Piotr Polak 2008-2017
+ **************************************************/
+
+package ro.polak.http.utilities;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of values living for a given time, safe for concurrent use.
+ * <p/>
+ * Reads take no lock and do not modify the cache. Once the cache grows above its maximum size,
+ * a single writer removes the expired entries and, when still needed, arbitrary entries until
+ * a quarter of the capacity is free again. Every invalidation increments the generation, values
+ * computed from the state read before an invalidation are not stored.
+ *
+ * @param <K> key type
+ * @param <V> value type, values must not be null
+ * @author Piotr Polak piotr [at] polak [dot] ro
+ * @since 201710
+ */
+public class ExpiringCache<K, V> {
+
+    private final ConcurrentMap<K, CacheEntry<V>> cache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final int maxSize;
+
+    /**
+     * Default constructor.
+     *
+     * @param maxSize maximum number of cached entries
+     */
+    public ExpiringCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the value of the key, null when missing or expired.
+     *
+     * @param key
+     * @param now current time in milliseconds
+     * @return
+     */
+    public V get(K key, long now) {
+        CacheEntry<V> entry = cache.get(key);
+        if (entry != null && entry.expires > now) {
+            return entry.value;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the current generation, to be read before computing a value.
+     *
+     * @return
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Stores the value unless the cache got invalidated since the given generation was read.
+     *
+     * @param key
+     * @param value
+     * @param now            current time in milliseconds
+     * @param timeToLive     time to live of the value in milliseconds
+     * @param readGeneration the generation read before the value was computed
+     */
+    public void put(K key, V value, long now, long timeToLive, long readGeneration) {
+        if (generation.get() != readGeneration) {
+            return;
+        }
+
+        CacheEntry<V> entry = new CacheEntry<>(value, now + timeToLive);
+        cache.put(key, entry);
+        // An invalidation might have passed over the key just before it was stored
+        if (generation.get() != readGeneration) {
+            cache.remove(key, entry);
+            return;
+        }
+
+        if (cache.size() > maxSize) {
+            evict(now);
+        }
+    }
+
+    /**
+     * Removes the entries accepted by the filter.
+     *
+     * @param entryFilter
+     */
+    public void invalidate(EntryFilter<K, V> entryFilter) {
+        generation.incrementAndGet();
+        Iterator<Map.Entry<K, CacheEntry<V>>> iterator = cache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, CacheEntry<V>> cachedEntry = iterator.next();
+            if (entryFilter.accept(cachedEntry.getKey(), cachedEntry.getValue().value)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            Iterator<CacheEntry<V>> iterator = cache.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().expires <= now) {
+                    iterator.remove();
+                }
+            }
+
+            int targetSize = maxSize - maxSize / 4;
+            iterator = cache.values().iterator();
+            while (cache.size() > targetSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Selects the entries to be invalidated.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     */
+    public interface EntryFilter<K, V> {
+
+        /**
+         * Tells whether the entry is to be removed.
+         *
+         * @param key
+         * @param value
+         * @return
+         */
+        boolean accept(K key, V value);
+    }
+
+    private static class CacheEntry<V> {
+        private final V value;
+        private final long expires;
+
+        CacheEntry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
@@ -9,6 +9,8 @@ package ro.polak.http.utilities;
 
 import java.io.File;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -50,6 +52,71 @@ public final class FileUtilities {
         return ext;
     }
 
+    /**
+     * Returns the path with the empty, "." and ".." segments resolved. The path is normalized
+     * lexically, the file system is not accessed.
+     *
+     * @param path
+     * @param separator
+     * @return
+     */
+    public static String getNormalizedPath(String path, char separator) {
+        if (!isPathDenormalized(path, separator)) {
+            return path;
+        }
+
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf(separator, start);
+            if (end == -1) {
+                end = path.length();
+            }
+            String segment = path.substring(start, end);
+            if ("..".equals(segment)) {
+                if (!segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                }
+            } else if (!segment.isEmpty() && !".".equals(segment)) {
+                segments.add(segment);
+            }
+            start = end + 1;
+        }
+
+        StringBuilder normalizedPath = new StringBuilder(path.length());
+        for (String segment : segments) {
+            if (normalizedPath.length() > 0 || path.charAt(0) == separator) {
+                normalizedPath.append(separator);
+            }
+            normalizedPath.append(segment);
+        }
+        if (normalizedPath.length() == 0 && path.charAt(0) == separator) {
+            normalizedPath.append(separator);
+        }
+        return normalizedPath.toString();
+    }
+
+    private static boolean isPathDenormalized(String path, char separator) {
+        int length = path.length();
+        if (length > 1 && path.charAt(length - 1) == separator) {
+            return true;
+        }
+
+        int segmentStart = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || path.charAt(i) == separator) {
+                int segmentLength = i - segmentStart;
+                if ((segmentLength == 0 && i > 0 && i < length)
+                        || (segmentLength == 1 && path.charAt(segmentStart) == '.')
+                        || (segmentLength == 2 && path.charAt(segmentStart) == '.' && path.charAt(segmentStart + 1) == '.')) {
+                    return true;
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return false;
+    }
+
     /**
      * Once called, deletes all the files inside the temporary files directory
      */
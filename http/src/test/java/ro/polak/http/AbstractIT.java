@@ -3,10 +3,13 @@ package ro.polak.http;
 import org.junit.BeforeClass;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.zip.GZIPOutputStream;
 
 import ro.polak.http.cli.DefaultServerConfigFactory;
 import ro.polak.http.configuration.ServerConfig;
@@ -60,6 +63,8 @@ public class AbstractIT {
 
         handleFile(serverConfig, "staticfile.html", "Static file");
         handleFile(serverConfig, "index.html", "Index file");
+        handleFile(serverConfig, "precompressed.css", "Uncompressed file");
+        handleGzipFile(serverConfig, "precompressed.css.gz", "Precompressed file");
 
         return serverConfig;
     }
@@ -83,6 +88,14 @@ public class AbstractIT {
         writer.close();
     }
 
+    private static void handleGzipFile(ServerConfig serverConfig, String relativePath, String contents)
+            throws IOException {
+        File file = new File(serverConfig.getDocumentRootPath() + relativePath);
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        out.write(contents.getBytes("UTF-8"));
+        out.close();
+    }
+
     private static ServerConfig getServerConfig() throws IOException {
 
         return (new DefaultServerConfigFactory() {
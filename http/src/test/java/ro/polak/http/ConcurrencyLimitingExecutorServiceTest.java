@@ -0,0 +1,77 @@
+package ro.polak.http;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ConcurrencyLimitingExecutorServiceTest {
+
+    @Test
+    public void shouldRejectTasksExceedingLimit() throws InterruptedException {
+        ConcurrencyLimitingExecutorService.RejectedTaskHandler handler =
+                mock(ConcurrencyLimitingExecutorService.RejectedTaskHandler.class);
+        ExecutorService executorService = new ConcurrencyLimitingExecutorService(
+                Executors.newCachedThreadPool(), 1, handler);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        started.await(5, TimeUnit.SECONDS);
+
+        Runnable rejected = mock(Runnable.class);
+        executorService.execute(rejected);
+
+        verify(handler, times(1)).onRejected(rejected);
+        verify(rejected, never()).run();
+
+        release.countDown();
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void shouldReleasePermitAfterTaskCompletes() throws InterruptedException {
+        ConcurrencyLimitingExecutorService.RejectedTaskHandler handler =
+                mock(ConcurrencyLimitingExecutorService.RejectedTaskHandler.class);
+        ConcurrencyLimitingExecutorService executorService = new ConcurrencyLimitingExecutorService(
+                Executors.newCachedThreadPool(), 1, handler);
+
+        for (int i = 0; i < 3; i++) {
+            final CountDownLatch done = new CountDownLatch(1);
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+            done.await(5, TimeUnit.SECONDS);
+            while (executorService.getAvailablePermits() < 1) {
+                Thread.sleep(1);
+            }
+        }
+
+        verify(handler, never()).onRejected(any(Runnable.class));
+        executorService.shutdown();
+    }
+}
@@ -63,4 +63,66 @@ public class HeadersTest {
         assertThat(headers.keySet().size(), is(1));
         assertThat(headers.getHeader("Cookie"), is("1234"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldKeepRepeatedHeaderValues() {
+        headers.addHeader("Set-Cookie", "a=1");
+        headers.addHeader("Server", "Test");
+        headers.addHeader("SET-COOKIE", "b=2");
+
+        assertThat(headers.size(), is(3));
+        assertThat(headers.keySet().size(), is(2));
+        assertThat(headers.getHeaderValues("set-cookie"), contains("a=1", "b=2"));
+        assertThat(headers.getHeader("Set-Cookie"), is("a=1,b=2"));
+    }
+
+    @Test
+    public void shouldIterateInOrderOfAppearance() {
+        headers.setHeader("X-First", "1");
+        headers.setHeader(Headers.HEADER_CONTENT_LENGTH, "2");
+        headers.addHeader("X-First", "3");
+
+        assertThat(headers.getNameAt(0), is("X-First"));
+        assertThat(headers.getValueAt(0), is("1"));
+        assertThat(headers.getNameAt(1), is(Headers.HEADER_CONTENT_LENGTH));
+        assertThat(headers.getValueAt(2), is("3"));
+    }
+
+    @Test
+    public void shouldReplaceAllValuesOnSet() {
+        headers.addHeader("Accept", "a");
+        headers.addHeader(Headers.HEADER_HOST, "localhost");
+        headers.addHeader("Accept", "b");
+        headers.setHeader("accept", "c");
+
+        assertThat(headers.size(), is(2));
+        assertThat(headers.getHeader("Accept"), is("c"));
+        assertThat(headers.getNameAt(0), is("Accept"));
+        assertThat(headers.getHeader(Headers.HEADER_HOST), is("localhost"));
+    }
+
+    @Test
+    public void shouldRemoveHeader() {
+        headers.addHeader(Headers.HEADER_CONNECTION, "close");
+        headers.addHeader("X-Other", "1");
+        headers.addHeader("connection", "keep-alive");
+
+        headers.removeHeader(Headers.HEADER_CONNECTION);
+
+        assertThat(headers.containsHeader("Connection"), is(false));
+        assertThat(headers.getHeader(Headers.HEADER_CONNECTION), is(nullValue()));
+        assertThat(headers.getHeaderValues("X-Other"), contains("1"));
+    }
+
+    @Test
+    public void shouldGrowBeyondInitialCapacity() {
+        for (int i = 0; i < 40; i++) {
+            headers.addHeader("X-Header-" + i, Integer.toString(i));
+        }
+        headers.addHeader(Headers.HEADER_RANGE, "bytes=0-1");
+
+        assertThat(headers.size(), is(41));
+        assertThat(headers.getHeader("x-header-39"), is("39"));
+        assertThat(headers.getHeader("Range"), is("bytes=0-1"));
+    }
+}
@@ -3,9 +3,11 @@ package ro.polak.http;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Iterator;
 
 import ro.polak.http.exception.protocol.PayloadTooLargeProtocolException;
@@ -242,10 +244,112 @@ public class MultipartRequestHandlerTest {
         }
     }
 
+    @Test
+    public void shouldDecodeNonAsciiFieldValues() throws Exception {
+        String data = new MultipartInputBuilder(BOUNDARY)
+                .withField("field_1", "Zażółć gęślą jaźń")
+                .build();
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, new ByteArrayInputStream(bytes),
+                bytes.length, BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 2048);
+        mrh.handle();
+
+        assertThat(mrh.getPost().get("field_1"), is("Zażółć gęślą jaźń"));
+    }
+
+    @Test
+    public void shouldHandleStreamReturningSingleBytes() throws Exception {
+        String fileContents = "\r\n--" + BOUNDARY.substring(0, 5) + "\r\r\n-CONTENTS-\r\n-";
+        String data = new MultipartInputBuilder(BOUNDARY)
+                .withField("field_1", "A123")
+                .withFile("FIELDNAME", "FILE.PDF", "application/pdf", fileContents)
+                .withField("field_2", "")
+                .build();
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser,
+                new SingleByteInputStream(new ByteArrayInputStream(bytes)),
+                bytes.length, BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 2048);
+        mrh.handle();
+
+        assertThat(mrh.getPost().get("field_1"), is("A123"));
+        assertThat(mrh.getPost().get("field_2"), is(""));
+        assertThat(mrh.getUploadedFiles().size(), is(1));
+        UploadedFile uploadedFile = mrh.getUploadedFiles().iterator().next();
+        assertThat(new String(Files.readAllBytes(uploadedFile.getFile().toPath()), StandardCharsets.UTF_8),
+                is(fileContents));
+        uploadedFile.destroy();
+    }
+
+    @Test
+    public void shouldCopyLargeFilesExactly() throws Exception {
+        StringBuilder fileContents = new StringBuilder();
+        for (int i = 0; fileContents.length() < 300000; i++) {
+            fileContents.append(i).append("\r\n-");
+        }
+        String data = new MultipartInputBuilder(BOUNDARY)
+                .withFile("FIELDNAME", "FILE.TXT", "text/plain", fileContents.toString())
+                .build();
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser, new ByteArrayInputStream(bytes),
+                bytes.length, BOUNDARY, TEMPORARY_UPLOADS_DIRECTORY, 4096);
+        mrh.handle();
+
+        UploadedFile uploadedFile = mrh.getUploadedFiles().iterator().next();
+        assertThat(new String(Files.readAllBytes(uploadedFile.getFile().toPath()), StandardCharsets.UTF_8),
+                is(fileContents.toString()));
+        uploadedFile.destroy();
+    }
+
+    @Test
+    public void shouldKeepFilesBelowThresholdInMemory() throws Exception {
+        String data = new MultipartInputBuilder(BOUNDARY)
+                .withFile("SMALL", "SMALL.TXT", "text/plain", "ABCD")
+                .withFile("LARGE", "LARGE.TXT", "text/plain", "ABCDEFGHIJ")
+                .build();
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+
+        MultipartRequestHandler mrh = new MultipartRequestHandler(parser,
+                new SingleByteInputStream(new ByteArrayInputStream(bytes)), bytes.length, BOUNDARY,
+                TEMPORARY_UPLOADS_DIRECTORY, 2048, StandardCharsets.UTF_8, 4);
+        mrh.handle();
+
+        Iterator<UploadedFile> uploadedFiles = mrh.getUploadedFiles().iterator();
+        UploadedFile small = uploadedFiles.next();
+        UploadedFile large = uploadedFiles.next();
+        try {
+            assertThat(small.isInMemory(), is(true));
+            assertThat(small.getSize(), is(4L));
+            assertThat(large.isInMemory(), is(false));
+            assertThat(new String(Files.readAllBytes(large.getFile().toPath()), StandardCharsets.UTF_8),
+                    is("ABCDEFGHIJ"));
+        } finally {
+            small.destroy();
+            large.destroy();
+        }
+    }
+
     private InputStream getStreamOutOfString(String data) {
         return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
     }
 
+    /**
+     * Returns at most one byte per read call.
+     */
+    private static class SingleByteInputStream extends FilterInputStream {
+
+        private SingleByteInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
     /**
      * Builds multipart input.
      */
@@ -4,8 +4,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
@@ -13,6 +15,7 @@ import java.net.Socket;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import okhttp3.Cookie;
 import okhttp3.CookieJar;
@@ -27,6 +30,7 @@ import okhttp3.Response;
 
 import static junit.framework.TestCase.fail;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.endsWith;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.Matchers.is;
@@ -397,6 +401,20 @@ public class ProtocolIT extends AbstractIT {
         assertThat(responseBodyString, not(isEmptyOrNullString()));
     }
 
+    @Test
+    public void shouldDeclareLengthOfBufferedServletResponse() throws IOException {
+        Request request = new Request.Builder()
+                .url(getFullUrl("/example/Index"))
+                .get()
+                .build();
+
+        Response response = client.newCall(request).execute();
+        assertThat(response.code(), is(200));
+        String responseBodyString = response.body().string();
+        assertThat(response.header(Headers.HEADER_CONTENT_LENGTH),
+                is(Integer.toString(responseBodyString.getBytes("UTF-8").length)));
+    }
+
     @Test
     public void shouldReturn200ChunkedResponse() throws IOException {
         Request request = new Request.Builder()
@@ -411,6 +429,34 @@ public class ProtocolIT extends AbstractIT {
         assertThat(responseBodyString, is("This is an example of chunked transfer type. Chunked transfer type can be used when the final length of the data is not known."));
     }
 
+    @Test
+    public void shouldFrameChunksByByteLength() throws IOException {
+        String requestBody = RequestBuilder.defaultBuilder()
+                .get("/example/Chunked")
+                .withHost(HOST + ":" + PORT)
+                .withCloseConnection()
+                .toString();
+
+        Socket socket = getSocket();
+        try {
+            socket.getOutputStream().write(requestBody.getBytes());
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int numberOfBytesRead;
+            while ((numberOfBytesRead = in.read(buffer)) != -1) {
+                received.write(buffer, 0, numberOfBytesRead);
+            }
+
+            assertThat(received.toString("UTF-8"), endsWith("\r\n\r\n"
+                    + "2D\r\nThis is an example of chunked transfer type. \r\n"
+                    + "51\r\nChunked transfer type can be used when the final length of the data is not known.\r\n"
+                    + "0\r\n\r\n"));
+        } finally {
+            socket.close();
+        }
+    }
+
     private File createRandomContentsFile() throws IOException {
         File file = File.createTempFile("servertest", ".tmp");
         RandomAccessFile f = new RandomAccessFile(file, "rw");
@@ -478,6 +524,21 @@ public class ProtocolIT extends AbstractIT {
         assertThat(responseBodyString, is("Static"));
     }
 
+    @Test
+    public void shouldReturn206AndServeSuffixRangeOfStaticFile() throws IOException {
+        Request request = new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .header("Range", "bytes=-4")
+                .get()
+                .build();
+
+        Response response = client.newCall(request).execute();
+        assertThat(response.code(), is(206));
+        assertThat(response.header(Headers.HEADER_CONTENT_RANGE), is("bytes 7-10/11"));
+        assertThat(response.header(Headers.HEADER_CONTENT_LENGTH), is("4"));
+        assertThat(response.body().string(), is("file"));
+    }
+
     @Test
     public void shouldReturn206AndServeRangesOfStaticFileForMultipleRanges() throws IOException {
         String fileLength = "11";
@@ -568,6 +629,111 @@ public class ProtocolIT extends AbstractIT {
         assertThat(responseBodyString, containsString("Bad Request"));
     }
 
+    @Test
+    public void shouldReturn304WhenETagMatches() throws IOException {
+        Response response = client.newCall(new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .get()
+                .build()).execute();
+        String eTag = response.header(Headers.HEADER_ETAG);
+        assertThat(eTag, not(isEmptyOrNullString()));
+        assertThat(response.header(Headers.HEADER_LAST_MODIFIED), not(isEmptyOrNullString()));
+        response.body().close();
+
+        Request request = new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .header(Headers.HEADER_IF_NONE_MATCH, "\"other\", " + eTag)
+                .get()
+                .build();
+
+        response = client.newCall(request).execute();
+        assertThat(response.code(), is(304));
+        assertThat(response.header(Headers.HEADER_ETAG), is(eTag));
+        assertThat(response.body().string(), is(""));
+    }
+
+    @Test
+    public void shouldReturn304WhenNotModifiedSince() throws IOException {
+        Response response = client.newCall(new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .get()
+                .build()).execute();
+        String lastModified = response.header(Headers.HEADER_LAST_MODIFIED);
+        response.body().close();
+
+        Request request = new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .header(Headers.HEADER_IF_MODIFIED_SINCE, lastModified)
+                .get()
+                .build();
+
+        response = client.newCall(request).execute();
+        assertThat(response.code(), is(304));
+        assertThat(response.body().string(), is(""));
+    }
+
+    @Test
+    public void shouldReturn200WhenETagDoesNotMatch() throws IOException {
+        Request request = new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .header(Headers.HEADER_IF_NONE_MATCH, "\"other\"")
+                .header(Headers.HEADER_IF_MODIFIED_SINCE, "Sun, 01 Jan 2040 00:00:00 GMT")
+                .get()
+                .build();
+
+        Response response = client.newCall(request).execute();
+        assertThat(response.code(), is(200));
+        assertThat(response.body().string(), is("Static file"));
+    }
+
+    @Test
+    public void shouldServeCompleteContentWhenIfRangeDoesNotMatch() throws IOException {
+        Request request = new Request.Builder()
+                .url(getFullUrl("/staticfile.html"))
+                .header(Headers.HEADER_RANGE, "bytes=0-5")
+                .header(Headers.HEADER_IF_RANGE, "\"other\"")
+                .get()
+                .build();
+
+        Response response = client.newCall(request).execute();
+        assertThat(response.code(), is(200));
+        assertThat(response.body().string(), is("Static file"));
+    }
+
+    @Test
+    public void shouldServePrecompressedSidecarWhenGzipAccepted() throws IOException {
+        Request request = new Request.Builder()
+                .url(getFullUrl("/precompressed.css"))
+                .header(Headers.HEADER_ACCEPT_ENCODING, "deflate, gzip;q=0.8")
+                .get()
+                .build();
+
+        Response response = client.newCall(request).execute();
+        assertThat(response.code(), is(200));
+        assertThat(response.header(Headers.HEADER_CONTENT_ENCODING), is("gzip"));
+        assertThat(response.header(Headers.HEADER_VARY), is(Headers.HEADER_ACCEPT_ENCODING));
+
+        InputStream in = new GZIPInputStream(response.body().byteStream());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        assertThat(reader.readLine(), is("Precompressed file"));
+        reader.close();
+    }
+
+    @Test
+    public void shouldServeUncompressedFileWhenGzipNotAccepted() throws IOException {
+        Request request = new Request.Builder()
+                .url(getFullUrl("/precompressed.css"))
+                .header(Headers.HEADER_ACCEPT_ENCODING, "gzip;q=0, identity")
+                .get()
+                .build();
+
+        Response response = client.newCall(request).execute();
+        assertThat(response.code(), is(200));
+        assertThat(response.header(Headers.HEADER_CONTENT_ENCODING), is(nullValue()));
+        assertThat(response.header(Headers.HEADER_VARY), is(Headers.HEADER_ACCEPT_ENCODING));
+        assertThat(response.body().string(), is("Uncompressed file"));
+    }
+
     //
 //    @Test
 //    public void shouldReturn431RequestHeaderFieldsTooLarge() {
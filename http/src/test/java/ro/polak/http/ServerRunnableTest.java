@@ -0,0 +1,201 @@
+package ro.polak.http;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.servlet.HttpServletResponse;
+import ro.polak.http.servlet.impl.HttpRequestImpl;
+import ro.polak.http.servlet.impl.HttpResponseImpl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ServerRunnableTest {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final String STATUS_OK = HttpServletResponse.STATUS_OK;
+
+    private ServerConfig serverConfig;
+    private ByteArrayOutputStream outputStream;
+
+    @Before
+    public void setUp() {
+        serverConfig = mock(ServerConfig.class);
+        when(serverConfig.getTempPath()).thenReturn(System.getProperty("java.io.tmpdir"));
+        when(serverConfig.getMaxServerThreads()).thenReturn(1);
+        when(serverConfig.isKeepAlive()).thenReturn(true);
+        when(serverConfig.getKeepAliveTimeout()).thenReturn(5);
+        when(serverConfig.getKeepAliveMaxRequests()).thenReturn(100);
+        when(serverConfig.getSupportedMethods()).thenReturn(Arrays.asList("GET", "POST", "HEAD"));
+        List<ResourceProvider> resourceProviders = Arrays.<ResourceProvider>asList(new FixedLengthResourceProvider());
+        when(serverConfig.getResourceProviders()).thenReturn(resourceProviders);
+
+        outputStream = new ByteArrayOutputStream();
+    }
+
+    @Test
+    public void shouldServeSubsequentRequestsOverPersistentConnection() throws IOException {
+        String output = serve("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /second HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+        assertThat(countOccurrences(output, STATUS_OK), is(2));
+        assertThat(output, containsString("/first"));
+        assertThat(output, containsString("/second"));
+        assertThat(output, containsString("Connection: keep-alive"));
+    }
+
+    @Test
+    public void shouldKeepAliveHeadRequestAndOmitBody() throws IOException {
+        String output = serve("HEAD /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /second HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+        assertThat(countOccurrences(output, STATUS_OK), is(2));
+        assertThat(countOccurrences(output, "Connection: keep-alive"), is(2));
+        assertThat(output, not(containsString("/first")));
+        assertThat(output, containsString("/second"));
+    }
+
+    @Test
+    public void shouldCloseConnectionWhenRequestedByClient() throws IOException {
+        String output = serve("GET /first HTTP/1.1\r\nConnection: close\r\n\r\n"
+                + "GET /second HTTP/1.1\r\n\r\n");
+
+        assertThat(countOccurrences(output, STATUS_OK), is(1));
+        assertThat(output, containsString("Connection: close"));
+    }
+
+    @Test
+    public void shouldNotKeepAliveHttp10ConnectionByDefault() throws IOException {
+        String output = serve("GET /first HTTP/1.0\r\n\r\n"
+                + "GET /second HTTP/1.0\r\n\r\n");
+
+        assertThat(countOccurrences(output, STATUS_OK), is(1));
+    }
+
+    @Test
+    public void shouldKeepAliveHttp10ConnectionWhenRequested() throws IOException {
+        String output = serve("GET /first HTTP/1.0\r\nConnection: Keep-Alive\r\n\r\n"
+                + "GET /second HTTP/1.0\r\n\r\n");
+
+        assertThat(countOccurrences(output, STATUS_OK), is(2));
+    }
+
+    @Test
+    public void shouldNotKeepAliveWhenDisabled() throws IOException {
+        when(serverConfig.isKeepAlive()).thenReturn(false);
+
+        String output = serve("GET /first HTTP/1.1\r\n\r\n"
+                + "GET /second HTTP/1.1\r\n\r\n");
+
+        assertThat(countOccurrences(output, STATUS_OK), is(1));
+        assertThat(output, containsString("Connection: close"));
+    }
+
+    @Test
+    public void shouldCloseConnectionAfterMaxRequests() throws IOException {
+        when(serverConfig.getKeepAliveMaxRequests()).thenReturn(2);
+
+        String output = serve("GET /first HTTP/1.1\r\n\r\n"
+                + "GET /second HTTP/1.1\r\n\r\n"
+                + "GET /third HTTP/1.1\r\n\r\n");
+
+        assertThat(countOccurrences(output, STATUS_OK), is(2));
+        assertThat(countOccurrences(output, "Connection: close"), is(1));
+    }
+
+    @Test
+    public void shouldSkipUnreadRequestBody() throws IOException {
+        String output = serve("GET /first HTTP/1.1\r\nContent-Length: 5\r\n\r\nhello"
+                + "\r\nGET /second HTTP/1.1\r\n\r\n");
+
+        assertThat(countOccurrences(output, STATUS_OK), is(2));
+        assertThat(output, containsString("/second"));
+    }
+
+    @Test
+    public void shouldCloseConnectionAfterError() throws IOException {
+        String output = serve("GET /first HTTP/1.1\r\nContent-Length: abc\r\n\r\n"
+                + "GET /second HTTP/1.1\r\n\r\n");
+
+        assertThat(countOccurrences(output, STATUS_OK), is(0));
+        assertThat(output, containsString("400"));
+    }
+
+    private String serve(String input) throws IOException {
+        Socket socket = mock(Socket.class);
+        when(socket.getInputStream()).thenReturn(new ByteArrayInputStream(input.getBytes(CHARSET)));
+        when(socket.getOutputStream()).thenReturn(outputStream);
+        when(socket.getInetAddress()).thenReturn(InetAddress.getLoopbackAddress());
+        when(socket.getLocalAddress()).thenReturn(InetAddress.getLoopbackAddress());
+        when(socket.getRemoteSocketAddress()).thenReturn(new InetSocketAddress(InetAddress.getLoopbackAddress(), 1234));
+
+        ServiceContainer serviceContainer = new ServiceContainer(serverConfig);
+        ServerRunnable serverRunnable = new ServerRunnable(socket, serverConfig,
+                serviceContainer.getRequestWrapperFactory(),
+                serviceContainer.getResponseFactory(),
+                serviceContainer.getHttpErrorHandlerResolver(),
+                serviceContainer.getPathHelper(),
+                serviceContainer.getResourceResolver());
+
+        try {
+            serverRunnable.run();
+        } catch (RuntimeException e) {
+            // Errors are rethrown after being served
+        }
+
+        return new String(outputStream.toByteArray(), CHARSET);
+    }
+
+    private int countOccurrences(String haystack, String needle) {
+        int count = 0;
+        int index = haystack.indexOf(needle);
+        while (index != -1) {
+            ++count;
+            index = haystack.indexOf(needle, index + needle.length());
+        }
+        return count;
+    }
+
+    private static class FixedLengthResourceProvider implements ResourceProvider {
+
+        @Override
+        public boolean canLoad(String path) {
+            return true;
+        }
+
+        @Override
+        public void load(String path, HttpRequestImpl request, HttpResponseImpl response) throws IOException {
+            byte[] body = path.getBytes(CHARSET);
+            response.setStatus(HttpServletResponse.STATUS_OK);
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+            response.flush();
+        }
+
+        @Override
+        public void start() {
+            // Nothing to start
+        }
+
+        @Override
+        public void shutdown() {
+            // Nothing to release
+        }
+    }
+}
@@ -2,17 +2,27 @@ package ro.polak.http;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 
+import ro.polak.http.nio.NioConnection;
+import ro.polak.http.nio.NioServerRunnable;
+import ro.polak.http.protocol.serializer.Serializer;
+import ro.polak.http.protocol.serializer.impl.ByteHeadersSerializer;
 import ro.polak.http.servlet.impl.HttpResponseImpl;
 import ro.polak.http.servlet.factory.HttpServletResponseImplFactory;
+import ro.polak.http.servlet.helper.StreamHelper;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -51,4 +61,33 @@ public class ServiceUnavailableHandlerTest {
         printWriter.flush();
         assertThat(outputStream.toString(), containsString("503"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldWriteSerializedResponseToNioConnectionWithoutBlocking() throws Exception {
+        factory = new HttpServletResponseImplFactory(new ByteHeadersSerializer(),
+                mock(Serializer.class), mock(StreamHelper.class));
+        serviceUnavailableHandler = new ServiceUnavailableHandler(factory);
+
+        NioConnection connection = mock(NioConnection.class);
+        SocketChannel channel = mock(SocketChannel.class);
+        when(connection.getChannel()).thenReturn(channel);
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+                int length = buffer.remaining();
+                outputStream.write(buffer.array(), buffer.position(), length);
+                buffer.position(buffer.limit());
+                return length;
+            }
+        }).when(channel).write(any(ByteBuffer.class));
+        NioServerRunnable runnable = mock(NioServerRunnable.class);
+        when(runnable.getConnection()).thenReturn(connection);
+
+        serviceUnavailableHandler.rejectedExecution(runnable, null);
+
+        verify(connection, never()).getOutputStream();
+        verify(connection, times(1)).close();
+        assertThat(outputStream.toString(), containsString("503"));
+    }
+}
@@ -6,9 +6,19 @@ import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
 
 import ro.polak.http.configuration.ServerConfig;
-
+import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.resource.provider.impl.ServletResourceProvider;
+import ro.polak.http.servlet.ServletConfig;
+import ro.polak.http.servlet.helper.CompressionHelper;
+import ro.polak.http.servlet.impl.ServletContainerImpl;
+import ro.polak.http.servlet.impl.ServletContextImpl;
+import ro.polak.http.servlet.loader.SampleServlet;
+
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
@@ -86,6 +96,25 @@ public class WebServerTest {
         assertThat(webServer.isRunning(), is(false));
     }
 
+    @Test
+    public void shouldDestroyServletsOnceStopped() throws Exception {
+        ServletContainerImpl servletContainer = new ServletContainerImpl();
+        ServletResourceProvider servletResourceProvider = new ServletResourceProvider(servletContainer,
+                Collections.<ServletContextImpl>emptyList(), mock(CompressionHelper.class));
+        ServerConfig serverConfig = getDefaultServerConfig();
+        when(serverConfig.getResourceProviders()).thenReturn(
+                Arrays.<ResourceProvider>asList(servletResourceProvider));
+
+        WebServer webServer = new WebServer(mock(ServerSocket.class), serverConfig);
+        assertThat(webServer.startServer(), is(true));
+        SampleServlet servlet = (SampleServlet) servletContainer.getServletForClass(SampleServlet.class,
+                mock(ServletConfig.class));
+        webServer.stopServer();
+
+        assertThat(servlet.getDestroyedCounter(), is(equalTo(1)));
+        assertThat(servletContainer.getServletStats().size(), is(0));
+    }
+
     private ServerConfig getDefaultServerConfig() throws IOException {
         ServerConfig serverConfig = mock(ServerConfig.class);
         when(serverConfig.getDocumentRootPath()).thenReturn("/tmp/SomePathThatDoesNotExist");
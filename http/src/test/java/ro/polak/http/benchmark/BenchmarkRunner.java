@@ -0,0 +1,60 @@
+package ro.polak.http.benchmark;
+
+import java.util.Locale;
+
+/**
+ * Minimal benchmark runner used by the benchmarks of this package.
+ * <p/>
+ * Benchmarks are plain main() programs and are not run as a part of the test suite.
+ */
+public final class BenchmarkRunner {
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * A unit of work being measured.
+     */
+    public interface Task {
+        /**
+         * Runs the task once, the returned value prevents the work from being optimized away.
+         *
+         * @return
+         * @throws Exception
+         */
+        Object run() throws Exception;
+    }
+
+    /**
+     * Measures and prints the average time of a single task execution.
+     *
+     * @param name
+     * @param iterations
+     * @param task
+     * @return average nanoseconds per operation
+     * @throws Exception
+     */
+    public static double measure(String name, int iterations, Task task) throws Exception {
+        int blackHole = 0;
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            for (int i = 0; i < iterations; i++) {
+                blackHole += System.identityHashCode(task.run());
+            }
+        }
+
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                blackHole += System.identityHashCode(task.run());
+            }
+            best = Math.min(best, (System.nanoTime() - start) / (double) iterations);
+        }
+
+        System.out.println(String.format(Locale.US, "%-50s %10.1f ns/op  (%d)", name, best, blackHole & 1));
+        return best;
+    }
+}
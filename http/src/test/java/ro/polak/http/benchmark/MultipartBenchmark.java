@@ -0,0 +1,99 @@
+package ro.polak.http.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import ro.polak.http.MultipartHeadersPart;
+import ro.polak.http.MultipartRequestHandler;
+import ro.polak.http.protocol.parser.Parser;
+import ro.polak.http.protocol.parser.impl.HeadersParser;
+import ro.polak.http.protocol.parser.impl.MultipartHeadersPartParser;
+import ro.polak.http.servlet.UploadedFile;
+
+/**
+ * Measures the throughput of the multipart handler on a 100 MB upload, compared to the handler
+ * it replaced.
+ */
+public class MultipartBenchmark {
+
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+    private static final int FILE_SIZE = 100 * 1024 * 1024;
+    private static final int LEGACY_BUFFER_LENGTH = 2048;
+    private static final int BUFFER_LENGTH = 64 * 1024;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        final byte[] body = createBody();
+        final String tempPath = System.getProperty("java.io.tmpdir") + File.separator;
+        final Parser<MultipartHeadersPart> parser = new MultipartHeadersPartParser(new HeadersParser());
+
+        measure("LegacyMultipartRequestHandler", body, new BenchmarkRunner.Task() {
+            @Override
+            public Object run() throws Exception {
+                LegacyMultipartRequestHandler handler = new LegacyMultipartRequestHandler(parser,
+                        new ByteArrayInputStream(body), body.length, BOUNDARY, tempPath, LEGACY_BUFFER_LENGTH);
+                handler.handle();
+                destroy(handler.getUploadedFiles());
+                return handler.getPost();
+            }
+        });
+        measure("MultipartRequestHandler", body, new BenchmarkRunner.Task() {
+            @Override
+            public Object run() throws Exception {
+                MultipartRequestHandler handler = new MultipartRequestHandler(parser,
+                        new ByteArrayInputStream(body), body.length, BOUNDARY, tempPath, BUFFER_LENGTH);
+                handler.handle();
+                destroy(handler.getUploadedFiles());
+                return handler.getPost();
+            }
+        });
+    }
+
+    private static void measure(String name, byte[] body, BenchmarkRunner.Task task) throws Exception {
+        task.run(); // Warm up
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, (System.nanoTime() - start) / 1e9);
+        }
+        System.out.println(String.format(Locale.US, "%-50s %8.2f s  %8.1f MB/s", name, best,
+                body.length / 1024.0 / 1024.0 / best));
+    }
+
+    private static void destroy(Iterable<UploadedFile> uploadedFiles) {
+        for (UploadedFile uploadedFile : uploadedFiles) {
+            uploadedFile.destroy();
+        }
+    }
+
+    private static byte[] createBody() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(FILE_SIZE + 1024);
+        out.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"description\"\r\n\r\n"
+                + "Holiday pictures\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"archive.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(CHARSET));
+
+        // Pseudo random binary content containing partial delimiters
+        byte[] chunk = new byte[64 * 1024];
+        long seed = 42;
+        for (int i = 0; i < chunk.length; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            chunk[i] = (byte) (seed >>> 56);
+        }
+        byte[] partialDelimiter = ("\r\n--" + BOUNDARY.substring(0, 10)).getBytes(CHARSET);
+        System.arraycopy(partialDelimiter, 0, chunk, 1000, partialDelimiter.length);
+        for (int written = 0; written < FILE_SIZE; written += chunk.length) {
+            out.write(chunk, 0, Math.min(chunk.length, FILE_SIZE - written));
+        }
+
+        out.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(CHARSET));
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,62 @@
+package ro.polak.http.benchmark;
+
+import java.nio.charset.Charset;
+
+import ro.polak.http.protocol.parser.impl.ByteHeadersParser;
+import ro.polak.http.protocol.parser.impl.ByteRequestStatusParser;
+import ro.polak.http.protocol.parser.impl.HeadersParser;
+import ro.polak.http.protocol.parser.impl.RequestStatusParser;
+
+/**
+ * Compares the string based request head parsers with the byte level ones.
+ * <p/>
+ * The string parsers are measured together with the decoding of the head into a string as this
+ * is what the request factory has to do for them.
+ */
+public class ParserBenchmark {
+
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+    private static final int ITERATIONS = 200000;
+
+    private static final byte[] STATUS_LINE = "GET /static/css/main.css?v=20171001 HTTP/1.1".getBytes(CHARSET);
+    private static final byte[] HEADERS = ("Host: localhost:8080\r\n"
+            + "Connection: keep-alive\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/61.0 Safari/537.36\r\n"
+            + "Accept: text/css,*/*;q=0.1\r\n"
+            + "Referer: http://localhost:8080/\r\n"
+            + "Accept-Encoding: gzip, deflate, br\r\n"
+            + "Accept-Language: en-US,en;q=0.8,pl;q=0.6\r\n"
+            + "Cookie: JSSESSIONID=a1b2c3d4e5f6; theme=dark").getBytes(CHARSET);
+
+    public static void main(String[] args) throws Exception {
+        final RequestStatusParser requestStatusParser = new RequestStatusParser();
+        final ByteRequestStatusParser byteRequestStatusParser = new ByteRequestStatusParser();
+        final HeadersParser headersParser = new HeadersParser();
+        final ByteHeadersParser byteHeadersParser = new ByteHeadersParser();
+
+        BenchmarkRunner.measure("RequestStatusParser", ITERATIONS, new BenchmarkRunner.Task() {
+            @Override
+            public Object run() throws Exception {
+                return requestStatusParser.parse(new String(STATUS_LINE, CHARSET));
+            }
+        });
+        BenchmarkRunner.measure("ByteRequestStatusParser", ITERATIONS, new BenchmarkRunner.Task() {
+            @Override
+            public Object run() throws Exception {
+                return byteRequestStatusParser.parse(STATUS_LINE, 0, STATUS_LINE.length);
+            }
+        });
+        BenchmarkRunner.measure("HeadersParser", ITERATIONS, new BenchmarkRunner.Task() {
+            @Override
+            public Object run() throws Exception {
+                return headersParser.parse(new String(HEADERS, CHARSET));
+            }
+        });
+        BenchmarkRunner.measure("ByteHeadersParser", ITERATIONS, new BenchmarkRunner.Task() {
+            @Override
+            public Object run() throws Exception {
+                return byteHeadersParser.parse(HEADERS, 0, HEADERS.length);
+            }
+        });
+    }
+}
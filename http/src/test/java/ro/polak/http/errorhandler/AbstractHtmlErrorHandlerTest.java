@@ -10,6 +10,7 @@ import java.io.OutputStream;
 
 import ro.polak.http.FileUtils;
 import ro.polak.http.protocol.serializer.Serializer;
+import ro.polak.http.protocol.serializer.impl.ByteHeadersSerializer;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
 import ro.polak.http.servlet.impl.HttpResponseImpl;
 import ro.polak.http.servlet.helper.RangeHelper;
@@ -28,7 +29,7 @@ public class AbstractHtmlErrorHandlerTest {
     public void setUp() {
         outputStream = new ByteArrayOutputStream();
         response = new HttpResponseImpl(
-                mock(Serializer.class),
+                new ByteHeadersSerializer(),
                 mock(Serializer.class),
                 new StreamHelper(new RangeHelper(), new RangePartHeaderSerializer()),
                 outputStream);
@@ -0,0 +1,83 @@
+package ro.polak.http.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+import ro.polak.http.utilities.DateProvider;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CachingHostNameResolverTest {
+
+    private static final long TTL = 1000;
+
+    private DateProvider dateProvider;
+    private CountingResolver resolver;
+
+    @Before
+    public void setUp() {
+        dateProvider = mock(DateProvider.class);
+        when(dateProvider.currentTimeMillis()).thenReturn(0L);
+        resolver = new CountingResolver(dateProvider, 2, TTL);
+    }
+
+    @Test
+    public void shouldCacheResolvedNames() throws Exception {
+        InetAddress address = InetAddress.getByAddress(new byte[]{10, 0, 0, 1});
+
+        assertThat(resolver.getHostName(address), is("host-10.0.0.1"));
+        assertThat(resolver.getHostName(address), is("host-10.0.0.1"));
+        assertThat(resolver.lookups, is(1));
+    }
+
+    @Test
+    public void shouldResolveAgainAfterTimeToLive() throws Exception {
+        InetAddress address = InetAddress.getByAddress(new byte[]{10, 0, 0, 1});
+        resolver.getHostName(address);
+
+        when(dateProvider.currentTimeMillis()).thenReturn(TTL - 1);
+        resolver.getHostName(address);
+        assertThat(resolver.lookups, is(1));
+
+        when(dateProvider.currentTimeMillis()).thenReturn(TTL);
+        resolver.getHostName(address);
+        assertThat(resolver.lookups, is(2));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntries() throws Exception {
+        InetAddress first = InetAddress.getByAddress(new byte[]{10, 0, 0, 1});
+        InetAddress second = InetAddress.getByAddress(new byte[]{10, 0, 0, 2});
+        InetAddress third = InetAddress.getByAddress(new byte[]{10, 0, 0, 3});
+
+        resolver.getHostName(first);
+        resolver.getHostName(second);
+        resolver.getHostName(first);
+        resolver.getHostName(third);
+
+        assertThat(resolver.size(), is(2));
+        resolver.getHostName(first);
+        assertThat(resolver.lookups, is(3));
+        resolver.getHostName(second);
+        assertThat(resolver.lookups, is(4));
+    }
+
+    private static class CountingResolver extends CachingHostNameResolver {
+        private int lookups;
+
+        CountingResolver(DateProvider dateProvider, int maxSize, long timeToLive) {
+            super(dateProvider, maxSize, timeToLive);
+        }
+
+        @Override
+        protected String lookup(InetAddress address) {
+            ++lookups;
+            return "host-" + address.getHostAddress();
+        }
+    }
+}
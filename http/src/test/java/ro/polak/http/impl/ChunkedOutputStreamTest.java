@@ -0,0 +1,67 @@
+package ro.polak.http.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ChunkedOutputStreamTest {
+
+    @Test
+    public void shouldFrameChunksUsingByteLength() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(out);
+
+        chunkedOutputStream.write("Za\u017c\u00f3\u0142\u0107".getBytes("UTF-8"));
+        chunkedOutputStream.write(new byte[0]);
+        chunkedOutputStream.write('!');
+        chunkedOutputStream.finish();
+        chunkedOutputStream.finish();
+
+        assertThat(out.toString("UTF-8"), is("A\r\nZa\u017c\u00f3\u0142\u0107\r\n1\r\n!\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldAggregateWritesIntoChunks() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(out, 4);
+
+        chunkedOutputStream.write("ab".getBytes());
+        chunkedOutputStream.write('c');
+        assertThat(out.size(), is(0));
+
+        chunkedOutputStream.write('d');
+        assertThat(out.toString(), is("4\r\nabcd\r\n"));
+
+        chunkedOutputStream.write("ef".getBytes());
+        chunkedOutputStream.flush();
+        assertThat(out.toString(), is("4\r\nabcd\r\n2\r\nef\r\n"));
+
+        chunkedOutputStream.write("gh".getBytes());
+        chunkedOutputStream.write("ijk".getBytes());
+        chunkedOutputStream.finish();
+        assertThat(out.toString(), is("4\r\nabcd\r\n2\r\nef\r\n2\r\ngh\r\n3\r\nijk\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldWriteLargeWritesAsSingleChunk() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(out, 4);
+
+        chunkedOutputStream.write("a".getBytes());
+        chunkedOutputStream.write("0123456789ABCDEFGHIJ".getBytes());
+        chunkedOutputStream.finish();
+
+        assertThat(out.toString(), is("1\r\na\r\n14\r\n0123456789ABCDEFGHIJ\r\n0\r\n\r\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldNotWriteAfterLastChunk() throws IOException {
+        ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(new ByteArrayOutputStream());
+        chunkedOutputStream.finish();
+        chunkedOutputStream.write(1);
+    }
+}
@@ -0,0 +1,176 @@
+package ro.polak.http.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import ro.polak.http.Headers;
+import ro.polak.http.protocol.parser.impl.AcceptEncodingParser;
+import ro.polak.http.protocol.serializer.Serializer;
+import ro.polak.http.protocol.serializer.impl.ByteHeadersSerializer;
+import ro.polak.http.servlet.HttpServletResponse;
+import ro.polak.http.servlet.helper.CompressionHelper;
+import ro.polak.http.servlet.helper.StreamHelper;
+import ro.polak.http.servlet.impl.HttpResponseImpl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class CompressingServletOutputStreamTest {
+
+    private static final String LONG_BODY;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("{\"key\":\"value\"}");
+        }
+        LONG_BODY = sb.toString();
+    }
+
+    private ByteArrayOutputStream out;
+    private HttpResponseImpl response;
+
+    @Before
+    public void setUp() {
+        out = new ByteArrayOutputStream();
+        response = new HttpResponseImpl(new ByteHeadersSerializer(), mock(Serializer.class),
+                mock(StreamHelper.class), out);
+        response.setStatus(HttpServletResponse.STATUS_OK);
+        response.enableCompression(new CompressionHelper(new AcceptEncodingParser(),
+                Arrays.asList("application/json"), 64, 6), CompressionHelper.CODING_GZIP);
+    }
+
+    @Test
+    public void shouldCompressLongBody() throws IOException {
+        response.setContentType("application/json; charset=UTF-8");
+        response.setContentLength(LONG_BODY.length());
+        response.getWriter().print(LONG_BODY);
+        response.flush();
+
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_CONTENT_ENCODING), is("gzip"));
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_VARY), is(Headers.HEADER_ACCEPT_ENCODING));
+        assertThat(getBody().length < LONG_BODY.length(), is(true));
+        // The compressed body fits the response buffer
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_CONTENT_LENGTH), is(Integer.toString(getBody().length)));
+        assertThat(gunzip(getBody()), is(LONG_BODY));
+    }
+
+    @Test
+    public void shouldNotCompressShortBody() throws IOException {
+        response.setContentType("application/json");
+        response.getWriter().print("{}");
+        response.flush();
+
+        assertThat(response.getHeaders().containsHeader(Headers.HEADER_CONTENT_ENCODING), is(false));
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_VARY), is(Headers.HEADER_ACCEPT_ENCODING));
+        assertThat(new String(getBody()), is("{}"));
+    }
+
+    @Test
+    public void shouldNotCompressOtherMimeTypes() throws IOException {
+        response.setContentType("image/png");
+        response.getOutputStream().write(LONG_BODY.getBytes());
+        response.flush();
+
+        assertThat(response.getHeaders().containsHeader(Headers.HEADER_CONTENT_ENCODING), is(false));
+        assertThat(response.getHeaders().containsHeader(Headers.HEADER_VARY), is(false));
+        assertThat(new String(getBody()), is(LONG_BODY));
+    }
+
+    @Test
+    public void shouldCompressStreamedBodyOnFlush() throws IOException {
+        response.setContentType("application/json");
+        PrintWriter printWriter = response.getWriter();
+        printWriter.print("{}");
+        printWriter.flush();
+
+        assertThat(response.isCommitted(), is(true));
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_CONTENT_ENCODING), is("gzip"));
+
+        printWriter.print("[]");
+        response.flush();
+
+        assertThat(gunzip(getBody()), is("{}[]"));
+    }
+
+    @Test
+    public void shouldFrameCompressedChunks() throws IOException {
+        response.setContentType("application/json");
+        response.getHeaders().setHeader(Headers.HEADER_TRANSFER_ENCODING, "chunked");
+        PrintWriter printWriter = response.getWriter();
+        printWriter.print(LONG_BODY);
+        response.flush();
+
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_CONTENT_ENCODING), is("gzip"));
+        assertThat(gunzip(unchunk(getBody())), is(LONG_BODY));
+    }
+
+    @Test
+    public void shouldFrameUncompressedChunks() throws IOException {
+        response.setContentType("application/json");
+        response.getHeaders().setHeader(Headers.HEADER_TRANSFER_ENCODING, "chunked");
+        response.getWriter().print("{}");
+        response.flush();
+
+        assertThat(response.getHeaders().containsHeader(Headers.HEADER_CONTENT_ENCODING), is(false));
+        assertThat(new String(getBody()), is("2\r\n{}\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldNotCompressEncodedBody() throws IOException {
+        response.setContentType("application/json");
+        response.getHeaders().setHeader(Headers.HEADER_CONTENT_ENCODING, "br");
+        response.getOutputStream().write(LONG_BODY.getBytes());
+        response.flush();
+
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_CONTENT_ENCODING), is("br"));
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_VARY), is(nullValue()));
+        assertThat(new String(getBody()), is(LONG_BODY));
+    }
+
+    private byte[] getBody() {
+        byte[] output = out.toByteArray();
+        String head = new String(output, StandardCharsets.ISO_8859_1);
+        int bodyStart = head.indexOf("\r\n\r\n") + 4;
+        return Arrays.copyOfRange(output, bodyStart, output.length);
+    }
+
+    private String gunzip(byte[] bytes) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int numberOfBytesRead;
+        while ((numberOfBytesRead = in.read(buffer)) != -1) {
+            decompressed.write(buffer, 0, numberOfBytesRead);
+        }
+        return decompressed.toString();
+    }
+
+    private byte[] unchunk(byte[] bytes) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int position = 0;
+        while (true) {
+            int lineEnd = position;
+            while (bytes[lineEnd] != '\r') {
+                lineEnd++;
+            }
+            int length = Integer.parseInt(new String(bytes, position, lineEnd - position), 16);
+            if (length == 0) {
+                return body.toByteArray();
+            }
+            body.write(bytes, lineEnd + 2, length);
+            position = lineEnd + 2 + length + 2;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ro.polak.http.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ConnectionInputStreamTest {
+
+    @Test
+    public void shouldReadLinesAndKeepRemainingBytes() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(getStream("GET / HTTP/1.1\r\nHost: x\r\n\r\nBODY"));
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        assertThat(in.readLine(line, 100), is(16));
+        assertThat(line.toString(), is("GET / HTTP/1.1\r\n"));
+
+        line.reset();
+        assertThat(in.readLine(line, 100), is(9));
+        assertThat(line.toString(), is("Host: x\r\n"));
+
+        line.reset();
+        assertThat(in.readLine(line, 100), is(2));
+
+        byte[] body = new byte[10];
+        assertThat(in.read(body, 0, body.length), is(4));
+        assertThat(new String(body, 0, 4), is("BODY"));
+        assertThat(in.read(), is(-1));
+    }
+
+    @Test
+    public void shouldReadLineSpanningMultipleFills() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(new OneByteInputStream("ABCDEFGHIJ\nK"), 4);
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        assertThat(in.readLine(line, 100), is(11));
+        assertThat(line.toString(), is("ABCDEFGHIJ\n"));
+        assertThat(in.read(), is((int) 'K'));
+    }
+
+    @Test
+    public void shouldStopReadingLineAtMaxLength() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(getStream("ABCDEFGHIJ\n"));
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        assertThat(in.readLine(line, 5), is(5));
+        assertThat(line.toString(), is("ABCDE"));
+        assertThat(in.read(), is((int) 'F'));
+    }
+
+    @Test
+    public void shouldReturnZeroOnEndOfStream() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(getStream(""));
+
+        assertThat(in.readLine(new ByteArrayOutputStream(), 5), is(0));
+        assertThat(in.peek(), is(-1));
+    }
+
+    @Test
+    public void shouldPeekWithoutConsuming() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(getStream("AB"));
+
+        assertThat(in.peek(), is((int) 'A'));
+        assertThat(in.read(), is((int) 'A'));
+        assertThat(in.read(), is((int) 'B'));
+    }
+
+    @Test
+    public void shouldDetectBufferedRequestHead() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(getStream("\r\nGET / HTTP/1.1\r\nHost: x\r\n\r\n"));
+        assertThat(in.isRequestHeadBuffered(), is(false));
+        in.peek();
+        assertThat(in.isRequestHeadBuffered(), is(true));
+        assertThat(in.read(), is((int) 'G'));
+    }
+
+    @Test
+    public void shouldNotDetectIncompleteRequestHead() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(getStream("GET / HTTP/1.1\r\nHost: x\r\n"));
+        in.peek();
+        assertThat(in.isRequestHeadBuffered(), is(false));
+    }
+
+    @Test
+    public void shouldReadLargeChunksBypassingBuffer() throws IOException {
+        ConnectionInputStream in = new ConnectionInputStream(getStream("0123456789"), 4);
+
+        byte[] data = new byte[10];
+        assertThat(in.read(data, 0, data.length), is(10));
+        assertThat(new String(data), is("0123456789"));
+    }
+
+    private InputStream getStream(String data) {
+        return new ByteArrayInputStream(data.getBytes());
+    }
+
+    private static class OneByteInputStream extends InputStream {
+
+        private final InputStream inputStream;
+
+        OneByteInputStream(String data) {
+            inputStream = new ByteArrayInputStream(data.getBytes());
+        }
+
+        @Override
+        public int read() throws IOException {
+            return inputStream.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return inputStream.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -21,10 +21,25 @@ public class ServerConfigImplTest {
     private static final String DEFAULT_CONFIG_DATA = "server.port=8090\n" +
             "server.static.path=wwwx\n" +
             "server.static.directoryIndex=index.php,index.html\n" +
+            "server.static.precompressedMimeTypes=text/css, application/javascript\n" +
             "server.mimeType.defaultMimeType=mime/text\n" +
             "server.mimeType.filePath=mime.mime\n" +
             "server.maxThreads=3\n" +
             "server.keepAlive.enabled=true\n" +
+            "server.connector=nio\n" +
+            "server.executor=virtualThreads\n" +
+            "server.maxConcurrentRequests=500\n" +
+            "server.hostNameLookups.enabled=false\n" +
+            "server.upload.memoryThreshold=2048\n" +
+            "server.contentCache.maxSize=65536\n" +
+            "server.contentCache.maxFileSize=1024\n" +
+            "server.compression.mimeTypes=text/html,application/json\n" +
+            "server.compression.minSize=512\n" +
+            "server.compression.level=9\n" +
+            "server.keepAlive.timeout=7\n" +
+            "server.keepAlive.maxRequests=50\n" +
+            "server.warmUp.passes=3\n" +
+            "server.servlet.idleTimeout=60\n" +
             "server.errorDocument.404=error404.html\n" +
             "server.errorDocument.403=error403.html\n" +
             "additional.attribute=somevalue\n";
@@ -81,11 +96,29 @@ public class ServerConfigImplTest {
         assertThat(serverConfig.getDirectoryIndex(), hasItem("index.php"));
         assertThat(serverConfig.getDirectoryIndex(), hasItem("index.html"));
         assertThat(serverConfig.getDirectoryIndex().size(), is(2));
+        assertThat(serverConfig.getPrecompressedMimeTypes(), hasItem("text/css"));
+        assertThat(serverConfig.getPrecompressedMimeTypes(), hasItem("application/javascript"));
+        assertThat(serverConfig.getPrecompressedMimeTypes().size(), is(2));
         assertThat(serverConfig.getErrorDocument403Path(), is(workingDirectory + "error403.html"));
         assertThat(serverConfig.getErrorDocument404Path(), is(workingDirectory + "error404.html"));
         assertThat(serverConfig.getListenPort(), is(8090));
         assertThat(serverConfig.getMaxServerThreads(), is(3));
         assertThat(serverConfig.isKeepAlive(), is(true));
+        assertThat(serverConfig.getConnector(), is("nio"));
+        assertThat(serverConfig.getExecutor(), is("virtualThreads"));
+        assertThat(serverConfig.getMaxConcurrentRequests(), is(500));
+        assertThat(serverConfig.isHostNameLookupsEnabled(), is(false));
+        assertThat(serverConfig.getUploadMemoryThreshold(), is(2048));
+        assertThat(serverConfig.getContentCacheMaxSize(), is(65536L));
+        assertThat(serverConfig.getContentCacheMaxFileSize(), is(1024));
+        assertThat(serverConfig.getCompressionMimeTypes(), hasItem("text/html"));
+        assertThat(serverConfig.getCompressionMimeTypes(), hasItem("application/json"));
+        assertThat(serverConfig.getCompressionMinSize(), is(512));
+        assertThat(serverConfig.getCompressionLevel(), is(9));
+        assertThat(serverConfig.getKeepAliveTimeout(), is(7));
+        assertThat(serverConfig.getKeepAliveMaxRequests(), is(50));
+        assertThat(serverConfig.getWarmUpPasses(), is(3));
+        assertThat(serverConfig.getServletIdleTimeout(), is(60));
         assertThat(serverConfig.getMimeTypeMapping().getMimeTypeByExtension("ANY"), is("mime/text"));
         assertThat(serverConfig.getAttribute("additional.attribute"), is("somevalue"));
 
@@ -0,0 +1,51 @@
+package ro.polak.http.impl;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class ServletInputStreamImplTest {
+
+    @Test
+    public void shouldNotReadPastDeclaredLength() throws IOException {
+        InputStream in = new ByteArrayInputStream("abcdef".getBytes());
+        ServletInputStreamImpl servletInputStream = new ServletInputStreamImpl(in, 3);
+
+        byte[] buffer = new byte[10];
+        assertThat(servletInputStream.read(buffer, 0, buffer.length), is(3));
+        assertThat(servletInputStream.read(), is(-1));
+        assertThat(servletInputStream.getRemaining(), is(0L));
+        assertThat(in.read(), is((int) 'd'));
+    }
+
+    @Test
+    public void shouldDrainRemainingBody() throws IOException {
+        InputStream in = new ByteArrayInputStream("abcdef".getBytes());
+        ServletInputStreamImpl servletInputStream = new ServletInputStreamImpl(in, 4);
+
+        assertThat(servletInputStream.read(), is((int) 'a'));
+        assertThat(servletInputStream.drain(10), is(true));
+        assertThat(in.read(), is((int) 'e'));
+    }
+
+    @Test
+    public void shouldNotDrainBodyExceedingLimit() throws IOException {
+        InputStream in = new ByteArrayInputStream("abcdef".getBytes());
+        ServletInputStreamImpl servletInputStream = new ServletInputStreamImpl(in, 6);
+
+        assertThat(servletInputStream.drain(5), is(false));
+    }
+
+    @Test
+    public void shouldNotDrainPrematurelyEndedBody() throws IOException {
+        InputStream in = new ByteArrayInputStream("ab".getBytes());
+        ServletInputStreamImpl servletInputStream = new ServletInputStreamImpl(in, 6);
+
+        assertThat(servletInputStream.drain(10), is(false));
+    }
+}
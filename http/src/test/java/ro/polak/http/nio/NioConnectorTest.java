@@ -0,0 +1,167 @@
+package ro.polak.http.nio;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import ro.polak.http.ServiceContainer;
+import ro.polak.http.configuration.ServerConfig;
+import ro.polak.http.resource.provider.ResourceProvider;
+import ro.polak.http.servlet.HttpServletResponse;
+import ro.polak.http.servlet.impl.HttpRequestImpl;
+import ro.polak.http.servlet.impl.HttpResponseImpl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NioConnectorTest {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private ServerSocketChannel serverSocketChannel;
+    private NioConnector nioConnector;
+    private Thread connectorThread;
+
+    @Before
+    public void setUp() throws IOException {
+        ServerConfig serverConfig = mock(ServerConfig.class);
+        when(serverConfig.getTempPath()).thenReturn(System.getProperty("java.io.tmpdir"));
+        when(serverConfig.getMaxServerThreads()).thenReturn(2);
+        when(serverConfig.getConnector()).thenReturn(ServerConfig.CONNECTOR_NIO);
+        when(serverConfig.isKeepAlive()).thenReturn(true);
+        when(serverConfig.getKeepAliveTimeout()).thenReturn(5);
+        when(serverConfig.getKeepAliveMaxRequests()).thenReturn(100);
+        when(serverConfig.getSupportedMethods()).thenReturn(Arrays.asList("GET", "POST", "HEAD"));
+        List<ResourceProvider> resourceProviders = Arrays.<ResourceProvider>asList(new PathEchoResourceProvider());
+        when(serverConfig.getResourceProviders()).thenReturn(resourceProviders);
+
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        ServiceContainer serviceContainer = new ServiceContainer(serverConfig);
+        nioConnector = new NioConnector(serverSocketChannel, serverConfig, serviceContainer,
+                serviceContainer.getExecutorService());
+        connectorThread = new Thread(nioConnector);
+        connectorThread.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        nioConnector.stop();
+        connectorThread.join(5000);
+    }
+
+    @Test
+    public void shouldServePipelinedRequestsOverSingleConnection() throws IOException {
+        Socket socket = getSocket();
+        try {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /second HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(CHARSET));
+            out.flush();
+
+            String output = readUntilClosed(socket.getInputStream());
+            assertThat(output, containsString("/first"));
+            assertThat(output, containsString("/second"));
+            assertThat(output.indexOf("/first") < output.indexOf("/second"), is(true));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void shouldServeRequestSentInFragments() throws IOException, InterruptedException {
+        Socket socket = getSocket();
+        try {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /fragm".getBytes(CHARSET));
+            out.flush();
+            Thread.sleep(100);
+            out.write("ented HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes(CHARSET));
+            out.flush();
+
+            String output = readUntilClosed(socket.getInputStream());
+            assertThat(output, containsString(HttpServletResponse.STATUS_OK));
+            assertThat(output, containsString("/fragmented"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void shouldKeepConnectionOpenBetweenRequests() throws IOException, InterruptedException {
+        Socket socket = getSocket();
+        try {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /first HTTP/1.1\r\n\r\n".getBytes(CHARSET));
+            out.flush();
+            Thread.sleep(100);
+            out.write("GET /second HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes(CHARSET));
+            out.flush();
+
+            String output = readUntilClosed(socket.getInputStream());
+            assertThat(output, containsString("/first"));
+            assertThat(output, containsString("/second"));
+        } finally {
+            socket.close();
+        }
+    }
+
+    private Socket getSocket() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocketChannel.socket().getLocalPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private String readUntilClosed(InputStream in) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int numberOfBytesRead;
+        while ((numberOfBytesRead = in.read(buffer)) != -1) {
+            output.write(buffer, 0, numberOfBytesRead);
+        }
+        return new String(output.toByteArray(), CHARSET);
+    }
+
+    private static class PathEchoResourceProvider implements ResourceProvider {
+
+        @Override
+        public boolean canLoad(String path) {
+            return true;
+        }
+
+        @Override
+        public void load(String path, HttpRequestImpl request, HttpResponseImpl response) throws IOException {
+            byte[] body = path.getBytes(CHARSET);
+            response.setStatus(HttpServletResponse.STATUS_OK);
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+            response.flush();
+        }
+
+        @Override
+        public void start() {
+            // Nothing to start
+        }
+
+        @Override
+        public void shutdown() {
+            // Nothing to release
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ro.polak.http.protocol.parser.impl;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import ro.polak.http.protocol.parser.MalformedInputException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AcceptEncodingParserTest {
+
+    private static AcceptEncodingParser acceptEncodingParser = new AcceptEncodingParser();
+
+    @Test
+    public void shouldParseCodingsWithQualityValues() throws MalformedInputException {
+        Map<String, Float> codings = acceptEncodingParser.parse("GZIP;q=0.5, deflate , br;level=1;q=0");
+
+        assertThat(codings.size(), is(3));
+        assertThat(codings.get("gzip"), is(0.5f));
+        assertThat(codings.get("deflate"), is(1f));
+        assertThat(codings.get("br"), is(0f));
+    }
+
+    @Test
+    public void shouldIgnoreEmptyCodings() throws MalformedInputException {
+        assertThat(acceptEncodingParser.parse("").size(), is(0));
+        assertThat(acceptEncodingParser.parse(" , gzip,").size(), is(1));
+    }
+
+    @Test
+    public void shouldTellWhetherCodingIsAccepted() throws MalformedInputException {
+        assertThat(AcceptEncodingParser.isAccepted(acceptEncodingParser.parse("gzip"), "gzip"), is(true));
+        assertThat(AcceptEncodingParser.isAccepted(acceptEncodingParser.parse("gzip;q=0"), "gzip"), is(false));
+        assertThat(AcceptEncodingParser.isAccepted(acceptEncodingParser.parse("deflate"), "gzip"), is(false));
+        assertThat(AcceptEncodingParser.isAccepted(acceptEncodingParser.parse("*"), "gzip"), is(true));
+        assertThat(AcceptEncodingParser.isAccepted(acceptEncodingParser.parse("*, gzip;q=0"), "gzip"), is(false));
+    }
+
+    @Test(expected = MalformedInputException.class)
+    public void shouldThrowExceptionOnInvalidQualityValue() throws MalformedInputException {
+        acceptEncodingParser.parse("gzip;q=abc");
+    }
+
+    @Test(expected = MalformedInputException.class)
+    public void shouldThrowExceptionOnQualityValueOutOfRange() throws MalformedInputException {
+        acceptEncodingParser.parse("gzip;q=1.5");
+    }
+}
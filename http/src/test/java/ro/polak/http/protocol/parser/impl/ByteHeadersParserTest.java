@@ -0,0 +1,80 @@
+package ro.polak.http.protocol.parser.impl;
+
+import org.junit.Test;
+
+import ro.polak.http.Headers;
+import ro.polak.http.protocol.parser.MalformedInputException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ByteHeadersParserTest {
+
+    private static final String[] INPUTS = {
+            "Cookie: ABCD\r\nTest: XYZ\r\nServer: 1",
+            "Cookie: ABCD:XYZ",
+            "Cookie\r\nTest\r\nServer: Pepis",
+            "Cookie: ABCD\r\n\r\n\r\nTest: XYZ\r\nServer: 1\r\n\r\n\r\n\r\n",
+            "COOKIE: ABCD\r\nTEST: XYZ\r\nSERVER: 1",
+            "COOKIE:ABCD\r\nTEST:XYZ\r\nSERVER:1",
+            "Word-Of-The-Day: The Fox Jumps Over\r\n the\r\n brown dog.\r\nAnother: Another\r\n multiline\r\n header\r\nCookie: ABCD",
+            " Word-Of-The-Day: The Fox Jumps Over\r\n the\r\n brown dog.\r\nCookie: ABCD",
+            "Word-Of-The-Day: The Fox Jumps Over\r\n\tthe\r\n\t brown dog.\r\nCookie: ABCD",
+            "Word-Of-The-Day: The Fox Jumps Over\r\n        the\r\n        brown dog.\r\nCookie: ABCD",
+            "Cookie: ABCD\r\r\n\rTest: XYZ\r\r\nServer: 1\r\n",
+            "Accept: application/xml\r\nAccept: application/json\r\n",
+            "Broken\r\n continuation\r\nHost: localhost"
+    };
+
+    private final ByteHeadersParser byteHeadersParser = new ByteHeadersParser();
+    private final HeadersParser headersParser = new HeadersParser();
+
+    @Test
+    public void shouldProduceSameResultAsStringParser() throws MalformedInputException {
+        for (String input : INPUTS) {
+            Headers expected = headersParser.parse(input);
+            Headers actual = byteHeadersParser.parse(input);
+
+            assertThat(input, actual.size(), is(expected.size()));
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(input, actual.getNameAt(i).equalsIgnoreCase(expected.getNameAt(i)), is(true));
+                assertThat(input, actual.getValueAt(i), is(expected.getValueAt(i)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldParseGivenRangeOnly() throws MalformedInputException {
+        byte[] input = "GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\nBODY".getBytes();
+
+        Headers headers = byteHeadersParser.parse(input, 16, 35);
+
+        assertThat(headers.getHeader("Host"), is("localhost"));
+        assertThat(headers.getHeader("Connection"), is("close"));
+        assertThat(headers.keySet().size(), is(2));
+    }
+
+    @Test
+    public void shouldResolveKnownHeaderNamesToConstants() throws MalformedInputException {
+        Headers headers = byteHeadersParser.parse("content-length: 10\r\nX-Custom: 1");
+
+        String name = null;
+        for (String headerName : headers.keySet()) {
+            if (headerName.equalsIgnoreCase(Headers.HEADER_CONTENT_LENGTH)) {
+                name = headerName;
+            }
+        }
+        assertThat(name, sameInstance(Headers.HEADER_CONTENT_LENGTH));
+        assertThat(headers.getHeader("X-Custom"), is("1"));
+    }
+
+    @Test
+    public void shouldReplaceRepeatingHeadersWhenDisabled() throws MalformedInputException {
+        Headers headers = new ByteHeadersParser(false).parse("Accept: a\r\nAccept: b");
+
+        assertThat(headers.getHeader("Accept"), is("b"));
+        assertThat(headers.getHeader("Non-existent"), is(nullValue()));
+    }
+}
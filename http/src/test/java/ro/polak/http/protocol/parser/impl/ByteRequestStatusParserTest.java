@@ -0,0 +1,54 @@
+package ro.polak.http.protocol.parser.impl;
+
+import org.junit.Test;
+
+import ro.polak.http.RequestStatus;
+import ro.polak.http.protocol.parser.MalformedInputException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ByteRequestStatusParserTest {
+
+    private final ByteRequestStatusParser parser = new ByteRequestStatusParser();
+
+    @Test
+    public void shouldParseStatusString() throws MalformedInputException {
+        RequestStatus requestStatus = parser.parse("GET /home?param1=ABC&param2=123 HTTP/1.1");
+
+        assertThat(requestStatus.getMethod(), is("GET"));
+        assertThat(requestStatus.getQueryString(), is("param1=ABC&param2=123"));
+        assertThat(requestStatus.getUri(), is("/home"));
+        assertThat(requestStatus.getProtocol(), is("HTTP/1.1"));
+    }
+
+    @Test
+    public void shouldIgnoreTrailingCharacters() throws MalformedInputException {
+        RequestStatus requestStatus = parser.parse("GET /home HTTP/1.0\r\n");
+
+        assertThat(requestStatus.getQueryString(), is(""));
+        assertThat(requestStatus.getUri(), is("/home"));
+        assertThat(requestStatus.getProtocol(), is("HTTP/1.0"));
+    }
+
+    @Test
+    public void shouldResolveKnownMethodsAndProtocolsToConstants() throws MalformedInputException {
+        byte[] input = "XXpost / HTTP/1.1XX".getBytes();
+        RequestStatus requestStatus = parser.parse(input, 2, input.length - 4);
+
+        assertThat(requestStatus.getMethod(), is("POST"));
+        assertThat(requestStatus.getProtocol(), sameInstance(parser.parse("GET / HTTP/1.1").getProtocol()));
+        assertThat(requestStatus.getUri(), is("/"));
+    }
+
+    @Test
+    public void shouldUpperCaseUnknownMethods() throws MalformedInputException {
+        assertThat(parser.parse("patch / HTTP/1.1").getMethod(), is("PATCH"));
+    }
+
+    @Test(expected = MalformedInputException.class)
+    public void shouldThrowMalformedInputExceptionOnInvalidStatus() throws MalformedInputException {
+        parser.parse("GET HTTP/1.1");
+    }
+}
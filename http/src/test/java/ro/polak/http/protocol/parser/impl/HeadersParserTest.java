@@ -7,6 +7,7 @@ import ro.polak.http.protocol.parser.MalformedInputException;
 import ro.polak.http.protocol.parser.Parser;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
@@ -151,4 +152,11 @@ public class HeadersParserTest {
         assertThat(headers.containsHeader("Accept"), is(true));
         assertThat(headers.getHeader("Accept"), is("application/xml,application/json"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldKeepMultiValuesSeparately() throws MalformedInputException {
+        Headers headers = headersParser.parse("Cookie: a=1\r\nHost: localhost\r\nCookie: b=2\r\n continued\r\n");
+
+        assertThat(headers.getHeaderValues("Cookie"), contains("a=1", "b=2 continued"));
+    }
+}
@@ -43,10 +43,13 @@ public class RangeParserTest {
         assertThat(rageList.get(1).getTo(), is(301L));
     }
 
-    @Test(expected = MalformedInputException.class)
-    public void shouldThrowExceptionOnMissingLength() throws MalformedInputException {
+    @Test
+    public void shouldParseOpenEndedRange() throws MalformedInputException {
         RangeParser rangeParser = new RangeParser();
-        rangeParser.parse("bytes=100-");
+        List<Range> rageList = rangeParser.parse("bytes=100-");
+        assertThat(rageList.size(), is(1));
+        assertThat(rageList.get(0).getFrom(), is(100L));
+        assertThat(rageList.get(0).getTo(), is(Range.UNSPECIFIED));
     }
 
     @Test(expected = MalformedInputException.class)
@@ -55,10 +58,25 @@ public class RangeParserTest {
         rangeParser.parse("bytes=");
     }
 
+    @Test
+    public void shouldParseSuffixRange() throws MalformedInputException {
+        RangeParser rangeParser = new RangeParser();
+        List<Range> rageList = rangeParser.parse("bytes=-200");
+        assertThat(rageList.size(), is(1));
+        assertThat(rageList.get(0).getFrom(), is(Range.UNSPECIFIED));
+        assertThat(rageList.get(0).getTo(), is(200L));
+    }
+
+    @Test(expected = MalformedInputException.class)
+    public void shouldThrowExceptionWhenMissingBothValues() throws MalformedInputException {
+        RangeParser rangeParser = new RangeParser();
+        rangeParser.parse("bytes=-");
+    }
+
     @Test(expected = MalformedInputException.class)
-    public void shouldThrowExceptionWhenMissingFromValue() throws MalformedInputException {
+    public void shouldThrowExceptionOnNegativeValues() throws MalformedInputException {
         RangeParser rangeParser = new RangeParser();
-        rangeParser.parse("bytes=-200");
+        rangeParser.parse("bytes=--200");
     }
 
     @Test(expected = MalformedInputException.class)
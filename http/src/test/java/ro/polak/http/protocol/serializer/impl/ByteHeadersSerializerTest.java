@@ -0,0 +1,83 @@
+package ro.polak.http.protocol.serializer.impl;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import ro.polak.http.Headers;
+import ro.polak.http.servlet.HttpServletResponse;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ByteHeadersSerializerTest {
+
+    private static ByteHeadersSerializer headersSerializer = new ByteHeadersSerializer();
+
+    @Test
+    public void shouldSerializeStatusAndHeaders() {
+        Headers headers = new Headers();
+        headers.setHeader(Headers.HEADER_CONTENT_TYPE, "text/html");
+        headers.setHeader("SomeOtherHeader", "123");
+
+        assertThat(toString(headersSerializer.serialize(HttpServletResponse.STATUS_OK, headers)),
+                is("HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nSomeOtherHeader: 123\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldSerializeUnknownStatus() {
+        assertThat(toString(headersSerializer.serialize("HTTP/1.1 418 I'm a teapot", new Headers())),
+                is("HTTP/1.1 418 I'm a teapot\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldSerializeRepeatedHeadersAsSeparateLines() {
+        Headers headers = new Headers();
+        headers.addHeader(Headers.HEADER_SET_COOKIE, "a=1");
+        headers.addHeader(Headers.HEADER_SET_COOKIE, "b=2");
+
+        assertThat(toString(headersSerializer.serialize(HttpServletResponse.STATUS_OK, headers)),
+                is("HTTP/1.1 200 OK\r\nSet-Cookie: a=1\r\nSet-Cookie: b=2\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldEncodeNonAsciiValues() {
+        Headers headers = new Headers();
+        headers.setHeader(Headers.HEADER_LOCATION, "/za\u017c\u00f3\u0142\u0107");
+
+        assertThat(toString(headersSerializer.serialize(HttpServletResponse.STATUS_MOVED_PERMANENTLY, headers)),
+                is("HTTP/1.1 301 Moved Permanently\r\nLocation: /za\u017c\u00f3\u0142\u0107\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldReuseBufferAndAppendBody() {
+        ByteHeadersSerializer.Buffer first = headersSerializer.serialize(HttpServletResponse.STATUS_NOT_FOUND,
+                new Headers());
+        first.write(ByteBuffer.wrap("Body".getBytes(StandardCharsets.UTF_8)));
+        assertThat(toString(first), is("HTTP/1.1 404 Not Found\r\n\r\nBody"));
+
+        ByteHeadersSerializer.Buffer second = headersSerializer.serialize(HttpServletResponse.STATUS_OK,
+                new Headers());
+        assertThat(second, is(sameInstance(first)));
+        assertThat(toString(second), is("HTTP/1.1 200 OK\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldGrowBufferForLargeHeads() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append('a');
+        }
+        Headers headers = new Headers();
+        headers.setHeader("Large", sb.toString());
+
+        assertThat(toString(headersSerializer.serialize(HttpServletResponse.STATUS_OK, headers)),
+                is("HTTP/1.1 200 OK\r\nLarge: " + sb + "\r\n\r\n"));
+    }
+
+    private String toString(ByteHeadersSerializer.Buffer buffer) {
+        return new String(buffer.getBytes(), 0, buffer.size(), StandardCharsets.UTF_8);
+    }
+}
@@ -36,4 +36,13 @@ public class HeadersSerializerTest {
                 is("header: Value\r\nsomeOtherHeader: 123\r\n\r\n")
         ));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldSerializeRepeatedHeadersAsSeparateLines() {
+        Headers headers = new Headers();
+        headers.addHeader("Set-Cookie", "a=1");
+        headers.addHeader("Set-Cookie", "b=2");
+
+        assertThat(headersSerializer.serialize(headers), is("Set-Cookie: a=1\r\nSet-Cookie: b=2\r\n\r\n"));
+    }
+}
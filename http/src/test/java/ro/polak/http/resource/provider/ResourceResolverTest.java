@@ -0,0 +1,132 @@
+package ro.polak.http.resource.provider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+
+import ro.polak.http.PathHelper;
+import ro.polak.http.utilities.DateProvider;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+public class ResourceResolverTest {
+
+    private static final long TTL = 1000;
+
+    private DateProvider dateProvider;
+    private ObservableResourceProvider fileResourceProvider;
+    private ResourceProvider servletResourceProvider;
+    private ResourceResolver resourceResolver;
+
+    @Before
+    public void setUp() {
+        dateProvider = mock(DateProvider.class);
+        when(dateProvider.currentTimeMillis()).thenReturn(0L);
+
+        fileResourceProvider = mock(ObservableResourceProvider.class);
+        when(fileResourceProvider.canLoad("/dir/index.html")).thenReturn(true);
+        servletResourceProvider = mock(ResourceProvider.class);
+        when(servletResourceProvider.canLoad("/servlet")).thenReturn(true);
+
+        resourceResolver = new ResourceResolver(Arrays.asList(fileResourceProvider, servletResourceProvider),
+                Arrays.asList("index.php", "index.html"), new PathHelper(), dateProvider, 2, TTL);
+    }
+
+    @Test
+    public void shouldResolveProvidersInOrder() {
+        ResourceResolver.Resolution resolution = resourceResolver.resolve("/servlet");
+
+        assertThat(resolution.getResourceProvider(), is(servletResourceProvider));
+        assertThat(resolution.getPath(), is("/servlet"));
+        assertThat(resolution.isDirectoryIndex(), is(false));
+    }
+
+    @Test
+    public void shouldResolveDirectoryIndex() {
+        ResourceResolver.Resolution resolution = resourceResolver.resolve("/dir");
+
+        assertThat(resolution.getResourceProvider(), is((ResourceProvider) fileResourceProvider));
+        assertThat(resolution.getPath(), is("/dir/index.html"));
+        assertThat(resolution.isDirectoryIndex(), is(true));
+    }
+
+    @Test
+    public void shouldServeRepeatedResolutionsFromMemory() {
+        resourceResolver.resolve("/servlet");
+        resourceResolver.resolve("/servlet");
+        assertThat(resourceResolver.resolve("/missing"), is(nullValue()));
+        assertThat(resourceResolver.resolve("/missing"), is(nullValue()));
+
+        verify(fileResourceProvider, times(1)).canLoad("/servlet");
+        verify(fileResourceProvider, times(1)).canLoad("/missing");
+        verify(fileResourceProvider, times(1)).canLoad("/missing/index.php");
+    }
+
+    @Test
+    public void shouldExpireResolutions() {
+        resourceResolver.resolve("/servlet");
+        when(dateProvider.currentTimeMillis()).thenReturn(TTL);
+        resourceResolver.resolve("/servlet");
+
+        verify(fileResourceProvider, times(2)).canLoad("/servlet");
+    }
+
+    @Test
+    public void shouldBoundNumberOfCachedPaths() {
+        resourceResolver.resolve("/1");
+        resourceResolver.resolve("/2");
+        resourceResolver.resolve("/3");
+        assertThat(resourceResolver.size(), is(2));
+    }
+
+    @Test
+    public void shouldInvalidateOnceProviderSignalsChange() {
+        assertThat(resourceResolver.resolve("/file.html"), is(nullValue()));
+
+        when(fileResourceProvider.canLoad("/file.html")).thenReturn(true);
+        ArgumentCaptor<ResourceChangeListener> listenerCaptor = ArgumentCaptor.forClass(ResourceChangeListener.class);
+        verify(fileResourceProvider).addResourceChangeListener(listenerCaptor.capture());
+        listenerCaptor.getValue().onResourcesChanged(fileResourceProvider, null);
+
+        assertThat(resourceResolver.size(), is(0));
+        assertThat(resourceResolver.resolve("/file.html").getResourceProvider(),
+                is((ResourceProvider) fileResourceProvider));
+    }
+
+    @Test
+    public void shouldInvalidateOnlyPathsAffectedByChange() {
+        resourceResolver = new ResourceResolver(Arrays.asList(fileResourceProvider, servletResourceProvider),
+                Arrays.asList("index.php", "index.html"), new PathHelper(), dateProvider, 16, TTL);
+        resourceResolver.resolve("/servlet");
+        resourceResolver.resolve("/dir");
+        resourceResolver.resolve("/other/");
+        resourceResolver.resolve("/other/file.html");
+        resourceResolver.resolve("/other/sub/file.html");
+        assertThat(resourceResolver.size(), is(5));
+
+        // The directory index of /dir and the parent directory of the changed file
+        resourceResolver.onResourcesChanged(fileResourceProvider, "/dir/index.html");
+        assertThat(resourceResolver.size(), is(4));
+        resourceResolver.onResourcesChanged(fileResourceProvider, "/other/index.html");
+        assertThat(resourceResolver.size(), is(3));
+        resourceResolver.onResourcesChanged(fileResourceProvider, "/other");
+        assertThat(resourceResolver.size(), is(1));
+        resourceResolver.onResourcesChanged(fileResourceProvider, null);
+        assertThat(resourceResolver.size(), is(0));
+    }
+
+    @Test
+    public void shouldNotQueryProvidersForIndexOfResolvedPath() {
+        resourceResolver.resolve("/servlet");
+
+        verify(fileResourceProvider, never()).canLoad("/servlet/index.php");
+    }
+}
@@ -0,0 +1,113 @@
+package ro.polak.http.resource.provider.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class FileContentCacheTest {
+
+    private File first;
+    private File second;
+
+    @Before
+    public void setUp() throws IOException {
+        first = File.createTempFile("content", ".txt");
+        second = File.createTempFile("content", ".txt");
+        writeFile(first, "ABCD");
+        writeFile(second, "EFGH");
+    }
+
+    @After
+    public void tearDown() {
+        first.delete();
+        second.delete();
+    }
+
+    @Test
+    public void shouldServeContentsFromCache() throws IOException {
+        FileContentCache fileContentCache = new FileContentCache(1024, 16);
+
+        assertThat(read(fileContentCache.get(first, getMetadata(first))), is("ABCD"));
+        assertThat(read(fileContentCache.get(first, getMetadata(first))), is("ABCD"));
+
+        assertThat(fileContentCache.getMissCount(), is(1L));
+        assertThat(fileContentCache.getHitCount(), is(1L));
+        assertThat(fileContentCache.getSize(), is(4L));
+    }
+
+    @Test
+    public void shouldReloadStaleContents() throws IOException {
+        FileContentCache fileContentCache = new FileContentCache(1024, 16);
+        fileContentCache.get(first, getMetadata(first));
+
+        writeFile(first, "ABCDE");
+        FileMetadata changedMetadata = new FileMetadata(true, 5, first.lastModified() + 1000, null);
+
+        assertThat(read(fileContentCache.get(first, changedMetadata)), is("ABCDE"));
+        assertThat(fileContentCache.getMissCount(), is(2L));
+        assertThat(fileContentCache.getSize(), is(5L));
+    }
+
+    @Test
+    public void shouldNotCacheFilesAboveTheLimitsOrChangedWhileReading() throws IOException {
+        FileContentCache fileContentCache = new FileContentCache(1024, 3);
+        assertThat(fileContentCache.get(first, getMetadata(first)), is(nullValue()));
+
+        fileContentCache = new FileContentCache(0, 16);
+        assertThat(fileContentCache.get(first, getMetadata(first)), is(nullValue()));
+
+        fileContentCache = new FileContentCache(1024, 16);
+        assertThat(fileContentCache.get(first, new FileMetadata(true, 3, first.lastModified(), null)), is(nullValue()));
+        assertThat(fileContentCache.getSize(), is(0L));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedContentsOverBudget() throws IOException {
+        FileContentCache fileContentCache = new FileContentCache(6, 16);
+        fileContentCache.get(first, getMetadata(first));
+        fileContentCache.get(second, getMetadata(second));
+
+        assertThat(fileContentCache.getEvictionCount(), is(1L));
+        assertThat(fileContentCache.getSize(), is(4L));
+
+        fileContentCache.get(second, getMetadata(second));
+        assertThat(fileContentCache.getHitCount(), is(1L));
+    }
+
+    @Test
+    public void shouldReturnIndependentViews() throws IOException {
+        FileContentCache fileContentCache = new FileContentCache(1024, 16);
+        ByteBuffer buffer = fileContentCache.get(first, getMetadata(first));
+        buffer.position(4);
+
+        assertThat(read(fileContentCache.get(first, getMetadata(first))), is("ABCD"));
+    }
+
+    private FileMetadata getMetadata(File file) {
+        return new FileMetadata(true, file.length(), file.lastModified(), null);
+    }
+
+    private String read(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes);
+    }
+
+    private void writeFile(File file, String contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes());
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package ro.polak.http.resource.provider.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import ro.polak.http.MimeTypeMapping;
+import ro.polak.http.utilities.DateProvider;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FileMetadataCacheTest {
+
+    private static final long TTL = 1000;
+
+    private DateProvider dateProvider;
+    private CountingCache cache;
+    private MimeTypeMapping mimeTypeMapping;
+
+    @Before
+    public void setUp() {
+        dateProvider = mock(DateProvider.class);
+        when(dateProvider.currentTimeMillis()).thenReturn(0L);
+        cache = new CountingCache(dateProvider, 2, TTL);
+        mimeTypeMapping = mock(MimeTypeMapping.class);
+        when(mimeTypeMapping.getMimeTypeByExtension("txt")).thenReturn("text/plain");
+    }
+
+    @Test
+    public void shouldComputeValidators() {
+        FileMetadata fileMetadata = new FileMetadata(true, 255, 1520881821937L, "text/plain");
+
+        assertThat(fileMetadata.getContentLengthValue(), is("255"));
+        assertThat(fileMetadata.getETag(), is("\"1621b9ee8f1-ff\""));
+        assertThat(fileMetadata.getLastModifiedValue(), is("Mon, 12 Mar 2018 19:10:21 GMT"));
+    }
+
+    @Test
+    public void shouldCacheMetadataUntilTimeToLive() {
+        File file = new File("/tmp/file.txt");
+        FileMetadata fileMetadata = cache.get(file);
+        assertThat(cache.get(file), is(sameInstance(fileMetadata)));
+        assertThat(cache.reads, is(1));
+
+        when(dateProvider.currentTimeMillis()).thenReturn(TTL);
+        cache.get(file);
+        assertThat(cache.reads, is(2));
+    }
+
+    @Test
+    public void shouldShareEntryOfEquivalentPaths() {
+        FileMetadata fileMetadata = cache.get(new File("/tmp/file.txt"));
+        assertThat(cache.get(new File("/tmp/./file.txt")), is(sameInstance(fileMetadata)));
+        assertThat(cache.get(new File("/tmp/dir/../file.txt")), is(sameInstance(fileMetadata)));
+        assertThat(cache.reads, is(1));
+    }
+
+    @Test
+    public void shouldEvictExpiredEntriesOnceFull() {
+        cache.get(new File("/tmp/1.txt"));
+        cache.get(new File("/tmp/2.txt"));
+        when(dateProvider.currentTimeMillis()).thenReturn(TTL);
+        cache.get(new File("/tmp/3.txt"));
+        assertThat(cache.size(), is(1));
+
+        cache.get(new File("/tmp/3.txt"));
+        assertThat(cache.reads, is(3));
+    }
+
+    @Test
+    public void shouldInvalidateFileAndFilesBelowIt() {
+        cache.get(new File("/tmp/dir"));
+        cache.get(new File("/tmp/dir/1.txt"));
+        assertThat(cache.size(), is(2));
+
+        cache.invalidate(new File("/tmp/dir"));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void shouldNotifyListenersOfInvalidation() {
+        FileMetadataCache.InvalidationListener invalidationListener = mock(FileMetadataCache.InvalidationListener.class);
+        cache.addInvalidationListener(invalidationListener);
+
+        cache.invalidate(new File("/tmp/./dir"));
+        cache.invalidateAll();
+
+        verify(invalidationListener, times(1)).onInvalidated(new File("/tmp/dir"));
+        verify(invalidationListener, times(1)).onInvalidated(null);
+    }
+
+    @Test
+    public void shouldCacheMissingFilesAndMimeTypes() throws IOException {
+        File directory = createTempDirectory();
+        File file = new File(directory, "file.txt");
+        FileMetadataCache fileMetadataCache = new FileMetadataCache(dateProvider, mimeTypeMapping, 10, TTL);
+        try {
+            assertThat(fileMetadataCache.get(file).isFile(), is(false));
+            assertThat(fileMetadataCache.get(directory).isFile(), is(false));
+
+            writeFile(file, "ABC");
+            assertThat(fileMetadataCache.get(file).isFile(), is(false));
+
+            fileMetadataCache.invalidate(file);
+            FileMetadata fileMetadata = fileMetadataCache.get(file);
+            assertThat(fileMetadata.isFile(), is(true));
+            assertThat(fileMetadata.getLength(), is(3L));
+            assertThat(fileMetadata.getContentType(), is("text/plain"));
+        } finally {
+            file.delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void shouldInvalidateEntriesOfWatchedDirectory() throws Exception {
+        File directory = createTempDirectory();
+        File file = new File(directory, "file.txt");
+        FileMetadataCache fileMetadataCache = new FileMetadataCache(dateProvider, mimeTypeMapping, 10, TTL);
+        try {
+            assertThat(fileMetadataCache.watch(directory), is(true));
+            assertThat(fileMetadataCache.get(file).isFile(), is(false));
+
+            writeFile(file, "ABC");
+            awaitFileMetadata(fileMetadataCache, file, 3);
+
+            writeFile(file, "ABCDE");
+            awaitFileMetadata(fileMetadataCache, file, 5);
+        } finally {
+            fileMetadataCache.stopWatching();
+            file.delete();
+            directory.delete();
+        }
+    }
+
+    private void awaitFileMetadata(FileMetadataCache fileMetadataCache, File file, long expectedLength)
+            throws InterruptedException {
+        // Some watch service implementations poll for changes
+        long deadline = System.currentTimeMillis() + 30 * 1000;
+        while (System.currentTimeMillis() < deadline) {
+            FileMetadata fileMetadata = fileMetadataCache.get(file);
+            if (fileMetadata.isFile() && fileMetadata.getLength() == expectedLength) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("Cache entry was not invalidated");
+    }
+
+    private File createTempDirectory() throws IOException {
+        File directory = File.createTempFile("metadata", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Unable to create " + directory.getAbsolutePath());
+        }
+        return directory;
+    }
+
+    private void writeFile(File file, String contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static class CountingCache extends FileMetadataCache {
+
+        private int reads;
+
+        CountingCache(DateProvider dateProvider, int maxSize, long timeToLive) {
+            super(dateProvider, null, maxSize, timeToLive);
+        }
+
+        @Override
+        protected FileMetadata read(File file) {
+            ++reads;
+            return new FileMetadata(true, file.getPath().length(), 1000, null);
+        }
+    }
+}
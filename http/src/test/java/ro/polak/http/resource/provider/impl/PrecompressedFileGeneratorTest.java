@@ -0,0 +1,214 @@
+package ro.polak.http.resource.provider.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class PrecompressedFileGeneratorTest {
+
+    private static final String CONTENTS;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("body { color: red; }\n");
+        }
+        CONTENTS = sb.toString();
+    }
+
+    private File file;
+    private File sidecar;
+    private FileMetadataCache fileMetadataCache;
+    private RecordingExecutor executor;
+    private PrecompressedFileGenerator precompressedFileGenerator;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("precompressed", ".css");
+        sidecar = PrecompressedFileGenerator.getSidecar(file);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(CONTENTS.getBytes());
+        out.close();
+
+        fileMetadataCache = mock(FileMetadataCache.class);
+        executor = new RecordingExecutor();
+        precompressedFileGenerator = new PrecompressedFileGenerator(fileMetadataCache,
+                Arrays.asList("text/css"), executor);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        sidecar.delete();
+    }
+
+    @Test
+    public void shouldGenerateSidecarOfConfiguredMimeType() throws IOException {
+        precompressedFileGenerator.generate(file, getMetadata("text/css"));
+        executor.runAll();
+
+        assertThat(sidecar.isFile(), is(true));
+        assertThat(sidecar.lastModified() >= file.lastModified(), is(true));
+        assertThat(sidecar.length() < file.length(), is(true));
+        assertThat(readGzip(sidecar), is(CONTENTS));
+        verify(fileMetadataCache).invalidate(sidecar);
+    }
+
+    @Test
+    public void shouldNotGenerateSidecarOfOtherMimeTypes() {
+        precompressedFileGenerator.generate(file, getMetadata("image/png"));
+
+        assertThat(executor.tasks.size(), is(0));
+    }
+
+    @Test
+    public void shouldNotScheduleGenerationTwice() {
+        precompressedFileGenerator.generate(file, getMetadata("text/css"));
+        precompressedFileGenerator.generate(file, getMetadata("text/css"));
+
+        assertThat(executor.tasks.size(), is(1));
+    }
+
+    @Test
+    public void shouldNotRetryFailedGenerationOfUnchangedFile() {
+        FileMetadata fileMetadata = getMetadata("text/css");
+        file.delete();
+
+        precompressedFileGenerator.generate(file, fileMetadata);
+        executor.runAll();
+        precompressedFileGenerator.generate(file, fileMetadata);
+
+        assertThat(executor.tasks.size(), is(0));
+        assertThat(sidecar.exists(), is(false));
+        verify(fileMetadataCache, never()).invalidate(any(File.class));
+    }
+
+    @Test
+    public void shouldNotScheduleGenerationWhileInProgress() {
+        precompressedFileGenerator.generate(file, getMetadata("text/css"));
+        precompressedFileGenerator.generate(file, new FileMetadata(true, file.length(),
+                file.lastModified() + 1000, "text/css"));
+
+        assertThat(executor.tasks.size(), is(1));
+    }
+
+    @Test
+    public void shouldRetryFailedGenerationOfChangedFile() {
+        FileMetadata fileMetadata = getMetadata("text/css");
+        file.delete();
+
+        precompressedFileGenerator.generate(file, fileMetadata);
+        executor.runAll();
+        precompressedFileGenerator.generate(file, new FileMetadata(true, fileMetadata.getLength(),
+                fileMetadata.getLastModified() + 1000, "text/css"));
+
+        assertThat(executor.tasks.size(), is(1));
+    }
+
+    @Test
+    public void shouldGenerateDeletedSidecarAgain() {
+        precompressedFileGenerator.generate(file, getMetadata("text/css"));
+        executor.runAll();
+        sidecar.delete();
+        precompressedFileGenerator.generate(file, getMetadata("text/css"));
+
+        assertThat(executor.tasks.size(), is(1));
+    }
+
+    @Test
+    public void shouldNotScheduleGenerationOnceShutdown() {
+        precompressedFileGenerator.generate(file, getMetadata("text/css"));
+        precompressedFileGenerator.shutdown();
+        precompressedFileGenerator.generate(new File(file.getPath() + ".copy"), getMetadata("text/css"));
+
+        assertThat(executor.isShutdown(), is(true));
+        assertThat(executor.tasks.size(), is(0));
+    }
+
+    private FileMetadata getMetadata(String contentType) {
+        return new FileMetadata(true, file.length(), file.lastModified(), contentType);
+    }
+
+    private String readGzip(File file) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            StringBuilder sb = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1) {
+                sb.append((char) b);
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class RecordingExecutor extends AbstractExecutorService {
+        private final List<Runnable> tasks = new ArrayList<>();
+        private boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            return pending;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+
+        void runAll() {
+            List<Runnable> scheduled = new ArrayList<>(tasks);
+            tasks.clear();
+            for (Runnable task : scheduled) {
+                task.run();
+            }
+        }
+    }
+}
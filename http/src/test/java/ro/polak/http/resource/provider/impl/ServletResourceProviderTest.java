@@ -2,6 +2,7 @@ package ro.polak.http.resource.provider.impl;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -11,23 +12,38 @@ import java.util.regex.Pattern;
 
 import ro.polak.http.configuration.FilterMapping;
 import ro.polak.http.configuration.ServletMapping;
+import ro.polak.http.configuration.impl.FilterMappingImpl;
 import ro.polak.http.configuration.impl.ServletMappingImpl;
 import ro.polak.http.exception.ServletException;
 import ro.polak.http.exception.ServletInitializationException;
 import ro.polak.http.exception.UnexpectedSituationException;
 import ro.polak.http.protocol.serializer.Serializer;
+import ro.polak.http.protocol.serializer.impl.ByteHeadersSerializer;
 import ro.polak.http.servlet.impl.HttpRequestImpl;
 import ro.polak.http.servlet.impl.HttpResponseImpl;
 import ro.polak.http.servlet.impl.HttpSessionImpl;
+import ro.polak.http.servlet.Filter;
+import ro.polak.http.servlet.FilterChain;
+import ro.polak.http.servlet.FilterConfig;
+import ro.polak.http.servlet.HttpServlet;
+import ro.polak.http.servlet.HttpServletRequest;
+import ro.polak.http.servlet.HttpServletResponse;
 import ro.polak.http.servlet.Servlet;
 import ro.polak.http.servlet.ServletConfig;
 import ro.polak.http.servlet.ServletContainer;
 import ro.polak.http.servlet.impl.ServletContextImpl;
+import ro.polak.http.servlet.helper.CompressionHelper;
 import ro.polak.http.servlet.helper.StreamHelper;
 import ro.polak.http.servlet.loader.SampleServlet;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -55,11 +71,11 @@ public class ServletResourceProviderTest {
 
         servletResourceProvider = new ServletResourceProvider(
                 servletContainer,
-                Arrays.asList(servletContext)
+                Arrays.asList(servletContext),
+                mock(CompressionHelper.class)
         );
 
-        response = new HttpResponseImpl(mock(
-                Serializer.class),
+        response = new HttpResponseImpl(new ByteHeadersSerializer(),
                 mock(Serializer.class),
                 mock(StreamHelper.class),
                 mock(OutputStream.class));
@@ -84,6 +100,12 @@ public class ServletResourceProviderTest {
                 any(HttpResponseImpl.class));
     }
 
+    @Test
+    public void shouldReleaseServletOnceServed() throws IOException {
+        servletResourceProvider.load("/", request, response);
+        verify(servletContainer, times(1)).releaseServletForClass(SampleServlet.class);
+    }
+
     @Test(expected = UnexpectedSituationException.class)
     public void shouldWrapServletInitializationException()
             throws IOException, ServletException, ServletInitializationException {
@@ -91,4 +113,95 @@ public class ServletResourceProviderTest {
                 .thenThrow(new ServletInitializationException(new Exception()));
         servletResourceProvider.load("/", request, response);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldResolveFiltersOncePerPath() throws Exception {
+        FilterMapping filterMapping = new FilterMappingImpl(Pattern.compile("^.*$"), null, Filter.class);
+        when(servletContext.getFilterMappings()).thenReturn(Arrays.asList(filterMapping));
+        Filter filter = mock(Filter.class);
+        when(servletContainer.getFilterForClass(any(Class.class), any(FilterConfig.class))).thenReturn(filter);
+        servletResourceProvider = new ServletResourceProvider(servletContainer, Arrays.asList(servletContext),
+                mock(CompressionHelper.class));
+
+        assertThat(servletResourceProvider.canLoad("/"), is(true));
+        servletResourceProvider.load("/", request, response);
+        servletResourceProvider.load("/", request, new HttpResponseImpl(new ByteHeadersSerializer(),
+                mock(Serializer.class), mock(StreamHelper.class), mock(OutputStream.class)));
+
+        verify(servletContainer, times(1)).getFilterForClass(any(Class.class), any(FilterConfig.class));
+        verify(filter, times(2)).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class),
+                any(FilterChain.class));
+    }
+
+    @Test
+    public void shouldApplyFiltersOfExactMappingOnlyToItsPath() throws Exception {
+        when(servletContext.getServletMappings()).thenReturn(Arrays.<ServletMapping>asList(
+                new ServletMappingImpl(Pattern.compile("^exact$"), SampleServlet.class),
+                new ServletMappingImpl(Pattern.compile("^.*$"), SampleServlet.class)));
+        when(servletContext.getFilterMappings()).thenReturn(Arrays.<FilterMapping>asList(
+                new FilterMappingImpl(Pattern.compile("^exact$"), null, Filter.class)));
+        Filter filter = mock(Filter.class);
+        when(servletContainer.getFilterForClass(any(Class.class), any(FilterConfig.class))).thenReturn(filter);
+        servletResourceProvider = new ServletResourceProvider(servletContainer, Arrays.asList(servletContext),
+                mock(CompressionHelper.class));
+
+        servletResourceProvider.load("/exact", request, response);
+        servletResourceProvider.load("/other", request, new HttpResponseImpl(new ByteHeadersSerializer(),
+                mock(Serializer.class), mock(StreamHelper.class), mock(OutputStream.class)));
+
+        verify(filter, times(1)).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class),
+                any(FilterChain.class));
+    }
+
+    @Test
+    public void shouldNotLoadUnmappedPath() {
+        when(servletContext.getServletMappings()).thenReturn(Collections.<ServletMapping>emptyList());
+        servletResourceProvider = new ServletResourceProvider(servletContainer, Arrays.asList(servletContext),
+                mock(CompressionHelper.class));
+        assertThat(servletResourceProvider.canLoad("/"), is(false));
+    }
+
+    @Test
+    public void shouldPreloadInLoadOnStartupOrder() throws Exception {
+        ServletContextImpl servletContext = getPreloadedServletContext();
+        servletResourceProvider = new ServletResourceProvider(servletContainer, Arrays.asList(servletContext),
+                mock(CompressionHelper.class));
+
+        servletResourceProvider.preload();
+
+        InOrder inOrder = inOrder(servletContainer);
+        inOrder.verify(servletContainer, times(2)).getServletForClass(eq(EagerServlet.class),
+                any(ServletConfig.class));
+        inOrder.verify(servletContainer).getFilterForClass(eq(Filter.class), any(FilterConfig.class));
+        verify(servletContainer, never()).getServletForClass(eq(SampleServlet.class), any(ServletConfig.class));
+    }
+
+    @Test
+    public void shouldReturnWarmUpPathsOfPreloadedExactMappings() {
+        ServletContextImpl servletContext = getPreloadedServletContext();
+        servletResourceProvider = new ServletResourceProvider(servletContainer, Arrays.asList(servletContext),
+                mock(CompressionHelper.class));
+
+        assertThat(servletResourceProvider.getWarmUpPaths(), contains("/context/eager"));
+    }
+
+    private ServletContextImpl getPreloadedServletContext() {
+        ServletContextImpl servletContext = mock(ServletContextImpl.class);
+        when(servletContext.getContextPath()).thenReturn("/context");
+        when(servletContext.getServletMappings()).thenReturn(Arrays.<ServletMapping>asList(
+                new ServletMappingImpl(Pattern.compile("^/lazy$"), SampleServlet.class),
+                new ServletMappingImpl(Pattern.compile("^/eager$"), EagerServlet.class, 0),
+                new ServletMappingImpl(Pattern.compile("^/eager/.*$"), EagerServlet.class, 0)));
+        when(servletContext.getFilterMappings()).thenReturn(Arrays.<FilterMapping>asList(
+                new FilterMappingImpl(Pattern.compile("^.*$"), null, Filter.class, 1)));
+        return servletContext;
+    }
+
+    public static class EagerServlet extends HttpServlet {
+
+        @Override
+        public void service(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+            // To comply with HttpServlet interface only
+        }
+    }
+}
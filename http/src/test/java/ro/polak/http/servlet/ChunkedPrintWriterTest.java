@@ -15,7 +15,9 @@ public class ChunkedPrintWriterTest {
         ChunkedPrintWriter printWriter = new ChunkedPrintWriter(out);
 
         printWriter.print("Wiki");
+        printWriter.flush();
         printWriter.print("pedia");
+        printWriter.flush();
         printWriter.print(" in\r\n\r\nchunks.");
         printWriter.writeEnd();
         printWriter.flush();
@@ -30,7 +32,18 @@ public class ChunkedPrintWriterTest {
         printWriter.print("Wiki");
         printWriter.println();
         printWriter.flush();
-        assertThat(new String(out.toByteArray()), is("4\r\nWiki\r\n2\r\n\r\n\r\n"));
+        assertThat(new String(out.toByteArray()), is("6\r\nWiki\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldAggregatePrintsUntilFlushed() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        ChunkedPrintWriter printWriter = new ChunkedPrintWriter(out);
+
+        printWriter.print("Wiki");
+        printWriter.print("pedia");
+        printWriter.writeEnd();
+        assertThat(new String(out.toByteArray()), is("9\r\nWikipedia\r\n0\r\n\r\n"));
     }
 
     @Test
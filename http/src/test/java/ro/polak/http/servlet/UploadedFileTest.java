@@ -4,6 +4,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -88,6 +89,40 @@ public class UploadedFileTest {
         }
     }
 
+    @Test
+    public void shouldServeInMemoryContentsAndSpillOnDemand() throws IOException {
+        UploadedFile uploadedFile = new UploadedFile("myfile", "myfile.txt", "ABCD".getBytes(), tempPath);
+
+        assertThat(uploadedFile.isInMemory(), is(true));
+        assertThat(uploadedFile.getSize(), is(4L));
+        assertThat(readFully(uploadedFile.getInputStream()), is("ABCD"));
+        assertThat(uploadedFile.destroy(), is(false));
+
+        File file = uploadedFile.getFile();
+        try {
+            assertThat(uploadedFile.isInMemory(), is(false));
+            assertThat(file.length(), is(4L));
+            assertThat(readFully(uploadedFile.getInputStream()), is("ABCD"));
+            assertThat(uploadedFile.destroy(), is(true));
+            assertThat(file.exists(), is(false));
+        } finally {
+            cleanupFile(file);
+        }
+    }
+
+    private String readFully(InputStream in) throws IOException {
+        try {
+            StringBuilder sb = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1) {
+                sb.append((char) b);
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+
     private void cleanupFile(File file) throws IOException {
         if (file.exists() && !file.delete()) {
             throw new IOException("Unable to delete " + file.getAbsolutePath());
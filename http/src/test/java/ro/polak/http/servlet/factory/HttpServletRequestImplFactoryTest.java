@@ -8,11 +8,13 @@ import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.HashMap;
 import java.util.Map;
 
 import ro.polak.http.Headers;
 import ro.polak.http.exception.protocol.ProtocolException;
 import ro.polak.http.exception.protocol.UnsupportedProtocolException;
+import ro.polak.http.impl.NumericHostNameResolver;
 import ro.polak.http.protocol.parser.MalformedInputException;
 import ro.polak.http.protocol.parser.Parser;
 import ro.polak.http.protocol.parser.impl.RequestStatusParser;
@@ -22,8 +24,10 @@ import ro.polak.http.servlet.impl.HttpRequestImpl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -34,6 +38,7 @@ public class HttpServletRequestImplFactoryTest {
     private static Socket socket;
     private static Parser<Map<String, Cookie>> cookieParser;
     private static Parser<Headers> headersParser;
+    private static Parser<Map<String, String>> queryStringParser;
     private static Headers headers;
 
     @Before
@@ -42,14 +47,17 @@ public class HttpServletRequestImplFactoryTest {
         headersParser = mock(Parser.class);
         when(headersParser.parse(any(String.class))).thenReturn(headers);
         cookieParser = mock(Parser.class);
+        queryStringParser = mock(Parser.class);
 
         factory = new HttpServletRequestImplFactory(
                 headersParser,
-                mock(Parser.class),
+                queryStringParser,
                 new RequestStatusParser(),
                 cookieParser,
                 mock(Parser.class),
-                ""
+                "",
+                0,
+                new NumericHostNameResolver()
         );
 
         InputStream inputStream = new ByteArrayInputStream("GET / HTTP/1.0\r\nHeader1: someValue\r\n\r\n".getBytes());
@@ -89,4 +97,51 @@ public class HttpServletRequestImplFactoryTest {
         assertThat(request.getCookies().length, is(0));
         assertThat(request.getHeaders().keySet().size(), is(0));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldNotResolveHostNamesWhenCreatingRequest() throws Exception {
+        InetAddress address = mock(InetAddress.class);
+        when(address.getHostAddress()).thenReturn("10.0.0.1");
+        when(socket.getInetAddress()).thenReturn(address);
+        when(socket.getLocalAddress()).thenReturn(address);
+
+        HttpRequestImpl request = factory.createFromSocket(socket);
+
+        verify(address, never()).getHostName();
+        verify(address, never()).getCanonicalHostName();
+        assertThat(request.getRemoteAddr(), is("10.0.0.1"));
+        assertThat(request.getRemoteHost(), is("10.0.0.1"));
+        assertThat(request.getServerName(), is("10.0.0.1"));
+    }
+
+    @Test
+    public void shouldParsePostBodyOnlyWhenRequested() throws Exception {
+        headers.setHeader(Headers.HEADER_CONTENT_LENGTH, "7");
+        Map<String, String> postParameters = new HashMap<>();
+        postParameters.put("a", "1");
+        when(queryStringParser.parse("a=1&b=2")).thenReturn(postParameters);
+        when(socket.getInputStream()).thenReturn(new ByteArrayInputStream(
+                "POST / HTTP/1.1\r\nContent-Length: 7\r\n\r\na=1&b=2".getBytes()));
+
+        HttpRequestImpl request = factory.createFromSocket(socket);
+        verify(queryStringParser, never()).parse("a=1&b=2");
+        assertThat(request.isBodyParsed(), is(false));
+
+        assertThat(request.getPostParameter("a"), is("1"));
+        assertThat(request.isBodyParsed(), is(true));
+        verify(queryStringParser, times(1)).parse("a=1&b=2");
+    }
+
+    @Test
+    public void shouldExposeUnparsedBodyAsStream() throws Exception {
+        headers.setHeader(Headers.HEADER_CONTENT_LENGTH, "7");
+        when(socket.getInputStream()).thenReturn(new ByteArrayInputStream(
+                "POST / HTTP/1.1\r\nContent-Length: 7\r\n\r\na=1&b=2NEXT".getBytes()));
+
+        HttpRequestImpl request = factory.createFromSocket(socket);
+
+        assertThat(request.getReader().readLine(), is("a=1&b=2"));
+        assertThat(request.getPostParameter("a"), is(nullValue()));
+        verify(queryStringParser, never()).parse("a=1&b=2");
+    }
+}
@@ -0,0 +1,60 @@
+package ro.polak.http.servlet.helper;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class CompiledUrlPatternTest {
+
+    @Test
+    public void shouldCompileLiteralPatterns() {
+        assertCompiled("^/Chunked$", CompiledUrlPattern.Type.EXACT, "/Chunked");
+        assertCompiled("^/secured/ForbiddenByFilter", CompiledUrlPattern.Type.EXACT, "/secured/ForbiddenByFilter");
+        assertCompiled("^/$", CompiledUrlPattern.Type.EXACT, "/");
+        assertCompiled("^/file\\.html$", CompiledUrlPattern.Type.EXACT, "/file.html");
+        assertCompiled("^\\Q/a+b\\E$", CompiledUrlPattern.Type.EXACT, "/a+b");
+        assertCompiled("^/secured/.*$", CompiledUrlPattern.Type.PREFIX, "/secured/");
+        assertCompiled("^.*$", CompiledUrlPattern.Type.PREFIX, "");
+        assertCompiled("^.*\\.html$", CompiledUrlPattern.Type.SUFFIX, ".html");
+    }
+
+    @Test
+    public void shouldFallBackToRegexForOtherPatterns() {
+        assertCompiled("^/page[0-9]$", CompiledUrlPattern.Type.REGEX, null);
+        assertCompiled("^/a\\d$", CompiledUrlPattern.Type.REGEX, null);
+        assertCompiled("^/a\\.*$", CompiledUrlPattern.Type.REGEX, null);
+        assertCompiled("^/a$|^/b$", CompiledUrlPattern.Type.REGEX, null);
+        assertThat(CompiledUrlPattern.compile(Pattern.compile("^/a$", Pattern.CASE_INSENSITIVE)).getType(),
+                is(CompiledUrlPattern.Type.REGEX));
+    }
+
+    @Test
+    public void shouldMatchLikeTheRegularExpression() {
+        String[] patterns = {"^/Chunked$", "^/secured/.*$", "^.*\\.html$", "^/page[0-9]$", "^.*$"};
+        String[] paths = {"/Chunked", "/Chunked/", "/secured/", "/secured/a", "/secure", "/a.html",
+                "/a.htm", "/page1", "/pageX", "", "/secured/a\nb", "/a .html"};
+
+        for (String expression : patterns) {
+            Pattern pattern = Pattern.compile(expression);
+            CompiledUrlPattern compiledUrlPattern = CompiledUrlPattern.compile(pattern);
+            for (String path : paths) {
+                assertThat(expression + " " + path, compiledUrlPattern.matches("/context" + path, 8),
+                        is(pattern.matcher(path).matches()));
+            }
+        }
+    }
+
+    private void assertCompiled(String expression, CompiledUrlPattern.Type type, String literal) {
+        CompiledUrlPattern compiledUrlPattern = CompiledUrlPattern.compile(Pattern.compile(expression));
+        assertThat(expression, compiledUrlPattern.getType(), is(type));
+        if (literal == null) {
+            assertThat(expression, compiledUrlPattern.getLiteral(), is(nullValue()));
+        } else {
+            assertThat(expression, compiledUrlPattern.getLiteral(), is(literal));
+        }
+    }
+}
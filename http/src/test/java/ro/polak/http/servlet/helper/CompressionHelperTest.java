@@ -0,0 +1,94 @@
+package ro.polak.http.servlet.helper;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import ro.polak.http.protocol.parser.impl.AcceptEncodingParser;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CompressionHelperTest {
+
+    private final CompressionHelper compressionHelper = new CompressionHelper(new AcceptEncodingParser(),
+            Arrays.asList("text/html", "Application/JSON"), 16, 9);
+
+    @Test
+    public void shouldNegotiateCoding() {
+        assertThat(compressionHelper.getCoding("gzip, deflate"), is("gzip"));
+        assertThat(compressionHelper.getCoding("gzip;q=0, deflate"), is("deflate"));
+        assertThat(compressionHelper.getCoding("*"), is("gzip"));
+        assertThat(compressionHelper.getCoding("br, identity"), is(nullValue()));
+        assertThat(compressionHelper.getCoding("gzip;q=invalid"), is(nullValue()));
+        assertThat(compressionHelper.getCoding(null), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotNegotiateCodingWithoutMimeTypes() {
+        CompressionHelper disabledCompressionHelper = new CompressionHelper(new AcceptEncodingParser(),
+                Collections.<String>emptyList(), 16, 9);
+
+        assertThat(disabledCompressionHelper.getCoding("gzip"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldMatchMimeTypesIgnoringParameters() {
+        assertThat(compressionHelper.isCompressible("text/html; charset=UTF-8"), is(true));
+        assertThat(compressionHelper.isCompressible("application/json"), is(true));
+        assertThat(compressionHelper.isCompressible("image/png"), is(false));
+        assertThat(compressionHelper.isCompressible(null), is(false));
+    }
+
+    @Test
+    public void shouldCreateCompressingStreams() throws IOException {
+        byte[] contents = "Compressed contents, compressed contents".getBytes();
+
+        ByteArrayOutputStream gzipOut = new ByteArrayOutputStream();
+        compress(compressionHelper.getCompressingStream(CompressionHelper.CODING_GZIP, gzipOut), contents);
+        assertThat(read(new GZIPInputStream(new ByteArrayInputStream(gzipOut.toByteArray()))), is(contents));
+
+        ByteArrayOutputStream deflateOut = new ByteArrayOutputStream();
+        compress(compressionHelper.getCompressingStream(CompressionHelper.CODING_DEFLATE, deflateOut), contents);
+        assertThat(read(new InflaterInputStream(new ByteArrayInputStream(deflateOut.toByteArray()))), is(contents));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void shouldReleaseCompressorOfAbandonedStream() throws IOException {
+        DeflaterOutputStream out = compressionHelper.getCompressingStream(CompressionHelper.CODING_GZIP,
+                new ByteArrayOutputStream());
+        compressionHelper.release(out);
+
+        // The ended deflater refuses any further input
+        out.write("Contents".getBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnsupportedCoding() throws IOException {
+        compressionHelper.getCompressingStream("br", new ByteArrayOutputStream());
+    }
+
+    private void compress(DeflaterOutputStream out, byte[] contents) throws IOException {
+        out.write(contents);
+        out.finish();
+    }
+
+    private byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64];
+        int numberOfBytesRead;
+        while ((numberOfBytesRead = in.read(buffer)) != -1) {
+            out.write(buffer, 0, numberOfBytesRead);
+        }
+        return out.toByteArray();
+    }
+}
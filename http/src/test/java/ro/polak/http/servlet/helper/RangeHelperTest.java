@@ -84,4 +84,54 @@ public class RangeHelperTest {
     public void shouldNotBeSatisfiableWhenFirstElementIsFine() {
         assertThat(rangeHelper.isSatisfiable(Arrays.asList(new Range(0, 0), new Range(-1, 0)), 5), is(false));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldResolveSuffixAndOpenEndedRanges() {
+        List<Range> ranges = rangeHelper.resolve(Collections.singletonList(new Range(Range.UNSPECIFIED, 500)), 1000);
+        assertThat(ranges.size(), is(1));
+        assertThat(ranges.get(0).getFrom(), is(500L));
+        assertThat(ranges.get(0).getTo(), is(999L));
+
+        ranges = rangeHelper.resolve(Collections.singletonList(new Range(Range.UNSPECIFIED, 5000)), 1000);
+        assertThat(ranges.get(0).getFrom(), is(0L));
+        assertThat(ranges.get(0).getTo(), is(999L));
+
+        ranges = rangeHelper.resolve(Collections.singletonList(new Range(900, Range.UNSPECIFIED)), 1000);
+        assertThat(ranges.get(0).getFrom(), is(900L));
+        assertThat(ranges.get(0).getTo(), is(999L));
+    }
+
+    @Test
+    public void shouldTruncateRangeExceedingTheStream() {
+        List<Range> ranges = rangeHelper.resolve(Collections.singletonList(new Range(10, 5000)), 1000);
+        assertThat(ranges.get(0).getFrom(), is(10L));
+        assertThat(ranges.get(0).getTo(), is(999L));
+    }
+
+    @Test
+    public void shouldDropUnsatisfiableRanges() {
+        List<Range> ranges = rangeHelper.resolve(Arrays.asList(new Range(1000, 1001),
+                new Range(Range.UNSPECIFIED, 0), new Range(20, 10), new Range(5, 6)), 1000);
+        assertThat(ranges.size(), is(1));
+        assertThat(ranges.get(0).getFrom(), is(5L));
+
+        assertThat(rangeHelper.resolve(Collections.singletonList(new Range(Range.UNSPECIFIED, 10)), 0).isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldSortAndCoalesceOverlappingAndAdjacentRanges() {
+        List<Range> ranges = rangeHelper.resolve(Arrays.asList(new Range(500, 600), new Range(0, 10),
+                new Range(5, 20), new Range(21, 30), new Range(550, 560)), 1000);
+        assertThat(ranges.size(), is(2));
+        assertThat(ranges.get(0).getFrom(), is(0L));
+        assertThat(ranges.get(0).getTo(), is(30L));
+        assertThat(ranges.get(1).getFrom(), is(500L));
+        assertThat(ranges.get(1).getTo(), is(600L));
+    }
+
+    @Test
+    public void shouldComputeTotalLengthExceedingInteger() {
+        List<Range> ranges = Collections.singletonList(new Range(0, 5L * 1024 * 1024 * 1024 - 1));
+        assertThat(rangeHelper.getTotalLength(ranges), is(5L * 1024 * 1024 * 1024));
+    }
+}
@@ -73,6 +73,14 @@ public class ServletContextHelperTest {
         assertThat(servletContextHelper.getResolvedContext(Arrays.asList(servletContext), "/context/someurl"), is(servletContext));
     }
 
+    @Test
+    public void shouldResolveLongestContextPath() {
+        ServletContextImpl rootContext = mock(ServletContextImpl.class);
+        when(rootContext.getContextPath()).thenReturn("/");
+        assertThat(servletContextHelper.getResolvedContext(Arrays.asList(rootContext, servletContext), "/context/someurl"), is(servletContext));
+        assertThat(servletContextHelper.getResolvedContext(Arrays.asList(rootContext, servletContext), "/someurl"), is(rootContext));
+    }
+
     @Test
     public void shouldReturnEmptyCollectionForNoFilters() {
         assertThat(servletContextHelper.getFilterMappingsForPath(servletContext, "/context/"), hasSize(0));
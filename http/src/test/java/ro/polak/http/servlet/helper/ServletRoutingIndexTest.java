@@ -0,0 +1,108 @@
+package ro.polak.http.servlet.helper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import ro.polak.http.configuration.FilterMapping;
+import ro.polak.http.configuration.ServletMapping;
+import ro.polak.http.configuration.impl.FilterMappingImpl;
+import ro.polak.http.configuration.impl.ServletMappingImpl;
+import ro.polak.http.servlet.impl.ServletContextImpl;
+import ro.polak.http.servlet.loader.SampleServlet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ServletRoutingIndexTest {
+
+    private ServletContextImpl rootContext;
+    private ServletContextImpl servletContext;
+    private ServletMapping exactMapping;
+    private ServletMapping regexMapping;
+    private ServletMapping prefixMapping;
+    private ServletMapping extensionMapping;
+    private ServletMapping rootMapping;
+    private FilterMapping securedFilterMapping;
+    private FilterMapping excludingFilterMapping;
+    private ServletRoutingIndex servletRoutingIndex;
+
+    @Before
+    public void setUp() {
+        exactMapping = new ServletMappingImpl(Pattern.compile("^/Chunked$"), SampleServlet.class);
+        regexMapping = new ServletMappingImpl(Pattern.compile("^/page[0-9]$"), SampleServlet.class);
+        prefixMapping = new ServletMappingImpl(Pattern.compile("^/page.*$"), SampleServlet.class);
+        extensionMapping = new ServletMappingImpl(Pattern.compile("^.*\\.html$"), SampleServlet.class);
+        rootMapping = new ServletMappingImpl(Pattern.compile("^.*$"), SampleServlet.class);
+        securedFilterMapping = new FilterMappingImpl(Pattern.compile("^/secured/.*$"), null,
+                ServletContextHelperTest.FakeFilter.class);
+        excludingFilterMapping = new FilterMappingImpl(Pattern.compile("^.*$"),
+                Pattern.compile("^/secured/public.*$"), ServletContextHelperTest.FakeFilter.class);
+
+        rootContext = mock(ServletContextImpl.class);
+        when(rootContext.getContextPath()).thenReturn("");
+        when(rootContext.getServletMappings()).thenReturn(Arrays.asList(rootMapping));
+        when(rootContext.getFilterMappings()).thenReturn(Collections.<FilterMapping>emptyList());
+
+        servletContext = mock(ServletContextImpl.class);
+        when(servletContext.getContextPath()).thenReturn("/context");
+        when(servletContext.getServletMappings()).thenReturn(Arrays.asList(exactMapping, regexMapping,
+                prefixMapping, extensionMapping));
+        when(servletContext.getFilterMappings()).thenReturn(Arrays.asList(securedFilterMapping,
+                excludingFilterMapping));
+
+        servletRoutingIndex = new ServletRoutingIndex(Arrays.asList(rootContext, servletContext));
+    }
+
+    @Test
+    public void shouldResolveLongestContextPath() {
+        assertThat(servletRoutingIndex.getResolvedContext("/context/Chunked"), is(servletContext));
+        assertThat(servletRoutingIndex.getResolvedContext("/other"), is(rootContext));
+    }
+
+    @Test
+    public void shouldResolveFirstDeclaredServletMapping() {
+        assertThat(servletRoutingIndex.getResolvedServletMapping(servletContext, "/context/Chunked"),
+                is(exactMapping));
+        assertThat(servletRoutingIndex.getResolvedServletMapping(servletContext, "/context/page1"),
+                is(regexMapping));
+        assertThat(servletRoutingIndex.getResolvedServletMapping(servletContext, "/context/pageX"),
+                is(prefixMapping));
+        assertThat(servletRoutingIndex.getResolvedServletMapping(servletContext, "/context/page.html"),
+                is(prefixMapping));
+        assertThat(servletRoutingIndex.getResolvedServletMapping(servletContext, "/context/a/b.html"),
+                is(extensionMapping));
+        assertThat(servletRoutingIndex.getResolvedServletMapping(rootContext, "/anything"), is(rootMapping));
+    }
+
+    @Test
+    public void shouldNotResolveUnmappedPath() {
+        assertThat(servletRoutingIndex.getResolvedServletMapping(servletContext, "/context/Chunked/"),
+                is(nullValue()));
+        assertThat(servletRoutingIndex.getResolvedServletMapping(servletContext, "/context/a.htm"),
+                is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotMatchLineTerminatorsWithWildcard() {
+        assertThat(servletRoutingIndex.getResolvedServletMapping(servletContext, "/context/page\n"),
+                is(nullValue()));
+    }
+
+    @Test
+    public void shouldReturnFilterMappingsInDeclarationOrder() {
+        assertThat(servletRoutingIndex.getFilterMappingsForPath(servletContext, "/context/secured/a"),
+                contains(securedFilterMapping, excludingFilterMapping));
+        assertThat(servletRoutingIndex.getFilterMappingsForPath(servletContext, "/context/secured/public"),
+                contains(securedFilterMapping));
+        assertThat(servletRoutingIndex.getFilterMappingsForPath(rootContext, "/secured/a"), hasSize(0));
+    }
+}
@@ -1,18 +1,26 @@
 package ro.polak.http.servlet.helper;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.internal.matchers.ArrayEquals;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
+import ro.polak.http.FileTransferTarget;
 import ro.polak.http.RangePartHeader;
 import ro.polak.http.protocol.serializer.impl.RangePartHeaderSerializer;
 import ro.polak.http.servlet.Range;
@@ -35,17 +43,29 @@ public class StreamHelperTest {
     private ByteArrayInputStream inputStream;
     private ByteArrayOutputStream outputStream;
     private byte[] inputBytes;
+    private File file;
+    private FileInputStream fileInputStream;
+    private FileChannel fileChannel;
     private final RangeHelper rangeHelper = new RangeHelper();
     private final RangePartHeaderSerializer rangePartHeaderSerializer = new RangePartHeaderSerializer();
     private final StreamHelper streamHelper = new StreamHelper(rangeHelper, rangePartHeaderSerializer);
     private final SliceHelper sliceHelper = new SliceHelper();
 
     @Before
-    public void setUp() {
+    public void setUp() throws IOException {
         inputBytes = new byte[1024 * 5];
         new Random().nextBytes(inputBytes);
         inputStream = new ByteArrayInputStream(inputBytes);
         outputStream = new ByteArrayOutputStream();
+        file = createFile(inputBytes);
+        fileInputStream = new FileInputStream(file);
+        fileChannel = fileInputStream.getChannel();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        fileInputStream.close();
+        file.delete();
     }
 
     @Test
@@ -62,7 +82,7 @@ public class StreamHelperTest {
 
         byte[] inputBytesSliced = sliceHelper.getSliceForRanges(inputBytes, Arrays.asList(range));
 
-        streamHelper.serveMultiRangeStream(inputStream, outputStream, range);
+        streamHelper.serveFile(fileChannel, outputStream, range.getFrom(), rangeHelper.getRangeLength(range));
 
         byte[] out = outputStream.toByteArray();
         assertThat(out.length, is(equalTo((int) rangeHelper.getTotalLength(Arrays.asList(range)))));
@@ -76,7 +96,7 @@ public class StreamHelperTest {
 
         byte[] inputBytesSliced = sliceHelper.getSliceForRanges(inputBytes, Arrays.asList(range));
 
-        streamHelper.serveMultiRangeStream(inputStream, outputStream, range);
+        streamHelper.serveFile(fileChannel, outputStream, range.getFrom(), rangeHelper.getRangeLength(range));
 
         byte[] out = outputStream.toByteArray();
         assertThat(out.length, is(equalTo((int) rangeHelper.getTotalLength(Arrays.asList(range)))));
@@ -92,7 +112,7 @@ public class StreamHelperTest {
 
         byte[] inputBytesSliced = sliceHelper.getSliceForRanges(inputBytes, ranges);
 
-        streamHelper.serveMultiRangeStream(inputStream, outputStream, ranges, BOUNDARY, CONTENT_TYPE, 0);
+        streamHelper.serveFile(fileChannel, outputStream, ranges, BOUNDARY, CONTENT_TYPE, 0);
 
         byte[] out = outputStream.toByteArray();
         assertThat(out.length, is(equalTo(inputBytesSliced.length)));
@@ -108,7 +128,7 @@ public class StreamHelperTest {
 
         byte[] inputBytesSliced = sliceHelper.getSliceForRanges(inputBytes, ranges);
 
-        streamHelper.serveMultiRangeStream(inputStream, outputStream, ranges, BOUNDARY, CONTENT_TYPE, TOTAL_LENGTH);
+        streamHelper.serveFile(fileChannel, outputStream, ranges, BOUNDARY, CONTENT_TYPE, TOTAL_LENGTH);
 
         byte[] out = outputStream.toByteArray();
         assertThat(out.length, is(equalTo(inputBytesSliced.length)));
@@ -125,7 +145,7 @@ public class StreamHelperTest {
         byte[] inputBytesSliced = sliceHelper.getSliceForRanges(inputBytes, ranges);
 
 
-        streamHelper.serveMultiRangeStream(inputStream, outputStream, ranges, BOUNDARY, CONTENT_TYPE, TOTAL_LENGTH);
+        streamHelper.serveFile(fileChannel, outputStream, ranges, BOUNDARY, CONTENT_TYPE, TOTAL_LENGTH);
 
         byte[] out = outputStream.toByteArray();
 
@@ -133,6 +153,74 @@ public class StreamHelperTest {
         assertThat(out, new ArrayEquals(inputBytesSliced));
     }
 
+    @Test
+    public void shouldServeRangesInReverseOrderWithoutRereadingTheFile() throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        ranges.add(new Range(4000, 4100));
+        ranges.add(new Range(10, 20));
+
+        byte[] inputBytesSliced = sliceHelper.getSliceForRanges(inputBytes, ranges);
+
+        streamHelper.serveFile(fileChannel, outputStream, ranges, BOUNDARY, CONTENT_TYPE, TOTAL_LENGTH);
+
+        assertThat(outputStream.toByteArray(), new ArrayEquals(inputBytesSliced));
+        assertThat(fileChannel.position(), is(0L));
+    }
+
+    @Test
+    public void shouldTransferEveryRangeToTransferTarget() throws IOException {
+        TransferTargetOutputStream target = new TransferTargetOutputStream();
+        List<Range> ranges = new ArrayList<>();
+        ranges.add(new Range(0, 550));
+        ranges.add(new Range(1024, 1623));
+
+        byte[] inputBytesSliced = sliceHelper.getSliceForRanges(inputBytes, ranges);
+
+        streamHelper.serveFile(fileChannel, target, ranges, BOUNDARY, CONTENT_TYPE, TOTAL_LENGTH);
+
+        assertThat(target.numberOfTransfers, is(2));
+        assertThat(target.toByteArray(), new ArrayEquals(inputBytesSliced));
+    }
+
+    @Test
+    public void shouldServeDirectBufferThroughHeapChunks() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(inputBytes.length);
+        buffer.put(inputBytes).flip();
+        buffer.position(10);
+
+        streamHelper.serveBuffer(buffer, outputStream);
+
+        assertThat(buffer.hasRemaining(), is(false));
+        assertThat(outputStream.toByteArray(), new ArrayEquals(Arrays.copyOfRange(inputBytes, 10, inputBytes.length)));
+    }
+
+    @Test
+    public void shouldTransferBufferToTransferTarget() throws IOException {
+        TransferTargetOutputStream target = new TransferTargetOutputStream();
+        ByteBuffer buffer = ByteBuffer.wrap(inputBytes, 5, 100);
+
+        streamHelper.serveBuffer(buffer, target);
+
+        assertThat(target.numberOfTransfers, is(1));
+        assertThat(target.toByteArray(), new ArrayEquals(Arrays.copyOfRange(inputBytes, 5, 105)));
+    }
+
+    @Test
+    public void shouldServeFileRegionThroughBuffer() throws IOException {
+        streamHelper.serveFile(fileChannel, outputStream, 3, 1024 * 4);
+
+        assertThat(outputStream.toByteArray(), new ArrayEquals(Arrays.copyOfRange(inputBytes, 3, 3 + 1024 * 4)));
+    }
+
+    @Test
+    public void shouldTransferFileRegionToTransferTarget() throws IOException {
+        TransferTargetOutputStream target = new TransferTargetOutputStream();
+        streamHelper.serveFile(fileChannel, target, 100, 200);
+
+        assertThat(target.numberOfTransfers, is(1));
+        assertThat(target.toByteArray(), new ArrayEquals(Arrays.copyOfRange(inputBytes, 100, 300)));
+    }
+
     @Test
     public void selfTest() {
         byte[] sample = {0, 1, 2, 3, 4};
@@ -143,6 +231,33 @@ public class StreamHelperTest {
         }));
     }
 
+    private File createFile(byte[] contents) throws IOException {
+        File file = File.createTempFile("stream", ".bin");
+        FileOutputStream fileOutputStream = new FileOutputStream(file);
+        try {
+            fileOutputStream.write(contents);
+        } finally {
+            fileOutputStream.close();
+        }
+        return file;
+    }
+
+    private static class TransferTargetOutputStream extends ByteArrayOutputStream implements FileTransferTarget {
+
+        private int numberOfTransfers;
+
+        @Override
+        public void transferFrom(FileChannel fileChannel, long position, long length) throws IOException {
+            numberOfTransfers++;
+            fileChannel.transferTo(position, length, Channels.newChannel(this));
+        }
+
+        @Override
+        public void transferFrom(ByteBuffer buffer) throws IOException {
+            numberOfTransfers++;
+            Channels.newChannel(this).write(buffer);
+        }
+    }
 
     private class SliceHelper {
         private Random random = new Random();
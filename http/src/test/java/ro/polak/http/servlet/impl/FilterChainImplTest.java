@@ -0,0 +1,68 @@
+package ro.polak.http.servlet.impl;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+
+import ro.polak.http.exception.ServletException;
+import ro.polak.http.servlet.Filter;
+import ro.polak.http.servlet.FilterChain;
+import ro.polak.http.servlet.HttpServletRequest;
+import ro.polak.http.servlet.HttpServletResponse;
+import ro.polak.http.servlet.Servlet;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class FilterChainImplTest {
+
+    @Test
+    public void shouldPassRequestThroughFiltersToServlet() throws IOException, ServletException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        Filter first = getPassingFilter();
+        Filter second = getPassingFilter();
+        Servlet servlet = mock(Servlet.class);
+
+        new FilterChainImpl(new Filter[]{first, second}, servlet).doFilter(request, response);
+
+        InOrder inOrder = inOrder(first, second, servlet);
+        inOrder.verify(first).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class),
+                any(FilterChain.class));
+        inOrder.verify(second).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class),
+                any(FilterChain.class));
+        inOrder.verify(servlet).service(request, response);
+    }
+
+    @Test
+    public void shouldNotCallServletWhenFilterStopsChain() throws IOException, ServletException {
+        Servlet servlet = mock(Servlet.class);
+
+        new FilterChainImpl(new Filter[]{mock(Filter.class)}, servlet)
+                .doFilter(mock(HttpServletRequest.class), mock(HttpServletResponse.class));
+
+        verify(servlet, never()).service(any(HttpServletRequest.class), any(HttpServletResponse.class));
+    }
+
+    private Filter getPassingFilter() throws IOException, ServletException {
+        Filter filter = mock(Filter.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Object[] arguments = invocation.getArguments();
+                ((FilterChain) arguments[2]).doFilter((HttpServletRequest) arguments[0],
+                        (HttpServletResponse) arguments[1]);
+                return null;
+            }
+        }).when(filter).doFilter(any(HttpServletRequest.class), any(HttpServletResponse.class),
+                any(FilterChain.class));
+        return filter;
+    }
+}
@@ -3,17 +3,28 @@ package ro.polak.http.servlet.impl;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
 import ro.polak.http.Headers;
 import ro.polak.http.protocol.serializer.Serializer;
+import ro.polak.http.protocol.serializer.impl.ByteHeadersSerializer;
+import ro.polak.http.servlet.Cookie;
+import ro.polak.http.servlet.helper.CompressionHelper;
 import ro.polak.http.servlet.helper.StreamHelper;
 
 import static junit.framework.TestCase.fail;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class HttpResponseImplTest {
 
@@ -21,7 +32,7 @@ public class HttpResponseImplTest {
 
     @Before
     public void setUp() {
-        httpResponseImpl = new HttpResponseImpl(mock(Serializer.class),
+        httpResponseImpl = new HttpResponseImpl(new ByteHeadersSerializer(),
                 mock(Serializer.class), mock(StreamHelper.class), mock(OutputStream.class));
     }
 
@@ -36,6 +47,12 @@ public class HttpResponseImplTest {
         httpResponseImpl.flushHeaders();
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotAllowCompressionOnceWriterObtained() {
+        httpResponseImpl.getWriter();
+        httpResponseImpl.enableCompression(mock(CompressionHelper.class), "gzip");
+    }
+
     @Test
     public void shouldRedirectProperly() throws IOException {
         String url = "/SomeUrl";
@@ -57,4 +74,151 @@ public class HttpResponseImplTest {
         assertThat(httpResponseImpl.getHeaders().getHeader("StringValue"), is("value"));
         assertThat(httpResponseImpl.getHeaders().getHeader("IntValue"), is("1"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldSerializeEveryCookieAsSeparateHeader() throws IOException {
+        Cookie first = new Cookie("first", "1");
+        Cookie second = new Cookie("second", "2");
+        Serializer<Cookie> cookieSerializer = mock(Serializer.class);
+        when(cookieSerializer.serialize(first)).thenReturn("first=1");
+        when(cookieSerializer.serialize(second)).thenReturn("second=2");
+
+        HttpResponseImpl response = new HttpResponseImpl(new ByteHeadersSerializer(),
+                cookieSerializer, mock(StreamHelper.class), mock(OutputStream.class));
+        response.addCookie(first);
+        response.addCookie(second);
+
+        response.flushHeaders();
+
+        assertThat(response.getHeaders().getHeaderValues(Headers.HEADER_SET_COOKIE),
+                contains("first=1", "second=2"));
+    }
+
+    @Test
+    public void shouldAddHeaderValues() {
+        httpResponseImpl.addHeader("Vary", "Accept");
+        httpResponseImpl.addHeader("Vary", "Accept-Encoding");
+
+        assertThat(httpResponseImpl.getHeaders().getHeaderValues("Vary"), contains("Accept", "Accept-Encoding"));
+    }
+
+    @Test
+    public void shouldDeclareLengthOfBufferedBody() throws IOException {
+        OutputStream out = mock(OutputStream.class);
+        HttpResponseImpl response = new HttpResponseImpl(new ByteHeadersSerializer(),
+                mock(Serializer.class), mock(StreamHelper.class), out);
+        response.getWriter().print("Hello");
+        response.getOutputStream().write(" World".getBytes());
+        response.getWriter().print("!");
+
+        assertThat(response.isCommitted(), is(false));
+        response.flush();
+
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_CONTENT_LENGTH), is("12"));
+        // Coalesced into a single write
+        verify(out, times(1)).write(any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldCommitOnceBufferOverflows() throws IOException {
+        HttpResponseImpl response = new HttpResponseImpl(new ByteHeadersSerializer(),
+                mock(Serializer.class), mock(StreamHelper.class), mock(OutputStream.class));
+        response.setBufferSize(4);
+        response.getOutputStream().write("ABC".getBytes());
+        assertThat(response.isCommitted(), is(false));
+
+        response.getOutputStream().write("DE".getBytes());
+        assertThat(response.isCommitted(), is(true));
+
+        response.flush();
+        assertThat(response.getHeaders().containsHeader(Headers.HEADER_CONTENT_LENGTH), is(false));
+    }
+
+    @Test
+    public void shouldResetBuffer() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpResponseImpl response = new HttpResponseImpl(new ByteHeadersSerializer(),
+                mock(Serializer.class), mock(StreamHelper.class), out);
+        response.getWriter().print("Discarded");
+        response.resetBuffer();
+        response.getWriter().print("Sent");
+        response.flush();
+
+        assertThat(out.toString(), endsWith("\r\n\r\nSent"));
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_CONTENT_LENGTH), is("4"));
+    }
+
+    @Test
+    public void shouldFlushBuffer() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpResponseImpl response = new HttpResponseImpl(new ByteHeadersSerializer(),
+                mock(Serializer.class), mock(StreamHelper.class), out);
+        response.getWriter().print("Flushed");
+        response.flushBuffer();
+
+        assertThat(response.isCommitted(), is(true));
+        assertThat(out.toString(), endsWith("\r\n\r\nFlushed"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotResetBufferOfCommittedResponse() throws IOException {
+        httpResponseImpl.flushBuffer();
+        httpResponseImpl.resetBuffer();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotChangeBufferSizeOnceWritten() throws IOException {
+        httpResponseImpl.getOutputStream().write(1);
+        httpResponseImpl.setBufferSize(16);
+    }
+
+    @Test
+    public void shouldChunkBodyOfUnknownLengthOnKeepAlive() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpResponseImpl response = new HttpResponseImpl(new ByteHeadersSerializer(),
+                mock(Serializer.class), mock(StreamHelper.class), out);
+        response.setKeepAlive(true);
+        response.setChunkedTransferAllowed(true);
+        response.setBufferSize(4);
+        response.getOutputStream().write("Hello".getBytes());
+        response.getOutputStream().write(" World".getBytes());
+        response.flush();
+
+        assertThat(response.getHeaders().getHeader(Headers.HEADER_TRANSFER_ENCODING), is("chunked"));
+        assertThat(response.isKeepAlive(), is(true));
+        assertThat(out.toString(), endsWith("\r\n\r\n5\r\nHello\r\n6\r\n World\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldCloseConnectionWhenChunkingNotAllowed() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpResponseImpl response = new HttpResponseImpl(new ByteHeadersSerializer(),
+                mock(Serializer.class), mock(StreamHelper.class), out);
+        response.setKeepAlive(true);
+        response.setBufferSize(4);
+        response.getOutputStream().write("Hello".getBytes());
+        response.flush();
+
+        assertThat(response.getHeaders().containsHeader(Headers.HEADER_TRANSFER_ENCODING), is(false));
+        assertThat(response.isKeepAlive(), is(false));
+        assertThat(out.toString(), endsWith("\r\n\r\nHello"));
+    }
+
+    @Test
+    public void shouldNotSendOmittedBody() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpResponseImpl response = new HttpResponseImpl(new ByteHeadersSerializer(),
+                mock(Serializer.class), mock(StreamHelper.class), out);
+        response.setKeepAlive(true);
+        response.setChunkedTransferAllowed(true);
+        response.setBodyOmitted(true);
+        response.setBufferSize(4);
+        response.getOutputStream().write("Hello".getBytes());
+        response.getOutputStream().write(" World".getBytes());
+        response.flush();
+
+        assertThat(response.isKeepAlive(), is(true));
+        assertThat(response.getHeaders().containsHeader(Headers.HEADER_TRANSFER_ENCODING), is(false));
+        assertThat(out.toString(), endsWith("\r\n\r\n"));
+    }
+}
@@ -3,14 +3,23 @@ package ro.polak.http.servlet.impl;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import ro.polak.http.exception.ServletException;
 import ro.polak.http.exception.ServletInitializationException;
 import ro.polak.http.servlet.HttpServlet;
 import ro.polak.http.servlet.HttpServletRequest;
 import ro.polak.http.servlet.HttpServletResponse;
+import ro.polak.http.servlet.Servlet;
 import ro.polak.http.servlet.ServletConfig;
 import ro.polak.http.servlet.impl.ServletContainerImpl;
 import ro.polak.http.servlet.loader.SampleServlet;
+import ro.polak.http.utilities.DateProvider;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -18,6 +27,7 @@ import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ServletContainerImplTest {
 
@@ -67,11 +77,108 @@ public class ServletContainerImplTest {
         assertThat(servlet.getDestroyedCounter(), is(equalTo(1)));
     }
 
+    @Test
+    public void shouldInitializeServletOnceOnConcurrentRequests() throws Exception {
+        final int threads = 8;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        SlowServlet.INITIALIZATIONS.set(0);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                futures[i] = executorService.submit(new Callable<Servlet>() {
+                    @Override
+                    public Servlet call() throws Exception {
+                        startLatch.await();
+                        return servletContainer.getServletForClass(SlowServlet.class, servletConfig);
+                    }
+                });
+            }
+            startLatch.countDown();
+
+            Object servlet = futures[0].get();
+            for (Future<?> future : futures) {
+                assertThat(future.get(), is(servlet));
+            }
+            assertThat(SlowServlet.INITIALIZATIONS.get(), is(1));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldDestroyIdleServlet() throws ServletException, ServletInitializationException {
+        DateProvider dateProvider = mock(DateProvider.class);
+        when(dateProvider.currentTimeMillis()).thenReturn(1000L);
+        servletContainer = new ServletContainerImpl(dateProvider, 1000);
+
+        SampleServlet servlet = (SampleServlet) servletContainer.getServletForClass(SampleServlet.class, servletConfig);
+        servletContainer.releaseServletForClass(SampleServlet.class);
+        assertThat(servletContainer.getServletStats().get(SampleServlet.class).getLastRequestedAt(), is(1000L));
+
+        when(dateProvider.currentTimeMillis()).thenReturn(1999L);
+        assertThat(servletContainer.destroyIdleServlets(), is(0));
+
+        when(dateProvider.currentTimeMillis()).thenReturn(2000L);
+        assertThat(servletContainer.destroyIdleServlets(), is(1));
+        assertThat(servlet.getDestroyedCounter(), is(1));
+        assertThat(servletContainer.getServletStats().size(), is(0));
+
+        SampleServlet servlet2 = (SampleServlet) servletContainer.getServletForClass(SampleServlet.class, servletConfig);
+        assertThat(servlet2, is(not(servlet)));
+        assertThat(servlet2.getInitializedCounter(), is(1));
+        assertThat(servletContainer.getServletStats().get(SampleServlet.class).getInitializedAt(), is(2000L));
+    }
+
+    @Test
+    public void shouldNotDestroyServletServingRequest() throws ServletException, ServletInitializationException {
+        DateProvider dateProvider = mock(DateProvider.class);
+        servletContainer = new ServletContainerImpl(dateProvider, 1000);
+
+        SampleServlet servlet = (SampleServlet) servletContainer.getServletForClass(SampleServlet.class, servletConfig);
+        when(dateProvider.currentTimeMillis()).thenReturn(5000L);
+        assertThat(servletContainer.destroyIdleServlets(), is(0));
+        assertThat(servletContainer.getServletStats().get(SampleServlet.class).getActiveRequests(), is(1));
+
+        servletContainer.releaseServletForClass(SampleServlet.class);
+        assertThat(servletContainer.destroyIdleServlets(), is(1));
+        assertThat(servlet.getDestroyedCounter(), is(1));
+    }
+
+    @Test
+    public void shouldNotDestroyServletsWithoutIdleTimeout() throws ServletException, ServletInitializationException {
+        servletContainer.getServletForClass(SampleServlet.class, servletConfig);
+        servletContainer.releaseServletForClass(SampleServlet.class);
+
+        assertThat(servletContainer.destroyIdleServlets(), is(0));
+        assertThat(servletContainer.getServletStats().size(), is(1));
+    }
+
     @Test(expected = ServletInitializationException.class)
     public void shouldThrowException() throws ServletException, ServletInitializationException {
         servletContainer.getServletForClass(InvalidServletWithPrivateConstructor.class, servletConfig);
     }
 
+    public static class SlowServlet extends HttpServlet {
+
+        private static final AtomicInteger INITIALIZATIONS = new AtomicInteger();
+
+        @Override
+        public void init() throws ServletException {
+            INITIALIZATIONS.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void service(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+            // To comply with HttpServlet interface only
+        }
+    }
+
     public class InvalidServletWithPrivateConstructor extends HttpServlet {
 
         private InvalidServletWithPrivateConstructor() {
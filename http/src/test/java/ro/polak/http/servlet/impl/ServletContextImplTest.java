@@ -12,6 +12,7 @@ import ro.polak.http.configuration.FilterMapping;
 import ro.polak.http.configuration.ServerConfig;
 import ro.polak.http.configuration.ServletMapping;
 import ro.polak.http.protocol.serializer.Serializer;
+import ro.polak.http.protocol.serializer.impl.ByteHeadersSerializer;
 import ro.polak.http.servlet.Cookie;
 import ro.polak.http.servlet.ServletContext;
 import ro.polak.http.servlet.helper.StreamHelper;
@@ -47,8 +48,7 @@ public class ServletContextImplTest {
                 sessionStorage
         );
         servletContext.setAttribute("attribute", "value");
-        response = new HttpResponseImpl(mock(
-                Serializer.class),
+        response = new HttpResponseImpl(new ByteHeadersSerializer(),
                 mock(Serializer.class),
                 mock(StreamHelper.class),
                 mock(OutputStream.class));
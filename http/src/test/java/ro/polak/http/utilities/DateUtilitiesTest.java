@@ -21,4 +21,22 @@ public class DateUtilitiesTest {
     public void shouldFormatDate() {
         assertThat(DateUtilities.dateFormat(new Date(1520881821937L)), is("Mon, 12 Mar 2018 19:10:21 GMT"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldFormatSingleDigitDayWithTwoDigits() {
+        assertThat(DateUtilities.dateFormat(new Date(1520190621000L)), is("Sun, 04 Mar 2018 19:10:21 GMT"));
+    }
+
+    @Test
+    public void shouldParseDates() {
+        assertThat(DateUtilities.parse("Mon, 12 Mar 2018 19:10:21 GMT").getTime(), is(1520881821000L));
+        assertThat(DateUtilities.parse("Monday, 12-Mar-18 19:10:21 GMT").getTime(), is(1520881821000L));
+        assertThat(DateUtilities.parse("Mon Mar 12 19:10:21 2018").getTime(), is(1520881821000L));
+    }
+
+    @Test
+    public void shouldReturnNullForInvalidDates() {
+        assertThat(DateUtilities.parse(null) == null, is(true));
+        assertThat(DateUtilities.parse("yesterday") == null, is(true));
+    }
+}
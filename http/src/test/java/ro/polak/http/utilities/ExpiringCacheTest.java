@@ -0,0 +1,68 @@
+package ro.polak.http.utilities;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ExpiringCacheTest {
+
+    private static final long TTL = 1000;
+
+    private final ExpiringCache<String, String> cache = new ExpiringCache<>(8);
+
+    @Test
+    public void shouldExpireValues() {
+        cache.put("key", "value", 0, TTL, cache.getGeneration());
+
+        assertThat(cache.get("key", TTL - 1), is("value"));
+        assertThat(cache.get("key", TTL), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotStoreValuesComputedBeforeInvalidation() {
+        long readGeneration = cache.getGeneration();
+        cache.invalidateAll();
+        cache.put("key", "value", 0, TTL, readGeneration);
+
+        assertThat(cache.get("key", 0), is(nullValue()));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void shouldEvictExpiredValuesFirstOnceFull() {
+        for (int i = 0; i < 8; i++) {
+            cache.put("expiring" + i, "value", 0, TTL, cache.getGeneration());
+        }
+        cache.put("key", "value", TTL, TTL, cache.getGeneration());
+
+        assertThat(cache.size(), is(1));
+        assertThat(cache.get("key", TTL), is("value"));
+    }
+
+    @Test
+    public void shouldFreeQuarterOfCapacityOnceFull() {
+        for (int i = 0; i < 9; i++) {
+            cache.put("key" + i, "value", 0, TTL, cache.getGeneration());
+        }
+
+        assertThat(cache.size(), is(6));
+    }
+
+    @Test
+    public void shouldInvalidateSelectedEntries() {
+        cache.put("a/1", "value", 0, TTL, cache.getGeneration());
+        cache.put("b/1", "value", 0, TTL, cache.getGeneration());
+
+        cache.invalidate(new ExpiringCache.EntryFilter<String, String>() {
+            @Override
+            public boolean accept(String key, String value) {
+                return key.startsWith("a/");
+            }
+        });
+
+        assertThat(cache.get("a/1", 0), is(nullValue()));
+        assertThat(cache.get("b/1", 0), is("value"));
+    }
+}
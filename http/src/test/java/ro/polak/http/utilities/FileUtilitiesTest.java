@@ -22,6 +22,18 @@ public class FileUtilitiesTest {
         assertThat(FileUtilities.getExtension(null), is(nullValue()));
     }
 
+    @Test
+    public void shouldNormalizePath() {
+        assertThat(FileUtilities.getNormalizedPath("/www/index.html", '/'), is("/www/index.html"));
+        assertThat(FileUtilities.getNormalizedPath("/www//index.html", '/'), is("/www/index.html"));
+        assertThat(FileUtilities.getNormalizedPath("/www/./index.html", '/'), is("/www/index.html"));
+        assertThat(FileUtilities.getNormalizedPath("/www/dir/../index.html", '/'), is("/www/index.html"));
+        assertThat(FileUtilities.getNormalizedPath("/www/dir/", '/'), is("/www/dir"));
+        assertThat(FileUtilities.getNormalizedPath("/www/..", '/'), is("/"));
+        assertThat(FileUtilities.getNormalizedPath("/", '/'), is("/"));
+        assertThat(FileUtilities.getNormalizedPath("C:\\www\\.\\index.html", '\\'), is("C:\\www\\index.html"));
+    }
+
     @Test
     public void shouldFormatFileSize() {
         assertThat(FileUtilities.fileSizeUnits(1), is("1 B"));